@@ -0,0 +1,161 @@
+import link16.bench.BenchTarget;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link BenchTarget} 的实现，与解析器同在默认包中，可以直接调用 Link16ParserRunner 的包级方法。
+ * <p>
+ * 输入名为 dsl/ 下的文件名，或 synthetic-function-xN / synthetic-rules-xN 形式的合成输入:
+ * 前者把 目标监视.dsl 中的全部 PROCEDURE / Rule 重复 N 次 (头部定义只保留一份)，
+ * 后者把 J3.2_Rules.dsl 整体重复 N 次；generated-function-N / generated-rules-N 由
+ * {@link Link16CorpusGenerator} 生成约 N 行的合成语料 (固定 seed)；generated-deep-rules-N 生成 20 个规则集、
+ * 条件嵌套 N 层的规则文件，用于衡量 trConditionExpression 在深层 AND/OR/NOT 上的开销。dsl/ 目录可通过 -Dlink16.bench.dslDir 指定。
+ */
+public class Link16BenchmarkSupport implements BenchTarget {
+
+    private static final String SYNTHETIC_FUNCTION = "synthetic-function-x";
+    private static final String SYNTHETIC_RULES = "synthetic-rules-x";
+    private static final String GENERATED_FUNCTION = "generated-function-";
+    private static final String GENERATED_RULES = "generated-rules-";
+    private static final String GENERATED_DEEP_RULES = "generated-deep-rules-";
+    private static final long GENERATED_LINES = 10_000;
+    private static final String FUNCTION_SEED = "目标监视.dsl";
+    private static final String RULES_SEED = "J3.2_Rules.dsl";
+    private static final int[] FUNCTION_SCALES = {2, 8, 32};
+    private static final int[] RULES_SCALES = {8, 64, 256};
+
+    private final File dslDir = new File(System.getProperty("link16.bench.dslDir", "dsl"));
+    private final Diagnostics discard = Diagnostics.discarding();
+    private final Link16DSLLexer lexer = new Link16DSLLexer(CharStreams.fromString(""));
+
+    private String text;
+    private DslMode mode;
+    private int lineCount;
+    private ParseTree tree;
+    private Parser parser;
+    private File dotFile;
+
+    @Override
+    public List<String> defaultInputs() {
+        List<String> inputs = new ArrayList<>();
+        File[] files = dslDir.listFiles((dir, name) -> name.endsWith(".dsl"));
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                inputs.add(file.getName());
+            }
+        }
+        for (int scale : FUNCTION_SCALES) {
+            inputs.add(SYNTHETIC_FUNCTION + scale);
+        }
+        for (int scale : RULES_SCALES) {
+            inputs.add(SYNTHETIC_RULES + scale);
+        }
+        inputs.add(GENERATED_FUNCTION + GENERATED_LINES);
+        inputs.add(GENERATED_RULES + GENERATED_LINES);
+        return inputs;
+    }
+
+    @Override
+    public void load(String input) throws IOException {
+        if (input.startsWith(SYNTHETIC_FUNCTION)) {
+            text = repeatBlocks(read(FUNCTION_SEED), Integer.parseInt(input.substring(SYNTHETIC_FUNCTION.length())));
+            mode = DslMode.FUNCTION_MODEL;
+        } else if (input.startsWith(SYNTHETIC_RULES)) {
+            text = read(RULES_SEED).repeat(Integer.parseInt(input.substring(SYNTHETIC_RULES.length())));
+            mode = DslMode.MESSAGE_RULES;
+        } else if (input.startsWith(GENERATED_FUNCTION)) {
+            StringWriter writer = new StringWriter();
+            generator(Long.parseLong(input.substring(GENERATED_FUNCTION.length()))).writeFunctionModel(writer);
+            text = writer.toString();
+            mode = DslMode.FUNCTION_MODEL;
+        } else if (input.startsWith(GENERATED_DEEP_RULES)) {
+            StringWriter writer = new StringWriter();
+            int depth = Integer.parseInt(input.substring(GENERATED_DEEP_RULES.length()));
+            new Link16CorpusGenerator(0, 4, 3, 2, depth, 20, 4, 0, 42).writeRulesModel(writer);
+            text = writer.toString();
+            mode = DslMode.MESSAGE_RULES;
+        } else if (input.startsWith(GENERATED_RULES)) {
+            StringWriter writer = new StringWriter();
+            generator(Long.parseLong(input.substring(GENERATED_RULES.length()))).writeRulesModel(writer);
+            text = writer.toString();
+            mode = DslMode.MESSAGE_RULES;
+        } else {
+            text = read(input);
+            mode = DslMode.fromFileName(input);
+        }
+        lineCount = (int) text.lines().count();
+
+        Link16ParserContext.Outcome outcome = Link16ParserContext.current().parse(CharStreams.fromString(text), mode, null, null);
+        if (outcome.syntaxErrorCount > 0) {
+            throw new IllegalStateException("基准输入存在语法错误: " + input);
+        }
+        tree = outcome.tree;
+        parser = outcome.parser;
+        dotFile = File.createTempFile("link16-bench-", ".dot");
+        dotFile.deleteOnExit();
+    }
+
+    @Override
+    public int lineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public int lex() {
+        lexer.setInputStream(CharStreams.fromString(text));
+        int count = 0;
+        while (lexer.nextToken().getType() != Token.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Object parse() {
+        return Link16ParserContext.current().parse(CharStreams.fromString(text), mode, null, null).tree;
+    }
+
+    @Override
+    public Object visit() {
+        return new Link16ModelVisitor().build(tree);
+    }
+
+    @Override
+    public long dot() {
+        Link16ParserRunner.generateDotFile(tree, parser, dotFile, discard);
+        return dotFile.length();
+    }
+
+    private static Link16CorpusGenerator generator(long lines) {
+        return new Link16CorpusGenerator(0, 4, 3, 2, 3, 16, 4, lines, 42);
+    }
+
+    private String read(String name) throws IOException {
+        return Files.readString(new File(dslDir, name).toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 保留第一个 PROCEDURE 之前的头部定义，把其后的流程/规则块重复 times 次。
+     */
+    private static String repeatBlocks(String source, int times) {
+        int bodyStart = source.indexOf("PROCEDURE");
+        int bodyEnd = source.lastIndexOf('}');
+        if (bodyStart < 0 || bodyEnd < bodyStart) {
+            throw new IllegalArgumentException("种子文件中没有 PROCEDURE 块");
+        }
+        String body = source.substring(bodyStart, bodyEnd);
+        return source.substring(0, bodyStart) + body.repeat(times) + source.substring(bodyEnd);
+    }
+}
@@ -0,0 +1,48 @@
+package link16.bench;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 基准测试与被测代码之间的桥接接口。
+ * <p>
+ * 解析器及 ANTLR 生成类都位于默认包，命名包中的代码无法直接引用它们，
+ * 而 JMH 又不允许基准类放在默认包中，因此由默认包中的 Link16BenchmarkSupport 实现本接口，
+ * 基准类通过 {@link #create()} 反射加载。
+ */
+public interface BenchTarget {
+
+    String IMPLEMENTATION = "Link16BenchmarkSupport";
+
+    /**
+     * dsl/ 目录下的全部语料文件名，以及不同规模的合成输入名。
+     */
+    List<String> defaultInputs();
+
+    /**
+     * 准备一个输入: 读取/生成文本，并预先完成一次解析供 visit / dot 基准使用。
+     */
+    void load(String input) throws IOException;
+
+    int lineCount();
+
+    /** 只做词法分析，返回 token 数。 */
+    int lex();
+
+    /** 按文件对应的入口 (functionModel / trRulesModel) 做两阶段解析，返回语法树。 */
+    Object parse();
+
+    /** 在预先解析好的语法树上运行 Link16ModelVisitor，返回构建出的模型 IR。 */
+    Object visit();
+
+    /** 为预先解析好的语法树生成 DOT 文件，返回文件长度。 */
+    long dot();
+
+    static BenchTarget create() {
+        try {
+            return (BenchTarget) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("无法加载基准测试实现: " + IMPLEMENTATION, e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package link16.bench;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * benchmarks.jar 的入口，参数与 JMH 命令行一致，在此基础上补充默认值:
+ * <ul>
+ *     <li>未指定 -prof 时自动加上 gc 分配分析器</li>
+ *     <li>未指定 -p input=... 时使用 dsl/ 下全部文件 + 合成输入</li>
+ *     <li>未指定 -rff 时把结果写入 target/jmh-result.json，便于与上一次结果对比</li>
+ * </ul>
+ * 运行结束后额外输出 行/秒 与 字节/行，方便跨不同规模的输入比较。
+ */
+public class BenchmarkMain {
+
+    private static final List<String> PASS_THROUGH = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+    // JMH 1.37 起 gc 分析器的结果名不再带 "·" 前缀，两种都查一下
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws Exception {
+        for (String arg : args) {
+            if (PASS_THROUGH.contains(arg)) {
+                Main.main(args);
+                return;
+            }
+        }
+
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLine);
+        if (commandLine.getProfilers().isEmpty()) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        BenchTarget target = BenchTarget.create();
+        if (!commandLine.getParameter("input").hasValue()) {
+            builder.param("input", target.defaultInputs().toArray(new String[0]));
+        }
+        if (!commandLine.getResult().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON).result("target/jmh-result.json");
+        }
+        if (commandLine.getIncludes().isEmpty()) {
+            builder.include(CorpusBenchmark.class.getSimpleName());
+        }
+
+        Collection<RunResult> results = new Runner(builder.build()).run();
+        printPerLine(results, target);
+    }
+
+    private static void printPerLine(Collection<RunResult> results, BenchTarget target) throws Exception {
+        if (results.stream().noneMatch(result -> result.getParams().getParam("input") != null)) {
+            return;
+        }
+        Map<String, Integer> lineCounts = new HashMap<>();
+        System.out.println();
+        System.out.println("📊 按行归一化的结果");
+        System.out.println(String.format("%-10s %-28s %8s %14s %14s %12s", "阶段", "输入", "行数", "ops/s", "行/s", "字节/行"));
+        for (RunResult result : results) {
+            String benchmark = result.getParams().getBenchmark();
+            String stage = benchmark.substring(benchmark.lastIndexOf('.') + 1);
+            String input = result.getParams().getParam("input");
+            if (input == null) {
+                // 不按 input 参数化的基准 (例如 RuleConditionBenchmark) 只看 JMH 自己的结果表
+                continue;
+            }
+            Integer lines = lineCounts.get(input);
+            if (lines == null) {
+                target.load(input);
+                lines = target.lineCount();
+                lineCounts.put(input, lines);
+            }
+            double opsPerSecond = result.getPrimaryResult().getScore();
+            Result<?> alloc = result.getSecondaryResults().get(ALLOC_NORM);
+            if (alloc == null) {
+                alloc = result.getSecondaryResults().get("·" + ALLOC_NORM);
+            }
+            String bytesPerLine = alloc == null ? "-" : String.format("%.1f", alloc.getScore() / Math.max(1, lines));
+            System.out.println(String.format("%-10s %-28s %8d %14.2f %14.0f %12s",
+                    stage, input, lines, opsPerSecond, opsPerSecond * lines, bytesPerLine));
+        }
+    }
+}
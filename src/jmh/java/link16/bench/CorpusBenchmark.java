@@ -0,0 +1,68 @@
+package link16.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DSL 处理流水线各阶段的吞吐基准: 词法、语法 (两种入口)、Visitor、DOT 生成。
+ * <p>
+ * input 参数默认由 {@link BenchmarkMain} 根据 dsl/ 目录和合成规模自动填充，
+ * 这里列出的值只在直接使用 org.openjdk.jmh.Main 时生效。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class CorpusBenchmark {
+
+    @Param({
+            "J3.2_Rules.dsl", "信息管理.dsl", "平台定位与识别.dsl", "平台状态.dsl", "指挥控制.dsl", "武器协同.dsl", "目标监视.dsl",
+            "synthetic-function-x2", "synthetic-function-x8", "synthetic-function-x32",
+            "synthetic-rules-x8", "synthetic-rules-x64", "synthetic-rules-x256",
+            "generated-function-10000", "generated-rules-10000"
+    })
+    public String input;
+
+    private BenchTarget target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BenchTarget.create();
+        target.load(input);
+    }
+
+    @Benchmark
+    public int lex() {
+        return target.lex();
+    }
+
+    @Benchmark
+    public Object parse() {
+        return target.parse();
+    }
+
+    @Benchmark
+    public Object visit() {
+        return target.visit();
+    }
+
+    @Benchmark
+    public long dot() {
+        return target.dot();
+    }
+}
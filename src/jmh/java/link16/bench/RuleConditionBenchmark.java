@@ -0,0 +1,56 @@
+package link16.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 消息规则条件 (trConditionExpression / trAndExpr / trNotExpr) 的解析耗时: 真实的 J3.2_Rules.dsl 与
+ * 条件嵌套 4 层的生成规则文件。与改写前的语法对比时，换回旧的 Link16DSL.g4 重新构建后用同样的参数再跑一次。
+ * <p>
+ * 参数名用 rules 而不是 input，避免 {@link BenchmarkMain} 把全部语料填进来:
+ * <pre>
+ *   java -jar target/benchmarks.jar RuleConditionBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class RuleConditionBenchmark {
+
+    @Param({"J3.2_Rules.dsl", "generated-deep-rules-4"})
+    public String rules;
+
+    private BenchTarget target;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        target = BenchTarget.create();
+        target.load(rules);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return target.parse();
+    }
+
+    @Benchmark
+    public Object visit() {
+        return target.visit();
+    }
+}
@@ -278,15 +278,16 @@ trRuleDef
       RBRACE
     ;
 
-// 4. 条件表达式 (处理优先级和递归)
+// 4. 条件表达式 (按优先级分层: OR < AND < NOT，与功能模型的 orExpr / andExpr / notExpr 一致)
+//    同一层的连续 AND / OR 得到一个扁平的 n 元节点，不再是左递归产生的深层二叉树
+//    trConditionExpression 本身即 OR 层，NOT 与括号合并在最内层，尽量减少单链包装节点
 trConditionExpression
-    : trConditionTerm                                        # trTermExpr
-    | NOT trConditionExpression                              # trNotExpr
-    | trConditionExpression AND trConditionExpression        # trAndExpr
-    | trConditionExpression OR trConditionExpression         # trOrExpr
-    | LPAREN trConditionExpression RPAREN                    # trParenExpr
+    : trAndExpr ( OR trAndExpr )*
     ;
 
+trAndExpr : trNotExpr ( AND trNotExpr )* ;
+trNotExpr : NOT* ( trConditionTerm | LPAREN trConditionExpression RPAREN ) ;
+
 // 5. 条件原子
 trConditionTerm
     : structuredCondition
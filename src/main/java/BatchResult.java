@@ -0,0 +1,47 @@
+import java.io.File;
+import java.util.Map;
+
+public class BatchResult {
+    public final Map<File, ParseResult> results;
+    public final int fileCount;
+    public final int successCount;
+    public final int failureCount;
+    public final int llFallbackCount;
+    public final long totalBytes;
+    public final long elapsedNanos;
+
+    public BatchResult(Map<File, ParseResult> results, long totalBytes, long elapsedNanos) {
+        this.results = results;
+        this.fileCount = results.size();
+        int success = 0;
+        int fallback = 0;
+        for (ParseResult result : results.values()) {
+            if (result.success) success++;
+            if (result.parseStage == ParseStage.LL) fallback++;
+        }
+        this.successCount = success;
+        this.failureCount = fileCount - success;
+        this.llFallbackCount = fallback;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public double elapsedSeconds() {
+        return elapsedNanos / 1_000_000_000.0;
+    }
+
+    public double filesPerSecond() {
+        double seconds = elapsedSeconds();
+        return seconds > 0 ? fileCount / seconds : 0;
+    }
+
+    public double kilobytesPerSecond() {
+        double seconds = elapsedSeconds();
+        return seconds > 0 ? totalBytes / 1024.0 / seconds : 0;
+    }
+
+    public String toSummary() {
+        return String.format("📊 批量汇总: %d 个文件 (成功 %d, 失败 %d, LL 回退 %d), 耗时 %.2f s, %.1f 文件/s, %.1f KB/s",
+                fileCount, successCount, failureCount, llFallbackCount, elapsedSeconds(), filesPerSecond(), kilobytesPerSecond());
+    }
+}
@@ -0,0 +1,271 @@
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单次解析任务的诊断输出：Runner 把进度、错误和模型文本写成事件，先进入本任务自己的缓冲区，
+ * 在阶段结束 (flush) 或缓冲超过阈值时按批交给各个 Sink (控制台、日志文件、内存)。
+ * <p>
+ * 每个任务各自持有一个实例，不共享可变状态，也不碰全局的 System.out / System.err；
+ * 同一批事件对控制台只做一次写入，多个任务并发时各自的输出不会逐行交错。
+ * 安静模式 (不挂 ConsoleSink) 下完全不做控制台格式化与 I/O。
+ */
+public final class Diagnostics implements AutoCloseable {
+
+    private static final String NL = System.lineSeparator();
+    // 缓冲的字符数超过这个值就先交给 Sink，流式解析时内存不会随文件增长
+    private static final int FLUSH_THRESHOLD_CHARS = Integer.getInteger("link16.diagnostics.flushChars", 64 * 1024);
+
+    public enum Level {
+        // 正常输出 (控制台上走 stdout)
+        INFO,
+        // 错误与警告 (控制台上走 stderr)
+        ERROR
+    }
+
+    /**
+     * 一条诊断事件。text 是一行 (lineEnd 为 true) 或一段已经带换行的文本块 (lineEnd 为 false)。
+     */
+    public static class Event {
+        public final String source;
+        public final Level level;
+        public final String text;
+        public final boolean lineEnd;
+
+        public Event(String source, Level level, String text, boolean lineEnd) {
+            this.source = source;
+            this.level = level;
+            this.text = text;
+            this.lineEnd = lineEnd;
+        }
+
+        void appendTo(StringBuilder sb) {
+            sb.append(text);
+            if (lineEnd) {
+                sb.append(NL);
+            }
+        }
+    }
+
+    /**
+     * 诊断事件的去向。write 每次收到同一任务的一批连续事件；被多个任务共享的 Sink 需要自己保证线程安全。
+     */
+    public interface Sink {
+        void write(List<Event> events) throws IOException;
+
+        default void flush() throws IOException {
+        }
+
+        default void close() throws IOException {
+        }
+    }
+
+    private final String source;
+    // 本任务自己创建的 Sink，close 时一并关闭
+    private final List<Sink> owned;
+    // 调用方传入、由多个任务共享的 Sink，close 时只 flush，生命周期归调用方管理
+    private final List<Sink> shared;
+    private final List<Event> buffer = new ArrayList<>();
+    private int bufferedChars;
+
+    public Diagnostics(String source, List<Sink> sinks) {
+        this(source, sinks, List.of());
+    }
+
+    public Diagnostics(String source, List<Sink> owned, List<Sink> shared) {
+        this.source = source;
+        this.owned = List.copyOf(owned);
+        this.shared = List.copyOf(shared);
+    }
+
+    /**
+     * 不挂任何 Sink，事件直接丢弃 (基准测试等不关心输出的场景)。
+     */
+    public static Diagnostics discarding() {
+        return new Diagnostics("", List.of());
+    }
+
+    public void info(String line) {
+        add(new Event(source, Level.INFO, line, true));
+    }
+
+    public void error(String line) {
+        add(new Event(source, Level.ERROR, line, true));
+    }
+
+    /**
+     * 原样输出一段文本 (例如模型文本、缓存中的日志)，不再追加换行。
+     */
+    public void text(String block) {
+        if (!block.isEmpty()) {
+            add(new Event(source, Level.INFO, block, false));
+        }
+    }
+
+    public void error(Throwable e) {
+        StringWriter trace = new StringWriter();
+        e.printStackTrace(new PrintWriter(trace));
+        add(new Event(source, Level.ERROR, trace.toString(), false));
+    }
+
+    /**
+     * 把缓冲的事件交给所有 Sink。单个 Sink 写入失败不影响其他 Sink。
+     */
+    public void flush() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        List<Event> batch = List.copyOf(buffer);
+        buffer.clear();
+        bufferedChars = 0;
+        write(owned, batch);
+        write(shared, batch);
+    }
+
+    /**
+     * 刷出缓冲后关闭本任务自己的 Sink；共享的 Sink 只 flush，不关闭。
+     */
+    @Override
+    public void close() {
+        flush();
+        for (Sink sink : owned) {
+            try {
+                sink.close();
+            } catch (IOException e) {
+                System.err.println("⚠️ 诊断输出关闭失败 (" + source + "): " + e.getMessage());
+            }
+        }
+        for (Sink sink : shared) {
+            try {
+                sink.flush();
+            } catch (IOException e) {
+                System.err.println("⚠️ 诊断输出刷新失败 (" + source + "): " + e.getMessage());
+            }
+        }
+    }
+
+    // 单个 Sink 写入失败不影响其他 Sink
+    private void write(List<Sink> sinks, List<Event> batch) {
+        for (Sink sink : sinks) {
+            try {
+                sink.write(batch);
+            } catch (IOException e) {
+                System.err.println("⚠️ 诊断输出写入失败 (" + source + "): " + e.getMessage());
+            }
+        }
+    }
+
+    private void add(Event event) {
+        buffer.add(event);
+        bufferedChars += event.text.length();
+        if (bufferedChars >= FLUSH_THRESHOLD_CHARS) {
+            flush();
+        }
+    }
+
+    // ========================================================================
+    // 内置 Sink
+    // ========================================================================
+
+    /**
+     * 控制台：INFO 写 stdout，ERROR 写 stderr；连续同级别的事件拼好后只调用一次 print。
+     */
+    public static class ConsoleSink implements Sink {
+        private final PrintStream out;
+        private final PrintStream err;
+
+        public ConsoleSink() {
+            this(System.out, System.err);
+        }
+
+        public ConsoleSink(PrintStream out, PrintStream err) {
+            this.out = out;
+            this.err = err;
+        }
+
+        @Override
+        public void write(List<Event> events) {
+            StringBuilder sb = new StringBuilder();
+            Level level = null;
+            for (Event event : events) {
+                if (event.level != level && sb.length() > 0) {
+                    print(level, sb);
+                    sb.setLength(0);
+                }
+                level = event.level;
+                event.appendTo(sb);
+            }
+            if (sb.length() > 0) {
+                print(level, sb);
+            }
+        }
+
+        private void print(Level level, StringBuilder sb) {
+            PrintStream target = level == Level.ERROR ? err : out;
+            target.print(sb);
+            target.flush();
+        }
+    }
+
+    /**
+     * 日志文件 (UTF-8，带缓冲)。作为 options.diagnosticsSink 被多个任务共享时，每批事件整体写入，批与批之间不交错。
+     */
+    public static class LogFileSink implements Sink {
+        private final Writer writer;
+
+        public LogFileSink(File file) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public synchronized void write(List<Event> events) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (Event event : events) {
+                event.appendTo(sb);
+            }
+            writer.write(sb.toString());
+            writer.flush();
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * 内存缓冲，ParseResult.logText 由它生成。
+     */
+    public static class MemorySink implements Sink {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void write(List<Event> events) {
+            for (Event event : events) {
+                event.appendTo(text);
+            }
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        public String text() {
+            return text.toString();
+        }
+    }
+}
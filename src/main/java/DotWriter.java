@@ -0,0 +1,139 @@
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.Tree;
+import org.antlr.v4.runtime.tree.Trees;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * 把语法树以 Graphviz DOT 格式直接写入 Writer。
+ * <p>
+ * 用显式栈做先序遍历，不受语句嵌套深度限制；节点 id 按遍历顺序从 0 递增，
+ * 不会像 System.identityHashCode 那样发生碰撞导致节点被合并。
+ * 标签逐字符转义后直接写出，不使用正则或 String.format，整个图也不会先拼成一个大字符串。
+ */
+public class DotWriter {
+
+    private static final int MAX_LABEL_LENGTH = 30;
+    private static final String TERMINAL_STYLE = "\", fillcolor=\"#e2f0d9\", color=\"#38761d\"];\n";
+    private static final String RULE_STYLE = "\", fillcolor=\"#dae8fc\", color=\"#6c8ebf\"];\n";
+
+    private final Writer out;
+    private final Parser parser;
+
+    // 遍历栈: 节点、节点 id、下一个待访问的子节点下标
+    private Tree[] stackNodes = new Tree[64];
+    private int[] stackIds = new int[64];
+    private int[] stackNext = new int[64];
+    private int depth;
+    private int nextId;
+
+    public DotWriter(Writer out, Parser parser) {
+        this.out = out;
+        this.parser = parser;
+    }
+
+    /**
+     * 写出完整的 digraph (含图头和默认样式)，返回节点数。
+     */
+    public int write(Tree root) throws IOException {
+        out.write("digraph G {\n");
+        out.write("  rankdir=TB;\n");
+        out.write("  splines=polyline;\n");
+        out.write("  node [shape=box, style=\"filled,rounded\", fillcolor=white, fontname=\"Microsoft YaHei\", fontsize=12, height=0.3];\n");
+        out.write("  edge [color=\"#444444\", arrowsize=0.8];\n");
+
+        depth = 0;
+        nextId = 0;
+        push(root, writeNode(root));
+        while (depth > 0) {
+            int top = depth - 1;
+            Tree node = stackNodes[top];
+            int childIndex = stackNext[top];
+            if (childIndex >= node.getChildCount()) {
+                stackNodes[top] = null;
+                depth--;
+                continue;
+            }
+            stackNext[top] = childIndex + 1;
+            Tree child = node.getChild(childIndex);
+            int parentId = stackIds[top];
+            int childId = nextId; // 子节点的边先于子节点本身写出，与原来的输出顺序一致
+            writeEdge(parentId, childId);
+            push(child, writeNode(child));
+        }
+
+        out.write("}\n");
+        return nextId;
+    }
+
+    private int writeNode(Tree node) throws IOException {
+        int id = nextId++;
+        out.write("  node");
+        out.write(Integer.toString(id));
+        out.write(" [label=\"");
+        writeLabel(Trees.getNodeText(node, parser));
+        out.write(node instanceof TerminalNode ? TERMINAL_STYLE : RULE_STYLE);
+        return id;
+    }
+
+    private void writeEdge(int parentId, int childId) throws IOException {
+        out.write("  node");
+        out.write(Integer.toString(parentId));
+        out.write(" -> node");
+        out.write(Integer.toString(childId));
+        out.write(";\n");
+    }
+
+    private void writeLabel(String text) throws IOException {
+        writeEscaped(out, text, MAX_LABEL_LENGTH);
+    }
+
+    /**
+     * 把 text 作为 DOT 双引号字符串的内容写出，超过 maxLength 个字符时保留前 maxLength - 3 个并追加 "..."。
+     * 先按原文截断再转义，避免把转义序列截成半个。
+     */
+    static void writeEscaped(Writer out, String text, int maxLength) throws IOException {
+        if (text == null) {
+            return;
+        }
+        int end = text.length();
+        boolean truncated = end > maxLength;
+        if (truncated) {
+            end = maxLength - 3;
+            if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+        }
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> out.write("\\\\");
+                case '"' -> out.write("\\\"");
+                case '\n' -> out.write("\\n");
+                case '\r' -> {
+                    // DOT 中 \r 表示右对齐换行，原文里的回车直接丢弃
+                }
+                default -> out.write(c);
+            }
+        }
+        if (truncated) {
+            out.write("...");
+        }
+    }
+
+    private void push(Tree node, int id) {
+        if (depth == stackNodes.length) {
+            int capacity = depth * 2;
+            stackNodes = Arrays.copyOf(stackNodes, capacity);
+            stackIds = Arrays.copyOf(stackIds, capacity);
+            stackNext = Arrays.copyOf(stackNext, capacity);
+        }
+        stackNodes[depth] = node;
+        stackIds[depth] = id;
+        stackNext[depth] = 0;
+        depth++;
+    }
+}
@@ -0,0 +1,26 @@
+import org.antlr.v4.runtime.ParserRuleContext;
+
+// DSL 文件的两种解析入口
+public enum DslMode {
+    FUNCTION_MODEL("功能模型 (Function Model)"),
+    MESSAGE_RULES("消息处理规则 (Message Rules)");
+
+    public final String displayName;
+
+    DslMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    // 🧠 智能模式识别逻辑
+    // 只要文件名包含 "规则" 或 "Rules"，就自动切换到消息规则解析模式
+    public static DslMode fromFileName(String fileName) {
+        if (fileName.contains("规则") || fileName.contains("Rules")) {
+            return MESSAGE_RULES;
+        }
+        return FUNCTION_MODEL;
+    }
+
+    public ParserRuleContext parse(Link16DSLParser parser) {
+        return this == MESSAGE_RULES ? parser.trRulesModel() : parser.functionModel();
+    }
+}
@@ -4,6 +4,7 @@ public class GenerationAttempt {
     public final int attempt;
     public final String dsl;
     public final List<String> errors;
+    // 只有最终通过校验的那一轮会落盘，其余尝试只在内存中解析，这两个路径为 null
     public final String dslPath;
     public final String logPath;
 
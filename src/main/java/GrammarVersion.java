@@ -0,0 +1,37 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * 语法版本标识：对生成的 Lexer / Parser 序列化 ATN 取 SHA-256。
+ * 只要 Link16DSL.g4 或 Link16DSLLexer.g4 有任何结构性修改，这个值就会变化，
+ * 运行时无需再去读取 .g4 源文件。
+ */
+public final class GrammarVersion {
+
+    private static final String VERSION = compute();
+
+    private GrammarVersion() {
+    }
+
+    public static String get() {
+        return VERSION;
+    }
+
+    private static String compute() {
+        MessageDigest digest = sha256();
+        digest.update(Link16DSLLexer._serializedATN.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(Link16DSLParser._serializedATN.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// 解析结果可视化 (DOT/SVG) 的两种视图
+public enum GraphView {
+    // 原始 ANTLR 语法树，每个 token 和规则包装都是一个节点
+    PARSE_TREE,
+    // 由模型提取出的语义图: 参与者、消息、流程、步骤、调用关系、规则条件 (见 SemanticDotWriter)
+    SEMANTIC
+}
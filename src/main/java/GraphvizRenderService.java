@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 异步的 Graphviz 渲染服务：DOT 从 stdin 送入 `dot -Tsvg`，SVG 从 stdout 取回，调用方拿到 CompletableFuture 后即可继续，
+ * 不必等待渲染完成。
+ * <p>
+ * 同时运行的 dot 进程数由线程池大小限制，超出的任务进入有界队列；队列也满时由提交任务的线程自己渲染，
+ * 形成自然的背压。每个目标 SVG 记录上一次成功渲染的 DOT 内容哈希，内容没变且 SVG 仍在时直接跳过；
+ * 同一目标在排队期间又有新的提交时，旧任务不再启动 dot (SUPERSEDED)，避免过时的结果覆盖新结果。
+ * 渲染先写入临时文件，成功后再原子替换目标 SVG，失败或超时不会留下半个文件。
+ * 内存中的 DOT 也先写入临时文件再重定向为 dot 的 stdin，渲染线程不会阻塞在管道上；超时从写入 DOT 之前开始计算，
+ * 到期后强制结束 dot 进程。
+ * <p>
+ * 渲染线程是守护线程，不会拖住 JVM 退出；另外注册了一个关闭钩子，进程正常结束 (包括 System.exit) 前
+ * 会等排队中的渲染写完，调用方不必显式等待。
+ */
+public class GraphvizRenderService implements AutoCloseable {
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final String dotExecutable;
+    private final long timeoutMillis;
+    private final ThreadPoolExecutor executor;
+
+    // 目标 SVG -> 最近一次成功渲染的 DOT 哈希
+    private final Map<Path, String> renderedHashes = new ConcurrentHashMap<>();
+    // 目标 SVG -> 最新一次提交的序号，用于识别已被后续提交取代的任务
+    private final Map<Path, Long> generations = new ConcurrentHashMap<>();
+    private final Set<CompletableFuture<RenderResult>> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger[] statusCounts = new AtomicInteger[RenderResult.Status.values().length];
+
+    public GraphvizRenderService(String dotExecutable, int concurrency, int queueCapacity, long timeoutMillis) {
+        this.dotExecutable = dotExecutable;
+        this.timeoutMillis = timeoutMillis;
+        int threads = Math.max(1, concurrency);
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, queueCapacity)), renderThreadFactory(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new AtomicInteger();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::awaitIdle, "graphviz-render-drain"));
+    }
+
+    /**
+     * -Dlink16.render.jobs=N (同时运行的 dot 进程数，默认 CPU 核数的一半)、-Dlink16.render.queue=N (排队上限，默认 64)、
+     * -Dlink16.render.timeoutSec=N (单次渲染超时，默认 15 秒)、-Dlink16.render.dot=路径 (dot 可执行文件，默认从 PATH 查找)。
+     */
+    public static GraphvizRenderService fromSystemProperties() {
+        int defaultJobs = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return new GraphvizRenderService(
+                System.getProperty("link16.render.dot", "dot"),
+                Integer.getInteger("link16.render.jobs", defaultJobs),
+                Integer.getInteger("link16.render.queue", 64),
+                TimeUnit.SECONDS.toMillis(Integer.getInteger("link16.render.timeoutSec", 15)));
+    }
+
+    /**
+     * 把磁盘上的 DOT 文件作为 dot 进程的 stdin 渲染为 svgFile。
+     */
+    public CompletableFuture<RenderResult> render(Path dotFile, Path svgFile) {
+        return submit(svgFile, new DotSource(dotFile, null));
+    }
+
+    /**
+     * 渲染内存中的 DOT 文本，不需要先写 .dot 文件。
+     */
+    public CompletableFuture<RenderResult> render(byte[] dot, Path svgFile) {
+        return submit(svgFile, new DotSource(null, dot));
+    }
+
+    /**
+     * 等待目前已提交的全部渲染结束 (包括等待期间新提交的)。
+     */
+    public void awaitIdle() {
+        while (!pending.isEmpty()) {
+            List<CompletableFuture<RenderResult>> snapshot = new ArrayList<>(pending);
+            CompletableFuture.allOf(snapshot.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+            pending.removeAll(snapshot);
+        }
+    }
+
+    public int count(RenderResult.Status status) {
+        return statusCounts[status.ordinal()].get();
+    }
+
+    public String toSummary() {
+        return "🖼️ Graphviz 渲染: 完成 " + count(RenderResult.Status.RENDERED)
+                + ", 内容未变跳过 " + count(RenderResult.Status.UNCHANGED)
+                + ", 被新提交取代 " + count(RenderResult.Status.SUPERSEDED)
+                + ", 失败 " + count(RenderResult.Status.FAILED);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private CompletableFuture<RenderResult> submit(Path svgFile, DotSource source) {
+        Path target = svgFile.toAbsolutePath().normalize();
+        long generation = generations.merge(target, 1L, Long::sum);
+        CompletableFuture<RenderResult> future = CompletableFuture.supplyAsync(() -> {
+            RenderResult result = renderNow(target, source, generation);
+            statusCounts[result.status.ordinal()].incrementAndGet();
+            return result;
+        }, executor);
+        pending.add(future);
+        future.whenComplete((result, e) -> pending.remove(future));
+        return future;
+    }
+
+    private RenderResult renderNow(Path target, DotSource source, long generation) {
+        long start = System.nanoTime();
+        if (isSuperseded(target, generation)) {
+            return new RenderResult(RenderResult.Status.SUPERSEDED, target, System.nanoTime() - start, "");
+        }
+
+        String hash;
+        try {
+            hash = source.hash();
+        } catch (IOException e) {
+            return new RenderResult(RenderResult.Status.FAILED, target, System.nanoTime() - start, "无法读取 DOT: " + e.getMessage());
+        }
+        if (hash.equals(renderedHashes.get(target)) && Files.isRegularFile(target)) {
+            return new RenderResult(RenderResult.Status.UNCHANGED, target, System.nanoTime() - start, "");
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Path tempDot = null;
+        Path tempSvg = null;
+        Path tempErr = null;
+        Process process = null;
+        try {
+            Path dir = target.getParent();
+            Files.createDirectories(dir);
+            Path input = source.file;
+            if (input == null) {
+                // 不往 dot 的 stdin 管道里写：dot 不读 stdin 时管道写满会让本线程卡住，超时永远不会触发
+                tempDot = Files.createTempFile(dir, ".render-", ".dot");
+                Files.write(tempDot, source.bytes);
+                input = tempDot;
+            }
+            tempSvg = Files.createTempFile(dir, ".render-", ".svg");
+            tempErr = Files.createTempFile(dir, ".render-", ".err");
+
+            ProcessBuilder pb = new ProcessBuilder(dotExecutable, "-Tsvg");
+            // stdin / stdout / stderr 都由操作系统重定向到文件，Java 侧不需要额外的读写线程
+            pb.redirectInput(input.toFile());
+            pb.redirectOutput(tempSvg.toFile());
+            pb.redirectError(tempErr.toFile());
+            process = pb.start();
+
+            if (!process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                process.destroyForcibly();
+                return new RenderResult(RenderResult.Status.FAILED, target, System.nanoTime() - start,
+                        "Graphviz 渲染超时 (" + timeoutMillis / 1000 + " 秒)");
+            }
+            if (process.exitValue() != 0) {
+                return new RenderResult(RenderResult.Status.FAILED, target, System.nanoTime() - start,
+                        "Graphviz 转换失败 (退出码 " + process.exitValue() + ")" + firstLine(tempErr));
+            }
+
+            // 渲染期间有更新的提交时丢弃本次结果，由更新的任务负责写入
+            synchronized (this) {
+                if (isSuperseded(target, generation)) {
+                    return new RenderResult(RenderResult.Status.SUPERSEDED, target, System.nanoTime() - start, "");
+                }
+                Files.move(tempSvg, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                renderedHashes.put(target, hash);
+            }
+            return new RenderResult(RenderResult.Status.RENDERED, target, System.nanoTime() - start, "");
+        } catch (IOException e) {
+            return new RenderResult(RenderResult.Status.FAILED, target, System.nanoTime() - start, "无法运行 dot 命令: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (process != null) {
+                process.destroyForcibly();
+            }
+            return new RenderResult(RenderResult.Status.FAILED, target, System.nanoTime() - start, "渲染被中断");
+        } finally {
+            deleteQuietly(tempDot);
+            deleteQuietly(tempSvg);
+            deleteQuietly(tempErr);
+        }
+    }
+
+    private boolean isSuperseded(Path target, long generation) {
+        Long latest = generations.get(target);
+        return latest != null && latest != generation;
+    }
+
+    private static String firstLine(Path file) {
+        try {
+            String text = Files.readString(file, StandardCharsets.UTF_8).strip();
+            int newline = text.indexOf('\n');
+            return text.isEmpty() ? "" : ": " + (newline < 0 ? text : text.substring(0, newline));
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // 临时文件删除失败不影响渲染结果
+        }
+    }
+
+    private static ThreadFactory renderThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "graphviz-render-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * 待渲染的 DOT: 磁盘文件或内存字节，二者取其一。
+     */
+    private static class DotSource {
+        final Path file;
+        final byte[] bytes;
+
+        DotSource(Path file, byte[] bytes) {
+            this.file = file;
+            this.bytes = bytes;
+        }
+
+        String hash() throws IOException {
+            MessageDigest digest = GrammarVersion.sha256();
+            if (bytes != null) {
+                digest.update(bytes);
+            } else {
+                byte[] buffer = new byte[64 * 1024];
+                try (InputStream in = Files.newInputStream(file)) {
+                    int read;
+                    while ((read = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    public static class RenderResult {
+        public enum Status {
+            // 本次启动 dot 完成渲染
+            RENDERED,
+            // DOT 内容与上次成功渲染时相同，SVG 已是最新
+            UNCHANGED,
+            // 同一目标有更新的提交，本次结果被丢弃
+            SUPERSEDED,
+            // dot 不可用、退出码非 0 或超时
+            FAILED
+        }
+
+        public final Status status;
+        public final Path svgFile;
+        public final long elapsedNanos;
+        // 失败原因，成功时为空串
+        public final String message;
+
+        public RenderResult(Status status, Path svgFile, long elapsedNanos, String message) {
+            this.status = status;
+            this.svgFile = svgFile;
+            this.elapsedNanos = elapsedNanos;
+            this.message = message;
+        }
+
+        public boolean hasSvg() {
+            return status == Status.RENDERED || status == Status.UNCHANGED;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 增量重解析：为一个正在编辑的文档保留上一次的解析树，
+ * 新文本到来时只重新词法/语法分析受影响的顶层块，再拼接回原来的树。
+ * <p>
+ * 顶层块指 functionModel 下的 procedureDef / ruleDef，以及 messageRulesDef 下的 ruleBlock。
+ * 每个块的范围从它的第一个 token 一直延伸到下一个兄弟节点之前 (包含块后的空白和注释)。
+ * 新旧文本做公共前缀/后缀比较得到修改区间，只要该区间落在同一个父节点下连续的若干块内，
+ * 就用 Link16DSLParser 对应的子规则入口重新解析这些块；否则 (修改了头部声明、块之间的结构等)
+ * 退回全量解析。
+ * <p>
+ * 为了让拼接后的整棵树保持一致，保留的 token 都固化了文本，起止下标与行号始终是相对整个文档的绝对值，
+ * 修改区间之后的 token 与错误信息会整体平移。
+ */
+public class IncrementalReparser {
+
+    private final DslMode mode;
+
+    // 当前文档 (按 code point 存储，与 ANTLR CharStream 的下标一致)
+    private int[] text;
+    private ParserRuleContext tree;
+    // 当前文档的全部 token (不含 EOF)，按位置排序
+    private List<Token> tokens = new ArrayList<>();
+    // 顶层块，按位置排序
+    private List<Block> blocks = new ArrayList<>();
+    // 不属于任何块的错误；存在时下一次更新必须全量解析
+    private List<SyntaxErrorDetail> headerErrors = new ArrayList<>();
+    private boolean incrementalReady;
+
+    public IncrementalReparser(DslMode mode) {
+        this.mode = mode;
+    }
+
+    public DslMode mode() {
+        return mode;
+    }
+
+    public ParserRuleContext tree() {
+        return tree;
+    }
+
+    public Result update(String newText) {
+        long start = System.nanoTime();
+        int[] next = newText.codePoints().toArray();
+        // 块外的错误没有可平移的归属，只能在全量解析时重新得到
+        if (tree != null && incrementalReady && headerErrors.isEmpty()) {
+            Result result = tryIncremental(next, start);
+            if (result != null) {
+                return result;
+            }
+        }
+        return fullParse(next, start);
+    }
+
+    // ==========================================
+    // 全量解析
+    // ==========================================
+
+    private Result fullParse(int[] next, long start) {
+        ErrorCollector collector = new ErrorCollector(0);
+        Link16ParserContext context = Link16ParserContext.current();
+        Link16ParserContext.Outcome outcome = context.parse(CharStreams.fromString(new String(next, 0, next.length)), mode, collector, collector);
+
+        text = next;
+        tree = outcome.tree;
+        tokens = freeze(context.lastTokens(), 0);
+        blocks = new ArrayList<>();
+        headerErrors = new ArrayList<>();
+        incrementalReady = collectBlocks(tree);
+        context.release();
+
+        if (incrementalReady) {
+            assignErrors(collector.errors, blocks, headerErrors);
+        } else {
+            collector.errors.forEach(error -> headerErrors.add(error.detail));
+        }
+        return new Result(tree, allErrors(), false, blocks.size(), System.nanoTime() - start);
+    }
+
+    private boolean collectBlocks(ParserRuleContext root) {
+        if (root == null || root.children == null) {
+            return false;
+        }
+        if (mode == DslMode.FUNCTION_MODEL) {
+            return addBlocks(root);
+        }
+        for (ParseTree child : root.children) {
+            if (child instanceof Link16DSLParser.MessageRulesDefContext messageRules && !addBlocks(messageRules)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean addBlocks(ParserRuleContext parent) {
+        if (parent.children == null) {
+            return true;
+        }
+        for (int i = 0; i < parent.children.size(); i++) {
+            ParseTree child = parent.children.get(i);
+            if (!isBlock(child)) {
+                continue;
+            }
+            ParserRuleContext ctx = (ParserRuleContext) child;
+            if (ctx.start == null || ctx.stop == null || ctx.stop.getStopIndex() < ctx.start.getStartIndex()) {
+                return false;
+            }
+            int extentEnd = i + 1 < parent.children.size()
+                    ? firstTokenStart(parent.children.get(i + 1))
+                    : ctx.stop.getStopIndex() + 1;
+            if (extentEnd < 0) {
+                return false;
+            }
+            blocks.add(new Block(ctx, parent, ctx.start.getStartIndex(), extentEnd));
+        }
+        return true;
+    }
+
+    private boolean isBlock(ParseTree node) {
+        if (mode == DslMode.FUNCTION_MODEL) {
+            return node instanceof Link16DSLParser.ProcedureDefContext || node instanceof Link16DSLParser.RuleDefContext;
+        }
+        return node instanceof Link16DSLParser.RuleBlockContext;
+    }
+
+    private static int firstTokenStart(ParseTree node) {
+        if (node instanceof TerminalNode terminal) {
+            return terminal.getSymbol().getStartIndex();
+        }
+        ParserRuleContext ctx = (ParserRuleContext) node;
+        return ctx.start == null ? -1 : ctx.start.getStartIndex();
+    }
+
+    // ==========================================
+    // 增量解析
+    // ==========================================
+
+    private Result tryIncremental(int[] next, long start) {
+        int oldLen = text.length;
+        int newLen = next.length;
+        int max = Math.min(oldLen, newLen);
+        int prefix = 0;
+        while (prefix < max && text[prefix] == next[prefix]) {
+            prefix++;
+        }
+        if (prefix == oldLen && prefix == newLen) {
+            return new Result(tree, allErrors(), true, 0, System.nanoTime() - start);
+        }
+        int suffix = 0;
+        while (suffix < max - prefix && text[oldLen - 1 - suffix] == next[newLen - 1 - suffix]) {
+            suffix++;
+        }
+        int oldEnd = oldLen - suffix;
+        int newEnd = newLen - suffix;
+        int delta = newLen - oldLen;
+
+        // 找到覆盖修改区间的连续块 [first, last]
+        int first = lastBlockStartingAtOrBefore(prefix);
+        int last = firstBlockEndingAtOrAfter(oldEnd);
+        if (first < 0 || last < 0 || last < first || blocks.get(first).parent != blocks.get(last).parent) {
+            return null;
+        }
+        Block firstBlock = blocks.get(first);
+        Block lastBlock = blocks.get(last);
+        ParserRuleContext parent = firstBlock.parent;
+
+        int regionStart = firstBlock.start;
+        int oldRegionEnd = lastBlock.extentEnd;
+        int newRegionEnd = oldRegionEnd + delta;
+        String fragment = new String(next, regionStart, newRegionEnd - regionStart);
+
+        ErrorCollector collector = new ErrorCollector(regionStart);
+        Link16ParserContext context = Link16ParserContext.current();
+        List<ParserRuleContext> parsed = context.parseFragment(CharStreams.fromString(fragment),
+                firstBlock.ctx.start.getLine(), firstBlock.ctx.start.getCharPositionInLine(),
+                this::parseBlocks, collector);
+        List<Token> fragmentTokens = freeze(context.lastTokens(), regionStart);
+        context.release();
+        if (parsed == null) {
+            return null;
+        }
+        for (ParserRuleContext ctx : parsed) {
+            if (ctx.start == null || ctx.stop == null) {
+                return null;
+            }
+        }
+        if (parsed.isEmpty() && !collector.errors.isEmpty()) {
+            return null;
+        }
+
+        int lineDelta = countNewlines(next, prefix, newEnd) - countNewlines(text, prefix, oldEnd);
+        // 修改区间末尾所在的那一行上，之后的 token 与错误的列号也会变化
+        int oldEndLine = 1 + countNewlines(text, 0, oldEnd);
+        int columnDelta = column(next, newEnd) - column(text, oldEnd);
+
+        // 1. 拼接 token 列表，并平移修改区间之后的 token
+        int tokenFrom = firstTokenAtOrAfter(regionStart);
+        int tokenTo = firstTokenAtOrAfter(oldRegionEnd);
+        List<Token> merged = new ArrayList<>(tokens.size() - (tokenTo - tokenFrom) + fragmentTokens.size());
+        merged.addAll(tokens.subList(0, tokenFrom));
+        merged.addAll(fragmentTokens);
+        for (int i = tokenTo; i < tokens.size(); i++) {
+            CommonToken token = (CommonToken) tokens.get(i);
+            token.setStartIndex(token.getStartIndex() + delta);
+            token.setStopIndex(token.getStopIndex() + delta);
+            if (token.getLine() == oldEndLine) {
+                token.setCharPositionInLine(token.getCharPositionInLine() + columnDelta);
+            }
+            token.setLine(token.getLine() + lineDelta);
+            merged.add(token);
+        }
+        for (int i = 0; i < merged.size(); i++) {
+            ((CommonToken) merged.get(i)).setTokenIndex(i);
+        }
+
+        // 2. 把新解析出的块接回父节点
+        int childFrom = parent.children.indexOf(firstBlock.ctx);
+        parent.children.subList(childFrom, childFrom + (last - first) + 1).clear();
+        parent.children.addAll(childFrom, parsed);
+        for (ParserRuleContext ctx : parsed) {
+            ctx.setParent(parent);
+        }
+
+        // 3. 更新块列表与错误信息
+        List<Block> newBlocks = new ArrayList<>(parsed.size());
+        for (int i = 0; i < parsed.size(); i++) {
+            ParserRuleContext ctx = parsed.get(i);
+            int extentEnd = i + 1 < parsed.size() ? parsed.get(i + 1).start.getStartIndex() : newRegionEnd;
+            newBlocks.add(new Block(ctx, parent, ctx.start.getStartIndex(), extentEnd));
+        }
+        List<SyntaxErrorDetail> orphanErrors = new ArrayList<>();
+        assignErrors(collector.errors, newBlocks, orphanErrors);
+        if (!orphanErrors.isEmpty()) {
+            // 例如片段末尾缺少 '}'：错误位置在最后一个块之后，归到最后一个块
+            newBlocks.get(newBlocks.size() - 1).errors.addAll(orphanErrors);
+        }
+
+        List<Block> updated = new ArrayList<>(blocks.size() - (last - first + 1) + newBlocks.size());
+        updated.addAll(blocks.subList(0, first));
+        if (newBlocks.isEmpty() && first > 0 && blocks.get(first - 1).parent == parent) {
+            // 整块被删除：空出来的区间并入前一个块的尾部
+            blocks.get(first - 1).extentEnd = newRegionEnd;
+        }
+        updated.addAll(newBlocks);
+        for (int i = last + 1; i < blocks.size(); i++) {
+            updated.add(blocks.get(i).shifted(delta, lineDelta, oldEndLine, columnDelta));
+        }
+
+        text = next;
+        tokens = merged;
+        blocks = updated;
+        return new Result(tree, allErrors(), true, parsed.size(), System.nanoTime() - start);
+    }
+
+    // 按 LA(1) 连续解析当前父节点允许的块，必须恰好消费到片段末尾
+    private List<ParserRuleContext> parseBlocks(Link16DSLParser parser) {
+        List<ParserRuleContext> parsed = new ArrayList<>();
+        TokenStream input = parser.getInputStream();
+        while (true) {
+            int la = input.LA(1);
+            if (mode == DslMode.FUNCTION_MODEL && la == Link16DSLParser.PROCEDURE) {
+                parsed.add(parser.procedureDef());
+            } else if (mode == DslMode.FUNCTION_MODEL && la == Link16DSLParser.RULE) {
+                parsed.add(parser.ruleDef());
+            } else if (mode == DslMode.MESSAGE_RULES && (la == Link16DSLParser.TRANSMIT_RULES || la == Link16DSLParser.RECEIVE_RULES)) {
+                parsed.add(parser.ruleBlock());
+            } else {
+                break;
+            }
+        }
+        return input.LA(1) == Token.EOF ? parsed : null;
+    }
+
+    private int lastBlockStartingAtOrBefore(int offset) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).start <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int firstBlockEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).extentEnd >= offset) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    private int firstTokenAtOrAfter(int offset) {
+        int low = 0;
+        int high = tokens.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (tokens.get(mid).getStartIndex() < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // ==========================================
+    // 辅助工具方法
+    // ==========================================
+
+    // 固化 token 文本并换算成文档内的绝对下标，去掉末尾的 EOF
+    private static List<Token> freeze(List<Token> source, int base) {
+        List<Token> frozen = new ArrayList<>(source.size());
+        for (Token token : source) {
+            if (token.getType() == Token.EOF) {
+                continue;
+            }
+            CommonToken common = (CommonToken) token;
+            common.setText(common.getText());
+            if (base != 0) {
+                common.setStartIndex(common.getStartIndex() + base);
+                common.setStopIndex(common.getStopIndex() + base);
+            }
+            frozen.add(common);
+        }
+        return frozen;
+    }
+
+    private static void assignErrors(List<LocatedError> errors, List<Block> targets, List<SyntaxErrorDetail> unassigned) {
+        for (LocatedError error : errors) {
+            Block owner = null;
+            for (Block block : targets) {
+                if (error.offset >= block.start && error.offset < block.extentEnd) {
+                    owner = block;
+                    break;
+                }
+            }
+            if (owner != null) {
+                owner.errors.add(error.detail);
+            } else {
+                unassigned.add(error.detail);
+            }
+        }
+    }
+
+    private List<SyntaxErrorDetail> allErrors() {
+        List<SyntaxErrorDetail> all = new ArrayList<>(headerErrors);
+        for (Block block : blocks) {
+            all.addAll(block.errors);
+        }
+        all.sort(Comparator.<SyntaxErrorDetail>comparingInt(detail -> detail.line)
+                .thenComparingInt(detail -> detail.charPositionInLine));
+        return all;
+    }
+
+    // offset 在所在行中的列号 (code point 计数，与 ANTLR 的 charPositionInLine 一致)
+    private static int column(int[] codePoints, int offset) {
+        int lineStart = offset;
+        while (lineStart > 0 && codePoints[lineStart - 1] != '\n') {
+            lineStart--;
+        }
+        return offset - lineStart;
+    }
+
+    private static int countNewlines(int[] codePoints, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (codePoints[i] == '\n') count++;
+        }
+        return count;
+    }
+
+    private static class Block {
+        final ParserRuleContext ctx;
+        final ParserRuleContext parent;
+        final int start;
+        int extentEnd;
+        final List<SyntaxErrorDetail> errors = new ArrayList<>();
+
+        Block(ParserRuleContext ctx, ParserRuleContext parent, int start, int extentEnd) {
+            this.ctx = ctx;
+            this.parent = parent;
+            this.start = start;
+            this.extentEnd = extentEnd;
+        }
+
+        // editLine 是修改区间末尾在旧文档中的行号，该行上的错误同时平移列号
+        Block shifted(int delta, int lineDelta, int editLine, int columnDelta) {
+            Block moved = new Block(ctx, parent, start + delta, extentEnd + delta);
+            for (SyntaxErrorDetail detail : errors) {
+                int column = detail.line == editLine ? detail.charPositionInLine + columnDelta : detail.charPositionInLine;
+                moved.errors.add(new SyntaxErrorDetail(detail.line + lineDelta, column,
+                        detail.offendingToken, detail.expectedTokens, detail.message));
+            }
+            return moved;
+        }
+    }
+
+    private static class LocatedError {
+        final int offset;
+        final SyntaxErrorDetail detail;
+
+        LocatedError(int offset, SyntaxErrorDetail detail) {
+            this.offset = offset;
+            this.detail = detail;
+        }
+    }
+
+    private static class ErrorCollector extends BaseErrorListener {
+        private final int base;
+        private final List<LocatedError> errors = new ArrayList<>();
+
+        ErrorCollector(int base) {
+            this.base = base;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+            int offset = -1;
+            if (offendingSymbol instanceof Token token) {
+                offset = token.getStartIndex();
+            } else if (recognizer instanceof Lexer lexer) {
+                offset = lexer._tokenStartCharIndex;
+            }
+            SyntaxErrorDetail detail = SyntaxErrorDetail.fromSyntaxError(line, charPositionInLine, offendingSymbol, msg);
+            errors.add(new LocatedError(offset < 0 ? -1 : offset + base, detail));
+        }
+    }
+
+    public static class Result {
+        public final ParserRuleContext tree;
+        public final List<SyntaxErrorDetail> errors;
+        public final boolean incremental;
+        public final int reparsedBlocks;
+        public final long elapsedNanos;
+
+        public Result(ParserRuleContext tree, List<SyntaxErrorDetail> errors, boolean incremental, int reparsedBlocks, long elapsedNanos) {
+            this.tree = tree;
+            this.errors = errors;
+            this.incremental = incremental;
+            this.reparsedBlocks = reparsedBlocks;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+}
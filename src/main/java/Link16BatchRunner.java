@@ -0,0 +1,91 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 并发批量解析引擎：在一个可配置的线程池上同时执行 解析 -> Visitor -> DOT/SVG 渲染。
+ * <p>
+ * 每个任务通过 {@link Link16ParserRunner#run(File, ParseOptions)} 使用自己的日志流，
+ * 不会互相串写，控制台只输出每个文件的一行进度和最终的吞吐汇总。
+ */
+public class Link16BatchRunner implements AutoCloseable {
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+
+    /**
+     * 使用指定并行度的 ForkJoinPool。
+     */
+    public Link16BatchRunner(int parallelism) {
+        this(new ForkJoinPool(Math.max(1, parallelism)), true);
+    }
+
+    /**
+     * 使用调用方提供的线程池 (例如 JDK 21+ 的 Executors.newVirtualThreadPerTaskExecutor())，
+     * 线程池的生命周期由调用方负责。
+     */
+    public Link16BatchRunner(ExecutorService executor) {
+        this(executor, false);
+    }
+
+    private Link16BatchRunner(ExecutorService executor, boolean ownsExecutor) {
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public BatchResult runAll(List<File> files) {
+        return runAll(files, ParseOptions.defaults().withEchoToConsole(false));
+    }
+
+    public BatchResult runAll(List<File> files, ParseOptions options) {
+        long start = System.nanoTime();
+
+        List<Future<ParseResult>> futures = new ArrayList<>(files.size());
+        for (File file : files) {
+            futures.add(executor.submit(() -> {
+                long taskStart = System.nanoTime();
+                ParseResult result = Link16ParserRunner.run(file, options);
+                long taskMillis = (System.nanoTime() - taskStart) / 1_000_000;
+                String status = result.success ? "✅" : "❌";
+                String source = result.fromCache ? "缓存" : result.parseStage.name();
+                System.out.println(status + " " + file.getName() + " (" + source + ", " + taskMillis + " ms)");
+                return result;
+            }));
+        }
+
+        Map<File, ParseResult> results = new LinkedHashMap<>();
+        long totalBytes = 0;
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            totalBytes += file.length();
+            results.put(file, await(file, futures.get(i)));
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        return new BatchResult(results, totalBytes, elapsedNanos);
+    }
+
+    private static ParseResult await(File file, Future<ParseResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批量解析被中断: " + file.getName(), e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批量解析失败: " + file.getName(), e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
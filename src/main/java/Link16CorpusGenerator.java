@@ -0,0 +1,541 @@
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成 DSL 语料生成器：按给定的规模与形状生成语法正确的 FUNCTION_MODEL 或 Message ... Rules 文件，
+ * 用于对解析器、Visitor、DOT 生成和缓存做 1 万 ~ 100 万行级别的压力测试。
+ * <p>
+ * 生成内容只使用 Link16DSLLexer.g4 中已有的关键字与符号，标识符统一带前缀 (Unit_ / Var_ / Proc_ ...)，
+ * 不会与关键字冲突。同一组参数 + seed 生成的文件完全相同。
+ * <p>
+ * 用法示例:
+ * <pre>
+ *   java Link16CorpusGenerator --type function --lines 100000 --depth 4 --parallel 3 --condition-depth 3
+ *   java Link16CorpusGenerator --type rules --messages 500 --rules 8 --condition-depth 5 --out output/synthetic/Big_Rules.dsl
+ * </pre>
+ * 默认生成后立即用 Link16DSLParser 重新解析一遍，确认零语法错误 (--no-verify 关闭)。
+ */
+public class Link16CorpusGenerator {
+
+    private static final String[] ACTOR_TYPES = {"C2_JU", "NON_C2_JU", "GENERIC_PLATFORM", "NON_IU"};
+    private static final String[] COMPARE_OPS = {"==", "!=", ">", "<", ">=", "<="};
+    private static final String[] STATUS_VALUES = {"ACTIVE", "INACTIVE", "STANDBY"};
+    private static final String[] RULE_OPERATORS = {"==", "!=", ">", "<", ">=", "<=", "IN", "HAS"};
+    private static final int ACTOR_COUNT = 4;
+    private static final int STATE_COUNT = 12;
+    private static final int TIMER_COUNT = 3;
+
+    // 流程数量 (targetLines > 0 时改为一直生成到目标行数)
+    public final int procedures;
+    // 每个语句块中的语句数上限
+    public final int statementsPerBlock;
+    // IF / WHILE / WAIT / PARALLEL 等复合语句的最大嵌套层数
+    public final int nestingDepth;
+    // PARALLEL 中的 BRANCH 数
+    public final int parallelWidth;
+    // 条件表达式中 AND / OR / 括号的最大嵌套层数
+    public final int conditionDepth;
+    // MESSAGES 中声明的消息数；规则文件中为 Message ... Rules 规则集数
+    public final int messages;
+    // 规则文件中每个 TransmitRules / ReceiveRules 组里的规则数
+    public final int rulesPerMessage;
+    // 目标行数，0 表示按 procedures / messages 生成
+    public final long targetLines;
+    public final long seed;
+
+    private Random random;
+    private Writer out;
+    private long lines;
+    // 已生成的流程中带 Param_N 参数的那些，CALL 按被调流程的真实参数名传参
+    private BitSet withParams;
+
+    public Link16CorpusGenerator(int procedures, int statementsPerBlock, int nestingDepth, int parallelWidth,
+                                 int conditionDepth, int messages, int rulesPerMessage, long targetLines, long seed) {
+        this.procedures = procedures;
+        this.statementsPerBlock = Math.max(1, statementsPerBlock);
+        this.nestingDepth = Math.max(0, nestingDepth);
+        this.parallelWidth = Math.max(1, parallelWidth);
+        this.conditionDepth = Math.max(0, conditionDepth);
+        this.messages = Math.max(1, messages);
+        this.rulesPerMessage = Math.max(1, rulesPerMessage);
+        this.targetLines = targetLines;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String type = "function";
+        String outPath = null;
+        int procedures = 20;
+        int statements = 4;
+        int depth = 3;
+        int parallel = 2;
+        int conditionDepth = 2;
+        int messages = 16;
+        int rules = 4;
+        long lines = 0;
+        long seed = 42;
+        boolean verify = true;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--no-verify".equals(arg)) {
+                verify = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " 缺少参数值。");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--type" -> type = value;
+                case "--out" -> outPath = value;
+                case "--procedures" -> procedures = Integer.parseInt(value);
+                case "--statements" -> statements = Integer.parseInt(value);
+                case "--depth" -> depth = Integer.parseInt(value);
+                case "--parallel" -> parallel = Integer.parseInt(value);
+                case "--condition-depth" -> conditionDepth = Integer.parseInt(value);
+                case "--messages" -> messages = Integer.parseInt(value);
+                case "--rules" -> rules = Integer.parseInt(value);
+                case "--lines" -> lines = Long.parseLong(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+
+        boolean rulesMode = "rules".equals(type);
+        if (!rulesMode && !"function".equals(type)) {
+            throw new IllegalArgumentException("--type 只能是 function 或 rules: " + type);
+        }
+        if (outPath == null) {
+            // 规则文件名必须包含 Rules，DslMode.fromFileName 才能识别
+            outPath = "output/synthetic/Synthetic_" + seed + (rulesMode ? "_Rules.dsl" : ".dsl");
+        }
+
+        Link16CorpusGenerator generator = new Link16CorpusGenerator(procedures, statements, depth, parallel,
+                conditionDepth, messages, rules, lines, seed);
+        Path path = Path.of(outPath);
+        long start = System.nanoTime();
+        long written = rulesMode ? generator.writeRulesModel(path) : generator.writeFunctionModel(path);
+        System.out.printf("📝 已生成 %s: %d 行, %.1f KB, 耗时 %d ms%n", path, written,
+                Files.size(path) / 1024.0, (System.nanoTime() - start) / 1_000_000);
+
+        if (verify) {
+            start = System.nanoTime();
+            List<String> errors = verify(path, rulesMode ? DslMode.MESSAGE_RULES : DslMode.FUNCTION_MODEL);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (errors.isEmpty()) {
+                System.out.println("✅ 重新解析通过 (Zero Syntax Errors), 耗时 " + millis + " ms");
+            } else {
+                System.out.println("❌ 重新解析发现 " + errors.size() + " 个错误:");
+                errors.stream().limit(20).forEach(error -> System.out.println("   " + error));
+                System.exit(1);
+            }
+        }
+    }
+
+    public long writeFunctionModel(Path path) throws IOException {
+        createParent(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            return writeFunctionModel(writer);
+        }
+    }
+
+    public long writeRulesModel(Path path) throws IOException {
+        createParent(path);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            return writeRulesModel(writer);
+        }
+    }
+
+    /**
+     * 生成功能模型，返回写出的行数。
+     */
+    public long writeFunctionModel(Writer writer) {
+        begin(writer);
+        line(0, "FUNCTION_MODEL Synthetic_Model_" + Math.abs(seed) + " {");
+        line(1, "// 合成语料: procedures=" + procedures + ", depth=" + nestingDepth + ", parallel=" + parallelWidth
+                + ", conditionDepth=" + conditionDepth + ", seed=" + seed);
+
+        line(1, "ACTORS {");
+        for (int i = 0; i < ACTOR_COUNT; i++) {
+            line(2, "Unit_" + i + ": " + ACTOR_TYPES[i % ACTOR_TYPES.length] + ";");
+        }
+        line(1, "}");
+
+        line(1, "MESSAGES {");
+        for (int i = 0; i < messages; i++) {
+            line(2, messageName(i) + ";");
+        }
+        line(1, "}");
+
+        line(1, "STATES {");
+        for (int i = 0; i < STATE_COUNT; i++) {
+            if (i % 3 == 0) {
+                line(2, "Flag_" + i + ": BOOLEAN = FALSE;");
+            } else {
+                line(2, "Var_" + i + ": INTEGER = " + i + ";");
+            }
+        }
+        line(1, "}");
+
+        int index = 0;
+        while (targetLines > 0 ? lines < targetLines : index < procedures) {
+            procedure(index);
+            if (index % 5 == 4) {
+                ruleDef(index);
+            }
+            index++;
+        }
+        line(0, "}");
+        return end();
+    }
+
+    /**
+     * 生成消息处理规则文件，返回写出的行数。
+     */
+    public long writeRulesModel(Writer writer) {
+        begin(writer);
+        int index = 0;
+        while (targetLines > 0 ? lines < targetLines : index < messages) {
+            line(0, "Message " + messageName(index) + " Rules {");
+            ruleGroup("TransmitRules", index);
+            ruleGroup("ReceiveRules", index);
+            line(0, "}");
+            index++;
+        }
+        return end();
+    }
+
+    /**
+     * 用解析器重新解析生成的文件，返回全部词法/语法错误 (为空即通过)。
+     * 规则文件走流式解析，内存占用与文件大小无关。
+     */
+    public static List<String> verify(Path path, DslMode mode) throws IOException {
+        List<String> errors = new ArrayList<>();
+        BaseErrorListener listener = new BaseErrorListener() {
+            @Override
+            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                errors.add("行 " + line + ":" + charPositionInLine + " -> " + msg);
+            }
+        };
+        if (mode == DslMode.MESSAGE_RULES) {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                Link16StreamingRulesParser.parse(reader, path.toString(), rules -> { }, listener);
+            }
+        } else {
+            Link16ParserContext context = Link16ParserContext.current();
+            context.parse(CharStreams.fromPath(path, StandardCharsets.UTF_8), mode, listener, listener);
+            context.release();
+        }
+        return errors;
+    }
+
+    // ==========================================
+    // 功能模型
+    // ==========================================
+
+    private void procedure(int index) {
+        boolean hasParam = random.nextInt(3) == 0;
+        if (hasParam) {
+            withParams.set(index);
+        }
+        String params = hasParam ? " (Param_" + index + ": INTEGER)" : "";
+        line(1, "PROCEDURE Proc_" + index + params + " \"Synthetic procedure " + index + "\" {");
+        if (random.nextInt(4) != 0) {
+            line(2, "TRIGGER " + condition(conditionDepth) + ";");
+        }
+        line(2, "STEPS {");
+        block(3, 0, index);
+        line(2, "}");
+        if (random.nextInt(4) == 0) {
+            line(2, "EXCEPTION {");
+            line(3, "ON TIMEOUT THEN {");
+            line(4, "TERMINATE;");
+            line(3, "}");
+            line(2, "}");
+        }
+        line(1, "}");
+    }
+
+    private void ruleDef(int index) {
+        line(1, "RULE \"Rule_" + index + "\" PRIORITY " + (1 + random.nextInt(9)) + " {");
+        line(2, "ON " + event() + " THEN {");
+        line(3, (random.nextBoolean() ? "MUST_SEND " : "MUST_BROADCAST ") + randomMessage() + "(" + arithmetic() + ");");
+        line(2, "}");
+        line(1, "}");
+    }
+
+    private void block(int indent, int depth, int procedure) {
+        int count = 1 + random.nextInt(statementsPerBlock);
+        for (int i = 0; i < count; i++) {
+            // 每个块的第一条语句优先选复合语句，保证确实能达到配置的嵌套深度
+            boolean compound = depth < nestingDepth && (i == 0 || random.nextInt(3) == 0);
+            if (compound) {
+                compoundStatement(indent, depth, procedure);
+            } else {
+                simpleStatement(indent, procedure);
+            }
+        }
+    }
+
+    private void compoundStatement(int indent, int depth, int procedure) {
+        switch (random.nextInt(6)) {
+            case 0 -> {
+                line(indent, "IF " + condition(conditionDepth) + " THEN {");
+                block(indent + 1, depth + 1, procedure);
+                if (random.nextBoolean()) {
+                    line(indent, "}");
+                    line(indent, "ELSE_IF " + condition(conditionDepth) + " THEN {");
+                    block(indent + 1, depth + 1, procedure);
+                }
+                line(indent, "}");
+                line(indent, "ELSE {");
+                block(indent + 1, depth + 1, procedure);
+                line(indent, "}");
+            }
+            case 1 -> {
+                line(indent, "WHILE " + condition(conditionDepth) + " DO {");
+                block(indent + 1, depth + 1, procedure);
+                line(indent, "}");
+            }
+            case 2 -> {
+                line(indent, "WAIT FOR " + duration() + " {");
+                line(indent + 1, "ON " + condition(conditionDepth) + " THEN {");
+                block(indent + 2, depth + 1, procedure);
+                line(indent + 1, "}");
+                line(indent + 1, "ON TIMEOUT THEN {");
+                line(indent + 2, "TERMINATE;");
+                line(indent + 1, "}");
+                line(indent, "}");
+            }
+            case 3 -> {
+                line(indent, "USER_CONFIRM \"Confirm synthetic action " + procedure + "\" THEN {");
+                block(indent + 1, depth + 1, procedure);
+                line(indent, "}");
+                line(indent, "ELSE {");
+                line(indent + 1, "CONTINUE;");
+                line(indent, "}");
+            }
+            default -> {
+                line(indent, "PARALLEL {");
+                for (int branch = 0; branch < parallelWidth; branch++) {
+                    line(indent + 1, "BRANCH {");
+                    block(indent + 2, depth + 1, procedure);
+                    line(indent + 1, "}");
+                }
+                line(indent, "}");
+            }
+        }
+    }
+
+    private void simpleStatement(int indent, int procedure) {
+        switch (random.nextInt(10)) {
+            case 0 -> line(indent, "STEP \"Synthetic step " + random.nextInt(1000) + "\";");
+            case 1 -> line(indent, "STEP " + randomActor() + " SENDS " + randomMessage()
+                    + "(Field_" + random.nextInt(8) + " = " + arithmetic() + ") TO " + randomActor() + ";");
+            case 2 -> line(indent, "STEP " + randomActor() + " BROADCASTS " + randomMessage() + ";");
+            case 3 -> line(indent, "STEP " + randomActor() + " NOTIFY \"Status update\" TO " + randomActor() + ";");
+            case 4 -> {
+                line(indent, "STEP NATURAL_LANGUAGE {");
+                line(indent + 1, "INTENT \"Synthetic intent " + random.nextInt(100) + "\";");
+                line(indent + 1, "ACTORS " + randomActor() + ", " + randomActor() + ";");
+                line(indent + 1, "DESCRIPTION \"Generated for scaling tests\";");
+                line(indent, "};");
+            }
+            case 5 -> line(indent, "ASSIGN " + randomVar() + " = " + arithmetic() + ";");
+            case 6 -> {
+                // 只调用已经生成过的流程，保持引用关系合理；第一个流程没有可调用的对象，不生成 CALL (否则会无限自递归)
+                if (procedure == 0) {
+                    line(indent, "STEP \"Synthetic step " + random.nextInt(1000) + "\";");
+                } else {
+                    int target = random.nextInt(procedure);
+                    String args = withParams.get(target) ? "Param_" + target + " = " + arithmetic() : "";
+                    line(indent, "CALL Proc_" + target + "(" + args + ");");
+                }
+            }
+            case 7 -> line(indent, randomActor() + " START_TIMER Timer_" + random.nextInt(TIMER_COUNT) + " FOR " + duration() + ";");
+            case 8 -> line(indent, "STEP " + (random.nextBoolean() ? "OPTIONAL" : "REPEAT " + (2 + random.nextInt(3)) + " TIMES")
+                    + " \"Modified step\";");
+            default -> line(indent, random.nextInt(4) == 0 ? "CONTINUE;" : "STEP \"Synthetic step " + random.nextInt(1000) + "\";");
+        }
+    }
+
+    private String condition(int depth) {
+        if (depth == 0 || random.nextInt(5) == 0) {
+            String atom = conditionAtom();
+            return random.nextInt(10) == 0 ? "NOT " + atom : atom;
+        }
+        String operator = random.nextBoolean() ? " AND " : " OR ";
+        int width = 2 + random.nextInt(2);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < width; i++) {
+            if (i > 0) {
+                sb.append(operator);
+            }
+            String sub = condition(depth - 1);
+            boolean composite = sub.contains(" AND ") || sub.contains(" OR ");
+            sb.append(composite ? "(" + sub + ")" : sub);
+        }
+        return sb.toString();
+    }
+
+    private String conditionAtom() {
+        return switch (random.nextInt(9)) {
+            case 0 -> randomVar() + " " + COMPARE_OPS[random.nextInt(COMPARE_OPS.length)] + " " + arithmetic();
+            case 1 -> "Flag_" + 3 * random.nextInt(STATE_COUNT / 3) + " == " + (random.nextBoolean() ? "TRUE" : "FALSE");
+            case 2 -> event();
+            case 3 -> "\"Synthetic condition " + random.nextInt(1000) + "\"";
+            case 4 -> "HAS_FIELD(" + randomMessage() + ".Field_" + random.nextInt(8) + ")";
+            case 5 -> "TIME_SINCE(MESSAGE_SENT " + randomMessage() + ") > " + duration();
+            case 6 -> randomActor() + ".STATUS == " + STATUS_VALUES[random.nextInt(STATUS_VALUES.length)];
+            case 7 -> randomVar() + " IN (" + random.nextInt(5) + ", " + (5 + random.nextInt(5)) + ")";
+            default -> "MESSAGE_RECEIVED " + randomMessage() + "(" + randomVar() + " > " + random.nextInt(10) + ") FROM " + randomActor();
+        };
+    }
+
+    private String event() {
+        return switch (random.nextInt(4)) {
+            case 0 -> "MESSAGE_RECEIVED " + randomMessage() + " FROM " + randomActor();
+            case 1 -> "MESSAGE_SENT " + randomMessage() + " TO " + randomActor();
+            case 2 -> "TIMER_EXPIRED(Timer_" + random.nextInt(TIMER_COUNT) + ")";
+            default -> "TIMEOUT";
+        };
+    }
+
+    private String arithmetic() {
+        return switch (random.nextInt(4)) {
+            case 0 -> String.valueOf(random.nextInt(100));
+            case 1 -> randomVar() + " + " + random.nextInt(10);
+            case 2 -> "(" + randomVar() + " - " + randomVar() + ") * " + (1 + random.nextInt(4));
+            default -> randomVar();
+        };
+    }
+
+    private String duration() {
+        return (1 + random.nextInt(60)) + (random.nextInt(4) == 0 ? " MILLISECONDS" : " SECONDS");
+    }
+
+    private String randomActor() {
+        return "Unit_" + random.nextInt(ACTOR_COUNT);
+    }
+
+    private String randomVar() {
+        int index;
+        do {
+            index = random.nextInt(STATE_COUNT);
+        } while (index % 3 == 0);
+        return "Var_" + index;
+    }
+
+    private String randomMessage() {
+        return messageName(random.nextInt(messages));
+    }
+
+    // J0.0 ~ J31.7，超出后继续增大主编号，保证名称唯一且符合 J_MSG_ID 词法
+    private static String messageName(int index) {
+        return "J" + index / 8 + "." + index % 8;
+    }
+
+    // ==========================================
+    // 消息处理规则
+    // ==========================================
+
+    private void ruleGroup(String keyword, int message) {
+        line(1, keyword + " {");
+        for (int i = 0; i < rulesPerMessage; i++) {
+            line(2, "Rule \"Rule " + message + "." + i + "\" {");
+            line(3, "Condition: " + trCondition(conditionDepth));
+            line(3, "Action:    \"The synthetic message " + messageName(message) + " shall be processed (" + i + ").\"");
+            line(2, "}");
+        }
+        line(1, "}");
+    }
+
+    private String trCondition(int depth) {
+        if (depth == 0 || random.nextInt(6) == 0) {
+            String atom = trConditionAtom();
+            return random.nextInt(10) == 0 ? "NOT " + atom : atom;
+        }
+        String operator = random.nextBoolean() ? " AND " : " OR ";
+        int width = 2 + random.nextInt(3);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < width; i++) {
+            if (i > 0) {
+                sb.append(operator);
+            }
+            String sub = trCondition(depth - 1);
+            boolean composite = sub.contains(" AND ") || sub.contains(" OR ");
+            sb.append(composite ? "(" + sub + ")" : sub);
+        }
+        return sb.toString();
+    }
+
+    private String trConditionAtom() {
+        return switch (random.nextInt(7)) {
+            case 0 -> "Text(\"synthetic clause " + random.nextInt(1000) + "\")";
+            case 1 -> "OnEvent(SystemCue(\"When synthetic cue " + random.nextInt(1000) + " occurs\"))";
+            case 2 -> "OnEvent(ReceiptOf(\"" + randomMessage() + "\"))";
+            case 3 -> "Field(" + randomMessage() + ".Action) " + RULE_OPERATORS[random.nextInt(6)] + " " + random.nextInt(8);
+            case 4 -> "Timing is " + (random.nextBoolean() ? "Periodic(\"RRN=" + (1 + random.nextInt(9)) + "\")" : "OnUpdate");
+            case 5 -> "Platform.Role " + RULE_OPERATORS[6] + " [\"R2\", \"Controlling\"]";
+            default -> "Platform.Capability == TRUE";
+        };
+    }
+
+    // ==========================================
+    // 输出
+    // ==========================================
+
+    private void begin(Writer writer) {
+        random = new Random(seed);
+        out = writer;
+        lines = 0;
+        withParams = new BitSet();
+    }
+
+    private long end() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out = null;
+        return lines;
+    }
+
+    private void line(int indent, String text) {
+        try {
+            for (int i = 0; i < indent; i++) {
+                out.write("    ");
+            }
+            out.write(text);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lines++;
+    }
+
+    private static void createParent(Path path) throws IOException {
+        File parent = path.toAbsolutePath().getParent().toFile();
+        if (!parent.exists()) {
+            Files.createDirectories(parent.toPath());
+        }
+    }
+}
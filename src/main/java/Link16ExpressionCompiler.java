@@ -0,0 +1,902 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * 把 IR 中的条件 (conditionExpression / trConditionExpression) 与算术表达式 (arithmeticExpression)
+ * 编译成预先解析好的求值闭包，供仿真器、规则求值等在最内层循环里反复执行的守卫条件使用。
+ * <p>
+ * 编译约定:
+ * <ul>
+ *   <li>所有访问路径在编译期分配槽位 (slot)，求值时只按下标读 {@link Frame} 的数组，不按名字查找、不分配对象；
+ *       同一个编译器编译出的守卫共享一套槽位，{@link #slot(String)} 可以在编译前后查询或预先分配；</li>
+ *   <li>槽位的键是访问路径的原文 (与 getText() 一致，例如 Context.Remote_ID、GET_LOCAL_ID(TN=Context.Current_TN))，
+ *       带 (args) 的调用结果同样是一个槽位，由宿主在求值前写入；</li>
+ *   <li>没有被赋值的槽位取路径最后一段的名字作为符号值，枚举常量 (ACTIVE、Identity_Values.FRIEND、WILCO)
+ *       因此无需声明即可参与比较；</li>
+ *   <li>事件 (MESSAGE_RECEIVED J3.2、TIMER_EXPIRED T、Text("...")、ReceiptOf 等) 也是槽位: 被
+ *       {@link Frame#mark} 标记过即视为已发生，数值是发生时刻 (毫秒)，TIME_SINCE 据此与 {@link Frame#setNow} 相减；</li>
+ *   <li>事件过滤条件 MESSAGE_RECEIVED J3.2(Speed > 100) 中比较左侧的字段按消息限定 (槽位 J3.2.Speed)，右侧按普通路径解析；</li>
+ *   <li>比较两侧都是数值时按数值比较，都是文本时按文本比较，类型不同时只有 != 成立；算术运算中的文本按 NaN 处理。</li>
+ * </ul>
+ * 编译结果不可变，可以在线程间共享；{@link Frame} 不是线程安全的，每个求值线程 (或仿真实例) 使用自己的 Frame。
+ */
+public final class Link16ExpressionCompiler {
+
+    /**
+     * 编译后的条件。
+     */
+    @FunctionalInterface
+    public interface Guard {
+        boolean test(Frame frame);
+    }
+
+    /**
+     * 编译后的表达式: 值是数值 (isNumber 为 true 时读 number) 或文本 (读 text)。
+     */
+    public interface Operand {
+        boolean isNumber(Frame frame);
+
+        double number(Frame frame);
+
+        String text(Frame frame);
+    }
+
+    /**
+     * NULL 字面量的值，按引用比较。
+     */
+    public static final String NULL = new String("NULL");
+
+    public static final Guard ALWAYS = frame -> true;
+    public static final Guard NEVER = frame -> false;
+
+    private static final int EQ = 0;
+    private static final int NE = 1;
+    private static final int GT = 2;
+    private static final int LT = 3;
+    private static final int GE = 4;
+    private static final int LE = 5;
+    private static final int IN = 6;
+    private static final int HAS = 7;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> symbols = new ArrayList<>();
+
+    /**
+     * 返回路径对应的槽位，第一次出现时分配。
+     */
+    public int slot(String path) {
+        Integer slot = slots.get(path);
+        if (slot == null) {
+            slot = names.size();
+            slots.put(path, slot);
+            names.add(path);
+            symbols.add(path);
+        }
+        return slot;
+    }
+
+    /**
+     * 查询已有槽位，不存在时返回 -1。
+     */
+    public int slotOf(String path) {
+        Integer slot = slots.get(path);
+        return slot == null ? -1 : slot;
+    }
+
+    public int slotCount() {
+        return names.size();
+    }
+
+    public String slotName(int slot) {
+        return names.get(slot);
+    }
+
+    /**
+     * 创建求值现场；之后再分配的槽位不在其中，应在全部编译完成后创建。
+     */
+    public Frame newFrame() {
+        return new Frame(symbols.toArray(new String[0]));
+    }
+
+    // ========================================================================
+    // 条件
+    // ========================================================================
+
+    public Guard compile(ModelIR.Condition condition) {
+        return condition(condition, null);
+    }
+
+    private Guard condition(ModelIR.Condition condition, String qualifier) {
+        if (condition instanceof ModelIR.Or or) {
+            return or(conditions(or.operands, qualifier));
+        } else if (condition instanceof ModelIR.And and) {
+            return and(conditions(and.operands, qualifier));
+        } else if (condition instanceof ModelIR.Not not) {
+            Guard operand = condition(not.operand, qualifier);
+            if (operand == ALWAYS || operand == NEVER) {
+                return operand == ALWAYS ? NEVER : ALWAYS;
+            }
+            return frame -> !operand.test(frame);
+        } else if (condition instanceof ModelIR.Group group) {
+            return condition(group.inner, qualifier);
+        } else if (condition instanceof ModelIR.Compare compare) {
+            return compare(operand(compare.left, qualifier), operator(compare.operator), operand(compare.right, null));
+        } else if (condition instanceof ModelIR.InSet inSet) {
+            return in(operand(inSet.value, qualifier), operands(inSet.candidates));
+        } else if (condition instanceof ModelIR.HasField hasField) {
+            int slot = pathSlot(unquote(hasField.message) + "." + hasField.field, hasField.field);
+            return frame -> frame.assigned[slot];
+        } else if (condition instanceof ModelIR.TimeSince timeSince) {
+            int slot = eventSlot(timeSince.event);
+            double limit = timeSince.limit.toMillis();
+            return frame -> !frame.assigned[slot] || frame.now - frame.numbers[slot] > limit;
+        } else if (condition instanceof ModelIR.StatusIs status) {
+            int slot = pathSlot(status.actor + ".STATUS", "STATUS");
+            String value = status.status;
+            return status.equal
+                    ? frame -> value.equals(frame.texts[slot])
+                    : frame -> !value.equals(frame.texts[slot]);
+        } else if (condition instanceof ModelIR.EventCondition eventCondition) {
+            return event(eventCondition.event);
+        } else if (condition instanceof ModelIR.TextCondition text) {
+            return occurred(slot("\"" + text.text + "\""));
+        } else if (condition instanceof ModelIR.PlatformCondition platform) {
+            int slot = pathSlot("Platform." + platform.attribute, platform.attribute);
+            return compare(new SlotOperand(slot), operator(platform.operator), operand(platform.value, null));
+        } else if (condition instanceof ModelIR.OnEvent onEvent) {
+            return onEvent.receiptOf != null
+                    ? occurred(slot("MESSAGE_RECEIVED " + unquote(onEvent.receiptOf)))
+                    : occurred(slot("\"" + unquote(onEvent.systemCue) + "\""));
+        } else if (condition instanceof ModelIR.FieldCondition field) {
+            int slot = field.message == null
+                    ? pathSlot(field.field, field.field)
+                    : pathSlot(unquote(field.message) + "." + field.field, field.field);
+            return compare(new SlotOperand(slot), operator(field.operator), operand(field.value, null));
+        } else if (condition instanceof ModelIR.TimingCondition timing) {
+            String key = timing.kind == ModelIR.TimingKind.PERIODIC
+                    ? "Timing.PERIODIC(" + unquote(timing.period) + ")"
+                    : "Timing." + timing.kind;
+            return occurred(slot(key));
+        }
+        throw new IllegalArgumentException("无法编译的条件: " + (condition == null ? "null" : ModelPrinter.text(condition)));
+    }
+
+    private Guard[] conditions(List<ModelIR.Condition> operands, String qualifier) {
+        Guard[] guards = new Guard[operands.size()];
+        for (int i = 0; i < guards.length; i++) {
+            guards[i] = condition(operands.get(i), qualifier);
+        }
+        return guards;
+    }
+
+    private static Guard or(Guard[] operands) {
+        List<Guard> kept = new ArrayList<>();
+        for (Guard operand : operands) {
+            if (operand == ALWAYS) {
+                return ALWAYS;
+            }
+            if (operand != NEVER) {
+                kept.add(operand);
+            }
+        }
+        if (kept.isEmpty()) {
+            return NEVER;
+        }
+        if (kept.size() == 1) {
+            return kept.get(0);
+        }
+        if (kept.size() == 2) {
+            Guard a = kept.get(0);
+            Guard b = kept.get(1);
+            return frame -> a.test(frame) || b.test(frame);
+        }
+        Guard[] all = kept.toArray(new Guard[0]);
+        return frame -> {
+            for (Guard guard : all) {
+                if (guard.test(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private static Guard and(Guard[] operands) {
+        List<Guard> kept = new ArrayList<>();
+        for (Guard operand : operands) {
+            if (operand == NEVER) {
+                return NEVER;
+            }
+            if (operand != ALWAYS) {
+                kept.add(operand);
+            }
+        }
+        if (kept.isEmpty()) {
+            return ALWAYS;
+        }
+        if (kept.size() == 1) {
+            return kept.get(0);
+        }
+        if (kept.size() == 2) {
+            Guard a = kept.get(0);
+            Guard b = kept.get(1);
+            return frame -> a.test(frame) && b.test(frame);
+        }
+        Guard[] all = kept.toArray(new Guard[0]);
+        return frame -> {
+            for (Guard guard : all) {
+                if (!guard.test(frame)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private Guard event(ModelIR.Event event) {
+        Guard occurred = occurred(eventSlot(event));
+        if (event.filter == null) {
+            return occurred;
+        }
+        Guard filter = condition(event.filter, event.message);
+        return and(new Guard[]{occurred, filter});
+    }
+
+    private static Guard occurred(int slot) {
+        return frame -> frame.assigned[slot];
+    }
+
+    private int eventSlot(ModelIR.Event event) {
+        return slot(eventKey(event));
+    }
+
+    /**
+     * 事件槽位的键: MESSAGE_RECEIVED J3.2 / TIMER_EXPIRED T / TIMEOUT / 带引号的描述文本 (与 Text("...") 共用)。
+     * 过滤条件、FROM / TO 不参与，它们在求值时单独判断或由宿主在标记事件时处理。
+     */
+    public static String eventKey(ModelIR.Event event) {
+        return switch (event.kind) {
+            case MESSAGE_SENT, MESSAGE_RECEIVED -> event.kind + " " + event.message;
+            case TIMER_EXPIRED -> event.kind + " " + event.text;
+            case TEXT -> "\"" + unquote(event.text) + "\"";
+            case TIMEOUT -> "TIMEOUT";
+        };
+    }
+
+    // ========================================================================
+    // 比较
+    // ========================================================================
+
+    private static int operator(String operator) {
+        return switch (operator) {
+            case "==" -> EQ;
+            case "!=" -> NE;
+            case ">" -> GT;
+            case "<" -> LT;
+            case ">=" -> GE;
+            case "<=" -> LE;
+            case "IN" -> IN;
+            case "HAS" -> HAS;
+            default -> throw new IllegalArgumentException("未知运算符: " + operator);
+        };
+    }
+
+    private Guard compare(Operand left, int op, Operand right) {
+        if (right instanceof ListOperand list) {
+            Guard any = op == HAS ? has(left, list.items) : in(left, list.items);
+            return op == IN || op == HAS ? any : NEVER;
+        }
+        if (op == IN) {
+            return in(left, new Operand[]{right});
+        }
+        if (op == HAS) {
+            return has(left, new Operand[]{right});
+        }
+        if (left instanceof Constant && right instanceof Constant) {
+            return compare(op, left, right, null) ? ALWAYS : NEVER;
+        }
+        if (left instanceof Constant && right instanceof SlotOperand) {
+            return compare(right, flip(op), left);
+        }
+        if (left instanceof SlotOperand slotOperand && right instanceof Constant constant) {
+            Guard specialized = compareSlot(slotOperand.slot, op, constant);
+            if (specialized != null) {
+                return specialized;
+            }
+        }
+        return frame -> compare(op, left, right, frame);
+    }
+
+    private static int flip(int op) {
+        return switch (op) {
+            case GT -> LT;
+            case LT -> GT;
+            case GE -> LE;
+            case LE -> GE;
+            default -> op;
+        };
+    }
+
+    /**
+     * 最常见的形态 "路径 运算符 常量" 直接读数组，省掉 Operand 的虚调用。
+     */
+    private static Guard compareSlot(int slot, int op, Constant constant) {
+        if (constant.numeric) {
+            double value = constant.number;
+            return switch (op) {
+                case EQ -> frame -> frame.texts[slot] == null && frame.numbers[slot] == value;
+                case NE -> frame -> frame.texts[slot] != null || frame.numbers[slot] != value;
+                case GT -> frame -> frame.texts[slot] == null && frame.numbers[slot] > value;
+                case LT -> frame -> frame.texts[slot] == null && frame.numbers[slot] < value;
+                case GE -> frame -> frame.texts[slot] == null && frame.numbers[slot] >= value;
+                case LE -> frame -> frame.texts[slot] == null && frame.numbers[slot] <= value;
+                default -> null;
+            };
+        }
+        String value = constant.text;
+        if (value == NULL) {
+            return switch (op) {
+                case EQ -> frame -> frame.texts[slot] == NULL;
+                case NE -> frame -> frame.texts[slot] != NULL;
+                default -> null;
+            };
+        }
+        return switch (op) {
+            case EQ -> frame -> value.equals(frame.texts[slot]);
+            case NE -> frame -> !value.equals(frame.texts[slot]);
+            default -> null;
+        };
+    }
+
+    private static boolean compare(int op, Operand left, Operand right, Frame frame) {
+        boolean leftNumber = left.isNumber(frame);
+        boolean rightNumber = right.isNumber(frame);
+        if (leftNumber && rightNumber) {
+            double a = left.number(frame);
+            double b = right.number(frame);
+            return switch (op) {
+                case EQ -> a == b;
+                case NE -> a != b;
+                case GT -> a > b;
+                case LT -> a < b;
+                case GE -> a >= b;
+                default -> a <= b;
+            };
+        }
+        if (leftNumber != rightNumber) {
+            return op == NE;
+        }
+        String a = left.text(frame);
+        String b = right.text(frame);
+        if (a == NULL || b == NULL) {
+            return op == EQ ? a == b : op == NE && a != b;
+        }
+        return switch (op) {
+            case EQ -> a.equals(b);
+            case NE -> !a.equals(b);
+            case GT -> a.compareTo(b) > 0;
+            case LT -> a.compareTo(b) < 0;
+            case GE -> a.compareTo(b) >= 0;
+            default -> a.compareTo(b) <= 0;
+        };
+    }
+
+    private static Guard in(Operand value, Operand[] candidates) {
+        boolean constant = true;
+        for (Operand candidate : candidates) {
+            constant &= candidate instanceof Constant;
+        }
+        if (!constant) {
+            return frame -> {
+                for (Operand candidate : candidates) {
+                    if (compare(EQ, value, candidate, frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+        // 常量集合按类型拆成两个数组，求值时只扫与值同类型的那一个
+        List<Double> numbers = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        for (Operand candidate : candidates) {
+            Constant c = (Constant) candidate;
+            if (c.numeric) {
+                numbers.add(c.number);
+            } else {
+                texts.add(c.text);
+            }
+        }
+        double[] numberSet = numbers.stream().mapToDouble(Double::doubleValue).toArray();
+        String[] textSet = texts.toArray(new String[0]);
+        return frame -> {
+            if (value.isNumber(frame)) {
+                double v = value.number(frame);
+                for (double n : numberSet) {
+                    if (n == v) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            String v = value.text(frame);
+            for (String t : textSet) {
+                if (t.equals(v)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * HAS: 文本包含任一候选 (消息规则里的 Field(x) HAS "..." / HAS [..])。
+     */
+    private static Guard has(Operand value, Operand[] candidates) {
+        return frame -> {
+            if (value.isNumber(frame)) {
+                return false;
+            }
+            String v = value.text(frame);
+            for (Operand candidate : candidates) {
+                if (!candidate.isNumber(frame) && v.contains(candidate.text(frame))) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    // ========================================================================
+    // 表达式
+    // ========================================================================
+
+    public Operand compile(ModelIR.Expr expr) {
+        return operand(expr, null);
+    }
+
+    private Operand[] operands(List<ModelIR.Expr> exprs) {
+        Operand[] operands = new Operand[exprs.size()];
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = operand(exprs.get(i), null);
+        }
+        return operands;
+    }
+
+    private Operand operand(ModelIR.Expr expr, String qualifier) {
+        if (expr instanceof ModelIR.Literal literal) {
+            return switch (literal.kind) {
+                case NUMBER -> numberConstant(literal.text);
+                case STRING -> new Constant(literal.text);
+                case BOOLEAN -> new Constant("TRUE".equals(literal.text) ? 1 : 0);
+                case NULL -> new Constant(NULL);
+            };
+        } else if (expr instanceof ModelIR.Access access) {
+            String path = ModelPrinter.text(access);
+            String symbol = path;
+            if (access.suffixes.isEmpty()) {
+                symbol = access.root;
+            } else if (access.suffixes.get(access.suffixes.size() - 1).member != null) {
+                symbol = access.suffixes.get(access.suffixes.size() - 1).member;
+            }
+            return new SlotOperand(pathSlot(qualifier == null ? path : qualifier + "." + path, symbol));
+        } else if (expr instanceof ModelIR.MessageId id) {
+            return new Constant(id.id);
+        } else if (expr instanceof ModelIR.ParenExpr paren) {
+            return operand(paren.inner, qualifier);
+        } else if (expr instanceof ModelIR.Arithmetic arithmetic) {
+            Operand[] operands = new Operand[arithmetic.operands.size()];
+            boolean constant = true;
+            for (int i = 0; i < operands.length; i++) {
+                operands[i] = operand(arithmetic.operands.get(i), qualifier);
+                constant &= operands[i] instanceof Constant;
+            }
+            Arithmetic result = new Arithmetic(operands, arithmetic.operators.toCharArray());
+            return constant ? new Constant(result.number(null)) : result;
+        } else if (expr instanceof ModelIR.ListLiteral list) {
+            return new ListOperand(operands(list.items));
+        }
+        throw new IllegalArgumentException("无法编译的表达式: " + (expr == null ? "null" : ModelPrinter.text(expr)));
+    }
+
+    private int pathSlot(String path, String symbol) {
+        int slot = slot(path);
+        symbols.set(slot, symbol);
+        return slot;
+    }
+
+    private static Constant numberConstant(String text) {
+        try {
+            return new Constant(Double.parseDouble(text));
+        } catch (NumberFormatException e) {
+            return new Constant(text);
+        }
+    }
+
+    private static String unquote(String text) {
+        return text != null && text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")
+                ? text.substring(1, text.length() - 1)
+                : text;
+    }
+
+    private static final class Constant implements Operand {
+        final boolean numeric;
+        final double number;
+        final String text;
+
+        Constant(double number) {
+            this.numeric = true;
+            this.number = number;
+            this.text = null;
+        }
+
+        Constant(String text) {
+            this.numeric = false;
+            this.number = Double.NaN;
+            this.text = text;
+        }
+
+        @Override
+        public boolean isNumber(Frame frame) {
+            return numeric;
+        }
+
+        @Override
+        public double number(Frame frame) {
+            return number;
+        }
+
+        @Override
+        public String text(Frame frame) {
+            return text;
+        }
+    }
+
+    private static final class SlotOperand implements Operand {
+        final int slot;
+
+        SlotOperand(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean isNumber(Frame frame) {
+            return frame.texts[slot] == null;
+        }
+
+        @Override
+        public double number(Frame frame) {
+            return frame.texts[slot] == null ? frame.numbers[slot] : Double.NaN;
+        }
+
+        @Override
+        public String text(Frame frame) {
+            return frame.texts[slot];
+        }
+    }
+
+    /**
+     * 同一优先级的左结合运算链，与 ModelIR.Arithmetic 一一对应。
+     */
+    private static final class Arithmetic implements Operand {
+        final Operand[] operands;
+        final char[] operators;
+
+        Arithmetic(Operand[] operands, char[] operators) {
+            this.operands = operands;
+            this.operators = operators;
+        }
+
+        @Override
+        public boolean isNumber(Frame frame) {
+            return true;
+        }
+
+        @Override
+        public double number(Frame frame) {
+            double value = operands[0].number(frame);
+            for (int i = 0; i < operators.length; i++) {
+                double next = operands[i + 1].number(frame);
+                switch (operators[i]) {
+                    case '+' -> value += next;
+                    case '-' -> value -= next;
+                    case '*' -> value *= next;
+                    default -> value /= next;
+                }
+            }
+            return value;
+        }
+
+        @Override
+        public String text(Frame frame) {
+            return null;
+        }
+    }
+
+    /**
+     * 消息规则中 IN / HAS 右侧的 [v1, v2, ...]，只能出现在这两个运算符之后。
+     */
+    private static final class ListOperand implements Operand {
+        final Operand[] items;
+
+        ListOperand(Operand[] items) {
+            this.items = items;
+        }
+
+        @Override
+        public boolean isNumber(Frame frame) {
+            return false;
+        }
+
+        @Override
+        public double number(Frame frame) {
+            return Double.NaN;
+        }
+
+        @Override
+        public String text(Frame frame) {
+            return null;
+        }
+    }
+
+    // ========================================================================
+    // 求值现场
+    // ========================================================================
+
+    /**
+     * 一组槽位的当前值。每个槽位是数值 (texts[i] 为 null) 或文本；assigned 记录是否被宿主写过 / 事件是否发生过。
+     */
+    public static final class Frame {
+        private final String[] symbols;
+        private final double[] numbers;
+        private final String[] texts;
+        private final boolean[] assigned;
+        private double now;
+
+        private Frame(String[] symbols) {
+            this.symbols = symbols;
+            this.numbers = new double[symbols.length];
+            this.texts = symbols.clone();
+            this.assigned = new boolean[symbols.length];
+        }
+
+        public int size() {
+            return symbols.length;
+        }
+
+        public void setNumber(int slot, double value) {
+            numbers[slot] = value;
+            texts[slot] = null;
+            assigned[slot] = true;
+        }
+
+        public void setBoolean(int slot, boolean value) {
+            setNumber(slot, value ? 1 : 0);
+        }
+
+        public void setText(int slot, String value) {
+            numbers[slot] = 0;
+            texts[slot] = value == null ? NULL : value;
+            assigned[slot] = true;
+        }
+
+        public void setNull(int slot) {
+            setText(slot, NULL);
+        }
+
+        /**
+         * 标记事件槽位在 millis 时刻发生。
+         */
+        public void mark(int slot, double millis) {
+            setNumber(slot, millis);
+        }
+
+        /**
+         * 把槽位恢复成未赋值的符号值 (事件即视为未发生)。
+         */
+        public void clear(int slot) {
+            numbers[slot] = 0;
+            texts[slot] = symbols[slot];
+            assigned[slot] = false;
+        }
+
+        public void reset() {
+            Arrays.fill(numbers, 0);
+            System.arraycopy(symbols, 0, texts, 0, symbols.length);
+            Arrays.fill(assigned, false);
+            now = 0;
+        }
+
+        public void setNow(double millis) {
+            now = millis;
+        }
+
+        public boolean isAssigned(int slot) {
+            return assigned[slot];
+        }
+    }
+
+    // ========================================================================
+    // 命令行: 编译模型中的全部守卫并压测求值吞吐
+    // ========================================================================
+
+    /**
+     * 收集功能模型中的守卫: TRIGGER、IF / ELSE_IF、WHILE、WAIT 与 EXCEPTION 的 ON 子句、RULE 与 MAP_STATE 的事件；
+     * ASSIGN 的右值作为算术表达式一并编译。
+     */
+    private static void collect(ModelIR.FunctionModel model, List<ModelIR.Condition> conditions, List<ModelIR.Expr> exprs) {
+        for (ModelIR.Procedure procedure : each(model.procedures)) {
+            if (procedure.trigger != null) {
+                conditions.add(procedure.trigger);
+            }
+            collect(procedure.steps, conditions, exprs);
+            for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                conditions.add(handler.condition);
+                collect(handler.body, conditions, exprs);
+            }
+        }
+        for (ModelIR.EventRule rule : each(model.rules)) {
+            if (rule.event != null) {
+                conditions.add(new ModelIR.EventCondition(rule.event));
+            }
+        }
+        for (ModelIR.Mapping mapping : each(model.mappings)) {
+            if (mapping.event != null) {
+                conditions.add(new ModelIR.EventCondition(mapping.event));
+            }
+        }
+    }
+
+    private static void collect(List<ModelIR.Statement> statements, List<ModelIR.Condition> conditions, List<ModelIR.Expr> exprs) {
+        for (ModelIR.Statement statement : each(statements)) {
+            if (statement instanceof ModelIR.If ifStatement) {
+                for (ModelIR.Branch branch : ifStatement.branches) {
+                    conditions.add(branch.condition);
+                    collect(branch.body, conditions, exprs);
+                }
+                collect(ifStatement.elseBody, conditions, exprs);
+            } else if (statement instanceof ModelIR.While loop) {
+                conditions.add(loop.condition);
+                collect(loop.body, conditions, exprs);
+            } else if (statement instanceof ModelIR.Wait wait) {
+                for (ModelIR.Branch clause : wait.clauses) {
+                    conditions.add(clause.condition);
+                    collect(clause.body, conditions, exprs);
+                }
+            } else if (statement instanceof ModelIR.Parallel parallel) {
+                for (List<ModelIR.Statement> branch : parallel.branches) {
+                    collect(branch, conditions, exprs);
+                }
+            } else if (statement instanceof ModelIR.UserConfirm confirm) {
+                collect(confirm.confirmed, conditions, exprs);
+                collect(confirm.otherwise, conditions, exprs);
+            } else if (statement instanceof ModelIR.Assign assign && assign.value != null) {
+                exprs.add(assign.value);
+            }
+        }
+    }
+
+    private static <T> List<T> each(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        long evaluations = 10_000_000;
+        int frames = 64;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                File file = new File(arg);
+                File[] children = file.isDirectory() ? file.listFiles((d, name) -> name.endsWith(".dsl")) : null;
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " 缺少参数值。");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--evaluations" -> evaluations = Long.parseLong(value);
+                case "--frames" -> frames = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("用法: Link16ExpressionCompiler 功能模型.dsl|目录... [--evaluations N] [--frames N] [--seed N]");
+        }
+
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false);
+        List<ModelIR.Condition> conditions = new ArrayList<>();
+        List<ModelIR.Expr> exprs = new ArrayList<>();
+        for (File file : files) {
+            if (DslMode.fromFileName(file.getName()) == DslMode.MESSAGE_RULES) {
+                continue;
+            }
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            ParseResult result = Link16ParserRunner.parse(file.getName(), text, DslMode.FUNCTION_MODEL, options);
+            if (result.success && result.model instanceof ModelIR.FunctionModel model) {
+                collect(model, conditions, exprs);
+            } else {
+                System.out.println("⚠️ 跳过 " + file.getName() + ": 不是语法正确的功能模型 (" + result.errorCount + " 个错误)");
+            }
+        }
+
+        long started = System.nanoTime();
+        Link16ExpressionCompiler compiler = new Link16ExpressionCompiler();
+        List<Guard> guards = new ArrayList<>();
+        for (ModelIR.Condition condition : conditions) {
+            guards.add(compiler.compile(condition));
+        }
+        List<Operand> operands = new ArrayList<>();
+        for (ModelIR.Expr expr : exprs) {
+            try {
+                operands.add(compiler.compile(expr));
+            } catch (IllegalArgumentException e) {
+                // STRUCT 字面量等非标量右值不参与求值
+            }
+        }
+        System.out.printf("⚙️ 编译 %d 个条件, %d 个表达式 -> %d 个槽位, 耗时 %d ms%n",
+                guards.size(), operands.size(), compiler.slotCount(), (System.nanoTime() - started) / 1_000_000);
+        if (guards.isEmpty()) {
+            return;
+        }
+
+        // 随机现场: 每个槽位取小整数、符号值或未赋值，事件在 [0, 10s) 内随机发生
+        SplittableRandom random = new SplittableRandom(seed);
+        Frame[] pool = new Frame[frames];
+        for (int f = 0; f < frames; f++) {
+            Frame frame = compiler.newFrame();
+            for (int slot = 0; slot < frame.size(); slot++) {
+                switch (random.nextInt(4)) {
+                    case 0 -> frame.setNumber(slot, random.nextInt(8));
+                    case 1 -> frame.setText(slot, frame.symbols[random.nextInt(frame.size())]);
+                    case 2 -> frame.mark(slot, random.nextInt(10_000));
+                    default -> frame.clear(slot);
+                }
+            }
+            frame.setNow(10_000);
+            pool[f] = frame;
+        }
+        Guard[] all = guards.toArray(new Guard[0]);
+        Operand[] values = operands.toArray(new Operand[0]);
+        long rounds = Math.max(1, evaluations / (all.length + values.length));
+        long hits = 0;
+        double sink = 0;
+        started = System.nanoTime();
+        for (long round = 0; round < rounds; round++) {
+            Frame frame = pool[(int) (round % frames)];
+            for (Guard guard : all) {
+                if (guard.test(frame)) {
+                    hits++;
+                }
+            }
+            for (Operand value : values) {
+                double result = value.number(frame);
+                if (!Double.isNaN(result)) {
+                    sink += result;
+                }
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - started);
+        long total = rounds * (all.length + values.length);
+        System.out.printf("⚡ %d 次求值, 条件成立 %.1f%%, 表达式校验和 %.4g, 耗时 %d ms, %.1f ns/次%n",
+                total, 100.0 * hits / (rounds * all.length), sink, elapsed / 1_000_000, (double) elapsed / total);
+    }
+}
@@ -1,260 +1,813 @@
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTree;
 import org.antlr.v4.runtime.tree.TerminalNode;
 
-// 继承 Maven 插件自动生成的 BaseVisitor
-public class Link16ModelVisitor extends Link16DSLBaseVisitor<Void> {
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次遍历语法树，构建类型化的模型 IR ({@link ModelIR})，不再直接打印日志；日志格式由 {@link ModelPrinter} 负责。
+ * <p>
+ * 同一个 Visitor 实例内，标识符、消息名和类型名都经过驻留，相同文本只保存一份。
+ * 流式解析时语法树可能因错误恢复而残缺，所以各个构建方法对缺失的子节点都返回 null，不抛异常。
+ */
+public class Link16ModelVisitor extends Link16DSLBaseVisitor<ModelIR.Model> {
+
+    // 每个 Visitor 自己的驻留表，不使用 String.intern()，解析结束后随 Visitor 一起回收
+    private final Map<String, String> names = new HashMap<>();
+
+    /**
+     * 对任意语法树构建模型，根节点不是 functionModel / trRulesModel 时返回 null。
+     */
+    public ModelIR.Model build(ParseTree tree) {
+        return tree == null ? null : visit(tree);
+    }
 
     @Override
-    public Void visitFunctionModel(Link16DSLParser.FunctionModelContext ctx) {
-        System.out.println("=== 解析功能模型: " + ctx.identifier().getText() + " ===");
-        return visitChildren(ctx); // 继续遍历子节点
+    public ModelIR.Model visitFunctionModel(Link16DSLParser.FunctionModelContext ctx) {
+        List<ModelIR.TypeDef> types = new ArrayList<>();
+        if (ctx.typesDef() != null) {
+            for (Link16DSLParser.TypeDefinitionContext def : ctx.typesDef().typeDefinition()) {
+                types.add(new ModelIR.TypeDef(id(def.identifier()), type(def.dataType()), line(def)));
+            }
+        }
+
+        List<ModelIR.Actor> actors = new ArrayList<>();
+        if (ctx.actorsDef() != null) {
+            for (Link16DSLParser.ActorDeclarationContext decl : ctx.actorsDef().actorDeclaration()) {
+                actors.add(new ModelIR.Actor(id(decl.identifier()), intern(decl.actorType()), line(decl)));
+            }
+        }
+
+        List<ModelIR.MessageDecl> messages = new ArrayList<>();
+        if (ctx.messagesDef() != null) {
+            for (Link16DSLParser.MessageDeclarationContext decl : ctx.messagesDef().messageDeclaration()) {
+                messages.add(new ModelIR.MessageDecl(intern(decl.messageName()), line(decl)));
+            }
+        }
+
+        List<ModelIR.Discrete> discretes = new ArrayList<>();
+        if (ctx.discretesDef() != null) {
+            for (Link16DSLParser.DiscreteSetContext set : ctx.discretesDef().discreteSet()) {
+                discretes.add(discrete(set));
+            }
+        }
+
+        List<ModelIR.State> states = new ArrayList<>();
+        if (ctx.stateDef() != null) {
+            for (Link16DSLParser.StateDeclarationContext decl : ctx.stateDef().stateDeclaration()) {
+                states.add(new ModelIR.State(id(decl.identifier()), type(decl.dataType()),
+                        expr(decl.arithmeticExpression()), line(decl)));
+            }
+        }
+
+        List<ModelIR.Mapping> mappings = new ArrayList<>();
+        if (ctx.mappingsDef() != null) {
+            for (Link16DSLParser.MappingSetContext set : ctx.mappingsDef().mappingSet()) {
+                mappings.add(mapping(set));
+            }
+        }
+
+        List<ModelIR.Procedure> procedures = new ArrayList<>();
+        for (Link16DSLParser.ProcedureDefContext def : ctx.procedureDef()) {
+            procedures.add(procedure(def));
+        }
+        List<ModelIR.EventRule> rules = new ArrayList<>();
+        for (Link16DSLParser.RuleDefContext def : ctx.ruleDef()) {
+            rules.add(eventRule(def));
+        }
+
+        return new ModelIR.FunctionModel(id(ctx.identifier()), types, actors, messages, discretes, states, mappings,
+                procedures, rules);
     }
 
     @Override
-    public Void visitActorDeclaration(Link16DSLParser.ActorDeclarationContext ctx) {
-        String name = ctx.identifier().getText();
-        String type = ctx.actorType().getText();
-        System.out.println("  [发现参与者] 名称: " + name + ", 类型: " + type);
-        return null;
+    public ModelIR.Model visitTrRulesModel(Link16DSLParser.TrRulesModelContext ctx) {
+        List<ModelIR.MessageRules> ruleSets = new ArrayList<>();
+        for (Link16DSLParser.MessageRulesDefContext def : ctx.messageRulesDef()) {
+            ruleSets.add(messageRules(def));
+        }
+        return new ModelIR.RulesModel(ruleSets);
     }
 
+    // ========================================================================
+    // 功能模型: 静态定义
+    // ========================================================================
 
-    @Override
-    public Void visitStep(Link16DSLParser.StepContext ctx) {
-        // 简单打印步骤的内容
-        System.out.print("    -> 步骤: ");
-
-        if (ctx.action() != null) {
-            // 如果是动作 (SENDS, BROADCASTS, NOTIFY)
-            System.out.println(ctx.action().getText());
-        } else if (ctx.naturalLanguageBlock() != null) {
-            // 如果是自然语言块
-            System.out.println("自然语言描述: " + ctx.naturalLanguageBlock().getText());
-        } else if (ctx.STRING_LITERAL() != null) {
-            // 如果是纯字符串描述
-            System.out.println("描述: " + ctx.STRING_LITERAL().getText());
-        } else {
-            System.out.println("未知步骤内容");
+    private ModelIR.Discrete discrete(Link16DSLParser.DiscreteSetContext ctx) {
+        List<Link16DSLParser.IdentifierContext> ids = ctx.identifier();
+        String forMessage = ctx.messageName() != null ? intern(ctx.messageName()) : null;
+        String forField = ctx.FOR() != null && ids.size() > 1 ? id(ids.get(1)) : null;
+
+        List<ModelIR.DiscreteValue> values = new ArrayList<>();
+        for (Link16DSLParser.DiscreteValueContext value : ctx.discreteValue()) {
+            Link16DSLParser.ValueAssignmentContext assignment = value.valueAssignment();
+            String low = null;
+            String high = null;
+            if (assignment != null) {
+                List<TerminalNode> numbers = assignment.NUMBER();
+                low = numbers.isEmpty() ? null : numbers.get(0).getText();
+                high = assignment.IN_RANGE() != null && numbers.size() > 1 ? numbers.get(1).getText() : null;
+            }
+            values.add(new ModelIR.DiscreteValue(id(value.identifier()), low, high, unquote(value.STRING_LITERAL())));
         }
-        return null;
+        return new ModelIR.Discrete(ids.isEmpty() ? null : id(ids.get(0)), forMessage, forField, values, line(ctx));
     }
 
-    @Override
-    public Void visitAssignStatement(Link16DSLParser.AssignStatementContext ctx) {
-        String target = ctx.accessExpression().getText();
-        String expr = ctx.arithmeticExpression().getText();
-        System.out.println("-> 赋值操作: " + target + " = " + expr);
-        return null;
+    private ModelIR.Mapping mapping(Link16DSLParser.MappingSetContext ctx) {
+        List<Link16DSLParser.IdentifierContext> ids = ctx.identifier();
+        String name = ids.isEmpty() ? null : id(ids.get(0));
+        if (ctx.MAP_STATE() != null) {
+            return new ModelIR.Mapping(name, null, event(ctx.event()), ids.size() > 1 ? id(ids.get(1)) : null, line(ctx));
+        }
+        List<ModelIR.MapEntry> entries = new ArrayList<>();
+        for (Link16DSLParser.MapEntryContext entry : ctx.mapEntry()) {
+            List<ModelIR.Expr> keys = new ArrayList<>();
+            if (entry.mapKey() != null) {
+                for (Link16DSLParser.ValueContext key : entry.mapKey().value()) {
+                    keys.add(value(key));
+                }
+            }
+            entries.add(new ModelIR.MapEntry(keys, value(entry.value())));
+        }
+        return new ModelIR.Mapping(name, entries, null, null, line(ctx));
     }
 
-    // 1. 处理 IF 语句，增加缩进或标记，体现逻辑分支
-    @Override
-    public Void visitIfStatement(Link16DSLParser.IfStatementContext ctx) {
-        System.out.println("    [逻辑判断] IF " + ctx.conditionExpression().getText());
+    private ModelIR.Procedure procedure(Link16DSLParser.ProcedureDefContext ctx) {
+        List<ModelIR.ParamDef> params = null;
+        if (ctx.procedureParams() != null) {
+            params = new ArrayList<>();
+            Link16DSLParser.ParamDefListContext list = ctx.procedureParams().paramDefList();
+            if (list != null) {
+                for (Link16DSLParser.ParamDefContext param : list.paramDef()) {
+                    params.add(new ModelIR.ParamDef(id(param.identifier()), type(param.dataType())));
+                }
+            }
+        }
+        ModelIR.Condition trigger = ctx.TRIGGER() != null ? condition(ctx.conditionExpression()) : null;
+        List<ModelIR.Branch> handlers = ctx.exceptionBlock() != null ? branches(ctx.exceptionBlock().onConditionClause()) : null;
+        return new ModelIR.Procedure(id(ctx.identifier()), params, unquote(ctx.STRING_LITERAL()), trigger,
+                statements(ctx.statement()), handlers, line(ctx));
+    }
 
-        // 访问 IF 块内的语句
-        // 注意：这里只是简单遍历，实际项目中你可能需要维护一个"缩进级别"变量来美化输出
-        for (Link16DSLParser.StatementContext stmt : ctx.statement()) {
-            System.out.print("      |-- ");
-            visit(stmt);
+    private ModelIR.EventRule eventRule(Link16DSLParser.RuleDefContext ctx) {
+        List<ModelIR.Consequence> consequences = new ArrayList<>();
+        for (Link16DSLParser.ConsequenceContext consequence : ctx.consequence()) {
+            List<Link16DSLParser.ArithmeticExpressionContext> exprs = consequence.arithmeticExpression();
+            consequences.add(new ModelIR.Consequence(consequence.MUST_BROADCAST() != null,
+                    exprs.isEmpty() ? null : expr(exprs.get(0)),
+                    exprs.size() > 1 ? expr(exprs.get(1)) : null));
         }
+        double priority = ctx.NUMBER() != null ? number(ctx.NUMBER()) : 0;
+        return new ModelIR.EventRule(unquote(ctx.STRING_LITERAL()), priority, event(ctx.event()), consequences, line(ctx));
+    }
 
-        // 处理 ELSE IF
-        for (Link16DSLParser.ElseIfPartContext elseIfCtx : ctx.elseIfPart()) {
-            System.out.println("    [逻辑判断] ELSE IF " + elseIfCtx.conditionExpression().getText());
-            for (Link16DSLParser.StatementContext stmt : elseIfCtx.statement()) {
-                System.out.print("      |-- ");
-                visit(stmt);
+    // ========================================================================
+    // 功能模型: 语句
+    // ========================================================================
+
+    private List<ModelIR.Statement> statements(List<Link16DSLParser.StatementContext> contexts) {
+        List<ModelIR.Statement> result = new ArrayList<>(contexts.size());
+        for (Link16DSLParser.StatementContext ctx : contexts) {
+            ModelIR.Statement statement = statement(ctx);
+            if (statement != null) {
+                result.add(statement);
             }
         }
+        return result;
+    }
 
-        // 处理 ELSE
-        if (ctx.elsePart() != null) {
-            System.out.println("    [逻辑判断] ELSE");
-            for (Link16DSLParser.StatementContext stmt : ctx.elsePart().statement()) {
-                System.out.print("      |-- ");
-                visit(stmt);
+    private List<ModelIR.Branch> branches(List<Link16DSLParser.OnConditionClauseContext> clauses) {
+        List<ModelIR.Branch> result = new ArrayList<>(clauses.size());
+        for (Link16DSLParser.OnConditionClauseContext clause : clauses) {
+            result.add(new ModelIR.Branch(condition(clause.conditionExpression()), statements(clause.statement())));
+        }
+        return result;
+    }
+
+    private ModelIR.Statement statement(Link16DSLParser.StatementContext ctx) {
+        if (ctx.getChildCount() == 0) {
+            return null;
+        }
+        ParseTree child = ctx.getChild(0);
+        int line = line(ctx);
+        if (child instanceof Link16DSLParser.StepContext) {
+            return step((Link16DSLParser.StepContext) child);
+        } else if (child instanceof Link16DSLParser.IfStatementContext) {
+            Link16DSLParser.IfStatementContext ifCtx = (Link16DSLParser.IfStatementContext) child;
+            List<ModelIR.Branch> branches = new ArrayList<>();
+            branches.add(new ModelIR.Branch(condition(ifCtx.conditionExpression()), statements(ifCtx.statement())));
+            for (Link16DSLParser.ElseIfPartContext elseIf : ifCtx.elseIfPart()) {
+                branches.add(new ModelIR.Branch(condition(elseIf.conditionExpression()), statements(elseIf.statement())));
+            }
+            List<ModelIR.Statement> elseBody = ifCtx.elsePart() != null ? statements(ifCtx.elsePart().statement()) : null;
+            return new ModelIR.If(line, branches, elseBody);
+        } else if (child instanceof Link16DSLParser.NullStatementContext) {
+            return new ModelIR.Terminate(line);
+        } else if (child instanceof Link16DSLParser.ContinueStatementContext) {
+            return new ModelIR.Continue(line);
+        } else if (child instanceof Link16DSLParser.LoopStatementContext) {
+            Link16DSLParser.LoopStatementContext loop = (Link16DSLParser.LoopStatementContext) child;
+            return new ModelIR.While(line, condition(loop.conditionExpression()), statements(loop.statement()));
+        } else if (child instanceof Link16DSLParser.WaitStatementContext) {
+            Link16DSLParser.WaitStatementContext wait = (Link16DSLParser.WaitStatementContext) child;
+            return new ModelIR.Wait(line, duration(wait.duration()), branches(wait.onConditionClause()));
+        } else if (child instanceof Link16DSLParser.CallStatementContext) {
+            Link16DSLParser.CallStatementContext call = (Link16DSLParser.CallStatementContext) child;
+            List<ModelIR.Param> params = null;
+            if (call.LPAREN() != null) {
+                params = call.paramList() != null ? params(call.paramList()) : new ArrayList<>();
             }
+            return new ModelIR.Call(line, intern(call.qualifiedIdentifier()), params);
+        } else if (child instanceof Link16DSLParser.ParallelStatementContext) {
+            List<List<ModelIR.Statement>> branches = new ArrayList<>();
+            for (Link16DSLParser.BranchDefContext branch : ((Link16DSLParser.ParallelStatementContext) child).branchDef()) {
+                branches.add(statements(branch.statement()));
+            }
+            return new ModelIR.Parallel(line, branches);
+        } else if (child instanceof Link16DSLParser.AssignStatementContext) {
+            Link16DSLParser.AssignStatementContext assign = (Link16DSLParser.AssignStatementContext) child;
+            return new ModelIR.Assign(line, access(assign.accessExpression()), expr(assign.arithmeticExpression()));
+        } else if (child instanceof Link16DSLParser.UserInputContext) {
+            return userConfirm((Link16DSLParser.UserInputContext) child, line);
+        } else if (child instanceof Link16DSLParser.TimerStatementContext) {
+            Link16DSLParser.TimerStatementContext timer = (Link16DSLParser.TimerStatementContext) child;
+            Link16DSLParser.TimerActionContext action = timer.timerAction();
+            if (action == null) {
+                return null;
+            }
+            ModelIR.TimerOp op = action.START_TIMER() != null ? ModelIR.TimerOp.START_TIMER
+                    : action.STOP_TIMER() != null ? ModelIR.TimerOp.STOP_TIMER : ModelIR.TimerOp.RESET_TIMER;
+            return new ModelIR.Timer(line, id(timer.identifier()), op, id(action.identifier()), duration(action.duration()));
         }
         return null;
     }
 
-    // 2. 处理 CALL 语句（之前漏掉的部分）
-    @Override
-    public Void visitCallStatement(Link16DSLParser.CallStatementContext ctx) {
-        System.out.println("调用子流程: " + ctx.qualifiedIdentifier().getText());
-        return null;
+    private ModelIR.Step step(Link16DSLParser.StepContext ctx) {
+        ModelIR.StepModifier modifier = ModelIR.StepModifier.NONE;
+        int repeatCount = 0;
+        Link16DSLParser.StepModifierContext m = ctx.stepModifier();
+        if (m != null) {
+            if (m.OPTIONAL() != null) {
+                modifier = ModelIR.StepModifier.OPTIONAL;
+            } else if (m.REPEAT() != null) {
+                modifier = ModelIR.StepModifier.REPEAT;
+                repeatCount = m.NUMBER() != null ? (int) number(m.NUMBER()) : 0;
+            } else {
+                modifier = ModelIR.StepModifier.OVERRIDE;
+            }
+        }
+        ModelIR.Action action = ctx.action() != null ? action(ctx.action()) : null;
+        ModelIR.NaturalLanguage naturalLanguage = ctx.naturalLanguageBlock() != null ? naturalLanguage(ctx.naturalLanguageBlock()) : null;
+        String description = ctx.STRING_LITERAL() != null ? unquote(ctx.STRING_LITERAL()) : null;
+        return new ModelIR.Step(line(ctx), modifier, repeatCount, action, naturalLanguage, description);
     }
 
-    // 3. 更新 visitStatement，确保它能分发 Call 和 If
-    @Override
-    public Void visitStatement(Link16DSLParser.StatementContext ctx) {
-        if (ctx.step() != null) {
-            return visitStep(ctx.step());
-        } else if (ctx.assignStatement() != null) {
-            return visitAssignStatement(ctx.assignStatement());
-        } else if (ctx.ifStatement() != null) {
-            return visitIfStatement(ctx.ifStatement());
-        } else if (ctx.callStatement() != null) {
-            return visitCallStatement(ctx.callStatement());
-        }
-        // ... 其他语句类型 (Wait, Loop 等)
-        return null;
+    private ModelIR.Action action(Link16DSLParser.ActionContext ctx) {
+        List<Link16DSLParser.IdentifierContext> ids = ctx.identifier();
+        String sender = ids.isEmpty() ? null : id(ids.get(0));
+        String target = ids.size() > 1 ? id(ids.get(1)) : null;
+        List<ModelIR.Param> params = ctx.paramList() != null ? params(ctx.paramList()) : null;
+        if (ctx.SENDS() != null) {
+            return new ModelIR.Action(sender, ModelIR.Verb.SENDS, intern(ctx.messageName()), params, target, null, null);
+        } else if (ctx.BROADCASTS() != null) {
+            return new ModelIR.Action(sender, ModelIR.Verb.BROADCASTS, intern(ctx.messageName()), params, null,
+                    expr(ctx.arithmeticExpression()), null);
+        }
+        return new ModelIR.Action(sender, ModelIR.Verb.NOTIFY, null, null, target, null, expr(ctx.arithmeticExpression()));
     }
 
-    // --- 补全消息定义 ---
-    @Override
-    public Void visitMessagesDef(Link16DSLParser.MessagesDefContext ctx) {
-        System.out.println("\n[静态定义] 消息列表 (MESSAGES):");
-        for (Link16DSLParser.MessageDeclarationContext msgCtx : ctx.messageDeclaration()) {
-            System.out.println("  - " + msgCtx.messageName().getText());
+    private ModelIR.NaturalLanguage naturalLanguage(Link16DSLParser.NaturalLanguageBlockContext ctx) {
+        String intent = null;
+        String dataContext = null;
+        String description = null;
+        int keyword = -1;
+        for (ParseTree child : ctx.children) {
+            if (!(child instanceof TerminalNode) || child instanceof ErrorNode) {
+                continue;
+            }
+            TerminalNode node = (TerminalNode) child;
+            int type = node.getSymbol().getType();
+            if (type != Link16DSLLexer.STRING_LITERAL) {
+                keyword = type;
+            } else if (keyword == Link16DSLLexer.INTENT) {
+                intent = unquote(node);
+            } else if (keyword == Link16DSLLexer.DATA_CONTEXT) {
+                dataContext = unquote(node);
+            } else if (keyword == Link16DSLLexer.DESCRIPTION) {
+                description = unquote(node);
+            }
         }
-        return null;
+        List<String> actors = null;
+        if (ctx.identifierList() != null) {
+            actors = new ArrayList<>();
+            for (Link16DSLParser.IdentifierContext actor : ctx.identifierList().identifier()) {
+                actors.add(id(actor));
+            }
+        }
+        return new ModelIR.NaturalLanguage(intent, actors, dataContext, description);
     }
 
-    // --- 补全枚举定义 ---
-    @Override
-    public Void visitDiscreteSet(Link16DSLParser.DiscreteSetContext ctx) {
-        // ctx.identifier() 可能返回列表（如果有 FOR ... DOT ...），我们取第一个作为枚举名
-        // 如果你的语法里 discreteSet : ENUM identifier ...
-        // 那么 ctx.identifier(0) 或者 ctx.identifier() 都能拿到名字
-        String enumName = ctx.identifier(0).getText();
+    private ModelIR.Statement userConfirm(Link16DSLParser.UserInputContext ctx, int line) {
+        List<ModelIR.Statement> confirmed = new ArrayList<>();
+        List<ModelIR.Statement> otherwise = null;
+        for (ParseTree child : ctx.children) {
+            if (child instanceof TerminalNode && ((TerminalNode) child).getSymbol().getType() == Link16DSLLexer.ELSE) {
+                otherwise = new ArrayList<>();
+            } else if (child instanceof Link16DSLParser.StatementContext) {
+                ModelIR.Statement statement = statement((Link16DSLParser.StatementContext) child);
+                if (statement != null) {
+                    (otherwise != null ? otherwise : confirmed).add(statement);
+                }
+            }
+        }
+        return new ModelIR.UserConfirm(line, unquote(ctx.STRING_LITERAL()), confirmed, otherwise);
+    }
 
-        System.out.println("\n[静态定义] 枚举集合: " + enumName);
+    private ModelIR.Duration duration(Link16DSLParser.DurationContext ctx) {
+        if (ctx == null || ctx.NUMBER() == null) {
+            return null;
+        }
+        return new ModelIR.Duration(ctx.NUMBER().getText(), ctx.MILLISECONDS() != null ? TimeUnit.MILLISECONDS : TimeUnit.SECONDS);
+    }
 
-        for (Link16DSLParser.DiscreteValueContext valCtx : ctx.discreteValue()) {
-            // ✅ 修正点：直接调用生成的 identifier() 方法，而不是去 children 里抓
-            String name = valCtx.identifier().getText();
-            String assignment = valCtx.valueAssignment().getText();
-            String desc = valCtx.STRING_LITERAL().getText();
+    private ModelIR.Event event(Link16DSLParser.EventContext ctx) {
+        if (ctx == null) {
+            return null;
+        }
+        if (ctx.STRING_LITERAL() != null) {
+            return new ModelIR.Event(ModelIR.EventKind.TEXT, null, null, null, null, unquote(ctx.STRING_LITERAL()));
+        } else if (ctx.TIMER_EXPIRED() != null) {
+            List<Link16DSLParser.IdentifierContext> ids = ctx.identifier();
+            return new ModelIR.Event(ModelIR.EventKind.TIMER_EXPIRED, null, null, null, null, ids.isEmpty() ? null : id(ids.get(0)));
+        } else if (ctx.TIMEOUT() != null) {
+            return new ModelIR.Event(ModelIR.EventKind.TIMEOUT, null, null, null, null, null);
+        }
+        ModelIR.EventKind kind = ctx.MESSAGE_SENT() != null ? ModelIR.EventKind.MESSAGE_SENT : ModelIR.EventKind.MESSAGE_RECEIVED;
+        List<Link16DSLParser.IdentifierContext> ids = ctx.identifier();
+        String from = ctx.FROM() != null && !ids.isEmpty() ? id(ids.get(0)) : null;
+        String to = ctx.TO() != null && !ids.isEmpty() ? id(ids.get(ids.size() - 1)) : null;
+        return new ModelIR.Event(kind, intern(ctx.messageName()), condition(ctx.conditionExpression()), from, to, null);
+    }
 
-            System.out.println("  |-- " + name + " " + assignment + " (" + desc + ")");
+    // ========================================================================
+    // 条件
+    // ========================================================================
+
+    private ModelIR.Condition condition(Link16DSLParser.ConditionExpressionContext ctx) {
+        if (ctx == null || ctx.orExpr() == null) {
+            return null;
         }
-        return null;
+        Link16DSLParser.OrExprContext or = ctx.orExpr();
+        if (or.getChildCount() == 1 && or.getChild(0) instanceof Link16DSLParser.AndExprContext) {
+            return and((Link16DSLParser.AndExprContext) or.getChild(0));
+        }
+        List<ModelIR.Condition> operands = new ArrayList<>();
+        for (ParseTree child : or.children) {
+            if (child instanceof Link16DSLParser.AndExprContext) {
+                operands.add(and((Link16DSLParser.AndExprContext) child));
+            }
+        }
+        return operands.isEmpty() ? null : new ModelIR.Or(operands);
     }
 
-    // --- 补全全局状态 ---
-    @Override
-    public Void visitStateDeclaration(Link16DSLParser.StateDeclarationContext ctx) {
-        System.out.print("\n[静态定义] 全局状态: " + ctx.identifier().getText());
-        System.out.print(" (类型: " + ctx.dataType().getText() + ")");
-        if (ctx.arithmeticExpression() != null) {
-            System.out.print(" 默认值 = " + ctx.arithmeticExpression().getText());
+    private ModelIR.Condition and(Link16DSLParser.AndExprContext ctx) {
+        if (ctx.getChildCount() == 1 && ctx.getChild(0) instanceof Link16DSLParser.NotExprContext) {
+            return not((Link16DSLParser.NotExprContext) ctx.getChild(0));
         }
-        System.out.println();
-        return null;
+        List<ModelIR.Condition> operands = new ArrayList<>();
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.NotExprContext) {
+                operands.add(not((Link16DSLParser.NotExprContext) child));
+            }
+        }
+        return operands.isEmpty() ? null : new ModelIR.And(operands);
     }
 
-    // --- 补全映射表 ---
-    @Override
-    public Void visitMappingSet(Link16DSLParser.MappingSetContext ctx) {
-        System.out.println("\n[静态定义] 映射表: " + ctx.identifier(0).getText());
-        // 这里可以继续遍历 mapEntry
-        return null;
+    private ModelIR.Condition not(Link16DSLParser.NotExprContext ctx) {
+        if (ctx == null) {
+            return null;
+        }
+        if (ctx.getChildCount() == 0) {
+            return null;
+        }
+        ParseTree first = ctx.getChild(0);
+        if (!(first instanceof Link16DSLParser.PrimaryCondContext)) {
+            return new ModelIR.Not(not(ctx.notExpr()));
+        }
+        Link16DSLParser.PrimaryCondContext primary = (Link16DSLParser.PrimaryCondContext) first;
+        if (primary.getChildCount() == 0) {
+            return null;
+        }
+        if (!(primary.getChild(0) instanceof Link16DSLParser.LogicalAtomContext)) {
+            return new ModelIR.Group(condition(primary.conditionExpression()));
+        }
+        Link16DSLParser.LogicalAtomContext atom = (Link16DSLParser.LogicalAtomContext) primary.getChild(0);
+        if (atom.getChildCount() == 0) {
+            return null;
+        }
+        ParseTree inner = atom.getChild(0);
+        if (inner instanceof Link16DSLParser.ComparisonContext) {
+            return comparison((Link16DSLParser.ComparisonContext) inner);
+        }
+        return new ModelIR.EventCondition(event(atom.event()));
     }
 
-    @Override
-    public Void visitProcedureDef(Link16DSLParser.ProcedureDefContext ctx) {
-        String procName = ctx.identifier().getText();
-        String desc = ctx.STRING_LITERAL().getText().replace("\"", "");
+    private ModelIR.Condition comparison(Link16DSLParser.ComparisonContext ctx) {
+        List<Link16DSLParser.ArithmeticExpressionContext> exprs = ctx.arithmeticExpression();
+        ModelIR.Expr left = exprs.isEmpty() ? null : expr(exprs.get(0));
+        if (ctx.compOp() != null) {
+            return new ModelIR.Compare(left, ctx.compOp().getText(), exprs.size() > 1 ? expr(exprs.get(1)) : null);
+        } else if (ctx.IN() != null) {
+            List<ModelIR.Expr> candidates = new ArrayList<>();
+            for (Link16DSLParser.ValueContext value : ctx.value()) {
+                candidates.add(value(value));
+            }
+            return new ModelIR.InSet(left, candidates);
+        } else if (ctx.HAS_FIELD() != null) {
+            return new ModelIR.HasField(intern(ctx.messageName()), id(ctx.identifier()));
+        } else if (ctx.TIME_SINCE() != null) {
+            return new ModelIR.TimeSince(event(ctx.event()), duration(ctx.duration()));
+        }
+        return new ModelIR.StatusIs(id(ctx.identifier()), ctx.NE() == null, intern(ctx.statusValue()));
+    }
 
-        System.out.println("\n[解析流程] " + procName + " (" + desc + ")");
+    // ========================================================================
+    // 表达式
+    // ========================================================================
 
-        // ✅ 新增：检查并打印参数
-        if (ctx.procedureParams() != null) {
-            System.out.println("    (参数定义: " + ctx.procedureParams().getText() + ")");
+    private ModelIR.Expr expr(Link16DSLParser.ArithmeticExpressionContext ctx) {
+        if (ctx == null) {
+            return null;
         }
-
-        // ✅ 新增：检查并打印触发器
-        // 注意：G4定义中 trigger 是可选的，直接检查 token 是否存在或者 conditionExpression
-        if (ctx.TRIGGER() != null) {
-            // 找到 conditionExpression (它紧跟在 TRIGGER 后面)
-            // 在你的 grammar 中: ( TRIGGER conditionExpression SEMI )?
-            // 由于 ProcedureDef 下只有一个 conditionExpression 用于 Trigger，可以直接获取
-            System.out.println("    [触发条件] " + ctx.conditionExpression().getText());
+        List<Link16DSLParser.TermContext> terms = ctx.term();
+        if (terms.size() == 1) {
+            return term(terms.get(0));
+        }
+        List<ModelIR.Expr> operands = new ArrayList<>(terms.size());
+        StringBuilder operators = new StringBuilder();
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.TermContext) {
+                operands.add(term((Link16DSLParser.TermContext) child));
+            } else if (isToken(child, Link16DSLLexer.PLUS) || isToken(child, Link16DSLLexer.MINUS)) {
+                operators.append(child.getText());
+            }
         }
+        return operands.isEmpty() ? null : new ModelIR.Arithmetic(operands, operators.toString());
+    }
 
-        // 继续遍历 Steps (这会调用 visitSteps, visitStatement 等)
-        // 注意：不要调用 visitChildren(ctx)，因为我们已经手动处理了头部信息
-        // 直接访问 STEPS 块即可，或者只访问 steps 部分
-        if (ctx.STEPS() != null) {
-            for (Link16DSLParser.StatementContext stmt : ctx.statement()) {
-                visit(stmt);
+    private ModelIR.Expr term(Link16DSLParser.TermContext ctx) {
+        List<Link16DSLParser.FactorContext> factors = ctx.factor();
+        if (factors.size() == 1) {
+            return factor(factors.get(0));
+        }
+        List<ModelIR.Expr> operands = new ArrayList<>(factors.size());
+        StringBuilder operators = new StringBuilder();
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.FactorContext) {
+                operands.add(factor((Link16DSLParser.FactorContext) child));
+            } else if (isToken(child, Link16DSLLexer.STAR) || isToken(child, Link16DSLLexer.DIV)) {
+                operators.append(child.getText());
             }
         }
+        return operands.isEmpty() ? null : new ModelIR.Arithmetic(operands, operators.toString());
+    }
 
+    private ModelIR.Expr factor(Link16DSLParser.FactorContext ctx) {
+        if (ctx.getChildCount() == 0) {
+            return null;
+        }
+        ParseTree first = ctx.getChild(0);
+        if (first instanceof Link16DSLParser.LiteralContext) {
+            return literal((Link16DSLParser.LiteralContext) first);
+        } else if (first instanceof Link16DSLParser.AccessExpressionContext) {
+            return access((Link16DSLParser.AccessExpressionContext) first);
+        } else if (first instanceof Link16DSLParser.DataStructLiteralContext) {
+            List<ModelIR.Param> entries = new ArrayList<>();
+            for (Link16DSLParser.StructEntryContext entry : ((Link16DSLParser.DataStructLiteralContext) first).structEntry()) {
+                entries.add(new ModelIR.Param(id(entry.identifier()), expr(entry.arithmeticExpression())));
+            }
+            return new ModelIR.StructLiteral(entries);
+        } else if (ctx.arithmeticExpression() != null) {
+            return new ModelIR.ParenExpr(expr(ctx.arithmeticExpression()));
+        } else if (ctx.J_MSG_ID() != null) {
+            return new ModelIR.MessageId(intern(ctx.J_MSG_ID().getText()));
+        }
         return null;
     }
 
+    private ModelIR.Access access(Link16DSLParser.AccessExpressionContext ctx) {
+        if (ctx == null) {
+            return null;
+        }
+        List<Link16DSLParser.AccessSuffixContext> suffixContexts = ctx.accessSuffix();
+        List<ModelIR.AccessSuffix> suffixes = new ArrayList<>(suffixContexts.size());
+        for (Link16DSLParser.AccessSuffixContext suffix : suffixContexts) {
+            if (suffix.DOT() != null) {
+                suffixes.add(new ModelIR.AccessSuffix(id(suffix.identifier()), null));
+            } else {
+                suffixes.add(new ModelIR.AccessSuffix(null, suffix.paramList() != null ? params(suffix.paramList()) : new ArrayList<>()));
+            }
+        }
+        return new ModelIR.Access(id(ctx.identifier()), suffixes);
+    }
+
+    private List<ModelIR.Param> params(Link16DSLParser.ParamListContext ctx) {
+        List<ModelIR.Param> params = new ArrayList<>();
+        for (Link16DSLParser.ParamContext param : ctx.param()) {
+            params.add(new ModelIR.Param(id(param.identifier()), expr(param.arithmeticExpression())));
+        }
+        return params;
+    }
+
+    private ModelIR.Expr value(Link16DSLParser.ValueContext ctx) {
+        if (ctx == null) {
+            return null;
+        }
+        if (ctx.literal() != null) {
+            return literal(ctx.literal());
+        }
+        return new ModelIR.Access(id(ctx.identifier()), List.of());
+    }
+
+    private ModelIR.Expr literal(Link16DSLParser.LiteralContext ctx) {
+        if (ctx.STRING_LITERAL() != null) {
+            return new ModelIR.Literal(ModelIR.LiteralKind.STRING, unquote(ctx.STRING_LITERAL()));
+        } else if (ctx.NUMBER() != null) {
+            return new ModelIR.Literal(ModelIR.LiteralKind.NUMBER, ctx.NUMBER().getText());
+        } else if (ctx.booleanLiteral() != null) {
+            return new ModelIR.Literal(ModelIR.LiteralKind.BOOLEAN, intern(ctx.booleanLiteral()));
+        }
+        return new ModelIR.Literal(ModelIR.LiteralKind.NULL, "NULL");
+    }
 
     // ========================================================================
-    // 🆕 消息处理规则 (Message Handling Rules) Visitor 实现
+    // 消息规则模型
     // ========================================================================
 
-    // 1. 顶层入口
-    @Override
-    public Void visitTrRulesModel(Link16DSLParser.TrRulesModelContext ctx) {
-        System.out.println("=== 解析消息收发规则模型 ===");
-        return visitChildren(ctx);
+    private ModelIR.MessageRules messageRules(Link16DSLParser.MessageRulesDefContext ctx) {
+        List<ModelIR.RuleGroup> groups = new ArrayList<>();
+        for (Link16DSLParser.RuleBlockContext block : ctx.ruleBlock()) {
+            if (block.transmitRules() != null) {
+                groups.add(new ModelIR.RuleGroup(true, trRules(block.transmitRules().trRuleDef())));
+            } else if (block.receiveRules() != null) {
+                groups.add(new ModelIR.RuleGroup(false, trRules(block.receiveRules().trRuleDef())));
+            }
+        }
+        return new ModelIR.MessageRules(messageName(ctx.msgName()), line(ctx), groups);
     }
 
-    // 2. 单个消息规则定义 (Message J3.2 Rules { ... })
-    @Override
-    public Void visitMessageRulesDef(Link16DSLParser.MessageRulesDefContext ctx) {
-        String msgName = ctx.msgName().getText();
-        System.out.println("\n[规则集] 针对消息: " + msgName);
-        return visitChildren(ctx);
+    private List<ModelIR.TrRule> trRules(List<Link16DSLParser.TrRuleDefContext> contexts) {
+        List<ModelIR.TrRule> rules = new ArrayList<>(contexts.size());
+        for (Link16DSLParser.TrRuleDefContext ctx : contexts) {
+            rules.add(trRule(ctx));
+        }
+        return rules;
     }
 
-    // 3. 发送规则块 (TransmitRules { ... })
-    @Override
-    public Void visitTransmitRules(Link16DSLParser.TransmitRulesContext ctx) {
-        System.out.println("  |-- [发送规则组] (TransmitRules)");
-        for (Link16DSLParser.TrRuleDefContext rule : ctx.trRuleDef()) {
-            visit(rule);
+    /**
+     * 消息名 (J3.2 / "J3.2" / J 3 . 2) 的 token 拼接文本，流式解析时也用它。
+     */
+    String messageName(Link16DSLParser.MsgNameContext ctx) {
+        return ctx == null ? "" : intern(ctx);
+    }
+
+    /**
+     * 单条收发规则。流式解析只为 trRuleDef 构建子树，逐条调用这里。
+     * 名称是 Condition 之前的字符串，动作是 Action 之后的字符串 (没写名称时不会把动作误当成名称)。
+     */
+    ModelIR.TrRule trRule(Link16DSLParser.TrRuleDefContext ctx) {
+        String name = null;
+        String action = null;
+        boolean afterCondition = false;
+        boolean afterAction = false;
+        if (ctx.children != null) {
+            for (ParseTree child : ctx.children) {
+                if (!(child instanceof TerminalNode) || child instanceof ErrorNode) {
+                    continue;
+                }
+                TerminalNode node = (TerminalNode) child;
+                int type = node.getSymbol().getType();
+                if (type == Link16DSLLexer.CONDITION) {
+                    afterCondition = true;
+                } else if (type == Link16DSLLexer.ACTION_KW) {
+                    afterAction = true;
+                } else if (type == Link16DSLLexer.STRING_LITERAL) {
+                    if (afterAction) {
+                        action = action == null ? unquote(node) : action;
+                    } else if (!afterCondition && name == null) {
+                        name = unquote(node);
+                    }
+                }
+            }
         }
-        return null;
+        return new ModelIR.TrRule(name, trCondition(ctx.trConditionExpression()), action, line(ctx));
     }
 
-    // 4. 接收规则块 (ReceiveRules { ... })
-    @Override
-    public Void visitReceiveRules(Link16DSLParser.ReceiveRulesContext ctx) {
-        System.out.println("  |-- [接收规则组] (ReceiveRules)");
-        for (Link16DSLParser.TrRuleDefContext rule : ctx.trRuleDef()) {
-            visit(rule);
+    // 流式解析会对有语法错误的规则也构建模型：错误恢复出的上下文可能一个子节点都没有 (children 为 null)，
+    // 这样的操作数得到 null，不放进 And / Or
+    private ModelIR.Condition trCondition(Link16DSLParser.TrConditionExpressionContext ctx) {
+        if (ctx == null || ctx.children == null) {
+            return null;
+        }
+        if (ctx.getChildCount() == 1 && ctx.getChild(0) instanceof Link16DSLParser.TrAndExprContext) {
+            return trAnd((Link16DSLParser.TrAndExprContext) ctx.getChild(0));
+        }
+        List<ModelIR.Condition> operands = new ArrayList<>();
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.TrAndExprContext) {
+                ModelIR.Condition operand = trAnd((Link16DSLParser.TrAndExprContext) child);
+                if (operand != null) {
+                    operands.add(operand);
+                }
+            }
+        }
+        return operands.isEmpty() ? null : new ModelIR.Or(operands);
+    }
+
+    private ModelIR.Condition trAnd(Link16DSLParser.TrAndExprContext ctx) {
+        if (ctx.children == null) {
+            return null;
+        }
+        if (ctx.getChildCount() == 1 && ctx.getChild(0) instanceof Link16DSLParser.TrNotExprContext) {
+            return trNot((Link16DSLParser.TrNotExprContext) ctx.getChild(0));
+        }
+        List<ModelIR.Condition> operands = new ArrayList<>();
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.TrNotExprContext) {
+                ModelIR.Condition operand = trNot((Link16DSLParser.TrNotExprContext) child);
+                if (operand != null) {
+                    operands.add(operand);
+                }
+            }
+        }
+        return operands.isEmpty() ? null : new ModelIR.And(operands);
+    }
+
+    private ModelIR.Condition trNot(Link16DSLParser.TrNotExprContext ctx) {
+        if (ctx.children == null) {
+            return null;
+        }
+        ModelIR.Condition result = null;
+        int nots = 0;
+        for (ParseTree child : ctx.children) {
+            if (child instanceof Link16DSLParser.TrConditionTermContext) {
+                result = trTerm((Link16DSLParser.TrConditionTermContext) child);
+            } else if (child instanceof Link16DSLParser.TrConditionExpressionContext) {
+                ModelIR.Condition inner = trCondition((Link16DSLParser.TrConditionExpressionContext) child);
+                result = inner == null ? null : new ModelIR.Group(inner);
+            } else if (isToken(child, Link16DSLLexer.NOT)) {
+                nots++;
+            }
+        }
+        if (result == null) {
+            return null;
+        }
+        for (int i = nots; i > 0; i--) {
+            result = new ModelIR.Not(result);
+        }
+        return result;
+    }
+
+    private ModelIR.Condition trTerm(Link16DSLParser.TrConditionTermContext ctx) {
+        if (ctx.getChildCount() == 0) {
+            return null;
+        }
+        ParseTree condition = ctx.getChild(0);
+        if (condition instanceof Link16DSLParser.NaturalLanguageConditionContext) {
+            return new ModelIR.TextCondition(unquote(((Link16DSLParser.NaturalLanguageConditionContext) condition).STRING_LITERAL()));
+        }
+        if (condition instanceof Link16DSLParser.CondPlatformContext) {
+            String attribute = null;
+            String operator = null;
+            ModelIR.Expr value = null;
+            for (ParseTree child : ((Link16DSLParser.CondPlatformContext) condition).children) {
+                if (child instanceof Link16DSLParser.OperatorContext) {
+                    operator = intern((Link16DSLParser.OperatorContext) child);
+                } else if (child instanceof Link16DSLParser.TrValueContext) {
+                    value = trValue((Link16DSLParser.TrValueContext) child);
+                } else if (isToken(child, Link16DSLLexer.ROLE) || isToken(child, Link16DSLLexer.CAPABILITY)
+                        || isToken(child, Link16DSLLexer.STATUS)) {
+                    attribute = intern(child.getText());
+                }
+            }
+            return new ModelIR.PlatformCondition(attribute, operator, value);
+        } else if (condition instanceof Link16DSLParser.CondEventContext) {
+            Link16DSLParser.TrEventBodyContext body = ((Link16DSLParser.CondEventContext) condition).trEventBody();
+            if (body == null) {
+                return null;
+            }
+            if (body.RECEIPT_OF() != null) {
+                return new ModelIR.OnEvent(messageName(body.msgName()), null);
+            }
+            return new ModelIR.OnEvent(null, unquote(body.STRING_LITERAL()));
+        } else if (condition instanceof Link16DSLParser.CondFieldContext) {
+            String message = null;
+            String field = null;
+            String operator = null;
+            ModelIR.Expr value = null;
+            for (ParseTree child : ((Link16DSLParser.CondFieldContext) condition).children) {
+                if (child instanceof Link16DSLParser.MsgNameContext) {
+                    message = messageName((Link16DSLParser.MsgNameContext) child);
+                } else if (child instanceof Link16DSLParser.IdentifierContext) {
+                    field = id((Link16DSLParser.IdentifierContext) child);
+                } else if (child instanceof Link16DSLParser.OperatorContext) {
+                    operator = intern((Link16DSLParser.OperatorContext) child);
+                } else if (child instanceof Link16DSLParser.TrValueContext) {
+                    value = trValue((Link16DSLParser.TrValueContext) child);
+                }
+            }
+            return new ModelIR.FieldCondition(message, field, operator, value);
+        } else if (condition instanceof Link16DSLParser.CondTimingContext) {
+            Link16DSLParser.TimingBodyContext body = ((Link16DSLParser.CondTimingContext) condition).timingBody();
+            if (body == null) {
+                return null;
+            }
+            if (body.PERIODIC() != null) {
+                return new ModelIR.TimingCondition(ModelIR.TimingKind.PERIODIC, unquote(body.STRING_LITERAL()));
+            }
+            return new ModelIR.TimingCondition(body.ON_UPDATE() != null ? ModelIR.TimingKind.ON_UPDATE : ModelIR.TimingKind.ON_DEMAND, null);
         }
         return null;
     }
 
-    // 5. 具体规则定义 (Rule "Name" { Condition: ... Action: ... })
-    @Override
-    public Void visitTrRuleDef(Link16DSLParser.TrRuleDefContext ctx) {
-        // 获取规则名称 (去掉引号)
-        String ruleId = "未命名规则";
-        if (ctx.STRING_LITERAL(0) != null) { // 规则名是第一个 StringLiteral
-            ruleId = ctx.STRING_LITERAL(0).getText().replace("\"", "");
-        } else if (ctx.children.get(1).getText().startsWith("\"")) {
-            // 备用获取方式，防止顺序变化
-            ruleId = ctx.children.get(1).getText().replace("\"", "");
+    private ModelIR.Expr trValue(Link16DSLParser.TrValueContext ctx) {
+        if (ctx == null || ctx.getChildCount() == 0) {
+            return null;
         }
+        ParseTree first = ctx.getChild(0);
+        if (first instanceof Link16DSLParser.ValueListContext) {
+            List<ModelIR.Expr> items = new ArrayList<>();
+            for (Link16DSLParser.TrValueContext item : ((Link16DSLParser.ValueListContext) first).trValue()) {
+                items.add(trValue(item));
+            }
+            return new ModelIR.ListLiteral(items);
+        } else if (isToken(first, Link16DSLLexer.STRING_LITERAL)) {
+            return new ModelIR.Literal(ModelIR.LiteralKind.STRING, unquote((TerminalNode) first));
+        } else if (isToken(first, Link16DSLLexer.NUMBER)) {
+            return new ModelIR.Literal(ModelIR.LiteralKind.NUMBER, first.getText());
+        }
+        return new ModelIR.Literal(ModelIR.LiteralKind.BOOLEAN, isToken(first, Link16DSLLexer.TRUE) ? "TRUE" : "FALSE");
+    }
 
-        System.out.println("      |-- 规则: " + ruleId);
+    // ========================================================================
+    // 辅助方法
+    // ========================================================================
 
-        // 提取条件 (Condition) - 获取对应子树的文本
-        // 注意：这里为了日志简洁，直接打印表达式文本，如果不想要原始文本，可以继续 visitTrConditionExpression
-        String condition = ctx.trConditionExpression().getText();
-        System.out.println("          [条件]: " + condition);
+    private String intern(String text) {
+        String existing = names.putIfAbsent(text, text);
+        return existing != null ? existing : text;
+    }
+
+    private String intern(ParserRuleContext ctx) {
+        return ctx == null ? null : intern(ctx.getText());
+    }
 
-        // 提取动作 (Action) - 它是最后一个 STRING_LITERAL
-        // 根据语法: ACTION_KW COLON STRING_LITERAL RBRACE
-        // 所以 Action 是最后一个 String Token
-        int stringCount = ctx.STRING_LITERAL().size();
-        if (stringCount > 0) {
-            String action = ctx.STRING_LITERAL(stringCount - 1).getText().replace("\"", "");
-            System.out.println("          [动作]: " + action);
+    // identifier 只有一个 token，直接取 token 文本，省掉 getText() 的拼接
+    private String id(Link16DSLParser.IdentifierContext ctx) {
+        if (ctx == null) {
+            return null;
         }
+        return ctx.getChildCount() == 1 ? intern(ctx.getChild(0).getText()) : intern(ctx.getText());
+    }
 
-        return null;
+    // 类型文本只做驻留，结构化的类型定义不在 IR 的范围内
+    private String type(Link16DSLParser.DataTypeContext ctx) {
+        return intern(ctx);
+    }
+
+    private static int line(ParserRuleContext ctx) {
+        return ctx.getStart().getLine();
     }
 
+    private static double number(TerminalNode node) {
+        try {
+            return Double.parseDouble(node.getText());
+        } catch (NumberFormatException e) {
+            // 错误恢复时补出的 <missing NUMBER>
+            return 0;
+        }
+    }
 
-}
\ No newline at end of file
+    private static boolean isToken(ParseTree tree, int type) {
+        return tree instanceof TerminalNode && ((TerminalNode) tree).getSymbol().getType() == type;
+    }
+
+    /**
+     * 去掉字符串字面量首尾的引号，转义序列保持原样。
+     */
+    private static String unquote(TerminalNode node) {
+        if (node == null || node instanceof ErrorNode) {
+            return null;
+        }
+        String text = node.getText();
+        if (text.length() >= 2 && text.charAt(0) == '"' && text.charAt(text.length() - 1) == '"') {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,397 @@
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 文件内并行解析：先按花括号深度预扫描字符流 (跳过注释与字符串字面量)，找出顶层块——
+ * functionModel 下的 PROCEDURE / RULE，或消息规则文件中的 Message ... Rules 块；
+ * 再把连续的块切成若干分片，在线程池中各自通过子规则入口解析，最后把子树按原顺序接回同一棵树。
+ * 功能模型的头部 (FUNCTION_MODEL 名称与 TYPES / ACTORS / MESSAGES / STATES 等声明) 在分片提交之后由调用线程解析。
+ * <p>
+ * 每个分片从它在原文件中的行列号开始词法分析，因此 token 与模型中的行列号和整文件解析一致；
+ * token 的起止下标则相对各自的分片 (同一分片内的下标仍然可以互相比较)。
+ * 块之间夹杂其他内容、任一部分有词法/语法错误、或文件太小不值得拆分时，退回普通的整文件解析，
+ * 因此错误信息与恢复行为和顺序解析完全相同。
+ */
+public final class Link16ParallelParser {
+
+    // 顶层块数或字符数低于阈值时直接整文件解析
+    private static final int MIN_BLOCKS = Integer.getInteger("link16.parallel.minBlocks", 32);
+    private static final int MIN_CHARS = Integer.getInteger("link16.parallel.minChars", 64 * 1024);
+    // 单个分片的最小字符数，避免切得太碎
+    private static final int CHUNK_CHARS = Integer.getInteger("link16.parallel.chunkChars", 16 * 1024);
+    private static final int JOBS = Math.max(1, Integer.getInteger("link16.parallel.jobs", Runtime.getRuntime().availableProcessors()));
+    // 与批量处理的线程池分开：批量任务内部再拆分时，等待分片的线程不会占用分片自己需要的工作线程
+    private static final ForkJoinPool POOL = new ForkJoinPool(JOBS);
+
+    private Link16ParallelParser() {
+    }
+
+    /**
+     * 解析整份文本。lexerListener / parserListener 只在退回整文件解析时收到错误 (并行路径成功即意味着没有错误)。
+     * 只有一个工作线程时拆分没有收益，直接整文件解析。
+     */
+    public static Result parse(String text, String sourceName, DslMode mode, ANTLRErrorListener lexerListener,
+                               ANTLRErrorListener parserListener) {
+        Split split = JOBS > 1 && text.length() >= MIN_CHARS ? split(text, mode) : null;
+        if (split != null && split.blocks.size() >= MIN_BLOCKS) {
+            Result result = parseSplit(text, mode, split);
+            if (result != null) {
+                return result;
+            }
+        }
+        Link16ParserContext.Outcome outcome = Link16ParserContext.current()
+                .parse(CharStreams.fromString(text, sourceName), mode, lexerListener, parserListener);
+        return new Result(outcome, split == null ? 0 : split.blocks.size(), 0);
+    }
+
+    private static Result parseSplit(String text, DslMode mode, Split split) {
+        List<Chunk> chunks = chunk(text, split.blocks);
+        List<CompletableFuture<Link16ParserContext.FragmentOutcome<List<ParserRuleContext>>>> futures = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            futures.add(CompletableFuture.supplyAsync(() -> parseChunk(chunk, mode), POOL));
+        }
+
+        // 分片在后台解析的同时，调用线程解析功能模型的头部
+        Link16ParserContext context = Link16ParserContext.current();
+        ParserRuleContext root;
+        ParseStage stage = ParseStage.SLL;
+        int insertAt;
+        boolean ok = true;
+        if (mode == DslMode.FUNCTION_MODEL) {
+            ErrorCounter counter = new ErrorCounter();
+            Link16ParserContext.Outcome header = context.parse(CharStreams.fromString(headerText(text, split)), mode, counter, counter);
+            root = header.tree;
+            stage = header.stage;
+            insertAt = closingBraceIndex(root);
+            ok = header.syntaxErrorCount == 0 && counter.count == 0 && insertAt >= 0;
+        } else {
+            root = new Link16DSLParser.TrRulesModelContext(null, -1);
+            insertAt = 0;
+        }
+
+        List<ParserRuleContext> blocks = new ArrayList<>(split.blocks.size());
+        for (CompletableFuture<Link16ParserContext.FragmentOutcome<List<ParserRuleContext>>> future : futures) {
+            Link16ParserContext.FragmentOutcome<List<ParserRuleContext>> outcome = future.exceptionally(e -> null).join();
+            if (outcome == null || outcome.value == null || outcome.syntaxErrorCount > 0) {
+                ok = false;
+                continue;
+            }
+            if (outcome.stage == ParseStage.LL) {
+                stage = ParseStage.LL;
+            }
+            blocks.addAll(outcome.value);
+        }
+        if (!ok || blocks.isEmpty()) {
+            return null;
+        }
+
+        // 拼接: 功能模型插在头部的 '}' 之前，消息规则直接作为 trRulesModel 的子节点
+        for (ParserRuleContext block : blocks) {
+            block.setParent(root);
+        }
+        if (root.children == null) {
+            root.children = new ArrayList<>(blocks.size());
+        }
+        root.children.addAll(insertAt, blocks);
+        if (mode == DslMode.MESSAGE_RULES) {
+            root.start = blocks.get(0).start;
+            root.stop = blocks.get(blocks.size() - 1).stop;
+        }
+        Link16ParserContext.Outcome outcome = new Link16ParserContext.Outcome(root, stage, 0, context.parser(), null);
+        return new Result(outcome, split.blocks.size(), chunks.size());
+    }
+
+    // 一个分片内按 LA(1) 连续解析顶层块，必须恰好消费到分片末尾，否则视为失败
+    private static Link16ParserContext.FragmentOutcome<List<ParserRuleContext>> parseChunk(Chunk chunk, DslMode mode) {
+        ErrorCounter counter = new ErrorCounter();
+        Link16ParserContext context = Link16ParserContext.current();
+        Link16ParserContext.FragmentOutcome<List<ParserRuleContext>> outcome = context.parseFragmentTwoStage(
+                CharStreams.fromString(chunk.text), chunk.line, chunk.column, parser -> parseBlocks(parser, mode), counter);
+        context.release();
+        if (counter.count > 0) {
+            return new Link16ParserContext.FragmentOutcome<>(null, outcome.stage, counter.count);
+        }
+        return outcome;
+    }
+
+    private static List<ParserRuleContext> parseBlocks(Link16DSLParser parser, DslMode mode) {
+        List<ParserRuleContext> parsed = new ArrayList<>();
+        TokenStream input = parser.getInputStream();
+        while (true) {
+            int la = input.LA(1);
+            if (mode == DslMode.FUNCTION_MODEL && la == Link16DSLParser.PROCEDURE) {
+                parsed.add(parser.procedureDef());
+            } else if (mode == DslMode.FUNCTION_MODEL && la == Link16DSLParser.RULE) {
+                parsed.add(parser.ruleDef());
+            } else if (mode == DslMode.MESSAGE_RULES && la == Link16DSLParser.MESSAGE_KW) {
+                parsed.add(parser.messageRulesDef());
+            } else {
+                break;
+            }
+        }
+        return input.LA(1) == Token.EOF ? parsed : null;
+    }
+
+    // functionModel 的 '}' 在 children 中的位置；不是以 '}' 结尾 (例如缺少闭合括号) 时返回 -1
+    private static int closingBraceIndex(ParserRuleContext root) {
+        if (!(root instanceof Link16DSLParser.FunctionModelContext) || root.children == null || root.children.isEmpty()) {
+            return -1;
+        }
+        ParseTree last = root.children.get(root.children.size() - 1);
+        if (last instanceof TerminalNode terminal && terminal.getSymbol().getType() == Link16DSLParser.RBRACE) {
+            return root.children.size() - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * 头部文本: 第一个块之前的内容 + 最后一个块之后的内容 (含 functionModel 的 '}')。
+     * 中间用同样多的换行和空格占位，使尾部 token 的行列号与原文件一致。
+     */
+    private static String headerText(String text, Split split) {
+        Block first = split.blocks.get(0);
+        Block last = split.blocks.get(split.blocks.size() - 1);
+        int newlines = 0;
+        int lineStart = first.start;
+        for (int i = first.start; i < last.end; i++) {
+            if (text.charAt(i) == '\n') {
+                newlines++;
+                lineStart = i + 1;
+            }
+        }
+        String padding = "\n".repeat(newlines) + " ".repeat(text.codePointCount(lineStart, last.end));
+        StringBuilder sb = new StringBuilder(first.start + padding.length() + (text.length() - last.end));
+        sb.append(text, 0, first.start);
+        sb.append(padding);
+        sb.append(text, last.end, text.length());
+        return sb.toString();
+    }
+
+    // 把连续的块合成若干分片，分片数约为线程数的 4 倍，便于负载均衡
+    private static List<Chunk> chunk(String text, List<Block> blocks) {
+        long total = blocks.get(blocks.size() - 1).end - blocks.get(0).start;
+        long target = Math.max(CHUNK_CHARS, total / (JOBS * 4L));
+        List<Chunk> chunks = new ArrayList<>();
+        int from = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            Block first = blocks.get(from);
+            Block current = blocks.get(i);
+            if (current.end - first.start >= target || i == blocks.size() - 1) {
+                chunks.add(new Chunk(text.substring(first.start, current.end), first.line, first.column));
+                from = i + 1;
+            }
+        }
+        return chunks;
+    }
+
+    // ==========================================
+    // 预扫描
+    // ==========================================
+
+    /**
+     * 找出全部顶层块。遇到无法安全拆分的结构 (块之间有其他内容、未闭合的注释/字符串、括号不配对) 返回 null。
+     */
+    static Split split(String text, DslMode mode) {
+        boolean functionModel = mode == DslMode.FUNCTION_MODEL;
+        // 顶层块所在的括号深度: 功能模型在 FUNCTION_MODEL { ... } 之内，消息规则文件在最外层
+        int blockDepth = functionModel ? 1 : 0;
+        boolean opened = !functionModel;
+        List<Block> blocks = new ArrayList<>();
+        int depth = 0;
+        int line = 1;
+        int lineStart = 0;
+        int blockStart = -1;
+        int blockLine = 0;
+        int blockColumn = 0;
+        int n = text.length();
+        int i = 0;
+        while (i < n) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line++;
+                lineStart = ++i;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\r' || c == '\u00A0') {
+                i++;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && text.charAt(i + 1) == '/') {
+                while (i < n && text.charAt(i) != '\n' && text.charAt(i) != '\r') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == '/' && i + 1 < n && text.charAt(i + 1) == '*') {
+                int close = text.indexOf("*/", i + 2);
+                if (close < 0) {
+                    return null;
+                }
+                for (int j = i; j < close; j++) {
+                    if (text.charAt(j) == '\n') {
+                        line++;
+                        lineStart = j + 1;
+                    }
+                }
+                i = close + 2;
+                continue;
+            }
+            if (c == '"') {
+                i++;
+                while (i < n && text.charAt(i) != '"') {
+                    if (text.charAt(i) == '\\') {
+                        i++;
+                    }
+                    if (i < n && text.charAt(i) == '\n') {
+                        line++;
+                        lineStart = i + 1;
+                    }
+                    i++;
+                }
+                if (i >= n) {
+                    return null;
+                }
+                i++;
+                continue;
+            }
+
+            if (blockStart >= 0) {
+                // 块内: 只关心括号，回到块所在深度即块结束
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    depth--;
+                    if (depth < blockDepth) {
+                        return null;
+                    }
+                    if (depth == blockDepth) {
+                        blocks.add(new Block(blockStart, i + 1, blockLine, blockColumn));
+                        blockStart = -1;
+                    }
+                }
+                i++;
+                continue;
+            }
+
+            if (opened && depth == blockDepth) {
+                String keyword = blockKeyword(text, i, functionModel);
+                if (keyword != null) {
+                    blockStart = i;
+                    blockLine = line;
+                    blockColumn = text.codePointCount(lineStart, i);
+                    i += keyword.length();
+                    continue;
+                }
+                if (functionModel && c == '}') {
+                    // FUNCTION_MODEL 的闭合括号，之后的内容归入头部解析
+                    return new Split(blocks);
+                }
+                if (!blocks.isEmpty() || !functionModel) {
+                    return null;
+                }
+            }
+
+            if (c == '{') {
+                depth++;
+                opened = true;
+            } else if (c == '}') {
+                depth--;
+                if (depth < 0) {
+                    return null;
+                }
+            }
+            i++;
+        }
+        // 消息规则文件扫描到末尾正常结束；功能模型缺少闭合括号则不拆分
+        return functionModel || blockStart >= 0 ? null : new Split(blocks);
+    }
+
+    private static String blockKeyword(String text, int i, boolean functionModel) {
+        if (functionModel) {
+            if (isWordAt(text, i, "PROCEDURE")) {
+                return "PROCEDURE";
+            }
+            return isWordAt(text, i, "RULE") ? "RULE" : null;
+        }
+        return isWordAt(text, i, "Message") ? "Message" : null;
+    }
+
+    private static boolean isWordAt(String text, int i, String word) {
+        int end = i + word.length();
+        return text.startsWith(word, i)
+                && (i == 0 || !isIdentifierChar(text.charAt(i - 1)))
+                && (end >= text.length() || !isIdentifierChar(text.charAt(end)));
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    // ==========================================
+    // 数据结构
+    // ==========================================
+
+    public static class Result {
+        public final Link16ParserContext.Outcome outcome;
+        // 预扫描找到的顶层块数 (无法拆分时为 0)
+        public final int blockCount;
+        // 并行解析的分片数；为 0 表示退回了整文件解析
+        public final int chunkCount;
+
+        public Result(Link16ParserContext.Outcome outcome, int blockCount, int chunkCount) {
+            this.outcome = outcome;
+            this.blockCount = blockCount;
+            this.chunkCount = chunkCount;
+        }
+    }
+
+    static class Split {
+        final List<Block> blocks;
+
+        Split(List<Block> blocks) {
+            this.blocks = blocks;
+        }
+    }
+
+    // 一个顶层块在原文中的范围 [start, end) 及首字符的行列号 (列按 code point 计，与 ANTLR 一致)
+    static class Block {
+        final int start;
+        final int end;
+        final int line;
+        final int column;
+
+        Block(int start, int end, int line, int column) {
+            this.start = start;
+            this.end = end;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private static class Chunk {
+        final String text;
+        final int line;
+        final int column;
+
+        Chunk(String text, int line, int column) {
+            this.text = text;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private static class ErrorCounter extends BaseErrorListener {
+        private int count;
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+            count++;
+        }
+    }
+}
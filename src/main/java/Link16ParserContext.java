@@ -0,0 +1,243 @@
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.ParseInfo;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * 可复用的解析上下文：每个线程持有一套 Lexer / CommonTokenStream / Parser，
+ * 每次解析通过 setInputStream / setTokenSource / setTokenStream 重置后复用，
+ * 避免重复构建对象。ATN -> DFA 的缓存本身是 ANTLR 生成类里的静态字段，
+ * 所有线程共享，因此 {@link #warmUp(File)} 在任意线程跑一遍语料即可让后续解析直接命中 DFA。
+ */
+public class Link16ParserContext {
+
+    private static final ThreadLocal<Link16ParserContext> CURRENT = ThreadLocal.withInitial(Link16ParserContext::new);
+    private static final AtomicBoolean WARMED_UP = new AtomicBoolean(false);
+
+    private final Link16DSLLexer lexer;
+    private final CommonTokenStream tokens;
+    private final Link16DSLParser parser;
+
+    private Link16ParserContext() {
+        this.lexer = new Link16DSLLexer(CharStreams.fromString(""));
+        this.tokens = new CommonTokenStream(lexer);
+        this.parser = new Link16DSLParser(tokens);
+    }
+
+    public static Link16ParserContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 两阶段解析: 先用 SLL + BailErrorStrategy 快速尝试，
+     * 失败时再回退到全 LL + 默认错误恢复，由 parserListener 收集详细错误。
+     * 词法错误交给 lexerListener；两个监听器都可以为 null。
+     */
+    public Outcome parse(CharStream input, DslMode mode, ANTLRErrorListener lexerListener, ANTLRErrorListener parserListener) {
+        return parse(input, mode, lexerListener, parserListener, false);
+    }
+
+    /**
+     * profile 为 true 时在本次解析期间启用 ANTLR 的 ProfilingATNSimulator，
+     * 逐决策统计结果通过 {@link Outcome#parseInfo} 返回；解析结束后恢复普通模拟器 (DFA 缓存仍然共享)。
+     */
+    public Outcome parse(CharStream input, DslMode mode, ANTLRErrorListener lexerListener, ANTLRErrorListener parserListener,
+                         boolean profile) {
+        lexer.setInputStream(input);
+        lexer.removeErrorListeners();
+        if (lexerListener != null) {
+            lexer.addErrorListener(lexerListener);
+        }
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+
+        ParserRuleContext tree;
+        ParseStage stage;
+        ParseInfo parseInfo = null;
+        parser.setProfile(profile);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            tree = mode.parse(parser);
+            stage = ParseStage.SLL;
+        } catch (ParseCancellationException e) {
+            parser.reset(); // 同时会把 tokens 回退到起点
+            if (parserListener != null) {
+                parser.addErrorListener(parserListener);
+            }
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            tree = mode.parse(parser);
+            stage = ParseStage.LL;
+        } finally {
+            lexer.removeErrorListeners();
+            if (profile) {
+                parseInfo = parser.getParseInfo();
+                parser.setProfile(false);
+            }
+        }
+        int syntaxErrors = parser.getNumberOfSyntaxErrors();
+        parser.removeErrorListeners();
+        return new Outcome(tree, stage, syntaxErrors, parser, parseInfo);
+    }
+
+    /**
+     * 解析文件中的一个片段 (例如若干个 procedureDef / ruleBlock)。
+     * line / column 是片段首字符在原文件中的位置，生成的 token 行列号因此与原文件一致。
+     * 片段很短，直接使用全 LL + 默认错误恢复。
+     */
+    public <T> T parseFragment(CharStream input, int line, int column, Function<Link16DSLParser, T> entry, ANTLRErrorListener listener) {
+        lexer.setInputStream(input);
+        lexer.setLine(line);
+        lexer.setCharPositionInLine(column);
+        lexer.removeErrorListeners();
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+
+        parser.removeErrorListeners();
+        if (listener != null) {
+            lexer.addErrorListener(listener);
+            parser.addErrorListener(listener);
+        }
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        try {
+            return entry.apply(parser);
+        } finally {
+            lexer.removeErrorListeners();
+            parser.removeErrorListeners();
+        }
+    }
+
+    /**
+     * 与 {@link #parseFragment} 相同，但按 {@link #parse} 的两阶段方式解析：先 SLL + BailErrorStrategy，失败再回退到全 LL。
+     * 用于大文件分片并行解析，正常输入几乎都在 SLL 阶段完成。listener 同时接收词法错误和 LL 阶段的语法错误。
+     */
+    public <T> FragmentOutcome<T> parseFragmentTwoStage(CharStream input, int line, int column, Function<Link16DSLParser, T> entry,
+                                                        ANTLRErrorListener listener) {
+        lexer.setInputStream(input);
+        lexer.setLine(line);
+        lexer.setCharPositionInLine(column);
+        lexer.removeErrorListeners();
+        if (listener != null) {
+            lexer.addErrorListener(listener);
+        }
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+
+        T value;
+        ParseStage stage;
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            value = entry.apply(parser);
+            stage = ParseStage.SLL;
+        } catch (ParseCancellationException e) {
+            parser.reset();
+            if (listener != null) {
+                parser.addErrorListener(listener);
+            }
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            value = entry.apply(parser);
+            stage = ParseStage.LL;
+        } finally {
+            lexer.removeErrorListeners();
+            parser.removeErrorListeners();
+        }
+        return new FragmentOutcome<>(value, stage, parser.getNumberOfSyntaxErrors());
+    }
+
+    /**
+     * 上一次 parse / parseFragment 产生的全部 token (含 EOF)。
+     */
+    public List<Token> lastTokens() {
+        tokens.fill();
+        return tokens.getTokens();
+    }
+
+    /**
+     * 预热: 把目录下的 DSL 语料按各自的入口 (functionModel / trRulesModel) 静默解析一遍，
+     * 填充共享的词法/语法 DFA 缓存。整个进程只执行一次，重复调用直接返回。
+     */
+    public static void warmUp(File inputDir) {
+        if (!WARMED_UP.compareAndSet(false, true)) {
+            return;
+        }
+        File[] files = inputDir.listFiles((dir, name) -> name.endsWith(".dsl"));
+        if (files == null) {
+            return;
+        }
+        Link16ParserContext context = current();
+        for (File file : files) {
+            try {
+                context.parse(CharStreams.fromFileName(file.getAbsolutePath()), DslMode.fromFileName(file.getName()), null, null);
+            } catch (IOException | RuntimeException e) {
+                // 预热失败不影响正常解析，忽略即可
+            }
+        }
+        context.release();
+    }
+
+    /**
+     * 释放对上一次输入的引用 (字符流与 token 列表)，上下文本身仍可继续复用。
+     */
+    public void release() {
+        lexer.setInputStream(CharStreams.fromString(""));
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+    }
+
+    /**
+     * 在后台守护线程中预热，适合调用方接下来会先等待其他耗时操作 (例如 LLM 请求) 的场景。
+     */
+    public static void warmUpAsync(File inputDir) {
+        Thread thread = new Thread(() -> warmUp(inputDir), "link16-parser-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 本线程复用的 Parser (规则名等静态信息与任何一次解析无关)。
+     */
+    Link16DSLParser parser() {
+        return parser;
+    }
+
+    public static class Outcome {
+        public final ParserRuleContext tree;
+        public final ParseStage stage;
+        public final int syntaxErrorCount;
+        public final Parser parser;
+        // 仅在 profile 模式下非空
+        public final ParseInfo parseInfo;
+
+        public Outcome(ParserRuleContext tree, ParseStage stage, int syntaxErrorCount, Parser parser, ParseInfo parseInfo) {
+            this.tree = tree;
+            this.stage = stage;
+            this.syntaxErrorCount = syntaxErrorCount;
+            this.parser = parser;
+            this.parseInfo = parseInfo;
+        }
+    }
+
+    public static class FragmentOutcome<T> {
+        public final T value;
+        public final ParseStage stage;
+        public final int syntaxErrorCount;
+
+        public FragmentOutcome(T value, ParseStage stage, int syntaxErrorCount) {
+            this.value = value;
+            this.stage = stage;
+            this.syntaxErrorCount = syntaxErrorCount;
+        }
+    }
+}
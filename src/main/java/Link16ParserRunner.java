@@ -3,10 +3,12 @@ import org.antlr.v4.runtime.tree.*;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
 
 public class Link16ParserRunner {
 
@@ -15,6 +17,10 @@ public class Link16ParserRunner {
     // ==========================================
     private static final String INPUT_DIR_NAME = "dsl";
     private static final String OUTPUT_DIR_NAME = "output";
+    private static final ParseCache CACHE = ParseCache.inOutputDir(OUTPUT_DIR_NAME);
+    private static final GraphvizRenderService RENDERER = GraphvizRenderService.fromSystemProperties();
+    // 内存解析未指定名称时使用的任务名 (也是落盘时的产物文件名)
+    private static final String INLINE_SOURCE_NAME = "内存输入.dsl";
 
     // 🎯 自定义文件选择：
     // 1. 如果列表为空 {}，程序会自动扫描 dsl 文件夹下的所有 .dsl 文件。
@@ -34,6 +40,23 @@ public class Link16ParserRunner {
     public static void main(String[] args) {
         setupDirectories();
 
+        // --watch: 常驻监视 dsl/ 目录，只重新处理发生变化的文件
+        if (Arrays.asList(args).contains("--watch")) {
+            ParseOptions watchOptions = ParseOptions.defaults()
+                    .withCache(!Arrays.asList(args).contains("--no-cache"))
+                    .withGraphView(Arrays.asList(args).contains("--semantic") ? GraphView.SEMANTIC : GraphView.PARSE_TREE)
+                    .withSvgEngine(Arrays.asList(args).contains("--graphviz") ? SvgEngine.GRAPHVIZ : SvgEngine.BUILTIN)
+                    .withParallelBlocks(Arrays.asList(args).contains("--parallel"));
+            try {
+                new Link16WatchMode(new File(INPUT_DIR_NAME).toPath(), watchOptions).run();
+            } catch (IOException e) {
+                System.err.println("❌ 监视模式异常: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
         // 1. 获取要处理的文件列表
         List<File> filesToProcess = getFilesToProcess();
         if (filesToProcess.isEmpty()) {
@@ -43,132 +66,506 @@ public class Link16ParserRunner {
 
         System.out.println("🚀 准备处理 " + filesToProcess.size() + " 个文件...\n");
 
-        // 2. 循环处理
-        for (File dslFile : filesToProcess) {
-            parseFile(dslFile);
+        // --warmup: 先静默解析一遍 dsl/ 语料，填充共享的 DFA 缓存
+        if (Arrays.asList(args).contains("--warmup")) {
+            long warmUpStart = System.nanoTime();
+            Link16ParserContext.warmUp(new File(INPUT_DIR_NAME));
+            System.out.println("🔥 解析器预热完成，耗时 " + (System.nanoTime() - warmUpStart) / 1_000_000 + " ms\n");
+        }
+
+        // --no-cache: 忽略 output/.cache，强制重新解析与渲染
+        // --stream: 消息规则文件改用流式解析，适合几 MB 以上的大文件
+        // --profile: 输出逐决策的解析性能报告 (解析性能.txt / .json)
+        // --semantic: DOT/SVG 画紧凑的语义图 (流程、步骤、调用、规则条件)，而不是原始语法树
+        // --graphviz: SVG 交给 Graphviz 的 dot 进程渲染，默认使用内置渲染器
+        // --parallel: 大文件按顶层块 (PROCEDURE / RULE / Message ... Rules) 拆分，在多个线程中并行解析
+        ParseOptions options = ParseOptions.defaults()
+                .withCache(!Arrays.asList(args).contains("--no-cache"))
+                .withStreamRules(Arrays.asList(args).contains("--stream"))
+                .withProfile(Arrays.asList(args).contains("--profile"))
+                .withGraphView(Arrays.asList(args).contains("--semantic") ? GraphView.SEMANTIC : GraphView.PARSE_TREE)
+                .withSvgEngine(Arrays.asList(args).contains("--graphviz") ? SvgEngine.GRAPHVIZ : SvgEngine.BUILTIN)
+                .withParallelBlocks(Arrays.asList(args).contains("--parallel"));
+
+        // 2. --jobs N (N > 1) 时并发批量处理，否则按原来的方式逐个处理
+        int jobs = parseJobs(args);
+        if (jobs > 1) {
+            try (Link16BatchRunner batchRunner = new Link16BatchRunner(jobs)) {
+                BatchResult batchResult = batchRunner.runAll(filesToProcess, options.withEchoToConsole(false));
+                System.out.println(batchResult.toSummary());
+            }
+        } else {
+            for (File dslFile : filesToProcess) {
+                run(dslFile, options);
+            }
+        }
+
+        // 解析与日志都已完成，最后等后台的 SVG 渲染收尾
+        if (options.svgEngine == SvgEngine.GRAPHVIZ) {
+            RENDERER.awaitIdle();
+            System.out.println(RENDERER.toSummary());
         }
     }
 
+    private static int parseJobs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if ("--jobs".equals(args[i])) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("--jobs 缺少参数值。");
+                }
+                String value = args[i + 1];
+                return "auto".equals(value) ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(value);
+            }
+        }
+        return 1;
+    }
+
     public static ParseResult parseFile(File inputFile) {
         return run(inputFile);
     }
 
     public static ParseResult run(File inputFile) {
+        return run(inputFile, ParseOptions.defaults());
+    }
+
+    /**
+     * 解析单个 DSL 文件。所有输出以事件形式写入本次任务自己的 {@link Diagnostics} (日志文件 + 内存缓冲，
+     * echoToConsole 为 true 时再加上控制台，options.diagnosticsSink 不为空时再加上它)，不碰全局 System.out/System.err，
+     * 因此可以在多个线程中同时调用。解析模式由文件名推断。
+     */
+    public static ParseResult run(File inputFile, ParseOptions options) {
         setupDirectories();
+        DslMode mode = DslMode.fromFileName(inputFile.getName());
+        if (options.streamRules && mode == DslMode.MESSAGE_RULES) {
+            return runStreaming(inputFile, options);
+        }
+        return parse(inputFile.getName(), inputFile.getAbsolutePath(),
+                () -> new String(Files.readAllBytes(inputFile.toPath()), StandardCharsets.UTF_8), mode, null, options);
+    }
 
-        String baseName = getBaseName(inputFile.getName());
-        File logFile = new File(OUTPUT_DIR_NAME, baseName + "解析日志.txt");
+    /**
+     * 直接解析内存中的 DSL 文本，模式由调用方显式指定，不经过 dsl/ 目录。
+     * options.writeArtifacts 为 false 时整个过程不读写磁盘 (不写日志文件、DOT/SVG，也不查缓存)，
+     * 适合 LLM 生成后反复校验的场景；为 true 时产物以「内存输入」为名写到 output/。
+     * 文本已经整体在内存中，因此忽略 options.streamRules。
+     */
+    public static ParseResult parse(CharSequence text, DslMode mode, ParseOptions options) {
+        return parse(INLINE_SOURCE_NAME, text, mode, options);
+    }
+
+    /**
+     * 同 {@link #parse(CharSequence, DslMode, ParseOptions)}，name 用作日志中的任务名和 output/ 下产物的文件名。
+     */
+    public static ParseResult parse(String name, CharSequence text, DslMode mode, ParseOptions options) {
+        if (options.writeArtifacts) {
+            new File(OUTPUT_DIR_NAME).mkdirs();
+        }
+        return parse(name, name, text::toString, mode, null, options);
+    }
+
+    /**
+     * 用调用方已经得到的语法树生成日志、DOT/SVG 并写入缓存，不再重新读取和解析 content。
+     * tree 必须是 content 无语法错误的完整解析结果 (例如监视模式的增量解析树)；model 为 null 时由 tree 构建。
+     * content 只用于缓存键，命中缓存时与 {@link #parse(String, CharSequence, DslMode, ParseOptions)} 相同，直接复用上次的产物。
+     */
+    public static ParseResult publish(String name, CharSequence content, DslMode mode, ParseTree tree, ModelIR.Model model,
+                                      ParseStage stage, ParseOptions options) {
+        if (options.writeArtifacts) {
+            new File(OUTPUT_DIR_NAME).mkdirs();
+        }
+        return parse(name, name, content::toString, mode, new Prepared(tree, model, stage), options);
+    }
+
+    /**
+     * 只查缓存：content 在 output/.cache 中有可用条目时按 {@link #parse(String, CharSequence, DslMode, ParseOptions)}
+     * 的缓存路径复用日志、模型与 DOT/SVG 并返回结果；未命中 (或不落盘、关闭缓存、开启 profile) 时返回 null，不做任何解析。
+     */
+    public static ParseResult reuseCached(String name, CharSequence content, DslMode mode, ParseOptions options) {
+        if (!options.writeArtifacts || !options.useCache || options.profile) {
+            return null;
+        }
+        String key = CACHE.key(name, content.toString().getBytes(StandardCharsets.UTF_8), mode, options.graphView, options.svgEngine);
+        if (CACHE.lookup(key) == null) {
+            return null;
+        }
+        // 两次查找之间条目被淘汰时退化为一次普通解析，结果同样正确
+        return parse(name, content, mode, options);
+    }
+
+    private static ParseResult parse(String name, String sourceName, SourceText source, DslMode mode, Prepared prepared,
+                                     ParseOptions options) {
+        boolean persist = options.writeArtifacts;
+        String baseName = getBaseName(name);
+        File logFile = persist ? new File(OUTPUT_DIR_NAME, baseName + "解析日志.txt") : null;
         File dotFile = new File(OUTPUT_DIR_NAME, baseName + ".dot");
         File svgFile = new File(OUTPUT_DIR_NAME, baseName + ".svg");
+        File profileTextFile = new File(OUTPUT_DIR_NAME, baseName + "解析性能.txt");
+        File profileJsonFile = new File(OUTPUT_DIR_NAME, baseName + "解析性能.json");
 
-        // 保存原始控制台流
-        PrintStream originalOut = System.out;
-        PrintStream originalErr = System.err;
-        ByteArrayOutputStream logBuffer = new ByteArrayOutputStream();
+        Diagnostics.MemorySink memory = new Diagnostics.MemorySink();
         List<String> errors = new ArrayList<>();
         List<SyntaxErrorDetail> syntaxErrors = new ArrayList<>();
         boolean success = false;
         String svgPath = null;
         String dotPath = null;
-
-        // 开启双路输出 (控制台 + 日志文件)
-        try (PrintStream logFileStream = new PrintStream(new FileOutputStream(logFile), true, StandardCharsets.UTF_8);
-             PrintStream logBufferStream = new PrintStream(logBuffer, true, StandardCharsets.UTF_8)) {
-            MultiPrintStream teeOut = new MultiPrintStream(originalOut, logFileStream, logBufferStream);
-            MultiPrintStream teeErr = new MultiPrintStream(originalErr, logFileStream, logBufferStream);
-
-            System.setOut(teeOut);
-            System.setErr(teeErr);
+        ParseStage parseStage = ParseStage.NONE;
+        String visitorOutput = "";
+        ModelIR.Model model = null;
+        ParseTree retainedTree = null;
+        String cacheKey = null;
+        byte[] cacheContent = null;
+        byte[] dotSnapshot = null;
+        boolean fromCache = false;
+        CompletableFuture<GraphvizRenderService.RenderResult> render = null;
+        int headerLength = 0;
+
+        // 本任务专属的诊断输出 (控制台[可选] + 日志文件[落盘时] + 内存缓冲)
+        try (Diagnostics log = openDiagnostics(name, logFile, options, memory)) {
 
             // === 核心处理 ===
-            System.out.println("==================================================");
-            System.out.println("📂 开始解析任务: " + inputFile.getName());
-            System.out.println("🕒 时间: " + new java.util.Date());
-            System.out.println("--------------------------------------------------");
+            log.info("==================================================");
+            log.info("📂 开始解析任务: " + name);
+            log.info("🕒 时间: " + new java.util.Date());
+            log.info("--------------------------------------------------");
+            log.flush();
+            headerLength = memory.length();
 
             try {
-                // ANTLR 解析准备
-                CharStream input = CharStreams.fromFileName(inputFile.getAbsolutePath());
-                Link16DSLLexer lexer = new Link16DSLLexer(input);
-                CommonTokenStream tokens = new CommonTokenStream(lexer);
-                Link16DSLParser parser = new Link16DSLParser(tokens);
-
-                parser.removeErrorListeners();
-                parser.addErrorListener(new BaseErrorListener() {
-                    @Override
-                    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
-                        String error = "❌ [语法错误] 行 " + line + ":" + charPositionInLine + " -> " + msg;
-                        errors.add(error);
-                        SyntaxErrorDetail detail = SyntaxErrorDetail.fromSyntaxError(line, charPositionInLine, offendingSymbol, msg);
-                        syntaxErrors.add(detail);
-                        System.err.println(error);
+                String content = source.read();
+
+                // ♻️ 内容寻址缓存: DSL 内容、语法版本都没变时直接复用上次的结果与 DOT/SVG
+                ParseCache.Entry cached = null;
+                if (persist && options.useCache && !options.profile) {
+                    cacheContent = content.getBytes(StandardCharsets.UTF_8);
+                    cacheKey = CACHE.key(name, cacheContent, mode, options.graphView, options.svgEngine);
+                    cached = CACHE.lookup(cacheKey);
+                }
+
+                if (cached != null) {
+                    log.info("♻️ 命中解析缓存 (" + cacheKey.substring(0, 12) + ")，跳过解析与 SVG 渲染");
+                    log.text(cached.logText);
+                    fromCache = true;
+                    success = cached.success;
+                    errors.addAll(cached.errors);
+                    syntaxErrors.addAll(cached.syntaxErrors);
+                    parseStage = cached.parseStage;
+                    visitorOutput = cached.visitorOutput;
+                    model = ModelBinary.load(cached.modelFile, cacheContent);
+                    if (cached.dotFile != null) {
+                        Files.copy(cached.dotFile, dotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        dotPath = dotFile.getAbsolutePath();
+                    }
+                    if (cached.svgFile != null) {
+                        Files.copy(cached.svgFile, svgFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        svgPath = svgFile.getAbsolutePath();
+                    }
+                } else {
+                    log.info("ℹ️ 识别模式: " + mode.displayName);
+
+                    ParseTree tree;
+                    Parser parser;
+                    int syntaxErrorCount;
+                    if (prepared != null) {
+                        // 调用方已经解析过 (且没有语法错误)，直接进入 Visitor 与产物阶段
+                        tree = prepared.tree;
+                        parser = Link16ParserContext.current().parser();
+                        parseStage = prepared.stage;
+                        syntaxErrorCount = 0;
+                        model = prepared.model;
+                        log.info("ℹ️ 复用已有语法树，跳过解析 (阶段: " + parseStage + ")");
+                    } else {
+                        // ANTLR 解析准备 (复用当前线程的 Lexer/Parser)
+                        BaseErrorListener lexerListener = new BaseErrorListener() {
+                            @Override
+                            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                                log.error("line " + line + ":" + charPositionInLine + " " + msg);
+                            }
+                        };
+                        BaseErrorListener errorListener = new BaseErrorListener() {
+                            @Override
+                            public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                                String error = "❌ [语法错误] 行 " + line + ":" + charPositionInLine + " -> " + msg;
+                                errors.add(error);
+                                SyntaxErrorDetail detail = SyntaxErrorDetail.fromSyntaxError(line, charPositionInLine, offendingSymbol, msg);
+                                syntaxErrors.add(detail);
+                                log.error(error);
+                            }
+                        };
+
+                        // ⚡ 两阶段解析: SLL + BailErrorStrategy 失败时回退到全 LL；--parallel 时大文件按顶层块拆分并行解析
+                        Link16ParserContext.Outcome outcome;
+                        if (options.parallelBlocks && !options.profile) {
+                            Link16ParallelParser.Result parallel = Link16ParallelParser.parse(content, sourceName, mode, lexerListener, errorListener);
+                            outcome = parallel.outcome;
+                            if (parallel.chunkCount > 0) {
+                                log.info("ℹ️ 分块并行解析: " + parallel.blockCount + " 个顶层块, " + parallel.chunkCount + " 个分片");
+                            }
+                        } else {
+                            CharStream input = CharStreams.fromString(content, sourceName);
+                            outcome = Link16ParserContext.current().parse(input, mode, lexerListener, errorListener, options.profile);
+                        }
+                        tree = outcome.tree;
+                        parser = outcome.parser;
+                        syntaxErrorCount = outcome.syntaxErrorCount;
+                        parseStage = outcome.stage;
+                        if (parseStage == ParseStage.LL) {
+                            log.info("ℹ️ SLL 预测未通过，已回退到全 LL 模式重新解析");
+                        }
+                        log.info("ℹ️ 解析阶段: " + parseStage);
+                        log.flush();
+
+                        // 📊 逐决策性能报告 (不落盘时只输出摘要)
+                        if (outcome.parseInfo != null) {
+                            ParseProfileReport report = ParseProfileReport.from(name, parseStage, outcome.parseInfo, parser);
+                            log.text(report.toSummary(5));
+                            if (persist) {
+                                report.write(profileTextFile, profileJsonFile);
+                                log.info("   - 性能报告: " + profileTextFile.getAbsolutePath());
+                            }
+                        }
                     }
-                });
 
-                ParseTree tree;
-                String modeName;
+                    // 结果判定
+                    if (syntaxErrorCount == 0) {
+                        log.info("✅ 语法解析通过 (Zero Syntax Errors)");
+
+                        // 1. 调用 Visitor 提取数据 (调用方已给出模型时直接复用)
+                        if (model == null) {
+                            model = new Link16ModelVisitor().build(tree);
+                        }
+                        String modelText = ModelPrinter.toText(model);
+                        visitorOutput = modelText.trim();
+                        log.info("\n--- [Visitor 数据提取结果] ---");
+                        log.text(modelText);
+                        log.info("------------------------------\n");
+
+                        if (persist) {
+                            // 2. 生成 DOT (原始语法树，或 --semantic 时由模型生成的紧凑语义图)
+                            if (options.graphView == GraphView.SEMANTIC) {
+                                generateSemanticDotFile(model, dotFile, log);
+                            } else {
+                                generateDotFile(tree, parser, dotFile, log);
+                            }
+                            dotPath = dotFile.getAbsolutePath();
+                            // 后台渲染和缓存都用此刻的 DOT 快照：渲染完成前同名 .dot 可能已被下一次解析覆盖
+                            if ((cacheKey != null || options.svgEngine == SvgEngine.GRAPHVIZ) && dotFile.isFile()) {
+                                dotSnapshot = Files.readAllBytes(dotFile.toPath());
+                            }
+
+                            // 3. 生成 SVG: 默认在进程内直接布局；--graphviz 时提交后台渲染，不等待 dot 进程 (结果见 ParseResult.render)
+                            if (options.svgEngine == SvgEngine.GRAPHVIZ) {
+                                if (dotSnapshot != null) {
+                                    render = RENDERER.render(dotSnapshot, svgFile.toPath());
+                                    svgPath = svgFile.getAbsolutePath();
+                                    log.info("🖼️ SVG 已提交后台渲染 (Graphviz)");
+                                }
+                            } else {
+                                GraphvizRenderService.RenderResult rendered = generateSvgFile(tree, parser, model, options.graphView, svgFile);
+                                render = CompletableFuture.completedFuture(rendered);
+                                if (rendered.hasSvg()) {
+                                    svgPath = svgFile.getAbsolutePath();
+                                    log.info("🖼️ SVG 已生成 (内置渲染，耗时 " + rendered.elapsedNanos / 1_000_000 + " ms)");
+                                } else {
+                                    log.error("⚠️ " + rendered.message);
+                                }
+                            }
+
+                            log.info("🎉 所有任务完成！");
+                            log.info("   - 可视化图: " + svgFile.getAbsolutePath());
+                            log.info("   - 详细日志: " + logFile.getAbsolutePath());
+                        } else {
+                            retainedTree = tree;
+                            log.info("🎉 所有任务完成！(仅内存解析，未生成日志文件与 DOT/SVG)");
+                        }
+                        success = true;
+                    } else {
+                        log.error("⛔ 解析失败，跳过后续步骤。");
+                    }
+                }
 
-                // 🧠 智能模式识别逻辑
-                // 只要文件名包含 "规则" 或 "Rules"，就自动切换到消息规则解析模式
-                if (inputFile.getName().contains("规则") || inputFile.getName().contains("Rules")) {
-                    modeName = "消息处理规则 (Message Rules)";
-                    System.out.println("ℹ️ 识别模式: " + modeName);
-                    tree = parser.trRulesModel(); // 调用新入口
-                } else {
-                    modeName = "功能模型 (Function Model)";
-                    System.out.println("ℹ️ 识别模式: " + modeName);
-                    tree = parser.functionModel(); // 调用旧入口
+            } catch (IOException e) {
+                log.error("❌ 文件读取异常: " + e.getMessage());
+                errors.add("文件读取异常: " + e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("❌ 解析异常: " + e.getMessage());
+                log.error(e);
+                errors.add("解析异常: " + e.getMessage());
+            }
+            log.info("");
+            log.flush();
+        } catch (IOException e) {
+            // 日志文件无法打开：错误仍交给其余的 Sink
+            report(name, options, memory, "❌ 无法打开日志文件: " + e.getMessage());
+            errors.add("无法打开日志文件: " + e.getMessage());
+        }
+        String logText = memory.text();
+        int errorCount = errors.size();
+        ParseResult result = new ParseResult(success, errors, errorCount, logText, visitorOutput, model, retainedTree, dotPath, svgPath,
+                logFile == null ? null : logFile.getAbsolutePath(), syntaxErrors, parseStage, fromCache, render);
+        if (cacheKey != null && !fromCache && parseStage != ParseStage.NONE) {
+            String logBody = logText.substring(Math.min(headerLength, logText.length()));
+            byte[] cachedDot = dotSnapshot;
+            byte[] content = cacheContent;
+            if (render == null) {
+                store(name, options, cacheKey, result, logBody, content, cachedDot, null);
+            } else {
+                // SVG 渲染完成后再写入缓存，渲染失败时只缓存 DOT
+                String key = cacheKey;
+                render.thenAccept(rendered -> store(name, options, key, result, logBody, content, cachedDot,
+                        rendered.hasSvg() ? svgFile : null));
+            }
+        }
+        // 内置渲染的失败已经写进任务日志；Graphviz 后台渲染结束时任务日志已关闭，单独报告
+        if (render != null && options.svgEngine == SvgEngine.GRAPHVIZ) {
+            render.thenAccept(rendered -> {
+                if (rendered.status == GraphvizRenderService.RenderResult.Status.FAILED) {
+                    report(name, options, null, "   ⚠️ " + name + ": " + rendered.message);
                 }
+            });
+        }
+        return result;
+    }
 
-                // 结果判定
-                if (parser.getNumberOfSyntaxErrors() == 0) {
-                    System.out.println("✅ 语法解析通过 (Zero Syntax Errors)");
+    /**
+     * 消息规则文件的流式处理：边读边解析，每个 messageRulesDef 解析完成后立即写入日志并释放。
+     * 不构建语法树，因此不生成 DOT/SVG，也不使用解析缓存；
+     * 日志只写入文件 (和可选的控制台)，返回结果中的 logText / visitorOutput 为空、model 为 null，避免在内存中累积整份输出。
+     */
+    public static ParseResult runStreaming(File inputFile, ParseOptions options) {
+        setupDirectories();
 
-                    // 1. 调用 Visitor 提取数据
-                    System.out.println("\n--- [Visitor 数据提取结果] ---");
-                    Link16ModelVisitor visitor = new Link16ModelVisitor();
-                    visitor.visit(tree);
-                    System.out.println("------------------------------\n");
+        String baseName = getBaseName(inputFile.getName());
+        File logFile = options.writeArtifacts ? new File(OUTPUT_DIR_NAME, baseName + "解析日志.txt") : null;
+        List<String> errors = new ArrayList<>();
+        List<SyntaxErrorDetail> syntaxErrors = new ArrayList<>();
+        boolean success = false;
+        ParseStage parseStage = ParseStage.NONE;
 
-                    // 2. 生成 DOT
-                    generateDotFile(tree, parser, dotFile);
-                    dotPath = dotFile.getAbsolutePath();
+        try (Diagnostics log = openDiagnostics(inputFile.getName(), logFile, options, null)) {
 
-                    // 3. 转换为 SVG
-                    convertDotToSvg(dotFile, svgFile);
-                    svgPath = svgFile.getAbsolutePath();
+            log.info("==================================================");
+            log.info("📂 开始解析任务: " + inputFile.getName());
+            log.info("🕒 时间: " + new java.util.Date());
+            log.info("--------------------------------------------------");
+            log.info("ℹ️ 识别模式: " + DslMode.MESSAGE_RULES.displayName + " (流式, 不构建语法树)");
 
-                    System.out.println("🎉 所有任务完成！");
-                    System.out.println("   - 可视化图: " + svgFile.getAbsolutePath());
-                    System.out.println("   - 详细日志: " + logFile.getAbsolutePath());
+            try (Reader reader = Files.newBufferedReader(inputFile.toPath(), StandardCharsets.UTF_8)) {
+                BaseErrorListener errorListener = new BaseErrorListener() {
+                    @Override
+                    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e) {
+                        if (recognizer instanceof Lexer) {
+                            log.error("line " + line + ":" + charPositionInLine + " " + msg);
+                            return;
+                        }
+                        String error = "❌ [语法错误] 行 " + line + ":" + charPositionInLine + " -> " + msg;
+                        errors.add(error);
+                        syntaxErrors.add(SyntaxErrorDetail.fromSyntaxError(line, charPositionInLine, offendingSymbol, msg));
+                        log.error(error);
+                    }
+                };
+
+                log.info("\n--- [Visitor 数据提取结果] ---");
+                log.info("=== 解析消息收发规则模型 ===");
+                Link16StreamingRulesParser.Summary summary = Link16StreamingRulesParser.parse(reader, inputFile.getAbsolutePath(),
+                        messageRules -> log.text(ModelPrinter.toText(messageRules)), errorListener);
+                log.info("------------------------------\n");
+                parseStage = ParseStage.LL;
+                log.info("ℹ️ 流式解析: " + summary.messageCount + " 个规则集, " + summary.ruleCount + " 条规则");
+
+                if (summary.syntaxErrorCount == 0) {
+                    log.info("✅ 语法解析通过 (Zero Syntax Errors)");
+                    log.info("🎉 所有任务完成！(流式模式不生成 DOT/SVG)");
+                    if (logFile != null) {
+                        log.info("   - 详细日志: " + logFile.getAbsolutePath());
+                    }
                     success = true;
                 } else {
-                    System.err.println("⛔ 解析失败，跳过后续步骤。");
+                    log.error("⛔ 解析存在语法错误，已输出可恢复部分的规则。");
                 }
-
             } catch (IOException e) {
-                System.err.println("❌ 文件读取异常: " + e.getMessage());
+                log.error("❌ 文件读取异常: " + e.getMessage());
                 errors.add("文件读取异常: " + e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("❌ 解析异常: " + e.getMessage());
+                log.error(e);
+                errors.add("解析异常: " + e.getMessage());
             }
-            System.out.println();
-        } catch (Exception e) {
-            e.printStackTrace();
-            errors.add("解析异常: " + e.getMessage());
-        } finally {
-            // 恢复控制台
-            System.setOut(originalOut);
-            System.setErr(originalErr);
+            log.info("");
+            log.flush();
+        } catch (IOException e) {
+            report(inputFile.getName(), options, null, "❌ 无法打开日志文件: " + e.getMessage());
+            errors.add("无法打开日志文件: " + e.getMessage());
         }
-        String logText = logBuffer.toString(StandardCharsets.UTF_8);
-        String visitorOutput = extractVisitorOutput(logText);
-        int errorCount = errors.size();
-        return new ParseResult(success, errors, errorCount, logText, visitorOutput, dotPath, svgPath, logFile.getAbsolutePath(), syntaxErrors);
+        return new ParseResult(success, errors, errors.size(), "", "", null, null, null, null,
+                logFile == null ? null : logFile.getAbsolutePath(), syntaxErrors, parseStage, false, null);
     }
 
     // ==========================================
     // 辅助工具方法
     // ==========================================
 
+    // 调用方预先得到的解析结果，见 publish
+    private static class Prepared {
+        final ParseTree tree;
+        final ModelIR.Model model;
+        final ParseStage stage;
+
+        Prepared(ParseTree tree, ModelIR.Model model, ParseStage stage) {
+            this.tree = tree;
+            this.model = model;
+            this.stage = stage;
+        }
+    }
+
+    // 待解析文本的来源 (文件或内存)，在任务日志头写出之后才读取，读取失败记入该任务的日志
+    @FunctionalInterface
+    private interface SourceText {
+        String read() throws IOException;
+    }
+
+    private static Diagnostics openDiagnostics(String name, File logFile, ParseOptions options, Diagnostics.MemorySink memory) throws IOException {
+        return new Diagnostics(name, sinks(logFile == null ? null : new Diagnostics.LogFileSink(logFile), options, memory), shared(options));
+    }
+
+    // 本任务自己创建的 Sink (随任务关闭)；调用方传入的 options.diagnosticsSink 见 shared
+    private static List<Diagnostics.Sink> sinks(Diagnostics.Sink logSink, ParseOptions options, Diagnostics.MemorySink memory) {
+        List<Diagnostics.Sink> sinks = new ArrayList<>();
+        if (options.echoToConsole) {
+            sinks.add(new Diagnostics.ConsoleSink());
+        }
+        if (logSink != null) {
+            sinks.add(logSink);
+        }
+        if (memory != null) {
+            sinks.add(memory);
+        }
+        return sinks;
+    }
+
+    // 调用方的 Sink 被并发任务共享，任务结束时只 flush，不关闭
+    private static List<Diagnostics.Sink> shared(ParseOptions options) {
+        return options.diagnosticsSink == null ? List.of() : List.of(options.diagnosticsSink);
+    }
+
+    /**
+     * 任务日志之外的错误 (日志文件打不开、后台渲染或缓存写入在任务日志关闭后失败)：
+     * 交给同一任务的其余 Sink (控制台[可选]、内存、options.diagnosticsSink)，不写全局 System.err。
+     */
+    private static void report(String name, ParseOptions options, Diagnostics.MemorySink memory, String message) {
+        try (Diagnostics log = new Diagnostics(name, sinks(null, options, memory), shared(options))) {
+            log.error(message);
+        }
+    }
+
+    private static void store(String name, ParseOptions options, String key, ParseResult result, String logBody,
+                              byte[] source, byte[] dot, File svgFile) {
+        try {
+            CACHE.store(key, result, logBody, source, dot, svgFile);
+        } catch (IOException e) {
+            report(name, options, null, "   ⚠️ 写入解析缓存失败: " + e.getMessage());
+        }
+    }
+
     private static void setupDirectories() {
         File outDir = new File(OUTPUT_DIR_NAME);
         if (!outDir.exists()) outDir.mkdirs();
@@ -203,106 +600,40 @@ public class Link16ParserRunner {
         return fileName.endsWith(".dsl") ? fileName.substring(0, fileName.length() - 4) : fileName;
     }
 
-    private static void convertDotToSvg(File dotFile, File svgFile) {
-        try {
-            ProcessBuilder pb = new ProcessBuilder("dot", "-Tsvg", dotFile.getAbsolutePath(), "-o", svgFile.getAbsolutePath());
-            pb.redirectErrorStream(true);
-            Process process = pb.start();
-            boolean finished = process.waitFor(15, TimeUnit.SECONDS);
-
-            if (finished && process.exitValue() == 0) {
-                // Success
-            } else {
-                System.err.println("   ⚠️ Graphviz 转换失败 (请检查 PATH 环境变量)");
-            }
-        } catch (Exception e) {
-            System.err.println("   ⚠️ 无法运行 dot 命令: " + e.getMessage());
-        }
-    }
-
-    private static void generateDotFile(ParseTree tree, Parser parser, File outputFile) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("digraph G {\n");
-        sb.append("  rankdir=TB;\n");
-        sb.append("  splines=polyline;\n");
-        sb.append("  node [shape=box, style=\"filled,rounded\", fillcolor=white, fontname=\"Microsoft YaHei\", fontsize=12, height=0.3];\n");
-        sb.append("  edge [color=\"#444444\", arrowsize=0.8];\n");
-        explore(tree, parser, sb);
-        sb.append("}\n");
-        try (FileWriter writer = new FileWriter(outputFile, StandardCharsets.UTF_8)) {
-            writer.write(sb.toString());
+    static void generateDotFile(ParseTree tree, Parser parser, File outputFile, Diagnostics log) {
+        // 边遍历边写入，不在内存里拼出整张图
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            new DotWriter(writer, parser).write(tree);
         } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    private static void explore(Tree tree, Parser parser, StringBuilder sb) {
-        String nodeText = Trees.getNodeText(tree, parser);
-        if (nodeText != null) {
-            nodeText = nodeText.replace("\"", "\\\"").replace("\n", "\\n");
-            if (nodeText.length() > 30) nodeText = nodeText.substring(0, 27) + "...";
-        }
-        int id = System.identityHashCode(tree);
-        if (tree instanceof TerminalNode) {
-            sb.append(String.format("  node%d [label=\"%s\", fillcolor=\"#e2f0d9\", color=\"#38761d\"];\n", id, nodeText));
-        } else {
-            sb.append(String.format("  node%d [label=\"%s\", fillcolor=\"#dae8fc\", color=\"#6c8ebf\"];\n", id, nodeText));
-        }
-        for (int i = 0; i < tree.getChildCount(); i++) {
-            Tree child = tree.getChild(i);
-            int childId = System.identityHashCode(child);
-            sb.append(String.format("  node%d -> node%d;\n", id, childId));
-            explore(child, parser, sb);
+            log.error(e);
         }
     }
 
-    private static String extractVisitorOutput(String logText) {
-        String startMarker = "--- [Visitor 数据提取结果] ---";
-        String endMarker = "------------------------------";
-        int start = logText.indexOf(startMarker);
-        if (start < 0) {
-            return "";
-        }
-        int contentStart = logText.indexOf("\n", start + startMarker.length());
-        if (contentStart < 0) {
-            return "";
-        }
-        contentStart += 1;
-        int end = logText.indexOf(endMarker, contentStart);
-        if (end < 0) {
-            end = logText.length();
+    static void generateSemanticDotFile(ModelIR.Model model, File outputFile, Diagnostics log) {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            new SemanticDotWriter(writer).write(model);
+        } catch (IOException e) {
+            log.error(e);
         }
-        return logText.substring(contentStart, end).trim();
     }
 
-    // 多路输出流辅助类
-    static class MultiPrintStream extends PrintStream {
-        private final List<PrintStream> streams;
-
-        public MultiPrintStream(PrintStream... streams) {
-            super(OutputStream.nullOutputStream(), true, StandardCharsets.UTF_8);
-            this.streams = Arrays.asList(streams);
-        }
-
-        @Override
-        public void write(byte[] buf, int off, int len) {
-            for (PrintStream stream : streams) {
-                stream.write(buf, off, len);
-            }
-        }
-
-        @Override
-        public void write(int b) {
-            for (PrintStream stream : streams) {
-                stream.write(b);
-            }
-        }
-
-        @Override
-        public void flush() {
-            for (PrintStream stream : streams) {
-                stream.flush();
+    /**
+     * 用内置的 SvgTreeRenderer 直接生成 SVG，不需要安装 Graphviz，也不启动子进程。
+     */
+    static GraphvizRenderService.RenderResult generateSvgFile(ParseTree tree, Parser parser, ModelIR.Model model, GraphView view,
+                                                              File outputFile) {
+        long start = System.nanoTime();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            if (view == GraphView.SEMANTIC) {
+                SemanticDotWriter.writeSvg(model, writer);
+            } else {
+                SvgTreeRenderer.renderParseTree(tree, parser, writer);
             }
+        } catch (IOException | RuntimeException e) {
+            return new GraphvizRenderService.RenderResult(GraphvizRenderService.RenderResult.Status.FAILED, outputFile.toPath(),
+                    System.nanoTime() - start, "内置 SVG 渲染失败: " + e.getMessage());
         }
+        return new GraphvizRenderService.RenderResult(GraphvizRenderService.RenderResult.Status.RENDERED, outputFile.toPath(),
+                System.nanoTime() - start, "");
     }
 }
@@ -0,0 +1,729 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * 消息收发规则 (Message ... Rules) 的编译匹配器：把 trConditionExpression 编译成共享子条件的条件图，
+ * 对输入的事件流找出被触发的规则及其 Action。
+ * <p>
+ * 触发语义: 一条规则被某个事件触发，当且仅当该事件命中规则条件里 (不在 NOT 之下的) 某个事件原子
+ * —— OnEvent(ReceiptOf / SystemCue)、Timing is ...、或针对该消息的 Field(msg.field) —— 并且整个条件为真。
+ * 没有任何事件原子的规则是常驻条件，不会被事件触发。
+ * <ul>
+ *   <li>事件原子只对当前事件为真；Field(msg.field) 读取当前收到的 msg 消息的字段 (不带消息号时读取任意收到的消息)；</li>
+ *   <li>Text(...) 是自然语言条件，由 {@link Context} 给出真假，没有给出时为"未知"，按三值逻辑传播:
+ *       NOT 未知仍是未知，AND 中有假即假、OR 中有真即真，其余情况为未知；Platform.Role 等取自 Context 中的平台属性；</li>
+ *   <li>条件为真的规则确定触发；条件为未知的规则也报告触发，但 {@link Firing#assumed} 为 true，
+ *       调用方据此区分依赖未判定自然语言条件的触发 (带 NOT Text(...) 的规则因此不会被默默关闭)；</li>
+ *   <li>结构相同的子条件 (不论出现在哪条规则里) 编译成同一个节点，每个事件只求值一次；</li>
+ *   <li>每条规则按"必然要命中的事件"建索引: AND 取各子条件中最小的必要集合，OR 取并集；
+ *       一个事件只求值索引命中的规则，其余规则不会被访问。</li>
+ * </ul>
+ * 编译后的匹配器不可变，match 的临时状态按调用分配，可以在多个线程中同时使用。
+ */
+public final class Link16RuleMatcher {
+
+    public enum EventType { RECEIPT, SYSTEM_CUE, PERIODIC, UPDATE, DEMAND }
+
+    // 不带消息号的 Field(...) 对任意收到的消息都可能成立
+    private static final String ANY_MESSAGE = "*";
+
+    // 节点类型 (按求值代价排序: 事件原子最便宜也最容易为假，AND / OR 中排在前面)
+    private static final int RECEIPT = 0;
+    private static final int CUE = 1;
+    private static final int TIMING = 2;
+    private static final int FIELD = 3;
+    private static final int PLATFORM = 4;
+    private static final int TEXT = 5;
+    private static final int NOT = 6;
+    private static final int AND = 7;
+    private static final int OR = 8;
+    private static final int FALSE = 9;
+
+    // 三值逻辑的求值结果
+    private static final byte NO = 0;
+    private static final byte YES = 1;
+    private static final byte UNKNOWN = 2;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<String, Integer> interned = new HashMap<>();
+    private final List<CompiledRule> rules = new ArrayList<>();
+    // 编译完成后的节点与规则数组，匹配时不再经过 List
+    private final Node[] graph;
+    private final CompiledRule[] compiled;
+    private final Map<EventType, Map<String, int[]>> index = new EnumMap<>(EventType.class);
+    private int standingRules;
+    private int sharedReferences;
+
+    public Link16RuleMatcher(List<ModelIR.MessageRules> ruleSets) {
+        Map<EventType, Map<String, List<Integer>>> buckets = new EnumMap<>(EventType.class);
+        for (ModelIR.MessageRules ruleSet : ruleSets) {
+            for (ModelIR.RuleGroup group : ruleSet.groups) {
+                for (ModelIR.TrRule rule : group.rules) {
+                    if (rule.condition == null) {
+                        continue;
+                    }
+                    int id = rules.size();
+                    int root = compile(rule.condition);
+                    rules.add(new CompiledRule(unquote(ruleSet.messageName), group.transmit, rule, root));
+
+                    Set<String> triggers = necessary(root);
+                    if (triggers == null) {
+                        triggers = new LinkedHashSet<>();
+                        positiveAtoms(root, triggers);
+                    }
+                    if (triggers.isEmpty()) {
+                        standingRules++;
+                        continue;
+                    }
+                    for (String trigger : triggers) {
+                        EventType type = EventType.values()[trigger.charAt(0) - '0'];
+                        buckets.computeIfAbsent(type, t -> new HashMap<>())
+                                .computeIfAbsent(trigger.substring(1), k -> new ArrayList<>()).add(id);
+                    }
+                }
+            }
+        }
+        for (Map.Entry<EventType, Map<String, List<Integer>>> entry : buckets.entrySet()) {
+            Map<String, int[]> byKey = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> bucket : entry.getValue().entrySet()) {
+                byKey.put(bucket.getKey(), bucket.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            index.put(entry.getKey(), byKey);
+        }
+        graph = nodes.toArray(new Node[0]);
+        compiled = rules.toArray(new CompiledRule[0]);
+    }
+
+    public static Link16RuleMatcher compile(ModelIR.RulesModel model) {
+        return new Link16RuleMatcher(model.ruleSets);
+    }
+
+    public int ruleCount() {
+        return rules.size();
+    }
+
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * 编译时命中已有节点的次数 (即被多处共享的子条件引用数)。
+     */
+    public int sharedReferences() {
+        return sharedReferences;
+    }
+
+    /**
+     * 没有事件原子、永远不会被事件触发的规则数。
+     */
+    public int standingRuleCount() {
+        return standingRules;
+    }
+
+    /**
+     * 索引中 (事件类型, 键) 下登记的规则序号 (按规则出现顺序)，没有时为空数组；供测试检查触发索引。
+     */
+    int[] indexed(EventType type, String key) {
+        Map<String, int[]> byKey = index.get(type);
+        int[] bucket = byKey == null ? null : byKey.get(key);
+        return bucket == null ? new int[0] : bucket.clone();
+    }
+
+    // ==========================================
+    // 1. 编译: 条件 -> 共享节点
+    // ==========================================
+
+    private int compile(ModelIR.Condition condition) {
+        if (condition instanceof ModelIR.Group group) {
+            return compile(group.inner);
+        }
+        if (condition instanceof ModelIR.Or or) {
+            return compound(OR, or.operands);
+        }
+        if (condition instanceof ModelIR.And and) {
+            return compound(AND, and.operands);
+        }
+        if (condition instanceof ModelIR.Not not) {
+            int operand = compile(not.operand);
+            Node inner = nodes.get(operand);
+            // NOT NOT x == x
+            return inner.kind == NOT ? inner.children[0] : intern(new Node(NOT, new int[]{operand}, null, null, null, null));
+        }
+        if (condition instanceof ModelIR.OnEvent onEvent) {
+            return onEvent.receiptOf != null
+                    ? intern(new Node(RECEIPT, null, unquote(onEvent.receiptOf), null, null, null))
+                    : intern(new Node(CUE, null, onEvent.systemCue, null, null, null));
+        }
+        if (condition instanceof ModelIR.TimingCondition timing) {
+            String key = timing.kind == ModelIR.TimingKind.PERIODIC ? timing.period : "";
+            EventType type = switch (timing.kind) {
+                case PERIODIC -> EventType.PERIODIC;
+                case ON_UPDATE -> EventType.UPDATE;
+                case ON_DEMAND -> EventType.DEMAND;
+            };
+            return intern(new Node(TIMING, null, type.ordinal() + key, null, null, null));
+        }
+        if (condition instanceof ModelIR.FieldCondition field) {
+            String message = field.message == null ? ANY_MESSAGE : unquote(field.message);
+            return intern(new Node(FIELD, null, field.field, message, field.operator, values(field.value)));
+        }
+        if (condition instanceof ModelIR.PlatformCondition platform) {
+            return intern(new Node(PLATFORM, null, platform.attribute, null, platform.operator, values(platform.value)));
+        }
+        if (condition instanceof ModelIR.TextCondition text) {
+            return intern(new Node(TEXT, null, text.text, null, null, null));
+        }
+        // 流式解析中因语法错误残缺的条件
+        return intern(new Node(FALSE, null, null, null, null, null));
+    }
+
+    private int compound(int kind, List<ModelIR.Condition> operands) {
+        // 子节点去重后排序: 便宜的原子在前 (短路)，同时让 a AND b 与 b AND a 共享同一个节点
+        int[] children = operands.stream().mapToInt(this::compile).distinct().toArray();
+        if (children.length == 1) {
+            return children[0];
+        }
+        Integer[] boxed = Arrays.stream(children).boxed().toArray(Integer[]::new);
+        Arrays.sort(boxed, (a, b) -> nodes.get(a).kind != nodes.get(b).kind
+                ? Integer.compare(nodes.get(a).kind, nodes.get(b).kind)
+                : Integer.compare(a, b));
+        return intern(new Node(kind, Arrays.stream(boxed).mapToInt(Integer::intValue).toArray(), null, null, null, null));
+    }
+
+    private int intern(Node node) {
+        String key = node.signature();
+        Integer existing = interned.get(key);
+        if (existing != null) {
+            sharedReferences++;
+            return existing;
+        }
+        int id = nodes.size();
+        nodes.add(node);
+        interned.put(key, id);
+        return id;
+    }
+
+    /**
+     * 条件为真时当前事件必须落在的索引键集合 (类型序号 + 键)；null 表示没有这样的限制。
+     */
+    private Set<String> necessary(int id) {
+        Node node = nodes.get(id);
+        switch (node.kind) {
+            case RECEIPT:
+                return Set.of(EventType.RECEIPT.ordinal() + node.key);
+            case CUE:
+                return Set.of(EventType.SYSTEM_CUE.ordinal() + node.key);
+            case TIMING:
+                return Set.of(node.key);
+            case FIELD:
+                return Set.of(EventType.RECEIPT.ordinal() + node.message);
+            case AND: {
+                Set<String> best = null;
+                for (int child : node.children) {
+                    Set<String> set = necessary(child);
+                    if (set != null && (best == null || set.size() < best.size())) {
+                        best = set;
+                    }
+                }
+                return best;
+            }
+            case OR: {
+                Set<String> union = new LinkedHashSet<>();
+                for (int child : node.children) {
+                    Set<String> set = necessary(child);
+                    if (set == null) {
+                        return null;
+                    }
+                    union.addAll(set);
+                }
+                return union;
+            }
+            default:
+                return null;
+        }
+    }
+
+    // 不在 NOT 之下的事件原子
+    private void positiveAtoms(int id, Set<String> atoms) {
+        Node node = nodes.get(id);
+        if (node.kind == AND || node.kind == OR) {
+            for (int child : node.children) {
+                positiveAtoms(child, atoms);
+            }
+        } else if (node.kind != NOT) {
+            Set<String> set = necessary(id);
+            if (set != null) {
+                atoms.addAll(set);
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. 匹配
+    // ==========================================
+
+    public List<Firing> match(List<Event> events) {
+        return match(events, Context.DEFAULT);
+    }
+
+    /**
+     * 按顺序处理一批事件，返回被触发的规则 (同一事件内按规则在源文件中的顺序)。
+     */
+    public List<Firing> match(List<Event> events, Context context) {
+        List<Firing> firings = new ArrayList<>();
+        // 节点求值结果按事件序号打戳，不必每个事件清空
+        int[] stamps = new int[nodes.size()];
+        byte[] values = new byte[nodes.size()];
+        int[] ruleStamps = new int[rules.size()];
+        int[] candidates = new int[16];
+        for (int e = 0; e < events.size(); e++) {
+            Event event = events.get(e);
+            int stamp = e + 1;
+            Map<String, int[]> byKey = index.get(event.type);
+            if (byKey == null) {
+                continue;
+            }
+            int count = 0;
+            if (event.type == EventType.PERIODIC && event.key == null) {
+                // 没有给出周期描述的周期事件命中所有 Periodic(...)
+                for (int[] bucket : byKey.values()) {
+                    candidates = grow(candidates, count + bucket.length, rules.size());
+                    count = collect(bucket, ruleStamps, stamp, candidates, count);
+                }
+            } else {
+                int[] bucket = byKey.get(event.key == null ? "" : event.key);
+                if (bucket != null) {
+                    candidates = grow(candidates, count + bucket.length, rules.size());
+                    count = collect(bucket, ruleStamps, stamp, candidates, count);
+                }
+                if (event.type == EventType.RECEIPT) {
+                    int[] any = byKey.get(ANY_MESSAGE);
+                    if (any != null) {
+                        candidates = grow(candidates, count + any.length, rules.size());
+                        count = collect(any, ruleStamps, stamp, candidates, count);
+                    }
+                }
+            }
+            Arrays.sort(candidates, 0, count);
+            for (int i = 0; i < count; i++) {
+                CompiledRule rule = compiled[candidates[i]];
+                byte value = evaluate(rule.root, event, context, stamps, values, stamp);
+                if (value != NO) {
+                    firings.add(new Firing(e, rule.message, rule.transmit, rule.rule.name, rule.rule.action, rule.rule.line,
+                            value == UNKNOWN));
+                }
+            }
+        }
+        return firings;
+    }
+
+    private static int collect(int[] bucket, int[] ruleStamps, int stamp, int[] candidates, int count) {
+        for (int rule : bucket) {
+            if (ruleStamps[rule] != stamp) {
+                ruleStamps[rule] = stamp;
+                candidates[count++] = rule;
+            }
+        }
+        return count;
+    }
+
+    private static int[] grow(int[] candidates, int needed, int max) {
+        return needed <= candidates.length ? candidates : Arrays.copyOf(candidates, Math.min(max, Math.max(needed, candidates.length * 2)));
+    }
+
+    private byte evaluate(int id, Event event, Context context, int[] stamps, byte[] values, int stamp) {
+        if (stamps[id] == stamp) {
+            return values[id];
+        }
+        Node node = graph[id];
+        byte value;
+        switch (node.kind) {
+            case RECEIPT -> value = truth(event.type == EventType.RECEIPT && node.key.equals(event.key));
+            case CUE -> value = truth(event.type == EventType.SYSTEM_CUE && node.key.equals(event.key));
+            case TIMING -> value = truth(event.timingKey != null && (node.key.equals(event.timingKey)
+                    || (event.key == null && node.key.charAt(0) == event.timingKey.charAt(0))));
+            case FIELD -> value = truth(event.type == EventType.RECEIPT
+                    && (node.message == ANY_MESSAGE || node.message.equals(event.key))
+                    && node.test(event.fields.get(node.key)));
+            case PLATFORM -> value = truth(node.test(context.platform.get(node.key)));
+            case TEXT -> value = context.text(node.key);
+            case NOT -> {
+                byte operand = evaluate(node.children[0], event, context, stamps, values, stamp);
+                value = operand == UNKNOWN ? UNKNOWN : truth(operand == NO);
+            }
+            case AND -> {
+                // 有一个假即假 (短路)，否则有未知即未知
+                value = YES;
+                for (int child : node.children) {
+                    byte operand = evaluate(child, event, context, stamps, values, stamp);
+                    if (operand == NO) {
+                        value = NO;
+                        break;
+                    }
+                    if (operand == UNKNOWN) {
+                        value = UNKNOWN;
+                    }
+                }
+            }
+            case OR -> {
+                value = NO;
+                for (int child : node.children) {
+                    byte operand = evaluate(child, event, context, stamps, values, stamp);
+                    if (operand == YES) {
+                        value = YES;
+                        break;
+                    }
+                    if (operand == UNKNOWN) {
+                        value = UNKNOWN;
+                    }
+                }
+            }
+            default -> value = NO;
+        }
+        stamps[id] = stamp;
+        values[id] = value;
+        return value;
+    }
+
+    // ==========================================
+    // 辅助工具方法
+    // ==========================================
+
+    private static byte truth(boolean value) {
+        return value ? YES : NO;
+    }
+
+    // trValue: 字符串 / 数字 / 布尔，或 [a, b, ...] 列表
+    private static List<String> values(ModelIR.Expr value) {
+        List<String> values = new ArrayList<>();
+        if (value instanceof ModelIR.ListLiteral list) {
+            for (ModelIR.Expr item : list.items) {
+                values.addAll(values(item));
+            }
+        } else if (value instanceof ModelIR.Literal literal) {
+            values.add(literal.text);
+        } else if (value != null) {
+            values.add(ModelPrinter.text(value));
+        }
+        return values;
+    }
+
+    private static String unquote(String text) {
+        return text != null && text.length() >= 2 && text.startsWith("\"") && text.endsWith("\"")
+                ? text.substring(1, text.length() - 1)
+                : text;
+    }
+
+    private static double number(String text) {
+        if (text == null || text.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = text.charAt(0);
+        if (first != '-' && first != '.' && (first < '0' || first > '9')) {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    // ==========================================
+    // 数据结构
+    // ==========================================
+
+    private static final class Node {
+        final int kind;
+        final int[] children;
+        // RECEIPT / CUE: 消息号 / 提示文本；TIMING: 类型序号 + 周期描述；FIELD: 字段名；PLATFORM: 属性名；TEXT: 文本
+        final String key;
+        final String message;
+        final String operator;
+        final List<String> values;
+        final double[] numbers;
+
+        Node(int kind, int[] children, String key, String message, String operator, List<String> values) {
+            this.kind = kind;
+            this.children = children;
+            this.key = key;
+            this.message = ANY_MESSAGE.equals(message) ? ANY_MESSAGE : message;
+            this.operator = operator;
+            this.values = values;
+            this.numbers = values == null ? null : values.stream().mapToDouble(Link16RuleMatcher::number).toArray();
+        }
+
+        String signature() {
+            return kind + "|" + key + "|" + message + "|" + operator + "|" + values + "|" + Arrays.toString(children);
+        }
+
+        // 两边都是数字时按数值比较，否则按文本比较；IN 匹配列表中任意一项，HAS 为文本包含
+        boolean test(String actual) {
+            if (actual == null || values.isEmpty()) {
+                return false;
+            }
+            double number = number(actual);
+            switch (operator) {
+                case "IN":
+                    for (int i = 0; i < values.size(); i++) {
+                        if (same(actual, number, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                case "HAS":
+                    return actual.contains(values.get(0));
+                case "==":
+                    return same(actual, number, 0);
+                case "!=":
+                    return !same(actual, number, 0);
+                default:
+                    int compare = !Double.isNaN(number) && !Double.isNaN(numbers[0])
+                            ? Double.compare(number, numbers[0])
+                            : actual.compareTo(values.get(0));
+                    return switch (operator) {
+                        case ">" -> compare > 0;
+                        case "<" -> compare < 0;
+                        case ">=" -> compare >= 0;
+                        case "<=" -> compare <= 0;
+                        default -> false;
+                    };
+            }
+        }
+
+        private boolean same(String actual, double number, int i) {
+            return !Double.isNaN(number) && !Double.isNaN(numbers[i]) ? number == numbers[i] : actual.equalsIgnoreCase(values.get(i));
+        }
+    }
+
+    private static final class CompiledRule {
+        final String message;
+        final boolean transmit;
+        final ModelIR.TrRule rule;
+        final int root;
+
+        CompiledRule(String message, boolean transmit, ModelIR.TrRule rule, int root) {
+            this.message = message;
+            this.transmit = transmit;
+            this.rule = rule;
+            this.root = root;
+        }
+    }
+
+    /**
+     * 输入事件。RECEIPT 的 key 为消息号 (例如 J7.1)，fields 为收到消息的字段值；SYSTEM_CUE 的 key 为提示文本；
+     * PERIODIC 的 key 为周期描述 (为 null 时命中所有周期条件)；UPDATE / DEMAND 没有 key。
+     */
+    public static class Event {
+        public final EventType type;
+        public final String key;
+        public final Map<String, String> fields;
+        // 与 TIMING 节点的 key 同一编码: 类型序号 + 周期描述；非定时事件为 null
+        final String timingKey;
+
+        public Event(EventType type, String key, Map<String, String> fields) {
+            this.type = type;
+            this.key = key;
+            this.fields = fields == null ? Map.of() : fields;
+            this.timingKey = switch (type) {
+                case PERIODIC -> EventType.PERIODIC.ordinal() + (key == null ? "" : key);
+                case UPDATE, DEMAND -> String.valueOf(type.ordinal());
+                default -> null;
+            };
+        }
+
+        public static Event receipt(String message, Map<String, String> fields) {
+            return new Event(EventType.RECEIPT, message, fields);
+        }
+
+        public static Event cue(String text) {
+            return new Event(EventType.SYSTEM_CUE, text, null);
+        }
+
+        public static Event periodic(String period) {
+            return new Event(EventType.PERIODIC, period, null);
+        }
+
+        public static Event update() {
+            return new Event(EventType.UPDATE, null, null);
+        }
+
+        public static Event demand() {
+            return new Event(EventType.DEMAND, null, null);
+        }
+    }
+
+    /**
+     * 事件之外的环境: 平台属性 (Role / Capability / STATUS) 与自然语言条件的真假。
+     * 没有列出的 Text(...) 取 assumeText；assumeText 为 null 时这些条件是"未知" (默认)。
+     */
+    public static class Context {
+        public static final Context DEFAULT = new Context(Map.of(), Map.of(), null);
+
+        public final Map<String, String> platform;
+        public final Map<String, Boolean> texts;
+        public final Boolean assumeText;
+
+        public Context(Map<String, String> platform, Map<String, Boolean> texts, Boolean assumeText) {
+            this.platform = platform;
+            this.texts = texts;
+            this.assumeText = assumeText;
+        }
+
+        byte text(String text) {
+            Boolean value = texts.get(text);
+            if (value == null) {
+                value = assumeText;
+            }
+            return value == null ? UNKNOWN : truth(value);
+        }
+    }
+
+    public static class Firing {
+        // 在输入批次中的序号
+        public final int event;
+        public final String message;
+        public final boolean transmit;
+        public final String rule;
+        public final String action;
+        public final int line;
+        // 条件的结果取决于 Context 中没有给出真假的 Text(...)，是"可能触发"
+        public final boolean assumed;
+
+        public Firing(int event, String message, boolean transmit, String rule, String action, int line, boolean assumed) {
+            this.event = event;
+            this.message = message;
+            this.transmit = transmit;
+            this.rule = rule;
+            this.action = action;
+            this.line = line;
+            this.assumed = assumed;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + event + " " + message + (transmit ? " Transmit" : " Receive") + " " + rule + " -> " + action
+                    + (assumed ? " (取决于未判定的 Text)" : "");
+        }
+    }
+
+    // ==========================================
+    // 命令行: 编译规则文件并用随机事件压测
+    // ==========================================
+
+    /**
+     * 用法: java Link16RuleMatcher 规则文件.dsl|目录... [--events N] [--batch N] [--seed N] [--show N]
+     * <p>
+     * 事件从规则集自身引用的消息号、系统提示与周期条件中随机抽取 (字段值取 0-7)，用于测量匹配吞吐。
+     */
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        int eventCount = 100_000;
+        int batch = 1_000;
+        long seed = 42;
+        int show = 10;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                File file = new File(arg);
+                File[] children = file.isDirectory() ? file.listFiles((d, name) -> DslMode.fromFileName(name) == DslMode.MESSAGE_RULES) : null;
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " 缺少参数值。");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--events" -> eventCount = Integer.parseInt(value);
+                case "--batch" -> batch = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--show" -> show = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("用法: Link16RuleMatcher 规则文件.dsl|目录... [--events N] [--batch N] [--seed N] [--show N]");
+        }
+
+        // 规则文件可能很大，用流式解析逐个取出规则集
+        List<ModelIR.MessageRules> ruleSets = new ArrayList<>();
+        for (File file : files) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                Link16StreamingRulesParser.parse(reader, file.getName(), ruleSets::add, null);
+            }
+        }
+        long start = System.nanoTime();
+        Link16RuleMatcher matcher = new Link16RuleMatcher(ruleSets);
+        System.out.printf("⚙️ 编译 %d 个规则集, %d 条规则 -> %d 个条件节点 (共享引用 %d 次, 常驻规则 %d 条), 耗时 %d ms%n",
+                ruleSets.size(), matcher.ruleCount(), matcher.nodeCount(), matcher.sharedReferences(),
+                matcher.standingRuleCount(), (System.nanoTime() - start) / 1_000_000);
+
+        List<Event> events = matcher.sampleEvents(eventCount, new SplittableRandom(seed));
+        long fired = 0;
+        long assumed = 0;
+        List<Firing> first = null;
+        start = System.nanoTime();
+        for (int from = 0; from < events.size(); from += batch) {
+            List<Firing> firings = matcher.match(events.subList(from, Math.min(events.size(), from + batch)));
+            fired += firings.size();
+            for (Firing firing : firings) {
+                if (firing.assumed) {
+                    assumed++;
+                }
+            }
+            if (first == null) {
+                first = firings;
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("⚡ %d 个事件, 触发 %d 次 (其中取决于未判定 Text 条件 %d 次), 耗时 %d ms, %.0f 事件/秒%n",
+                events.size(), fired, assumed, nanos / 1_000_000, events.size() * 1e9 / Math.max(1, nanos));
+        for (int i = 0; first != null && i < Math.min(show, first.size()); i++) {
+            System.out.println("   " + first.get(i));
+        }
+    }
+
+    // 从条件图中的事件原子随机生成事件
+    private List<Event> sampleEvents(int count, SplittableRandom random) {
+        List<Node> atoms = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.kind == RECEIPT || node.kind == CUE || node.kind == TIMING) {
+                atoms.add(node);
+            }
+        }
+        List<Event> events = new ArrayList<>(count);
+        if (atoms.isEmpty()) {
+            return events;
+        }
+        for (int i = 0; i < count; i++) {
+            Node atom = atoms.get(random.nextInt(atoms.size()));
+            if (atom.kind == RECEIPT) {
+                events.add(Event.receipt(atom.key, Map.of("Action", String.valueOf(random.nextInt(8)))));
+            } else if (atom.kind == CUE) {
+                events.add(Event.cue(atom.key));
+            } else {
+                EventType type = EventType.values()[atom.key.charAt(0) - '0'];
+                events.add(new Event(type, type == EventType.PERIODIC ? atom.key.substring(1) : null, null));
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,1164 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+/**
+ * 功能模型的离散事件仿真：在虚拟时间上执行 PROCEDURE，统计消息流量与延迟，用于离线压测模型的消息交互。
+ * <p>
+ * 执行模型:
+ * <ul>
+ *   <li>调度器是按 (虚拟时间, 序号) 排序的二叉堆，同一时刻的事件按提交顺序处理，同一 seed 的结果完全可复现；</li>
+ *   <li>可以同时仿真多个模型文件，跨文件的 CALL (Model.Procedure) 按过程名解析；</li>
+ *   <li>没有消息/定时器触发条件、也没有被 CALL 过的过程是入口，仿真开始时启动 (--instances 份，错开起始时隙)；
+ *       TRIGGER 中含 MESSAGE_RECEIVED / MESSAGE_SENT / TIMER_EXPIRED 的过程在事件到达时为接收方新建实例
+ *       (激活耗时 link16.sim.activationMicros)，同一参与者上可以同时有任意多个实例；</li>
+ *   <li>触发过程的消息如果没有任何过程会发送 (来自模型之外，例如远端单元的 J3.2)，由 FROM 指定的参与者
+ *       每 link16.sim.externalMillis 注入一次 (--instances 份)，作为外部激励；</li>
+ *   <li>SENDS / BROADCASTS 按 TDMA 时隙发送: 每个参与者轮流占用一个时隙 (link16.sim.slotMicros)，
+ *       排队等待时隙的时间加上传播时延即为消息延迟；BROADCASTS 发给除发送者外的所有参与者。
+ *       每个参与者最多排队 link16.sim.maxQueued 个发送，排满后新的发送丢弃并计入"溢出"，不再唤醒 MESSAGE_SENT，
+ *       因此延迟上限约为 maxQueued 个 TDMA 帧；</li>
+ *   <li>WAIT 在消息/定时器子句上挂起，FOR 超时后走 ON TIMEOUT 子句 (没有时继续执行 WAIT 之后的语句，
+ *       若等待的是消息且过程有 EXCEPTION 块，则转入异常处理)；PARALLEL 为每个 BRANCH 派生子实例并等待全部结束；</li>
+ *   <li>CALL 按名字进入本模型中的过程，实参按形参名绑定，SENDS 的消息号与收发方据此解析 (例如通用的发送子流程)；</li>
+ *   <li>DSL 中的数据条件无法求值: IF / USER_CONFIRM 用 seed 随机选分支，WHILE 每次迭代以 link16.sim.loopPercent
+ *       的概率继续，并让出 link16.sim.stepMicros 的虚拟时间，没有 WAIT 的循环也不会停住时钟；</li>
+ *   <li>link16.sim.lossPercent 按比例丢弃投递，link16.sim.faultPerMille 按语句注入故障以触发 EXCEPTION 处理。</li>
+ * </ul>
+ */
+public final class Link16Simulator {
+
+    // 一个 TDMA 时隙 (12 秒 1536 个时隙)，单位均为微秒
+    private static final long SLOT_MICROS = Integer.getInteger("link16.sim.slotMicros", 7812);
+    // 每个参与者最多排队等待的发送数 (即自己的时隙数)，排满后新的 SENDS / BROADCASTS 直接丢弃并计入溢出，
+    // 否则触发链的发送速率超过时隙容量时队列会无限增长，延迟失去意义
+    private static final int MAX_QUEUED = Integer.getInteger("link16.sim.maxQueued", 16);
+    private static final long PROPAGATION_MICROS = Integer.getInteger("link16.sim.propagationMicros", 1000);
+    private static final long STEP_MICROS = Integer.getInteger("link16.sim.stepMicros", 100);
+    // 被消息/定时器触发的过程从收到事件到开始执行的耗时；为 0 时互相触发的过程会在同一时刻无限展开
+    private static final long ACTIVATION_MICROS = Integer.getInteger("link16.sim.activationMicros", 1000);
+    private static final long EXTERNAL_MICROS = Integer.getInteger("link16.sim.externalMillis", 12_000) * 1000L;
+    private static final int LOOP_PERCENT = Integer.getInteger("link16.sim.loopPercent", 90);
+    private static final int LOSS_PERCENT = Integer.getInteger("link16.sim.lossPercent", 0);
+    private static final int FAULT_PER_MILLE = Integer.getInteger("link16.sim.faultPerMille", 0);
+    // 同时存活的实例上限，超出后新的触发只计数不启动，防止广播-触发链无限放大
+    private static final int MAX_INSTANCES = Integer.getInteger("link16.sim.maxInstances", 100_000);
+    private static final int MAX_DEPTH = 256;
+
+    // 事件类型
+    private static final int RESUME = 0;
+    private static final int DELIVER = 1;
+    private static final int TIMER = 2;
+    private static final int TIMEOUT = 3;
+    private static final int INJECT = 4;
+
+    private final SplittableRandom random;
+
+    private final Map<String, ModelIR.Procedure> procedures = new HashMap<>();
+    private final List<ModelIR.Procedure> roots = new ArrayList<>();
+    private final List<External> externals = new ArrayList<>();
+    // 消息号 / 定时器名 -> 由它触发的过程
+    private final Map<String, List<Trigger>> receiveTriggers = new HashMap<>();
+    private final Map<String, List<Trigger>> sendTriggers = new HashMap<>();
+    private final Map<String, List<Trigger>> timerTriggers = new HashMap<>();
+    // 消息号 / 定时器名 -> 挂起在 WAIT 上的实例
+    private final Map<String, List<Waiter>> receiveWaiters = new HashMap<>();
+    private final Map<String, List<Waiter>> sendWaiters = new HashMap<>();
+    private final Map<String, List<Waiter>> timerWaiters = new HashMap<>();
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final List<Node> declared = new ArrayList<>();
+    private final Map<String, TimerState> timers = new HashMap<>();
+    private final Map<String, MessageStats> messages = new TreeMap<>();
+    private final EventQueue queue = new EventQueue();
+
+    private long now;
+    private int live;
+    private final Report report;
+
+    public Link16Simulator(ModelIR.FunctionModel model, long seed) {
+        this(List.of(model), seed);
+    }
+
+    public Link16Simulator(List<ModelIR.FunctionModel> models, long seed) {
+        this.random = new SplittableRandom(seed);
+        List<String> names = new ArrayList<>();
+        Set<String> called = new HashSet<>();
+        Set<String> sent = new HashSet<>();
+        for (ModelIR.FunctionModel model : models) {
+            names.add(model.name);
+            for (ModelIR.Actor actor : each(model.actors)) {
+                if (!nodes.containsKey(actor.name)) {
+                    Node node = new Node(actor.name, declared.size());
+                    declared.add(node);
+                    nodes.put(actor.name, node);
+                }
+            }
+            for (ModelIR.Procedure procedure : each(model.procedures)) {
+                procedures.putIfAbsent(procedure.name, procedure);
+                procedures.put(model.name + "." + procedure.name, procedure);
+                scan(procedure.steps, called, sent);
+                for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                    scan(handler.body, called, sent);
+                }
+            }
+        }
+        this.report = new Report(String.join(", ", names), seed);
+        for (ModelIR.FunctionModel model : models) {
+            for (ModelIR.Procedure procedure : each(model.procedures)) {
+                if (!registerTrigger(procedure, procedure.trigger) && !called.contains(procedure.name)) {
+                    roots.add(procedure);
+                }
+            }
+        }
+        // 没有过程会发送、却能触发过程的消息来自模型之外
+        Set<String> seen = new HashSet<>();
+        for (List<Trigger> triggers : receiveTriggers.values()) {
+            for (Trigger trigger : triggers) {
+                String message = messageKey(trigger.event.message);
+                if (!sent.contains(message) && seen.add(message + "\u0000" + trigger.event.from + "\u0000" + trigger.event.to)) {
+                    externals.add(new External(message, trigger.event.from, trigger.event.to));
+                }
+            }
+        }
+    }
+
+    // ==========================================
+    // 1. 主循环
+    // ==========================================
+
+    /**
+     * 仿真到虚拟时间 untilMicros 或处理完 maxEvents 个事件为止。instancesPerRoot 为每个入口过程启动的实例数。
+     */
+    public Report run(long untilMicros, int instancesPerRoot, long maxEvents) {
+        long frame = Math.max(1, declared.size()) * SLOT_MICROS;
+        for (int i = 0; i < instancesPerRoot; i++) {
+            for (ModelIR.Procedure root : roots) {
+                start(root, null, null, random.nextLong(frame));
+            }
+            for (External external : externals) {
+                schedule(random.nextLong(frame), Event.inject(external));
+            }
+        }
+        report.roots = roots.size();
+        report.externals = externals.size();
+        long startNanos = System.nanoTime();
+        long events = 0;
+        while (!queue.isEmpty() && events < maxEvents && queue.peekTime() <= untilMicros) {
+            now = queue.peekTime();
+            Event event = queue.pop();
+            events++;
+            switch (event.type) {
+                case RESUME -> {
+                    if (event.instance.token == event.token) {
+                        run(event.instance);
+                    }
+                }
+                case DELIVER -> deliver(event.delivery);
+                case TIMER -> expire(event.timer, event.generation);
+                case TIMEOUT -> timeout(event.instance, event.token);
+                case INJECT -> inject(event.external);
+                default -> throw new IllegalStateException("未知事件类型: " + event.type);
+            }
+        }
+        report.events = events;
+        report.pendingEvents = queue.size();
+        report.virtualMicros = now;
+        report.wallNanos = System.nanoTime() - startNanos;
+        report.blocked = live;
+        report.messages.putAll(messages);
+        return report;
+    }
+
+    private void schedule(long time, Event event) {
+        queue.push(time, event);
+    }
+
+    private void start(ModelIR.Procedure procedure, String owner, Instance parent, long delay) {
+        if (live >= MAX_INSTANCES) {
+            report.droppedStarts++;
+            return;
+        }
+        Instance instance = new Instance(procedure, owner, parent);
+        instance.frames.add(new Frame(procedure.steps, new HashMap<>(), procedure, false));
+        live++;
+        report.started++;
+        schedule(now + delay, Event.resume(instance, instance.token));
+    }
+
+    private void finish(Instance instance, boolean terminated) {
+        instance.frames.clear();
+        instance.token++;
+        live--;
+        if (terminated) {
+            report.terminated++;
+        } else {
+            report.completed++;
+        }
+        Instance parent = instance.parent;
+        if (parent != null && --parent.pendingChildren == 0) {
+            schedule(now, Event.resume(parent, parent.token));
+        }
+    }
+
+    // ==========================================
+    // 2. 解释执行语句
+    // ==========================================
+
+    private void run(Instance instance) {
+        List<Frame> frames = instance.frames;
+        while (true) {
+            if (frames.isEmpty()) {
+                finish(instance, false);
+                return;
+            }
+            Frame frame = frames.get(frames.size() - 1);
+            if (frame.pc >= frame.body.size()) {
+                if (frame.loop && chance(LOOP_PERCENT)) {
+                    // 每次迭代让出一点虚拟时间
+                    frame.pc = 0;
+                    schedule(now + STEP_MICROS, Event.resume(instance, instance.token));
+                    return;
+                }
+                frames.remove(frames.size() - 1);
+                continue;
+            }
+            ModelIR.Statement statement = frame.body.get(frame.pc++);
+            report.statements++;
+            if (FAULT_PER_MILLE > 0 && random.nextInt(1000) < FAULT_PER_MILLE) {
+                report.faults++;
+                if (raise(instance, false)) {
+                    continue;
+                }
+            }
+            if (!execute(instance, frame, statement)) {
+                return;
+            }
+        }
+    }
+
+    // 返回 false 表示实例挂起或已结束
+    private boolean execute(Instance instance, Frame frame, ModelIR.Statement statement) {
+        if (statement instanceof ModelIR.Step step) {
+            if (step.action != null) {
+                if (step.action.verb == ModelIR.Verb.NOTIFY) {
+                    report.notifies++;
+                } else {
+                    send(instance, frame.bindings, step.action);
+                }
+            }
+        } else if (statement instanceof ModelIR.Call call) {
+            call(instance, frame, call);
+        } else if (statement instanceof ModelIR.Assign assign) {
+            // 变量只记录能解析成名字/字面量的值，供后续 SENDS 的收发方与消息号使用
+            if (assign.target != null && assign.target.suffixes.isEmpty()) {
+                String value = resolve(assign.value, frame.bindings);
+                if (value != null) {
+                    frame.bindings.put(assign.target.root, value);
+                }
+            }
+        } else if (statement instanceof ModelIR.If ifStatement) {
+            int options = ifStatement.branches.size() + 1;
+            int choice = random.nextInt(options);
+            List<ModelIR.Statement> body = choice < ifStatement.branches.size()
+                    ? ifStatement.branches.get(choice).body
+                    : ifStatement.elseBody;
+            push(instance, body, frame.bindings, false);
+        } else if (statement instanceof ModelIR.While loop) {
+            if (chance(LOOP_PERCENT)) {
+                push(instance, loop.body, frame.bindings, true);
+            }
+        } else if (statement instanceof ModelIR.Wait wait) {
+            return await(instance, frame, wait);
+        } else if (statement instanceof ModelIR.Parallel parallel) {
+            if (!parallel.branches.isEmpty()) {
+                fork(instance, frame, parallel);
+                return false;
+            }
+        } else if (statement instanceof ModelIR.UserConfirm confirm) {
+            push(instance, random.nextBoolean() ? confirm.confirmed : confirm.otherwise, frame.bindings, false);
+        } else if (statement instanceof ModelIR.Timer timer) {
+            timer(instance, frame.bindings, timer);
+        } else if (statement instanceof ModelIR.Terminate) {
+            finish(instance, true);
+            return false;
+        } else if (statement instanceof ModelIR.Continue) {
+            skipToLoopEnd(instance);
+        }
+        return true;
+    }
+
+    private void push(Instance instance, List<ModelIR.Statement> body, Map<String, String> bindings, boolean loop) {
+        if (body != null && !body.isEmpty() && instance.frames.size() < MAX_DEPTH) {
+            instance.frames.add(new Frame(body, bindings, null, loop));
+        }
+    }
+
+    private void call(Instance instance, Frame frame, ModelIR.Call call) {
+        String target = call.target;
+        ModelIR.Procedure procedure = procedures.get(target);
+        if (procedure == null) {
+            procedure = procedures.get(target.substring(target.lastIndexOf('.') + 1));
+        }
+        if (procedure == null || instance.frames.size() >= MAX_DEPTH) {
+            report.unresolvedCalls++;
+            return;
+        }
+        Map<String, String> bindings = new HashMap<>();
+        for (ModelIR.Param param : each(call.params)) {
+            String value = resolve(param.value, frame.bindings);
+            if (param.name != null && value != null) {
+                bindings.put(param.name, value);
+            }
+        }
+        instance.frames.add(new Frame(procedure.steps, bindings, procedure, false));
+    }
+
+    // CONTINUE: 弹出到最近的循环 (不越过过程边界)，直接进入下一次迭代的判断
+    private void skipToLoopEnd(Instance instance) {
+        List<Frame> frames = instance.frames;
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            Frame frame = frames.get(i);
+            if (frame.loop) {
+                frames.subList(i + 1, frames.size()).clear();
+                frame.pc = frame.body.size();
+                return;
+            }
+            if (frame.procedure != null) {
+                return;
+            }
+        }
+    }
+
+    private void fork(Instance instance, Frame frame, ModelIR.Parallel parallel) {
+        instance.token++;
+        for (List<ModelIR.Statement> branch : parallel.branches) {
+            if (live >= MAX_INSTANCES) {
+                report.droppedStarts++;
+                continue;
+            }
+            Instance child = new Instance(instance.procedure, instance.owner, instance);
+            child.frames.add(new Frame(branch, frame.bindings, null, false));
+            instance.pendingChildren++;
+            live++;
+            report.started++;
+            schedule(now, Event.resume(child, child.token));
+        }
+        if (instance.pendingChildren == 0) {
+            schedule(now, Event.resume(instance, instance.token));
+        }
+    }
+
+    // ==========================================
+    // 3. WAIT / 定时器 / 异常
+    // ==========================================
+
+    private boolean await(Instance instance, Frame frame, ModelIR.Wait wait) {
+        int token = ++instance.token;
+        instance.timeoutClause = null;
+        instance.awaitsMessage = false;
+        boolean wakeable = wait.timeout != null;
+        for (ModelIR.Branch clause : wait.clauses) {
+            List<ModelIR.Event> events = new ArrayList<>();
+            collectEvents(clause.condition, events);
+            for (ModelIR.Event event : events) {
+                switch (event.kind) {
+                    case MESSAGE_RECEIVED, MESSAGE_SENT -> {
+                        Map<String, List<Waiter>> waiters = event.kind == ModelIR.EventKind.MESSAGE_RECEIVED ? receiveWaiters : sendWaiters;
+                        waiters.computeIfAbsent(messageKey(bound(event.message, frame.bindings)), k -> new ArrayList<>())
+                                .add(new Waiter(instance, token, clause, bound(event.from, frame.bindings), bound(event.to, frame.bindings)));
+                        instance.awaitsMessage = true;
+                        wakeable = true;
+                    }
+                    case TIMER_EXPIRED -> {
+                        timerWaiters.computeIfAbsent(event.text, k -> new ArrayList<>())
+                                .add(new Waiter(instance, token, clause, null, null));
+                        wakeable = true;
+                    }
+                    case TIMEOUT -> instance.timeoutClause = clause;
+                    default -> {
+                        // 文本事件由外部驱动，仿真中不会发生
+                    }
+                }
+            }
+        }
+        if (wait.timeout != null) {
+            schedule(now + micros(wait.timeout), Event.timeout(instance, token));
+        }
+        if (!wakeable) {
+            report.stuckWaits++;
+        }
+        return false;
+    }
+
+    private void timeout(Instance instance, int token) {
+        if (instance.token != token) {
+            return;
+        }
+        instance.token++;
+        report.timeouts++;
+        ModelIR.Branch clause = instance.timeoutClause;
+        if (clause != null) {
+            push(instance, clause.body, top(instance).bindings, false);
+        } else if (instance.awaitsMessage) {
+            raise(instance, true);
+        }
+        run(instance);
+    }
+
+    private void wake(Waiter waiter) {
+        Instance instance = waiter.instance;
+        instance.token++;
+        push(instance, waiter.clause.body, top(instance).bindings, false);
+        schedule(now, Event.resume(instance, instance.token));
+    }
+
+    /**
+     * 转入最近一个带 EXCEPTION 块的过程的处理子句 (超时优先选 ON TIMEOUT)，处理完即从该过程返回。
+     */
+    private boolean raise(Instance instance, boolean timeout) {
+        List<Frame> frames = instance.frames;
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            Frame frame = frames.get(i);
+            if (frame.procedure == null || frame.handler || frame.procedure.exceptionHandlers == null
+                    || frame.procedure.exceptionHandlers.isEmpty()) {
+                continue;
+            }
+            ModelIR.Branch handler = frame.procedure.exceptionHandlers.get(0);
+            if (timeout) {
+                for (ModelIR.Branch candidate : frame.procedure.exceptionHandlers) {
+                    if (hasEvent(candidate.condition, ModelIR.EventKind.TIMEOUT)) {
+                        handler = candidate;
+                        break;
+                    }
+                }
+            }
+            frames.subList(i, frames.size()).clear();
+            Frame replacement = new Frame(handler.body, frame.bindings, frame.procedure, false);
+            replacement.handler = true;
+            frames.add(replacement);
+            report.exceptions++;
+            return true;
+        }
+        return false;
+    }
+
+    private void timer(Instance instance, Map<String, String> bindings, ModelIR.Timer timer) {
+        String owner = bound(timer.actor, bindings);
+        String key = owner + "\u0000" + timer.timer;
+        TimerState state = timers.computeIfAbsent(key, k -> new TimerState(owner, timer.timer));
+        state.generation++;
+        if (timer.op == ModelIR.TimerOp.START_TIMER && timer.duration != null) {
+            state.durationMicros = micros(timer.duration);
+        }
+        if (timer.op != ModelIR.TimerOp.STOP_TIMER && state.durationMicros >= 0) {
+            schedule(now + state.durationMicros, Event.timer(state, state.generation));
+        }
+    }
+
+    private void expire(TimerState timer, long generation) {
+        if (timer.generation != generation) {
+            return;
+        }
+        report.timersExpired++;
+        wakeAll(timerWaiters.get(timer.name), null, null);
+        fire(timerTriggers.get(timer.name), timer.owner, null, null);
+    }
+
+    // ==========================================
+    // 4. 消息收发
+    // ==========================================
+
+    private void send(Instance instance, Map<String, String> bindings, ModelIR.Action action) {
+        String message = messageKey(bound(action.message, bindings));
+        String sender = action.sender == null ? instance.owner : bound(action.sender, bindings);
+        String target = bound(action.target, bindings);
+        MessageStats stats = messages.computeIfAbsent(message, MessageStats::new);
+        stats.sent++;
+
+        boolean broadcast = action.verb == ModelIR.Verb.BROADCASTS || target == null || "NULL".equals(target);
+        if (!transmit(stats, message, sender, broadcast ? null : target)) {
+            return; // 发送队列已满，消息没有发出，也就不算 MESSAGE_SENT
+        }
+
+        wakeMatching(sendWaiters, message, sender, target);
+        fireMatching(sendTriggers, message, sender, target, sender);
+    }
+
+    // 发送方在自己的下一个空闲时隙发出，广播也只占一个时隙；receiver 为 null 时发给除发送方外的所有参与者。
+    // 发送方已经排了 MAX_QUEUED 个时隙时丢弃本次发送，返回 false
+    private boolean transmit(MessageStats stats, String message, String sender, String receiver) {
+        Node from = node(sender);
+        long frame = Math.max(1, declared.size()) * SLOT_MICROS;
+        // 排队的发送依次占用之后每一帧中自己的时隙：最后一个已预订时隙的起点在 now 之后第 k 帧内时，队列长度为 k + 1
+        if (from.busyUntil - SLOT_MICROS - now >= (MAX_QUEUED - 1) * frame) {
+            stats.overflow++;
+            report.overflow++;
+            return false;
+        }
+        long slot = nextSlot(from);
+        from.busyUntil = slot + SLOT_MICROS;
+        long arrival = slot + SLOT_MICROS + PROPAGATION_MICROS;
+        if (receiver != null) {
+            deliverAt(stats, message, sender, receiver, arrival);
+            return true;
+        }
+        for (Node node : declared) {
+            if (node != from) {
+                deliverAt(stats, message, sender, node.name, arrival);
+            }
+        }
+        return true;
+    }
+
+    private void inject(External external) {
+        report.injected++;
+        MessageStats stats = messages.computeIfAbsent(external.message, MessageStats::new);
+        stats.sent++;
+        transmit(stats, external.message, external.from == null ? "外部" : external.from, external.to);
+        schedule(now + EXTERNAL_MICROS, Event.inject(external));
+    }
+
+    private void deliverAt(MessageStats stats, String message, String sender, String receiver, long arrival) {
+        if (LOSS_PERCENT > 0 && random.nextInt(100) < LOSS_PERCENT) {
+            stats.lost++;
+            return;
+        }
+        schedule(arrival, Event.deliver(new Delivery(stats, message, sender, receiver, now)));
+    }
+
+    private void deliver(Delivery delivery) {
+        MessageStats stats = delivery.stats;
+        long latency = now - delivery.sentAt;
+        stats.delivered++;
+        stats.latencyTotalMicros += latency;
+        stats.latencyMinMicros = Math.min(stats.latencyMinMicros, latency);
+        stats.latencyMaxMicros = Math.max(stats.latencyMaxMicros, latency);
+        wakeMatching(receiveWaiters, delivery.message, delivery.sender, delivery.receiver);
+        fireMatching(receiveTriggers, delivery.message, delivery.sender, delivery.receiver, delivery.receiver);
+    }
+
+    // 具体消息号同时匹配同组的通配写法 (J2.2 -> J2.X)
+    private void wakeMatching(Map<String, List<Waiter>> waiters, String message, String from, String to) {
+        wakeAll(waiters.get(message), from, to);
+        String group = groupKey(message);
+        if (group != null) {
+            wakeAll(waiters.get(group), from, to);
+        }
+    }
+
+    private void fireMatching(Map<String, List<Trigger>> triggers, String message, String from, String to, String owner) {
+        fire(triggers.get(message), owner, from, to);
+        String group = groupKey(message);
+        if (group != null) {
+            fire(triggers.get(group), owner, from, to);
+        }
+    }
+
+    // 遍历时顺带清掉已失效的等待者 (实例已被其他子句唤醒或已超时)
+    private void wakeAll(List<Waiter> waiters, String from, String to) {
+        if (waiters == null) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < waiters.size(); i++) {
+            Waiter waiter = waiters.get(i);
+            if (waiter.instance.token != waiter.token) {
+                continue;
+            }
+            if (matches(waiter.from, from) && matches(waiter.to, to)
+                    && (waiter.instance.owner == null || to == null || waiter.instance.owner.equals(to))) {
+                wake(waiter);
+                continue;
+            }
+            waiters.set(kept++, waiter);
+        }
+        waiters.subList(kept, waiters.size()).clear();
+    }
+
+    private void fire(List<Trigger> triggers, String owner, String from, String to) {
+        if (triggers == null) {
+            return;
+        }
+        for (Trigger trigger : triggers) {
+            if (matches(trigger.event.from, from) && matches(trigger.event.to, to)) {
+                report.triggered++;
+                start(trigger.procedure, owner, null, ACTIVATION_MICROS);
+            }
+        }
+    }
+
+    private static boolean matches(String expected, String actual) {
+        return expected == null || actual == null || expected.equals(actual);
+    }
+
+    private Node node(String name) {
+        if (name == null) {
+            name = "?";
+        }
+        Node node = nodes.get(name);
+        if (node == null) {
+            // 模型里没有声明的发送方 (例如解析不到的变量) 也占用时隙，按编号轮到已声明参与者的位置
+            node = new Node(name, nodes.size());
+            nodes.put(name, node);
+        }
+        return node;
+    }
+
+    // 参与者 i 占用 slot % N == i 的时隙
+    private long nextSlot(Node node) {
+        long frame = Math.max(1, declared.size());
+        long earliest = Math.max(now, node.busyUntil);
+        long slot = (earliest + SLOT_MICROS - 1) / SLOT_MICROS;
+        slot += Math.floorMod(node.slot - slot, frame);
+        return slot * SLOT_MICROS;
+    }
+
+    // ==========================================
+    // 辅助工具方法
+    // ==========================================
+
+    private boolean registerTrigger(ModelIR.Procedure procedure, ModelIR.Condition trigger) {
+        List<ModelIR.Event> events = new ArrayList<>();
+        collectEvents(trigger, events);
+        boolean registered = false;
+        for (ModelIR.Event event : events) {
+            Map<String, List<Trigger>> table;
+            String key;
+            switch (event.kind) {
+                case MESSAGE_RECEIVED -> {
+                    table = receiveTriggers;
+                    key = messageKey(event.message);
+                }
+                case MESSAGE_SENT -> {
+                    table = sendTriggers;
+                    key = messageKey(event.message);
+                }
+                case TIMER_EXPIRED -> {
+                    table = timerTriggers;
+                    key = event.text;
+                }
+                default -> {
+                    continue;
+                }
+            }
+            table.computeIfAbsent(key, k -> new ArrayList<>()).add(new Trigger(procedure, event));
+            registered = true;
+        }
+        return registered;
+    }
+
+    private static void collectEvents(ModelIR.Condition condition, List<ModelIR.Event> events) {
+        if (condition instanceof ModelIR.Or or) {
+            for (ModelIR.Condition operand : or.operands) {
+                collectEvents(operand, events);
+            }
+        } else if (condition instanceof ModelIR.And and) {
+            for (ModelIR.Condition operand : and.operands) {
+                collectEvents(operand, events);
+            }
+        } else if (condition instanceof ModelIR.Group group) {
+            collectEvents(group.inner, events);
+        } else if (condition instanceof ModelIR.EventCondition eventCondition) {
+            events.add(eventCondition.event);
+        }
+    }
+
+    private static boolean hasEvent(ModelIR.Condition condition, ModelIR.EventKind kind) {
+        List<ModelIR.Event> events = new ArrayList<>();
+        collectEvents(condition, events);
+        for (ModelIR.Event event : events) {
+            if (event.kind == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 收集被 CALL 的过程名，以及 SENDS 与实参/赋值中静态可见的消息号
+    private static void scan(List<ModelIR.Statement> statements, Set<String> called, Set<String> sent) {
+        for (ModelIR.Statement statement : each(statements)) {
+            if (statement instanceof ModelIR.Step step && step.action != null) {
+                sent.add(messageKey(step.action.message));
+            } else if (statement instanceof ModelIR.Call call) {
+                called.add(call.target.substring(call.target.lastIndexOf('.') + 1));
+                for (ModelIR.Param param : each(call.params)) {
+                    String value = resolve(param.value, Map.of());
+                    if (value != null) {
+                        sent.add(messageKey(value));
+                    }
+                }
+            } else if (statement instanceof ModelIR.Assign assign) {
+                String value = resolve(assign.value, Map.of());
+                if (value != null) {
+                    sent.add(messageKey(value));
+                }
+            }
+            for (List<ModelIR.Statement> body : bodies(statement)) {
+                scan(body, called, sent);
+            }
+        }
+    }
+
+    private static List<List<ModelIR.Statement>> bodies(ModelIR.Statement statement) {
+        List<List<ModelIR.Statement>> bodies = new ArrayList<>();
+        if (statement instanceof ModelIR.If ifStatement) {
+            for (ModelIR.Branch branch : ifStatement.branches) {
+                bodies.add(branch.body);
+            }
+            bodies.add(ifStatement.elseBody);
+        } else if (statement instanceof ModelIR.While loop) {
+            bodies.add(loop.body);
+        } else if (statement instanceof ModelIR.Wait wait) {
+            for (ModelIR.Branch clause : wait.clauses) {
+                bodies.add(clause.body);
+            }
+        } else if (statement instanceof ModelIR.Parallel parallel) {
+            bodies.addAll(parallel.branches);
+        } else if (statement instanceof ModelIR.UserConfirm confirm) {
+            bodies.add(confirm.confirmed);
+            bodies.add(confirm.otherwise);
+        }
+        return bodies;
+    }
+
+    private static String bound(String name, Map<String, String> bindings) {
+        return name == null ? null : bindings.getOrDefault(name, name);
+    }
+
+    // 实参/赋值只解析名字、字面量与消息号，其余表达式没有确定的值
+    private static String resolve(ModelIR.Expr expr, Map<String, String> bindings) {
+        if (expr instanceof ModelIR.Literal literal) {
+            return literal.kind == ModelIR.LiteralKind.NULL ? null : literal.text;
+        }
+        if (expr instanceof ModelIR.Access access && access.suffixes.isEmpty()) {
+            return bound(access.root, bindings);
+        }
+        if (expr instanceof ModelIR.MessageId id) {
+            return id.id;
+        }
+        return null;
+    }
+
+    private static String messageKey(String name) {
+        if (name == null) {
+            return "?";
+        }
+        return name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"") ? name.substring(1, name.length() - 1) : name;
+    }
+
+    private static String groupKey(String message) {
+        int dot = message.lastIndexOf('.');
+        if (dot < 0 || message.endsWith(".X")) {
+            return null;
+        }
+        return message.substring(0, dot) + ".X";
+    }
+
+    private static long micros(ModelIR.Duration duration) {
+        return (long) (duration.toMillis() * 1000);
+    }
+
+    private boolean chance(int percent) {
+        return random.nextInt(100) < percent;
+    }
+
+    private static Frame top(Instance instance) {
+        return instance.frames.get(instance.frames.size() - 1);
+    }
+
+    private static <T> List<T> each(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    // ==========================================
+    // 运行时结构
+    // ==========================================
+
+    private static final class Trigger {
+        final ModelIR.Procedure procedure;
+        final ModelIR.Event event;
+
+        Trigger(ModelIR.Procedure procedure, ModelIR.Event event) {
+            this.procedure = procedure;
+            this.event = event;
+        }
+    }
+
+    private static final class Node {
+        final String name;
+        final int slot;
+        long busyUntil;
+
+        Node(String name, int slot) {
+            this.name = name;
+            this.slot = slot;
+        }
+    }
+
+    private static final class Instance {
+        final ModelIR.Procedure procedure;
+        // 实例所在的参与者 (被消息触发时为接收方)；入口实例为 null
+        final String owner;
+        final Instance parent;
+        final List<Frame> frames = new ArrayList<>();
+        // 每次挂起/唤醒加一，过期的超时事件与等待者据此丢弃
+        int token;
+        int pendingChildren;
+        ModelIR.Branch timeoutClause;
+        boolean awaitsMessage;
+
+        Instance(ModelIR.Procedure procedure, String owner, Instance parent) {
+            this.procedure = procedure;
+            this.owner = owner;
+            this.parent = parent;
+        }
+    }
+
+    // 一个正在执行的语句块；过程入口的块 procedure 非空，嵌套块共享同一份变量绑定
+    private static final class Frame {
+        final List<ModelIR.Statement> body;
+        final Map<String, String> bindings;
+        final ModelIR.Procedure procedure;
+        final boolean loop;
+        boolean handler;
+        int pc;
+
+        Frame(List<ModelIR.Statement> body, Map<String, String> bindings, ModelIR.Procedure procedure, boolean loop) {
+            this.body = body == null ? List.of() : body;
+            this.bindings = bindings;
+            this.procedure = procedure;
+            this.loop = loop;
+        }
+    }
+
+    private static final class Waiter {
+        final Instance instance;
+        final int token;
+        final ModelIR.Branch clause;
+        final String from;
+        final String to;
+
+        Waiter(Instance instance, int token, ModelIR.Branch clause, String from, String to) {
+            this.instance = instance;
+            this.token = token;
+            this.clause = clause;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class TimerState {
+        final String owner;
+        final String name;
+        long generation;
+        long durationMicros = -1;
+
+        TimerState(String owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+    }
+
+    private static final class External {
+        final String message;
+        final String from;
+        final String to;
+
+        External(String message, String from, String to) {
+            this.message = message;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class Delivery {
+        final MessageStats stats;
+        final String message;
+        final String sender;
+        final String receiver;
+        final long sentAt;
+
+        Delivery(MessageStats stats, String message, String sender, String receiver, long sentAt) {
+            this.stats = stats;
+            this.message = message;
+            this.sender = sender;
+            this.receiver = receiver;
+            this.sentAt = sentAt;
+        }
+    }
+
+    private static final class Event {
+        final int type;
+        final Instance instance;
+        final int token;
+        final Delivery delivery;
+        final TimerState timer;
+        final long generation;
+        final External external;
+
+        private Event(int type, Instance instance, int token, Delivery delivery, TimerState timer, long generation, External external) {
+            this.type = type;
+            this.instance = instance;
+            this.token = token;
+            this.delivery = delivery;
+            this.timer = timer;
+            this.generation = generation;
+            this.external = external;
+        }
+
+        static Event resume(Instance instance, int token) {
+            return new Event(RESUME, instance, token, null, null, 0, null);
+        }
+
+        static Event timeout(Instance instance, int token) {
+            return new Event(TIMEOUT, instance, token, null, null, 0, null);
+        }
+
+        static Event deliver(Delivery delivery) {
+            return new Event(DELIVER, null, 0, delivery, null, 0, null);
+        }
+
+        static Event timer(TimerState timer, long generation) {
+            return new Event(TIMER, null, 0, null, timer, generation, null);
+        }
+
+        static Event inject(External external) {
+            return new Event(INJECT, null, 0, null, null, 0, external);
+        }
+    }
+
+    /**
+     * 按 (时间, 提交序号) 排序的二叉堆；键放在基本类型数组里，比较时不必解引用事件对象。
+     */
+    private static final class EventQueue {
+        private long[] times = new long[1024];
+        private long[] seqs = new long[1024];
+        private Event[] events = new Event[1024];
+        private int size;
+        private long nextSeq;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long peekTime() {
+            return times[0];
+        }
+
+        void push(long time, Event event) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                seqs = Arrays.copyOf(seqs, size * 2);
+                events = Arrays.copyOf(events, size * 2);
+            }
+            long seq = nextSeq++;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (times[parent] < time || (times[parent] == time && seqs[parent] < seq)) {
+                    break;
+                }
+                times[i] = times[parent];
+                seqs[i] = seqs[parent];
+                events[i] = events[parent];
+                i = parent;
+            }
+            times[i] = time;
+            seqs[i] = seq;
+            events[i] = event;
+        }
+
+        Event pop() {
+            Event top = events[0];
+            int last = --size;
+            long time = times[last];
+            long seq = seqs[last];
+            Event event = events[last];
+            events[last] = null;
+            int i = 0;
+            int half = last >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                int right = child + 1;
+                if (right < last && (times[right] < times[child] || (times[right] == times[child] && seqs[right] < seqs[child]))) {
+                    child = right;
+                }
+                if (time < times[child] || (time == times[child] && seq < seqs[child])) {
+                    break;
+                }
+                times[i] = times[child];
+                seqs[i] = seqs[child];
+                events[i] = events[child];
+                i = child;
+            }
+            if (last > 0) {
+                times[i] = time;
+                seqs[i] = seq;
+                events[i] = event;
+            }
+            return top;
+        }
+    }
+
+    // ==========================================
+    // 仿真报告
+    // ==========================================
+
+    /**
+     * 单条消息 (按消息号) 的流量与延迟统计；延迟是从 SENDS 执行到接收方收到的虚拟时间。
+     */
+    public static class MessageStats {
+        public final String message;
+        public long sent;
+        public long delivered;
+        public long lost;
+        // 发送方队列已满而丢弃的发送 (已计入 sent)
+        public long overflow;
+        public long latencyTotalMicros;
+        public long latencyMinMicros = Long.MAX_VALUE;
+        public long latencyMaxMicros;
+
+        public MessageStats(String message) {
+            this.message = message;
+        }
+
+        public double averageLatencyMillis() {
+            return delivered == 0 ? 0 : latencyTotalMicros / 1000.0 / delivered;
+        }
+    }
+
+    public static class Report {
+        public final String modelName;
+        public final long seed;
+        public long events;
+        // 到达截止时间时队列中尚未处理的事件
+        public long pendingEvents;
+        public long virtualMicros;
+        public long wallNanos;
+        public long statements;
+        public int roots;
+        public int externals;
+        public long injected;
+        public long started;
+        public long completed;
+        public long terminated;
+        public long triggered;
+        public long droppedStarts;
+        // 仿真结束时仍未结束的实例 (挂在 WAIT 上或还在循环中)
+        public long blocked;
+        public long stuckWaits;
+        public long timeouts;
+        public long timersExpired;
+        public long exceptions;
+        public long faults;
+        public long notifies;
+        public long unresolvedCalls;
+        public long overflow;
+        // 按消息号排序
+        public final Map<String, MessageStats> messages = new TreeMap<>();
+
+        public Report(String modelName, long seed) {
+            this.modelName = modelName;
+            this.seed = seed;
+        }
+
+        public double eventsPerSecond() {
+            return wallNanos == 0 ? 0 : events * 1e9 / wallNanos;
+        }
+
+        public String format() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("🛰️ 仿真 %s (seed=%d): 虚拟时间 %.3f s, 事件 %d (未处理 %d), 墙钟 %d ms, %.0f 事件/秒%n",
+                    modelName, seed, virtualMicros / 1e6, events, pendingEvents, wallNanos / 1_000_000, eventsPerSecond()));
+            sb.append(String.format("入口过程 %d 个, 外部激励 %d 种 (注入 %d 次)%n", roots, externals, injected));
+            sb.append(String.format("实例: 启动 %d (触发 %d, 超出上限未启动 %d), 完成 %d, TERMINATE %d, 结束时未完成 %d%n",
+                    started, triggered, droppedStarts, completed, terminated, blocked));
+            sb.append(String.format("执行: 语句 %d, NOTIFY %d, 等待超时 %d, 定时器到期 %d, 异常处理 %d (注入故障 %d), 无法唤醒的 WAIT %d, 未解析的 CALL %d, 发送队列溢出 %d%n",
+                    statements, notifies, timeouts, timersExpired, exceptions, faults, stuckWaits, unresolvedCalls, overflow));
+            sb.append(String.format("%-16s %10s %10s %8s %8s %12s %12s %12s%n", "消息", "发送", "投递", "丢失", "溢出", "平均延迟ms", "最小ms", "最大ms"));
+            for (MessageStats stats : messages.values()) {
+                sb.append(String.format("%-16s %10d %10d %8d %8d %12.3f %12.3f %12.3f%n", stats.message, stats.sent, stats.delivered, stats.lost, stats.overflow,
+                        stats.averageLatencyMillis(), stats.delivered == 0 ? 0 : stats.latencyMinMicros / 1000.0, stats.latencyMaxMicros / 1000.0));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 用法: java Link16Simulator 功能模型.dsl|目录... [--until 秒] [--instances N] [--events N] [--seed N]
+     * <p>
+     * 目录下的消息规则文件会被跳过；多个模型一起仿真时，跨文件的 CALL 与消息往来都在同一个虚拟网络中。
+     */
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        double untilSeconds = 60;
+        int instances = 1;
+        long maxEvents = Long.MAX_VALUE;
+        long seed = 42;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                File file = new File(arg);
+                File[] children = file.isDirectory() ? file.listFiles((d, name) -> name.endsWith(".dsl")) : null;
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " 缺少参数值。");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--until" -> untilSeconds = Double.parseDouble(value);
+                case "--instances" -> instances = Integer.parseInt(value);
+                case "--events" -> maxEvents = Long.parseLong(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("用法: Link16Simulator 功能模型.dsl|目录... [--until 秒] [--instances N] [--events N] [--seed N]");
+        }
+
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false);
+        List<ModelIR.FunctionModel> models = new ArrayList<>();
+        for (File file : files) {
+            if (DslMode.fromFileName(file.getName()) == DslMode.MESSAGE_RULES) {
+                continue;
+            }
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            ParseResult result = Link16ParserRunner.parse(file.getName(), text, DslMode.FUNCTION_MODEL, options);
+            if (result.success && result.model instanceof ModelIR.FunctionModel model) {
+                models.add(model);
+            } else {
+                System.out.println("⚠️ 跳过 " + file.getName() + ": 不是语法正确的功能模型 (" + result.errorCount + " 个错误)");
+            }
+        }
+        if (models.isEmpty()) {
+            System.out.println("❌ 没有可仿真的功能模型。");
+            return;
+        }
+        Link16Simulator simulator = new Link16Simulator(models, seed);
+        Report report = simulator.run((long) (untilSeconds * 1_000_000), instances, maxEvents);
+        System.out.print(report.format());
+    }
+}
@@ -0,0 +1,180 @@
+import org.antlr.v4.runtime.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 消息规则文件 (trRulesModel) 的流式解析：不构建语法树，也不把整个文件读入内存。
+ * <p>
+ * 字符流和 token 流都使用 ANTLR 的 Unbuffered 实现，token 在创建时复制文本 (CommonTokenFactory(true))，
+ * 因此被消费后即可释放；Parser 关闭 buildParseTree，只为单条规则临时构建子树，由解析监听器在每个 messageRulesDef
+ * 结束时把提取出的 {@link ModelIR.MessageRules} 交给回调。内存占用只与最大的单个规则集有关。
+ * <p>
+ * 无缓冲的 token 流无法回退，所以这里只做一次全 LL 解析，不走 SLL 两阶段。
+ */
+public class Link16StreamingRulesParser {
+
+    private static final int CHAR_BUFFER_SIZE = 8192;
+
+    private Link16StreamingRulesParser() {
+    }
+
+    /**
+     * 逐个规则集解析 reader 中的内容，返回解析到的规则集数量。
+     * 语法/词法错误交给 errorListener (可以为 null)，出错的规则集仍会尽量提取后交给 consumer。
+     */
+    public static Summary parse(Reader reader, String sourceName, Consumer<ModelIR.MessageRules> consumer,
+                                ANTLRErrorListener errorListener) {
+        UnbufferedCharStream input = new UnbufferedCharStream(reader, CHAR_BUFFER_SIZE);
+        input.name = sourceName;
+
+        Link16DSLLexer lexer = new Link16DSLLexer(input);
+        lexer.setTokenFactory(new CommonTokenFactory(true));
+        lexer.removeErrorListeners();
+
+        Link16DSLParser parser = new Link16DSLParser(new UnbufferedTokenStream<>(lexer));
+        parser.setBuildParseTree(false);
+        parser.setErrorHandler(new StreamingErrorStrategy());
+        parser.removeErrorListeners();
+        if (errorListener != null) {
+            lexer.addErrorListener(errorListener);
+            parser.addErrorListener(errorListener);
+        }
+
+        ExtractingListener listener = new ExtractingListener(parser, consumer);
+        parser.addParseListener(listener);
+        parser.trRulesModel();
+        return new Summary(listener.messageCount, listener.ruleCount, parser.getNumberOfSyntaxErrors());
+    }
+
+    public static class Summary {
+        public final int messageCount;
+        public final int ruleCount;
+        public final int syntaxErrorCount;
+
+        public Summary(int messageCount, int ruleCount, int syntaxErrorCount) {
+            this.messageCount = messageCount;
+            this.ruleCount = ruleCount;
+            this.syntaxErrorCount = syntaxErrorCount;
+        }
+    }
+
+    /**
+     * 除 trRuleDef 外不构建语法树: 进入 trRuleDef 时临时打开 buildParseTree，退出时用 Link16ModelVisitor
+     * 把这条规则的子树转成 {@link ModelIR.TrRule} 后再关掉，子树随即可以回收。
+     * Parser 在触发 enter 事件之前就已决定是否把当前节点挂到父节点上，所以规则子树不会挂到规则组上累积。
+     */
+    private static class ExtractingListener extends Link16DSLBaseListener {
+        private final Parser parser;
+        private final Consumer<ModelIR.MessageRules> consumer;
+        private final Link16ModelVisitor builder = new Link16ModelVisitor();
+        private int messageCount;
+        private int ruleCount;
+
+        private String messageName;
+        private int messageLine;
+        private List<ModelIR.RuleGroup> groups;
+        private List<ModelIR.TrRule> currentRules;
+        private boolean currentTransmit;
+
+        ExtractingListener(Parser parser, Consumer<ModelIR.MessageRules> consumer) {
+            this.parser = parser;
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void enterMessageRulesDef(Link16DSLParser.MessageRulesDefContext ctx) {
+            messageName = null;
+            messageLine = ctx.getStart().getLine();
+            groups = new ArrayList<>();
+            currentRules = null;
+        }
+
+        @Override
+        public void exitMsgName(Link16DSLParser.MsgNameContext ctx) {
+            // ReceiptOf(J3.2) / Field(J3.2.x) 里的 msgName 属于规则条件，不是规则集名称
+            if (ctx.getParent() instanceof Link16DSLParser.MessageRulesDefContext) {
+                messageName = builder.messageName(ctx);
+            }
+        }
+
+        @Override
+        public void exitMessageRulesDef(Link16DSLParser.MessageRulesDefContext ctx) {
+            if (groups == null) {
+                return;
+            }
+            closeGroup();
+            consumer.accept(new ModelIR.MessageRules(messageName != null ? messageName : "", messageLine, groups));
+            messageCount++;
+            groups = null;
+        }
+
+        @Override
+        public void enterTransmitRules(Link16DSLParser.TransmitRulesContext ctx) {
+            startGroup(true);
+        }
+
+        @Override
+        public void exitTransmitRules(Link16DSLParser.TransmitRulesContext ctx) {
+            closeGroup();
+        }
+
+        @Override
+        public void enterReceiveRules(Link16DSLParser.ReceiveRulesContext ctx) {
+            startGroup(false);
+        }
+
+        @Override
+        public void exitReceiveRules(Link16DSLParser.ReceiveRulesContext ctx) {
+            closeGroup();
+        }
+
+        @Override
+        public void enterTrRuleDef(Link16DSLParser.TrRuleDefContext ctx) {
+            parser.setBuildParseTree(true);
+        }
+
+        @Override
+        public void exitTrRuleDef(Link16DSLParser.TrRuleDefContext ctx) {
+            parser.setBuildParseTree(false);
+            if (currentRules != null) {
+                currentRules.add(builder.trRule(ctx));
+                ruleCount++;
+            }
+        }
+
+        private void startGroup(boolean transmit) {
+            if (groups == null) {
+                return;
+            }
+            closeGroup();
+            currentRules = new ArrayList<>();
+            currentTransmit = transmit;
+        }
+
+        private void closeGroup() {
+            if (currentRules != null) {
+                groups.add(new ModelIR.RuleGroup(currentTransmit, currentRules));
+                currentRules = null;
+            }
+        }
+    }
+
+    /**
+     * 无缓冲 token 流在预测结束后会释放标记，报告 "no viable alternative" 时
+     * 起始 token 可能已不在缓冲窗口内，此时退化为只用出错 token 描述错误。
+     */
+    private static class StreamingErrorStrategy extends DefaultErrorStrategy {
+        @Override
+        protected void reportNoViableAlternative(Parser recognizer, NoViableAltException e) {
+            try {
+                super.reportNoViableAlternative(recognizer, e);
+            } catch (UnsupportedOperationException unavailable) {
+                String msg = "no viable alternative at input " + getTokenErrorDisplay(e.getOffendingToken());
+                recognizer.notifyErrorListeners(e.getOffendingToken(), msg, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,240 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视模式：常驻进程，用 WatchService 监听 dsl/ 目录，
+ * 对一段时间内连续保存的同一批文件做防抖，只重新处理内容真正变化的文件。
+ * <p>
+ * 解析器在启动时预热一次，之后所有处理都在同一个线程上进行，
+ * 因此复用的是同一套已经填充好 DFA 的 Lexer/Parser；每个文件最近一次的内容摘要和结果保存在内存中。
+ * 每个文件还保留一个 {@link IncrementalReparser}，修改后先增量给出语法诊断，
+ * 只有语法通过时才用这棵增量解析树走 Visitor + DOT/SVG 流程 (不再从磁盘重新解析)。
+ * 语法通过的文件同时由增量解析树构建模型，刷新跨文件的 {@link SymbolIndex} (只替换该文件的条目，有语法错误时保留上一次的条目)。
+ * <p>
+ * 还没有增量解析器的文件 (启动时的现有文件、删除后重建的文件) 先按内容查 output/.cache，命中时直接复用缓存的产物与模型，
+ * 不做解析；增量解析器等到该文件第一次修改时再建立 (那一次是全量解析)。
+ * 增量解析本身按块进行，--parallel 的分块并行解析在监视模式下不适用，会被忽略并给出提示。
+ */
+public class Link16WatchMode {
+
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    private final Path inputDir;
+    private final ParseOptions options;
+    private final boolean parallelRequested;
+    private final Map<Path, String> lastDigests = new HashMap<>();
+    private final Map<Path, ParseResult> lastResults = new HashMap<>();
+    private final Map<Path, IncrementalReparser> reparsers = new HashMap<>();
+    private final SymbolIndex index = new SymbolIndex();
+
+    public Link16WatchMode(Path inputDir, ParseOptions options) {
+        this.inputDir = inputDir;
+        this.options = options.withEchoToConsole(false).withParallelBlocks(false);
+        this.parallelRequested = options.parallelBlocks;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        if (parallelRequested) {
+            System.out.println("ℹ️ 监视模式按块增量解析，忽略 --parallel");
+        }
+        long warmUpStart = System.nanoTime();
+        Link16ParserContext.warmUp(inputDir.toFile());
+        System.out.println("🔥 解析器预热完成，耗时 " + (System.nanoTime() - warmUpStart) / 1_000_000 + " ms");
+
+        // 启动时先处理一遍现有文件 (内容未变的文件直接命中 output/.cache，不解析)
+        File[] existing = inputDir.toFile().listFiles((dir, name) -> name.endsWith(".dsl"));
+        if (existing != null) {
+            Arrays.sort(existing);
+            for (File file : existing) {
+                processSafely(file.toPath());
+            }
+        }
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            inputDir.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            System.out.println("👀 正在监视 " + inputDir.toAbsolutePath() + " (Ctrl+C 退出)");
+
+            Set<Path> pending = new LinkedHashSet<>();
+            long deadline = 0;
+            while (true) {
+                WatchKey key;
+                if (pending.isEmpty()) {
+                    key = watchService.take();
+                } else {
+                    long remaining = deadline - System.currentTimeMillis();
+                    key = remaining > 0 ? watchService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                }
+
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // 事件丢失时保守处理：把目录下所有文件都列为待检查
+                            addAllDslFiles(pending);
+                            continue;
+                        }
+                        Path changed = inputDir.resolve((Path) event.context());
+                        if (!changed.getFileName().toString().endsWith(".dsl")) {
+                            continue;
+                        }
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                            forget(changed);
+                        } else {
+                            pending.add(changed);
+                        }
+                    }
+                    key.reset();
+                    // 每来一个新事件都把截止时间往后推，等这一波保存结束再统一处理
+                    deadline = System.currentTimeMillis() + DEBOUNCE_MILLIS;
+                    continue;
+                }
+
+                for (Path path : pending) {
+                    if (Files.isRegularFile(path)) {
+                        processSafely(path);
+                    }
+                }
+                pending.clear();
+            }
+        }
+    }
+
+    public ParseResult lastResult(Path path) {
+        return lastResults.get(path);
+    }
+
+    public SymbolIndex index() {
+        return index;
+    }
+
+    /**
+     * 单个文件的失败 (例如编辑器原子替换保存时文件短暂不可读) 只报告，不结束监视；
+     * 摘要没有记录，下一次保存时会重新处理；增量解析器的状态可能只更新了一半，一并丢弃，下次全量解析。
+     */
+    private void processSafely(Path path) {
+        try {
+            process(path);
+        } catch (IOException | RuntimeException e) {
+            reparsers.remove(path);
+            System.out.println("⚠️ " + path.getFileName() + ": 处理失败，等待下一次保存 (" + e + ")");
+        }
+    }
+
+    private void process(Path path) throws IOException {
+        byte[] content = Files.readAllBytes(path);
+        String digest = digest(content);
+        if (digest.equals(lastDigests.get(path))) {
+            // 编辑器常常只是 touch 文件或重复保存相同内容
+            return;
+        }
+
+        String name = path.getFileName().toString();
+        String text = new String(content, StandardCharsets.UTF_8);
+        if (!reparsers.containsKey(path) && reuseCached(path, name, text, digest)) {
+            return;
+        }
+
+        // 1. 先做增量重解析，立即给出语法诊断 (只重解析被修改的 PROCEDURE / Rule 块)
+        IncrementalReparser reparser = reparsers.computeIfAbsent(path, p -> new IncrementalReparser(DslMode.fromFileName(name)));
+        IncrementalReparser.Result diagnostics = reparser.update(text);
+        String kind = diagnostics.incremental ? "增量, 重解析 " + diagnostics.reparsedBlocks + " 个块" : "全量";
+        System.out.println("🩺 " + path.getFileName() + ": " + diagnostics.errors.size() + " 个语法错误 ("
+                + kind + ", " + diagnostics.elapsedNanos / 1_000 + " µs)");
+        if (!diagnostics.errors.isEmpty()) {
+            for (SyntaxErrorDetail detail : diagnostics.errors) {
+                System.out.println("     ❌ 行 " + detail.line + ":" + detail.charPositionInLine + " -> " + detail.message);
+            }
+            // 有语法错误时完整流程也不会生成任何产物，等下一次保存再说
+            lastDigests.put(path, digest);
+            return;
+        }
+
+        // 2. 用增量解析树直接构建模型，刷新符号索引中该文件的条目 (同一个模型随后交给产物阶段，不再跑第二遍 Visitor)
+        long indexStart = System.nanoTime();
+        ModelIR.Model model = new Link16ModelVisitor().build(diagnostics.tree);
+        index.update(name, model);
+        System.out.println("📇 " + path.getFileName() + ": 符号索引已更新 (共 " + index.symbolCount() + " 个符号, "
+                + (System.nanoTime() - indexStart) / 1_000 + " µs)");
+
+        // 3. 语法无误时直接用同一棵增量解析树刷新日志与 DOT/SVG，不再从磁盘读取、重新解析
+        long start = System.nanoTime();
+        ParseResult result = Link16ParserRunner.publish(name, text, reparser.mode(),
+                diagnostics.tree, model, ParseStage.LL, options); // 增量拼接的块都是按全 LL 解析的
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        lastDigests.put(path, digest);
+        lastResults.put(path, result);
+
+        String status = result.success ? "✅" : "❌";
+        String source = result.fromCache ? "缓存" : result.parseStage.name();
+        System.out.println("🔁 " + path.getFileName() + " -> " + status + " (" + source + ", " + millis + " ms)");
+        for (String error : result.errors) {
+            System.out.println("     " + error);
+        }
+        // SVG 在后台渲染，完成后再补一行状态 (DOT 内容没变时不会重新启动 dot)
+        if (result.render != null) {
+            result.render.thenAccept(rendered -> System.out.println("🖼️ " + path.getFileName() + " -> " + rendered.status
+                    + " (" + rendered.elapsedNanos / 1_000_000 + " ms)"
+                    + (rendered.message.isEmpty() ? "" : ": " + rendered.message)));
+        }
+    }
+
+    // 第一次见到的文件先按内容查缓存，命中时复用缓存中的模型刷新符号索引，返回 true
+    private boolean reuseCached(Path path, String name, String text, String digest) {
+        long start = System.nanoTime();
+        ParseResult result = Link16ParserRunner.reuseCached(name, text, DslMode.fromFileName(name), options);
+        if (result == null) {
+            return false;
+        }
+        if (result.success && result.model != null) {
+            index.update(name, result.model);
+        }
+        lastDigests.put(path, digest);
+        lastResults.put(path, result);
+        System.out.println("🔁 " + name + " -> " + (result.success ? "✅" : "❌") + " (缓存, "
+                + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        for (String error : result.errors) {
+            System.out.println("     " + error);
+        }
+        return true;
+    }
+
+    private void forget(Path path) {
+        lastDigests.remove(path);
+        reparsers.remove(path);
+        lastResults.remove(path);
+        index.remove(path.getFileName().toString());
+        System.out.println("🗑️ " + path.getFileName() + " 已删除");
+    }
+
+    private void addAllDslFiles(Set<Path> pending) {
+        File[] files = inputDir.toFile().listFiles((dir, name) -> name.endsWith(".dsl"));
+        if (files != null) {
+            for (File file : files) {
+                pending.add(file.toPath());
+            }
+        }
+    }
+
+    private static String digest(byte[] content) {
+        MessageDigest digest = GrammarVersion.sha256();
+        return HexFormat.of().formatHex(digest.digest(content));
+    }
+}
@@ -0,0 +1,1389 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析后模型 (ModelIR) 的紧凑二进制格式，重新加载时不必再词法/语法解析。
+ * <p>
+ * 文件布局 (整数均为无符号 LEB128 varint，另有说明的除外):
+ * <pre>
+ *   magic "L16M" | 格式版本 (1 字节) | 语法版本 (长度 + UTF-8) | 源码 SHA-256 (32 字节) | 模型类型 (1 字节)
+ *   字符串个数 | 分段个数 | 分段目录: 每段 (名字, 偏移, 长度)
+ *   字符串表: 每个字符串的起始偏移 (4 字节大端) + 各字符串 (长度 + UTF-8)
+ *   分段数据
+ * </pre>
+ * 功能模型的第 0 段是过程以外的全部声明 (ACTORS、MESSAGES、STATES、RULE 等)，之后每个 PROCEDURE 一段；
+ * 消息规则模型每个 Message ... Rules 一段。标识符与消息名只在字符串表中出现一次，节点记录里写字符串编号
+ * (0 表示 null)，列表写 长度 + 1 (0 表示 null 列表)，从而保留 IR 中 "没写" 与 "写了但为空" 的区别。
+ * <p>
+ * {@link Reader} 用内存映射打开文件，打开时只读文件头与分段目录；字符串与分段都在第一次访问时才解码，
+ * 可以只取出某一个过程。语法版本或源码哈希对不上时 {@link Reader#isCurrent} 返回 false，调用方应重新解析。
+ */
+public final class ModelBinary {
+
+    // 节点编码改变时递增，旧文件在打开时即被拒绝
+    public static final int FORMAT_VERSION = 1;
+    private static final byte[] MAGIC = {'L', '1', '6', 'M'};
+    private static final int FUNCTION_MODEL = 0;
+    private static final int RULES_MODEL = 1;
+
+    // 语句标签
+    private static final int STEP = 1;
+    private static final int IF = 2;
+    private static final int WHILE = 3;
+    private static final int WAIT = 4;
+    private static final int CALL = 5;
+    private static final int PARALLEL = 6;
+    private static final int ASSIGN = 7;
+    private static final int USER_CONFIRM = 8;
+    private static final int TIMER = 9;
+    private static final int TERMINATE = 10;
+    private static final int CONTINUE = 11;
+
+    // 条件标签
+    private static final int OR = 1;
+    private static final int AND = 2;
+    private static final int NOT = 3;
+    private static final int GROUP = 4;
+    private static final int COMPARE = 5;
+    private static final int IN_SET = 6;
+    private static final int HAS_FIELD = 7;
+    private static final int TIME_SINCE = 8;
+    private static final int STATUS_IS = 9;
+    private static final int EVENT = 10;
+    private static final int TEXT = 11;
+    private static final int PLATFORM = 12;
+    private static final int ON_EVENT = 13;
+    private static final int FIELD = 14;
+    private static final int TIMING = 15;
+
+    // 表达式标签
+    private static final int LITERAL = 1;
+    private static final int ACCESS = 2;
+    private static final int MESSAGE_ID = 3;
+    private static final int ARITHMETIC = 4;
+    private static final int PAREN = 5;
+    private static final int STRUCT = 6;
+    private static final int LIST = 7;
+
+    // 解码时按序号取枚举值，values() 每次调用都会复制数组
+    private static final ModelIR.StepModifier[] STEP_MODIFIERS = ModelIR.StepModifier.values();
+    private static final ModelIR.Verb[] VERBS = ModelIR.Verb.values();
+    private static final ModelIR.TimerOp[] TIMER_OPS = ModelIR.TimerOp.values();
+    private static final ModelIR.EventKind[] EVENT_KINDS = ModelIR.EventKind.values();
+    private static final ModelIR.TimingKind[] TIMING_KINDS = ModelIR.TimingKind.values();
+    private static final ModelIR.LiteralKind[] LITERAL_KINDS = ModelIR.LiteralKind.values();
+    private static final TimeUnit[] TIME_UNITS = TimeUnit.values();
+
+    private ModelBinary() {
+    }
+
+    public static byte[] sourceHash(byte[] source) {
+        return GrammarVersion.sha256().digest(source);
+    }
+
+    // ========================================================================
+    // 写入
+    // ========================================================================
+
+    /**
+     * 把模型编码成一个完整的文件内容。source 是模型对应的 DSL 原文，用于记录源码哈希。
+     */
+    public static byte[] encode(ModelIR.Model model, byte[] source) {
+        Encoder encoder = new Encoder();
+        List<Integer> sectionNames = new ArrayList<>();
+        List<byte[]> sections = new ArrayList<>();
+        int kind;
+        if (model instanceof ModelIR.FunctionModel function) {
+            kind = FUNCTION_MODEL;
+            Sink header = new Sink();
+            encoder.declarations(header, function);
+            sectionNames.add(encoder.index(function.name));
+            sections.add(header.toByteArray());
+            for (ModelIR.Procedure procedure : each(function.procedures)) {
+                Sink section = new Sink();
+                encoder.procedure(section, procedure);
+                sectionNames.add(encoder.index(procedure.name));
+                sections.add(section.toByteArray());
+            }
+        } else if (model instanceof ModelIR.RulesModel rules) {
+            kind = RULES_MODEL;
+            for (ModelIR.MessageRules ruleSet : rules.ruleSets) {
+                Sink section = new Sink();
+                encoder.ruleSet(section, ruleSet);
+                sectionNames.add(encoder.index(ruleSet.messageName));
+                sections.add(section.toByteArray());
+            }
+        } else {
+            throw new IllegalArgumentException("未知的模型类型: " + model);
+        }
+
+        Sink out = new Sink();
+        out.bytes(MAGIC);
+        out.raw(FORMAT_VERSION);
+        out.text(GrammarVersion.get());
+        out.bytes(sourceHash(source));
+        out.raw(kind);
+        out.varint(encoder.strings.size());
+        out.varint(sections.size());
+        int offset = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            out.varint(sectionNames.get(i));
+            out.varint(offset);
+            out.varint(sections.get(i).length);
+            offset += sections.get(i).length;
+        }
+        // 字符串表: 先写定长偏移，读取时可以按编号直接定位，不必扫描
+        Sink strings = new Sink();
+        int[] offsets = new int[encoder.strings.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = strings.size();
+            strings.text(encoder.strings.get(i));
+        }
+        for (int stringOffset : offsets) {
+            out.int32(stringOffset);
+        }
+        out.bytes(strings.toByteArray());
+        for (byte[] section : sections) {
+            out.bytes(section);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 写入文件: 先写同目录下的临时文件再原子替换，读者不会看到写了一半的文件。
+     */
+    public static void write(ModelIR.Model model, byte[] source, Path file) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, encode(model, source));
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 读取整个模型；文件不存在、损坏、格式/语法版本不符或与 source 不一致时返回 null。
+     */
+    public static ModelIR.Model load(Path file, byte[] source) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            Reader reader = Reader.open(file);
+            return reader.isCurrent(source) ? reader.model() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 一次编码共用的字符串表。
+     */
+    private static final class Encoder {
+        final List<String> strings = new ArrayList<>();
+        final Map<String, Integer> indexes = new HashMap<>();
+
+        int index(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                strings.add(value);
+                index = strings.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        void string(Sink out, String value) {
+            out.varint(index(value));
+        }
+
+        void count(Sink out, List<?> list) {
+            out.varint(list == null ? 0 : list.size() + 1);
+        }
+
+        void declarations(Sink out, ModelIR.FunctionModel model) {
+            string(out, model.name);
+            count(out, model.types);
+            for (ModelIR.TypeDef type : each(model.types)) {
+                string(out, type.name);
+                string(out, type.type);
+                out.varint(type.line);
+            }
+            count(out, model.actors);
+            for (ModelIR.Actor actor : each(model.actors)) {
+                string(out, actor.name);
+                string(out, actor.type);
+                out.varint(actor.line);
+            }
+            count(out, model.messages);
+            for (ModelIR.MessageDecl message : each(model.messages)) {
+                string(out, message.name);
+                out.varint(message.line);
+            }
+            count(out, model.discretes);
+            for (ModelIR.Discrete discrete : each(model.discretes)) {
+                string(out, discrete.name);
+                string(out, discrete.forMessage);
+                string(out, discrete.forField);
+                count(out, discrete.values);
+                for (ModelIR.DiscreteValue value : each(discrete.values)) {
+                    string(out, value.name);
+                    string(out, value.low);
+                    string(out, value.high);
+                    string(out, value.description);
+                }
+                out.varint(discrete.line);
+            }
+            count(out, model.states);
+            for (ModelIR.State state : each(model.states)) {
+                string(out, state.name);
+                string(out, state.type);
+                expr(out, state.initialValue);
+                out.varint(state.line);
+            }
+            count(out, model.mappings);
+            for (ModelIR.Mapping mapping : each(model.mappings)) {
+                string(out, mapping.name);
+                count(out, mapping.entries);
+                for (ModelIR.MapEntry entry : each(mapping.entries)) {
+                    exprs(out, entry.keys);
+                    expr(out, entry.value);
+                }
+                event(out, mapping.event);
+                string(out, mapping.target);
+                out.varint(mapping.line);
+            }
+            count(out, model.rules);
+            for (ModelIR.EventRule rule : each(model.rules)) {
+                string(out, rule.name);
+                out.int64(Double.doubleToLongBits(rule.priority));
+                event(out, rule.event);
+                count(out, rule.consequences);
+                for (ModelIR.Consequence consequence : each(rule.consequences)) {
+                    out.raw(consequence.broadcast ? 1 : 0);
+                    expr(out, consequence.message);
+                    expr(out, consequence.argument);
+                }
+                out.varint(rule.line);
+            }
+            // 过程数量写在声明段末尾，读取完整模型时据此预分配
+            count(out, model.procedures);
+        }
+
+        void procedure(Sink out, ModelIR.Procedure procedure) {
+            string(out, procedure.name);
+            count(out, procedure.params);
+            for (ModelIR.ParamDef param : each(procedure.params)) {
+                string(out, param.name);
+                string(out, param.type);
+            }
+            string(out, procedure.description);
+            condition(out, procedure.trigger);
+            statements(out, procedure.steps);
+            branches(out, procedure.exceptionHandlers);
+            out.varint(procedure.line);
+        }
+
+        void ruleSet(Sink out, ModelIR.MessageRules ruleSet) {
+            string(out, ruleSet.messageName);
+            out.varint(ruleSet.line);
+            count(out, ruleSet.groups);
+            for (ModelIR.RuleGroup group : each(ruleSet.groups)) {
+                out.raw(group.transmit ? 1 : 0);
+                count(out, group.rules);
+                for (ModelIR.TrRule rule : each(group.rules)) {
+                    string(out, rule.name);
+                    condition(out, rule.condition);
+                    string(out, rule.action);
+                    out.varint(rule.line);
+                }
+            }
+        }
+
+        void statements(Sink out, List<ModelIR.Statement> statements) {
+            count(out, statements);
+            for (ModelIR.Statement statement : each(statements)) {
+                statement(out, statement);
+            }
+        }
+
+        void branches(Sink out, List<ModelIR.Branch> branches) {
+            count(out, branches);
+            for (ModelIR.Branch branch : each(branches)) {
+                condition(out, branch.condition);
+                statements(out, branch.body);
+            }
+        }
+
+        void statement(Sink out, ModelIR.Statement statement) {
+            if (statement instanceof ModelIR.Step step) {
+                out.varint(STEP);
+                out.varint(step.line);
+                out.varint(step.modifier.ordinal());
+                out.varint(step.repeatCount);
+                action(out, step.action);
+                naturalLanguage(out, step.naturalLanguage);
+                string(out, step.description);
+            } else if (statement instanceof ModelIR.If ifStatement) {
+                out.varint(IF);
+                out.varint(ifStatement.line);
+                branches(out, ifStatement.branches);
+                statements(out, ifStatement.elseBody);
+            } else if (statement instanceof ModelIR.While loop) {
+                out.varint(WHILE);
+                out.varint(loop.line);
+                condition(out, loop.condition);
+                statements(out, loop.body);
+            } else if (statement instanceof ModelIR.Wait wait) {
+                out.varint(WAIT);
+                out.varint(wait.line);
+                duration(out, wait.timeout);
+                branches(out, wait.clauses);
+            } else if (statement instanceof ModelIR.Call call) {
+                out.varint(CALL);
+                out.varint(call.line);
+                string(out, call.target);
+                params(out, call.params);
+            } else if (statement instanceof ModelIR.Parallel parallel) {
+                out.varint(PARALLEL);
+                out.varint(parallel.line);
+                count(out, parallel.branches);
+                for (List<ModelIR.Statement> branch : each(parallel.branches)) {
+                    statements(out, branch);
+                }
+            } else if (statement instanceof ModelIR.Assign assign) {
+                out.varint(ASSIGN);
+                out.varint(assign.line);
+                expr(out, assign.target);
+                expr(out, assign.value);
+            } else if (statement instanceof ModelIR.UserConfirm confirm) {
+                out.varint(USER_CONFIRM);
+                out.varint(confirm.line);
+                string(out, confirm.prompt);
+                statements(out, confirm.confirmed);
+                statements(out, confirm.otherwise);
+            } else if (statement instanceof ModelIR.Timer timer) {
+                out.varint(TIMER);
+                out.varint(timer.line);
+                string(out, timer.actor);
+                out.varint(timer.op.ordinal());
+                string(out, timer.timer);
+                duration(out, timer.duration);
+            } else if (statement instanceof ModelIR.Terminate) {
+                out.varint(TERMINATE);
+                out.varint(statement.line);
+            } else if (statement instanceof ModelIR.Continue) {
+                out.varint(CONTINUE);
+                out.varint(statement.line);
+            } else {
+                throw new IllegalArgumentException("未知的语句类型: " + statement);
+            }
+        }
+
+        void action(Sink out, ModelIR.Action action) {
+            if (action == null) {
+                out.raw(0);
+                return;
+            }
+            out.raw(1);
+            string(out, action.sender);
+            out.varint(action.verb.ordinal());
+            string(out, action.message);
+            params(out, action.params);
+            string(out, action.target);
+            expr(out, action.address);
+            expr(out, action.payload);
+        }
+
+        void naturalLanguage(Sink out, ModelIR.NaturalLanguage naturalLanguage) {
+            if (naturalLanguage == null) {
+                out.raw(0);
+                return;
+            }
+            out.raw(1);
+            string(out, naturalLanguage.intent);
+            count(out, naturalLanguage.actors);
+            for (String actor : each(naturalLanguage.actors)) {
+                string(out, actor);
+            }
+            string(out, naturalLanguage.dataContext);
+            string(out, naturalLanguage.description);
+        }
+
+        void duration(Sink out, ModelIR.Duration duration) {
+            if (duration == null) {
+                out.raw(0);
+                return;
+            }
+            out.raw(1);
+            string(out, duration.amount);
+            out.varint(duration.unit.ordinal());
+        }
+
+        void event(Sink out, ModelIR.Event event) {
+            if (event == null) {
+                out.raw(0);
+                return;
+            }
+            out.raw(1);
+            out.varint(event.kind.ordinal());
+            string(out, event.message);
+            condition(out, event.filter);
+            string(out, event.from);
+            string(out, event.to);
+            string(out, event.text);
+        }
+
+        void conditions(Sink out, List<ModelIR.Condition> conditions) {
+            count(out, conditions);
+            for (ModelIR.Condition condition : each(conditions)) {
+                condition(out, condition);
+            }
+        }
+
+        void condition(Sink out, ModelIR.Condition condition) {
+            if (condition == null) {
+                out.varint(0);
+            } else if (condition instanceof ModelIR.Or or) {
+                out.varint(OR);
+                conditions(out, or.operands);
+            } else if (condition instanceof ModelIR.And and) {
+                out.varint(AND);
+                conditions(out, and.operands);
+            } else if (condition instanceof ModelIR.Not not) {
+                out.varint(NOT);
+                condition(out, not.operand);
+            } else if (condition instanceof ModelIR.Group group) {
+                out.varint(GROUP);
+                condition(out, group.inner);
+            } else if (condition instanceof ModelIR.Compare compare) {
+                out.varint(COMPARE);
+                expr(out, compare.left);
+                string(out, compare.operator);
+                expr(out, compare.right);
+            } else if (condition instanceof ModelIR.InSet inSet) {
+                out.varint(IN_SET);
+                expr(out, inSet.value);
+                exprs(out, inSet.candidates);
+            } else if (condition instanceof ModelIR.HasField hasField) {
+                out.varint(HAS_FIELD);
+                string(out, hasField.message);
+                string(out, hasField.field);
+            } else if (condition instanceof ModelIR.TimeSince timeSince) {
+                out.varint(TIME_SINCE);
+                event(out, timeSince.event);
+                duration(out, timeSince.limit);
+            } else if (condition instanceof ModelIR.StatusIs status) {
+                out.varint(STATUS_IS);
+                string(out, status.actor);
+                out.raw(status.equal ? 1 : 0);
+                string(out, status.status);
+            } else if (condition instanceof ModelIR.EventCondition eventCondition) {
+                out.varint(EVENT);
+                event(out, eventCondition.event);
+            } else if (condition instanceof ModelIR.TextCondition text) {
+                out.varint(TEXT);
+                string(out, text.text);
+            } else if (condition instanceof ModelIR.PlatformCondition platform) {
+                out.varint(PLATFORM);
+                string(out, platform.attribute);
+                string(out, platform.operator);
+                expr(out, platform.value);
+            } else if (condition instanceof ModelIR.OnEvent onEvent) {
+                out.varint(ON_EVENT);
+                string(out, onEvent.receiptOf);
+                string(out, onEvent.systemCue);
+            } else if (condition instanceof ModelIR.FieldCondition field) {
+                out.varint(FIELD);
+                string(out, field.message);
+                string(out, field.field);
+                string(out, field.operator);
+                expr(out, field.value);
+            } else if (condition instanceof ModelIR.TimingCondition timing) {
+                out.varint(TIMING);
+                out.varint(timing.kind.ordinal());
+                string(out, timing.period);
+            } else {
+                throw new IllegalArgumentException("未知的条件类型: " + condition);
+            }
+        }
+
+        void exprs(Sink out, List<ModelIR.Expr> exprs) {
+            count(out, exprs);
+            for (ModelIR.Expr expr : each(exprs)) {
+                expr(out, expr);
+            }
+        }
+
+        void params(Sink out, List<ModelIR.Param> params) {
+            count(out, params);
+            for (ModelIR.Param param : each(params)) {
+                string(out, param.name);
+                expr(out, param.value);
+            }
+        }
+
+        void expr(Sink out, ModelIR.Expr expr) {
+            if (expr == null) {
+                out.varint(0);
+            } else if (expr instanceof ModelIR.Literal literal) {
+                out.varint(LITERAL);
+                out.varint(literal.kind.ordinal());
+                string(out, literal.text);
+            } else if (expr instanceof ModelIR.Access access) {
+                out.varint(ACCESS);
+                string(out, access.root);
+                count(out, access.suffixes);
+                for (ModelIR.AccessSuffix suffix : each(access.suffixes)) {
+                    string(out, suffix.member);
+                    params(out, suffix.args);
+                }
+            } else if (expr instanceof ModelIR.MessageId id) {
+                out.varint(MESSAGE_ID);
+                string(out, id.id);
+            } else if (expr instanceof ModelIR.Arithmetic arithmetic) {
+                out.varint(ARITHMETIC);
+                exprs(out, arithmetic.operands);
+                string(out, arithmetic.operators);
+            } else if (expr instanceof ModelIR.ParenExpr paren) {
+                out.varint(PAREN);
+                expr(out, paren.inner);
+            } else if (expr instanceof ModelIR.StructLiteral struct) {
+                out.varint(STRUCT);
+                params(out, struct.entries);
+            } else if (expr instanceof ModelIR.ListLiteral list) {
+                out.varint(LIST);
+                exprs(out, list.items);
+            } else {
+                throw new IllegalArgumentException("未知的表达式类型: " + expr);
+            }
+        }
+    }
+
+    /**
+     * 只追加的字节缓冲。
+     */
+    private static final class Sink {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void raw(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void int32(int value) {
+            ensure(4);
+            buffer[size++] = (byte) (value >>> 24);
+            buffer[size++] = (byte) (value >>> 16);
+            buffer[size++] = (byte) (value >>> 8);
+            buffer[size++] = (byte) value;
+        }
+
+        void int64(long value) {
+            int32((int) (value >>> 32));
+            int32((int) value);
+        }
+
+        void text(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length);
+            bytes(bytes);
+        }
+
+        void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    // ========================================================================
+    // 读取
+    // ========================================================================
+
+    /**
+     * 内存映射的模型文件。字符串与分段按需解码并缓存，同一编号的字符串始终是同一个 String 实例。
+     * 缓存的写入是幂等的，可以在线程间共享同一个 Reader。
+     */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+        private final String grammarVersion;
+        private final byte[] sourceHash;
+        private final int kind;
+        private final int[] sectionNames;
+        private final int[] sectionOffsets;
+        private final int[] sectionLengths;
+        private final int stringOffsetsStart;
+        private final int stringDataStart;
+        private final String[] strings;
+        private final Object[] sections;
+        private volatile ModelIR.Model model;
+
+        private Reader(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer.order(ByteOrder.BIG_ENDIAN);
+            Cursor in = new Cursor(buffer, 0);
+            for (byte b : MAGIC) {
+                if (in.raw() != b) {
+                    throw new IOException("不是模型二进制文件");
+                }
+            }
+            int version = in.raw();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("模型二进制格式版本不匹配: " + version + " (当前 " + FORMAT_VERSION + ")");
+            }
+            byte[] grammar = new byte[in.varint()];
+            in.bytes(grammar);
+            this.grammarVersion = new String(grammar, StandardCharsets.UTF_8);
+            this.sourceHash = new byte[32];
+            in.bytes(sourceHash);
+            this.kind = in.raw();
+            int stringCount = in.varint();
+            int sectionCount = in.varint();
+            this.sectionNames = new int[sectionCount];
+            this.sectionOffsets = new int[sectionCount];
+            this.sectionLengths = new int[sectionCount];
+            for (int i = 0; i < sectionCount; i++) {
+                sectionNames[i] = in.varint();
+                sectionOffsets[i] = in.varint();
+                sectionLengths[i] = in.varint();
+            }
+            this.stringOffsetsStart = in.position;
+            this.strings = new String[stringCount];
+            int stringBytes = 0;
+            if (stringCount > 0) {
+                // 最后一个字符串的偏移加上它自身的长度即为字符串表的总长度
+                Cursor last = new Cursor(buffer, stringOffsetsStart + 4 * stringCount + buffer.getInt(stringOffsetsStart + 4 * (stringCount - 1)));
+                int length = last.varint();
+                stringBytes = last.position + length - stringOffsetsStart - 4 * stringCount;
+            }
+            this.stringDataStart = stringOffsetsStart + 4 * stringCount;
+            int dataStart = stringDataStart + stringBytes;
+            for (int i = 0; i < sectionCount; i++) {
+                sectionOffsets[i] += dataStart;
+                if (sectionOffsets[i] + sectionLengths[i] > buffer.limit()) {
+                    throw new IOException("模型二进制文件被截断");
+                }
+            }
+            this.sections = new Object[sectionCount];
+        }
+
+        public static Reader open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Reader(buffer);
+            }
+        }
+
+        public static Reader wrap(byte[] bytes) throws IOException {
+            return new Reader(ByteBuffer.wrap(bytes));
+        }
+
+        public String grammarVersion() {
+            return grammarVersion;
+        }
+
+        /**
+         * 语法版本与当前一致，且文件记录的源码哈希与 source 相同。
+         */
+        public boolean isCurrent(byte[] source) {
+            return GrammarVersion.get().equals(grammarVersion) && MessageDigest.isEqual(sourceHash, sourceHash(source));
+        }
+
+        public boolean isFunctionModel() {
+            return kind == FUNCTION_MODEL;
+        }
+
+        public int sectionCount() {
+            return sectionNames.length;
+        }
+
+        /**
+         * 分段名: 功能模型第 0 段是模型名，之后是过程名；消息规则模型是消息名。
+         */
+        public String sectionName(int section) {
+            return string(sectionNames[section]);
+        }
+
+        public int procedureCount() {
+            return isFunctionModel() ? sectionCount() - 1 : 0;
+        }
+
+        public ModelIR.Procedure procedure(int index) {
+            if (!isFunctionModel()) {
+                throw new IllegalStateException("不是功能模型");
+            }
+            return (ModelIR.Procedure) section(index + 1);
+        }
+
+        /**
+         * 按名字取出一个过程，只解码这一段；没有时返回 null。
+         */
+        public ModelIR.Procedure procedure(String name) {
+            for (int i = 0; i < procedureCount(); i++) {
+                if (name.equals(sectionName(i + 1))) {
+                    return procedure(i);
+                }
+            }
+            return null;
+        }
+
+        public int ruleSetCount() {
+            return isFunctionModel() ? 0 : sectionCount();
+        }
+
+        public ModelIR.MessageRules ruleSet(int index) {
+            if (isFunctionModel()) {
+                throw new IllegalStateException("不是消息规则模型");
+            }
+            return (ModelIR.MessageRules) section(index);
+        }
+
+        /**
+         * 解码完整模型 (已经单独解码过的分段直接复用)。
+         */
+        public ModelIR.Model model() {
+            ModelIR.Model result = model;
+            if (result == null) {
+                if (isFunctionModel()) {
+                    Declarations declarations = (Declarations) section(0);
+                    List<ModelIR.Procedure> procedures = null;
+                    if (declarations.hasProcedures) {
+                        procedures = new ArrayList<>(procedureCount());
+                        for (int i = 0; i < procedureCount(); i++) {
+                            procedures.add(procedure(i));
+                        }
+                    }
+                    result = new ModelIR.FunctionModel(declarations.name, declarations.types, declarations.actors,
+                            declarations.messages, declarations.discretes, declarations.states, declarations.mappings,
+                            procedures, declarations.rules);
+                } else {
+                    List<ModelIR.MessageRules> ruleSets = new ArrayList<>(ruleSetCount());
+                    for (int i = 0; i < ruleSetCount(); i++) {
+                        ruleSets.add(ruleSet(i));
+                    }
+                    result = new ModelIR.RulesModel(ruleSets);
+                }
+                model = result;
+            }
+            return result;
+        }
+
+        private Object section(int section) {
+            Object decoded = sections[section];
+            if (decoded == null) {
+                Cursor in = new Cursor(buffer, sectionOffsets[section]);
+                if (!isFunctionModel()) {
+                    decoded = ruleSet(in);
+                } else if (section == 0) {
+                    decoded = declarations(in);
+                } else {
+                    decoded = procedure(in);
+                }
+                sections[section] = decoded;
+            }
+            return decoded;
+        }
+
+        private String string(int index) {
+            if (index == 0) {
+                return null;
+            }
+            String value = strings[index - 1];
+            if (value == null) {
+                Cursor in = new Cursor(buffer, stringDataStart + buffer.getInt(stringOffsetsStart + 4 * (index - 1)));
+                byte[] bytes = new byte[in.varint()];
+                in.bytes(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+                strings[index - 1] = value;
+            }
+            return value;
+        }
+
+        private String string(Cursor in) {
+            return string(in.varint());
+        }
+
+        private static int count(Cursor in) {
+            return in.varint() - 1;
+        }
+
+        private Declarations declarations(Cursor in) {
+            String name = string(in);
+            List<ModelIR.TypeDef> types = null;
+            int n = count(in);
+            if (n >= 0) {
+                types = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    types.add(new ModelIR.TypeDef(string(in), string(in), in.varint()));
+                }
+            }
+            List<ModelIR.Actor> actors = null;
+            n = count(in);
+            if (n >= 0) {
+                actors = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    actors.add(new ModelIR.Actor(string(in), string(in), in.varint()));
+                }
+            }
+            List<ModelIR.MessageDecl> messages = null;
+            n = count(in);
+            if (n >= 0) {
+                messages = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    messages.add(new ModelIR.MessageDecl(string(in), in.varint()));
+                }
+            }
+            List<ModelIR.Discrete> discretes = null;
+            n = count(in);
+            if (n >= 0) {
+                discretes = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    String discreteName = string(in);
+                    String forMessage = string(in);
+                    String forField = string(in);
+                    List<ModelIR.DiscreteValue> values = null;
+                    int m = count(in);
+                    if (m >= 0) {
+                        values = new ArrayList<>(m);
+                        for (int j = 0; j < m; j++) {
+                            values.add(new ModelIR.DiscreteValue(string(in), string(in), string(in), string(in)));
+                        }
+                    }
+                    discretes.add(new ModelIR.Discrete(discreteName, forMessage, forField, values, in.varint()));
+                }
+            }
+            List<ModelIR.State> states = null;
+            n = count(in);
+            if (n >= 0) {
+                states = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    states.add(new ModelIR.State(string(in), string(in), expr(in), in.varint()));
+                }
+            }
+            List<ModelIR.Mapping> mappings = null;
+            n = count(in);
+            if (n >= 0) {
+                mappings = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    String mappingName = string(in);
+                    List<ModelIR.MapEntry> entries = null;
+                    int m = count(in);
+                    if (m >= 0) {
+                        entries = new ArrayList<>(m);
+                        for (int j = 0; j < m; j++) {
+                            entries.add(new ModelIR.MapEntry(exprs(in), expr(in)));
+                        }
+                    }
+                    mappings.add(new ModelIR.Mapping(mappingName, entries, event(in), string(in), in.varint()));
+                }
+            }
+            List<ModelIR.EventRule> rules = null;
+            n = count(in);
+            if (n >= 0) {
+                rules = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    String ruleName = string(in);
+                    double priority = Double.longBitsToDouble(in.int64());
+                    ModelIR.Event event = event(in);
+                    List<ModelIR.Consequence> consequences = null;
+                    int m = count(in);
+                    if (m >= 0) {
+                        consequences = new ArrayList<>(m);
+                        for (int j = 0; j < m; j++) {
+                            consequences.add(new ModelIR.Consequence(in.raw() != 0, expr(in), expr(in)));
+                        }
+                    }
+                    rules.add(new ModelIR.EventRule(ruleName, priority, event, consequences, in.varint()));
+                }
+            }
+            boolean hasProcedures = count(in) >= 0;
+            return new Declarations(name, types, actors, messages, discretes, states, mappings, rules, hasProcedures);
+        }
+
+        private ModelIR.Procedure procedure(Cursor in) {
+            String name = string(in);
+            List<ModelIR.ParamDef> params = null;
+            int n = count(in);
+            if (n >= 0) {
+                params = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    params.add(new ModelIR.ParamDef(string(in), string(in)));
+                }
+            }
+            return new ModelIR.Procedure(name, params, string(in), condition(in), statements(in), branches(in), in.varint());
+        }
+
+        private ModelIR.MessageRules ruleSet(Cursor in) {
+            String messageName = string(in);
+            int line = in.varint();
+            List<ModelIR.RuleGroup> groups = null;
+            int n = count(in);
+            if (n >= 0) {
+                groups = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    boolean transmit = in.raw() != 0;
+                    List<ModelIR.TrRule> rules = null;
+                    int m = count(in);
+                    if (m >= 0) {
+                        rules = new ArrayList<>(m);
+                        for (int j = 0; j < m; j++) {
+                            rules.add(new ModelIR.TrRule(string(in), condition(in), string(in), in.varint()));
+                        }
+                    }
+                    groups.add(new ModelIR.RuleGroup(transmit, rules));
+                }
+            }
+            return new ModelIR.MessageRules(messageName, line, groups);
+        }
+
+        private List<ModelIR.Statement> statements(Cursor in) {
+            int n = count(in);
+            if (n < 0) {
+                return null;
+            }
+            List<ModelIR.Statement> statements = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                statements.add(statement(in));
+            }
+            return statements;
+        }
+
+        private List<ModelIR.Branch> branches(Cursor in) {
+            int n = count(in);
+            if (n < 0) {
+                return null;
+            }
+            List<ModelIR.Branch> branches = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                branches.add(new ModelIR.Branch(condition(in), statements(in)));
+            }
+            return branches;
+        }
+
+        private ModelIR.Statement statement(Cursor in) {
+            int tag = in.varint();
+            int line = in.varint();
+            switch (tag) {
+                case STEP:
+                    return new ModelIR.Step(line, STEP_MODIFIERS[in.varint()], in.varint(),
+                            action(in), naturalLanguage(in), string(in));
+                case IF:
+                    return new ModelIR.If(line, branches(in), statements(in));
+                case WHILE:
+                    return new ModelIR.While(line, condition(in), statements(in));
+                case WAIT:
+                    return new ModelIR.Wait(line, duration(in), branches(in));
+                case CALL:
+                    return new ModelIR.Call(line, string(in), params(in));
+                case PARALLEL: {
+                    List<List<ModelIR.Statement>> branches = null;
+                    int n = count(in);
+                    if (n >= 0) {
+                        branches = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            branches.add(statements(in));
+                        }
+                    }
+                    return new ModelIR.Parallel(line, branches);
+                }
+                case ASSIGN:
+                    return new ModelIR.Assign(line, (ModelIR.Access) expr(in), expr(in));
+                case USER_CONFIRM:
+                    return new ModelIR.UserConfirm(line, string(in), statements(in), statements(in));
+                case TIMER:
+                    return new ModelIR.Timer(line, string(in), TIMER_OPS[in.varint()], string(in), duration(in));
+                case TERMINATE:
+                    return new ModelIR.Terminate(line);
+                case CONTINUE:
+                    return new ModelIR.Continue(line);
+                default:
+                    throw new IllegalStateException("未知的语句标签: " + tag);
+            }
+        }
+
+        private ModelIR.Action action(Cursor in) {
+            if (in.raw() == 0) {
+                return null;
+            }
+            return new ModelIR.Action(string(in), VERBS[in.varint()], string(in), params(in),
+                    string(in), expr(in), expr(in));
+        }
+
+        private ModelIR.NaturalLanguage naturalLanguage(Cursor in) {
+            if (in.raw() == 0) {
+                return null;
+            }
+            String intent = string(in);
+            List<String> actors = null;
+            int n = count(in);
+            if (n >= 0) {
+                actors = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    actors.add(string(in));
+                }
+            }
+            return new ModelIR.NaturalLanguage(intent, actors, string(in), string(in));
+        }
+
+        private ModelIR.Duration duration(Cursor in) {
+            if (in.raw() == 0) {
+                return null;
+            }
+            return new ModelIR.Duration(string(in), TIME_UNITS[in.varint()]);
+        }
+
+        private ModelIR.Event event(Cursor in) {
+            if (in.raw() == 0) {
+                return null;
+            }
+            return new ModelIR.Event(EVENT_KINDS[in.varint()], string(in), condition(in),
+                    string(in), string(in), string(in));
+        }
+
+        private List<ModelIR.Condition> conditions(Cursor in) {
+            int n = count(in);
+            if (n < 0) {
+                return null;
+            }
+            List<ModelIR.Condition> conditions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                conditions.add(condition(in));
+            }
+            return conditions;
+        }
+
+        private ModelIR.Condition condition(Cursor in) {
+            int tag = in.varint();
+            switch (tag) {
+                case 0:
+                    return null;
+                case OR:
+                    return new ModelIR.Or(conditions(in));
+                case AND:
+                    return new ModelIR.And(conditions(in));
+                case NOT:
+                    return new ModelIR.Not(condition(in));
+                case GROUP:
+                    return new ModelIR.Group(condition(in));
+                case COMPARE:
+                    return new ModelIR.Compare(expr(in), string(in), expr(in));
+                case IN_SET:
+                    return new ModelIR.InSet(expr(in), exprs(in));
+                case HAS_FIELD:
+                    return new ModelIR.HasField(string(in), string(in));
+                case TIME_SINCE:
+                    return new ModelIR.TimeSince(event(in), duration(in));
+                case STATUS_IS:
+                    return new ModelIR.StatusIs(string(in), in.raw() != 0, string(in));
+                case EVENT:
+                    return new ModelIR.EventCondition(event(in));
+                case TEXT:
+                    return new ModelIR.TextCondition(string(in));
+                case PLATFORM:
+                    return new ModelIR.PlatformCondition(string(in), string(in), expr(in));
+                case ON_EVENT:
+                    return new ModelIR.OnEvent(string(in), string(in));
+                case FIELD:
+                    return new ModelIR.FieldCondition(string(in), string(in), string(in), expr(in));
+                case TIMING:
+                    return new ModelIR.TimingCondition(TIMING_KINDS[in.varint()], string(in));
+                default:
+                    throw new IllegalStateException("未知的条件标签: " + tag);
+            }
+        }
+
+        private List<ModelIR.Expr> exprs(Cursor in) {
+            int n = count(in);
+            if (n < 0) {
+                return null;
+            }
+            List<ModelIR.Expr> exprs = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                exprs.add(expr(in));
+            }
+            return exprs;
+        }
+
+        private List<ModelIR.Param> params(Cursor in) {
+            int n = count(in);
+            if (n < 0) {
+                return null;
+            }
+            List<ModelIR.Param> params = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                params.add(new ModelIR.Param(string(in), expr(in)));
+            }
+            return params;
+        }
+
+        private ModelIR.Expr expr(Cursor in) {
+            int tag = in.varint();
+            switch (tag) {
+                case 0:
+                    return null;
+                case LITERAL:
+                    return new ModelIR.Literal(LITERAL_KINDS[in.varint()], string(in));
+                case ACCESS: {
+                    String root = string(in);
+                    List<ModelIR.AccessSuffix> suffixes = null;
+                    int n = count(in);
+                    if (n >= 0) {
+                        suffixes = new ArrayList<>(n);
+                        for (int i = 0; i < n; i++) {
+                            suffixes.add(new ModelIR.AccessSuffix(string(in), params(in)));
+                        }
+                    }
+                    return new ModelIR.Access(root, suffixes);
+                }
+                case MESSAGE_ID:
+                    return new ModelIR.MessageId(string(in));
+                case ARITHMETIC:
+                    return new ModelIR.Arithmetic(exprs(in), string(in));
+                case PAREN:
+                    return new ModelIR.ParenExpr(expr(in));
+                case STRUCT:
+                    return new ModelIR.StructLiteral(params(in));
+                case LIST:
+                    return new ModelIR.ListLiteral(exprs(in));
+                default:
+                    throw new IllegalStateException("未知的表达式标签: " + tag);
+            }
+        }
+    }
+
+    /**
+     * 功能模型第 0 段: 过程以外的全部声明。
+     */
+    private static final class Declarations {
+        final String name;
+        final List<ModelIR.TypeDef> types;
+        final List<ModelIR.Actor> actors;
+        final List<ModelIR.MessageDecl> messages;
+        final List<ModelIR.Discrete> discretes;
+        final List<ModelIR.State> states;
+        final List<ModelIR.Mapping> mappings;
+        final List<ModelIR.EventRule> rules;
+        final boolean hasProcedures;
+
+        Declarations(String name, List<ModelIR.TypeDef> types, List<ModelIR.Actor> actors, List<ModelIR.MessageDecl> messages,
+                     List<ModelIR.Discrete> discretes, List<ModelIR.State> states, List<ModelIR.Mapping> mappings,
+                     List<ModelIR.EventRule> rules, boolean hasProcedures) {
+            this.name = name;
+            this.types = types;
+            this.actors = actors;
+            this.messages = messages;
+            this.discretes = discretes;
+            this.states = states;
+            this.mappings = mappings;
+            this.rules = rules;
+            this.hasProcedures = hasProcedures;
+        }
+    }
+
+    /**
+     * 映射缓冲上的读位置 (绝对下标读取，不改变共享缓冲的状态)。
+     */
+    private static final class Cursor {
+        private final ByteBuffer buffer;
+        private int position;
+
+        Cursor(ByteBuffer buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int raw() {
+            return buffer.get(position++);
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("varint 过长");
+        }
+
+        long int64() {
+            long value = buffer.getLong(position);
+            position += 8;
+            return value;
+        }
+
+        void bytes(byte[] target) {
+            buffer.get(position, target);
+            position += target.length;
+        }
+    }
+
+    private static <T> List<T> each(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    // ========================================================================
+    // 命令行: 生成模型二进制文件，并对比重新加载与重新解析的耗时、堆占用
+    // ========================================================================
+
+    public static void main(String[] args) throws IOException {
+        List<File> files = new ArrayList<>();
+        String outDir = "output/.cache/models";
+        int repeat = 1000;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                File file = new File(arg);
+                File[] children = file.isDirectory() ? file.listFiles((d, name) -> name.endsWith(".dsl")) : null;
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                } else {
+                    files.add(file);
+                }
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(arg + " 缺少参数值。");
+            }
+            String value = args[++i];
+            switch (arg) {
+                case "--out" -> outDir = value;
+                case "--repeat" -> repeat = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("未知参数: " + arg);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("用法: ModelBinary 模型.dsl|目录... [--out 目录] [--repeat N]");
+        }
+
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false);
+        for (File file : files) {
+            byte[] source = Files.readAllBytes(file.toPath());
+            String text = new String(source, StandardCharsets.UTF_8);
+            DslMode mode = DslMode.fromFileName(file.getName());
+            long started = System.nanoTime();
+            ParseResult result = Link16ParserRunner.parse(file.getName(), text, mode, options);
+            long parseNanos = System.nanoTime() - started;
+            if (!result.success || result.model == null) {
+                System.out.println("⚠️ 跳过 " + file.getName() + ": 解析失败 (" + result.errorCount + " 个错误)");
+                continue;
+            }
+            String baseName = file.getName().replaceFirst("\\.dsl$", "");
+            Path target = Path.of(outDir, baseName + ".l16m");
+            write(result.model, source, target);
+
+            // 预热后取平均: 打开 + 完整解码，以及打开 + 只解码第一个分段
+            long fullNanos = 0;
+            long sectionNanos = 0;
+            for (int round = 0; round < 2; round++) {
+                long full = System.nanoTime();
+                for (int i = 0; i < repeat; i++) {
+                    Reader reader = Reader.open(target);
+                    if (reader.model() == null) {
+                        throw new IllegalStateException("重新加载失败: " + target);
+                    }
+                }
+                fullNanos = (System.nanoTime() - full) / repeat;
+                long single = System.nanoTime();
+                for (int i = 0; i < repeat; i++) {
+                    Reader reader = Reader.open(target);
+                    if (reader.isFunctionModel() ? reader.procedureCount() > 0 && reader.procedure(0) == null
+                            : reader.ruleSetCount() > 0 && reader.ruleSet(0) == null) {
+                        throw new IllegalStateException("重新加载失败: " + target);
+                    }
+                }
+                sectionNanos = (System.nanoTime() - single) / repeat;
+            }
+            boolean roundTrip = ModelPrinter.toText(result.model).equals(ModelPrinter.toText(Reader.open(target).model()));
+
+            // 副本数随文件大小递减，避免大文件的语法树副本撑爆堆
+            int copies = (int) Math.max(2, Math.min(100, 4_000_000L / source.length));
+            long treeBytes = retainedBytes(copies, () -> Link16ParserContext.current()
+                    .parse(org.antlr.v4.runtime.CharStreams.fromString(text), mode, null, null).tree);
+            long modelBytes = retainedBytes(copies, () -> {
+                try {
+                    return Reader.open(target).model();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            System.out.printf("📦 %s: 源码 %d 字节 -> %s %d 字节 (%d 个分段)%s%n", file.getName(), source.length,
+                    target.getFileName(), Files.size(target), Reader.open(target).sectionCount(),
+                    roundTrip ? "" : "  ❌ 往返不一致");
+            System.out.printf("   解析 %.2f ms | 加载完整模型 %.1f µs | 只加载一个分段 %.1f µs | 堆占用: 语法树 %d KB, 模型 %d KB%n",
+                    parseNanos / 1e6, fullNanos / 1e3, sectionNanos / 1e3, treeBytes / 1024, modelBytes / 1024);
+        }
+    }
+
+    /**
+     * 粗略估计一个对象图的堆占用: 保留若干份副本，比较 GC 前后的已用堆。
+     */
+    private static long retainedBytes(int copies, java.util.function.Supplier<Object> factory) {
+        Object[] kept = new Object[copies];
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        kept[0] = factory.get();
+        kept[0] = null;
+        System.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        for (int i = 0; i < copies; i++) {
+            kept[i] = factory.get();
+        }
+        System.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        if (kept[copies - 1] == null) {
+            return 0;
+        }
+        return Math.max(0, (after - before) / copies);
+    }
+}
@@ -0,0 +1,848 @@
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link16ModelVisitor 一次遍历得到的类型化模型 (IR)，供下游工具直接使用，不必再从日志文本里抠。
+ * <p>
+ * IR 不引用任何 token 或语法树节点，构建完成后语法树即可回收；所有对象不可变，列表只读。
+ * 标识符与消息名在同一次解析内驻留 (相同文本共享同一个 String 实例)；字符串字面量只去掉首尾的引号，
+ * 转义序列保持原样。表达式与条件保留完整的树结构，需要与 getText() 一致的 token 拼接文本时用 {@link ModelPrinter#text}。
+ * <p>
+ * 可选的语法部分用 null 表示 "源码中没有写"，以便和 "写了但为空" 区分 (例如 CALL X 与 CALL X())。
+ */
+public final class ModelIR {
+
+    private ModelIR() {
+    }
+
+    /**
+     * 一个 DSL 文件的模型: {@link FunctionModel} 或 {@link RulesModel}。
+     */
+    public abstract static class Model {
+    }
+
+    private static <T> List<T> immutable(List<T> list) {
+        return list == null ? null : List.copyOf(list);
+    }
+
+    // ========================================================================
+    // 功能模型
+    // ========================================================================
+
+    public static class FunctionModel extends Model {
+        public final String name;
+        public final List<TypeDef> types;
+        public final List<Actor> actors;
+        public final List<MessageDecl> messages;
+        public final List<Discrete> discretes;
+        public final List<State> states;
+        public final List<Mapping> mappings;
+        public final List<Procedure> procedures;
+        public final List<EventRule> rules;
+
+        public FunctionModel(String name, List<TypeDef> types, List<Actor> actors, List<MessageDecl> messages,
+                             List<Discrete> discretes, List<State> states, List<Mapping> mappings,
+                             List<Procedure> procedures, List<EventRule> rules) {
+            this.name = name;
+            this.types = immutable(types);
+            this.actors = immutable(actors);
+            this.messages = immutable(messages);
+            this.discretes = immutable(discretes);
+            this.states = immutable(states);
+            this.mappings = immutable(mappings);
+            this.procedures = immutable(procedures);
+            this.rules = immutable(rules);
+        }
+    }
+
+    public static class TypeDef {
+        public final String name;
+        // dataType 的 token 拼接文本，例如 INTEGER、STRUCT{id:INTEGER;}
+        public final String type;
+        public final int line;
+
+        public TypeDef(String name, String type, int line) {
+            this.name = name;
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    public static class Actor {
+        public final String name;
+        // C2_JU / NON_C2_JU / GENERIC_PLATFORM / NON_IU
+        public final String type;
+        public final int line;
+
+        public Actor(String name, String type, int line) {
+            this.name = name;
+            this.type = type;
+            this.line = line;
+        }
+    }
+
+    public static class MessageDecl {
+        // 消息名的 token 拼接文本，例如 J3.2、J7.0C1
+        public final String name;
+        public final int line;
+
+        public MessageDecl(String name, int line) {
+            this.name = name;
+            this.line = line;
+        }
+    }
+
+    /**
+     * ENUM Name (FOR Message.Field)? { ... }
+     */
+    public static class Discrete {
+        public final String name;
+        public final String forMessage;
+        public final String forField;
+        public final List<DiscreteValue> values;
+        public final int line;
+
+        public Discrete(String name, String forMessage, String forField, List<DiscreteValue> values, int line) {
+            this.name = name;
+            this.forMessage = forMessage;
+            this.forField = forField;
+            this.values = immutable(values);
+            this.line = line;
+        }
+    }
+
+    /**
+     * Name = low "描述"; 或 Name IN_RANGE(low, high) "描述"; (high 为 null 表示单值)
+     */
+    public static class DiscreteValue {
+        public final String name;
+        public final String low;
+        public final String high;
+        public final String description;
+
+        public DiscreteValue(String name, String low, String high, String description) {
+            this.name = name;
+            this.low = low;
+            this.high = high;
+            this.description = description;
+        }
+    }
+
+    public static class State {
+        public final String name;
+        public final String type;
+        public final Expr initialValue;
+        public final int line;
+
+        public State(String name, String type, Expr initialValue, int line) {
+            this.name = name;
+            this.type = type;
+            this.initialValue = initialValue;
+            this.line = line;
+        }
+    }
+
+    /**
+     * MAP Name { key -> value; ... } (entries 非空) 或 MAP_STATE Name FROM event TO target (event 非空)。
+     */
+    public static class Mapping {
+        public final String name;
+        public final List<MapEntry> entries;
+        public final Event event;
+        public final String target;
+        public final int line;
+
+        public Mapping(String name, List<MapEntry> entries, Event event, String target, int line) {
+            this.name = name;
+            this.entries = immutable(entries);
+            this.event = event;
+            this.target = target;
+            this.line = line;
+        }
+    }
+
+    public static class MapEntry {
+        // (a, b) -> c 时有多个键
+        public final List<Expr> keys;
+        public final Expr value;
+
+        public MapEntry(List<Expr> keys, Expr value) {
+            this.keys = immutable(keys);
+            this.value = value;
+        }
+    }
+
+    public static class Procedure {
+        public final String name;
+        // 没有参数括号时为 null
+        public final List<ParamDef> params;
+        public final String description;
+        public final Condition trigger;
+        public final List<Statement> steps;
+        // 没有 EXCEPTION 块时为 null
+        public final List<Branch> exceptionHandlers;
+        public final int line;
+
+        public Procedure(String name, List<ParamDef> params, String description, Condition trigger,
+                         List<Statement> steps, List<Branch> exceptionHandlers, int line) {
+            this.name = name;
+            this.params = immutable(params);
+            this.description = description;
+            this.trigger = trigger;
+            this.steps = immutable(steps);
+            this.exceptionHandlers = immutable(exceptionHandlers);
+            this.line = line;
+        }
+    }
+
+    public static class ParamDef {
+        public final String name;
+        public final String type;
+
+        public ParamDef(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+    }
+
+    /**
+     * RULE "名称" PRIORITY n { ON event THEN { MUST_SEND ...; } }
+     */
+    public static class EventRule {
+        public final String name;
+        public final double priority;
+        public final Event event;
+        public final List<Consequence> consequences;
+        public final int line;
+
+        public EventRule(String name, double priority, Event event, List<Consequence> consequences, int line) {
+            this.name = name;
+            this.priority = priority;
+            this.event = event;
+            this.consequences = immutable(consequences);
+            this.line = line;
+        }
+    }
+
+    public static class Consequence {
+        // MUST_BROADCAST 为 true，MUST_SEND 为 false
+        public final boolean broadcast;
+        public final Expr message;
+        public final Expr argument;
+
+        public Consequence(boolean broadcast, Expr message, Expr argument) {
+            this.broadcast = broadcast;
+            this.message = message;
+            this.argument = argument;
+        }
+    }
+
+    // ========================================================================
+    // 语句
+    // ========================================================================
+
+    public abstract static class Statement {
+        public final int line;
+
+        protected Statement(int line) {
+            this.line = line;
+        }
+    }
+
+    public enum StepModifier { NONE, OPTIONAL, REPEAT, OVERRIDE }
+
+    /**
+     * STEP 语句: action、naturalLanguage、description 三者恰有一个非空。
+     */
+    public static class Step extends Statement {
+        public final StepModifier modifier;
+        // REPEAT n TIMES 的 n，其他修饰符为 0
+        public final int repeatCount;
+        public final Action action;
+        public final NaturalLanguage naturalLanguage;
+        public final String description;
+
+        public Step(int line, StepModifier modifier, int repeatCount, Action action, NaturalLanguage naturalLanguage, String description) {
+            super(line);
+            this.modifier = modifier;
+            this.repeatCount = repeatCount;
+            this.action = action;
+            this.naturalLanguage = naturalLanguage;
+            this.description = description;
+        }
+    }
+
+    public enum Verb { SENDS, BROADCASTS, NOTIFY }
+
+    /**
+     * sender SENDS msg(params) TO target / sender BROADCASTS msg(params) TO_ADDRESS address / sender NOTIFY payload TO target
+     */
+    public static class Action {
+        public final String sender;
+        public final Verb verb;
+        // NOTIFY 时为 null
+        public final String message;
+        // 没有参数括号时为 null
+        public final List<Param> params;
+        // BROADCASTS 时为 null
+        public final String target;
+        public final Expr address;
+        public final Expr payload;
+
+        public Action(String sender, Verb verb, String message, List<Param> params, String target, Expr address, Expr payload) {
+            this.sender = sender;
+            this.verb = verb;
+            this.message = message;
+            this.params = immutable(params);
+            this.target = target;
+            this.address = address;
+            this.payload = payload;
+        }
+    }
+
+    public static class NaturalLanguage {
+        public final String intent;
+        // 没有 ACTORS 子句时为 null
+        public final List<String> actors;
+        public final String dataContext;
+        public final String description;
+
+        public NaturalLanguage(String intent, List<String> actors, String dataContext, String description) {
+            this.intent = intent;
+            this.actors = immutable(actors);
+            this.dataContext = dataContext;
+            this.description = description;
+        }
+    }
+
+    /**
+     * 带条件的语句块: IF / ELSE_IF 分支、WAIT 与 EXCEPTION 中的 ON ... THEN 子句。
+     */
+    public static class Branch {
+        public final Condition condition;
+        public final List<Statement> body;
+
+        public Branch(Condition condition, List<Statement> body) {
+            this.condition = condition;
+            this.body = immutable(body);
+        }
+    }
+
+    public static class If extends Statement {
+        // 第一个是 IF，其余依次是 ELSE_IF
+        public final List<Branch> branches;
+        // 没有 ELSE 时为 null
+        public final List<Statement> elseBody;
+
+        public If(int line, List<Branch> branches, List<Statement> elseBody) {
+            super(line);
+            this.branches = immutable(branches);
+            this.elseBody = immutable(elseBody);
+        }
+    }
+
+    public static class While extends Statement {
+        public final Condition condition;
+        public final List<Statement> body;
+
+        public While(int line, Condition condition, List<Statement> body) {
+            super(line);
+            this.condition = condition;
+            this.body = immutable(body);
+        }
+    }
+
+    public static class Wait extends Statement {
+        // WAIT 不带 FOR 时为 null
+        public final Duration timeout;
+        public final List<Branch> clauses;
+
+        public Wait(int line, Duration timeout, List<Branch> clauses) {
+            super(line);
+            this.timeout = timeout;
+            this.clauses = immutable(clauses);
+        }
+    }
+
+    public static class Call extends Statement {
+        // 限定名，例如 Lib.Sub
+        public final String target;
+        // 没有参数括号时为 null
+        public final List<Param> params;
+
+        public Call(int line, String target, List<Param> params) {
+            super(line);
+            this.target = target;
+            this.params = immutable(params);
+        }
+    }
+
+    public static class Parallel extends Statement {
+        public final List<List<Statement>> branches;
+
+        public Parallel(int line, List<List<Statement>> branches) {
+            super(line);
+            this.branches = immutable(branches);
+        }
+    }
+
+    public static class Assign extends Statement {
+        public final Access target;
+        public final Expr value;
+
+        public Assign(int line, Access target, Expr value) {
+            super(line);
+            this.target = target;
+            this.value = value;
+        }
+    }
+
+    public static class UserConfirm extends Statement {
+        public final String prompt;
+        public final List<Statement> confirmed;
+        // 没有 ELSE 时为 null
+        public final List<Statement> otherwise;
+
+        public UserConfirm(int line, String prompt, List<Statement> confirmed, List<Statement> otherwise) {
+            super(line);
+            this.prompt = prompt;
+            this.confirmed = immutable(confirmed);
+            this.otherwise = immutable(otherwise);
+        }
+    }
+
+    public enum TimerOp { START_TIMER, STOP_TIMER, RESET_TIMER }
+
+    public static class Timer extends Statement {
+        public final String actor;
+        public final TimerOp op;
+        public final String timer;
+        // 只有 START_TIMER 有时长
+        public final Duration duration;
+
+        public Timer(int line, String actor, TimerOp op, String timer, Duration duration) {
+            super(line);
+            this.actor = actor;
+            this.op = op;
+            this.timer = timer;
+            this.duration = duration;
+        }
+    }
+
+    public static class Terminate extends Statement {
+        public Terminate(int line) {
+            super(line);
+        }
+    }
+
+    public static class Continue extends Statement {
+        public Continue(int line) {
+            super(line);
+        }
+    }
+
+    /**
+     * NUMBER SECONDS / NUMBER MILLISECONDS，amount 保留源码中的数字文本。
+     */
+    public static class Duration {
+        public final String amount;
+        public final TimeUnit unit;
+
+        public Duration(String amount, TimeUnit unit) {
+            this.amount = amount;
+            this.unit = unit;
+        }
+
+        public double toMillis() {
+            double value = Double.parseDouble(amount);
+            return unit == TimeUnit.SECONDS ? value * 1000 : value;
+        }
+    }
+
+    public enum EventKind { MESSAGE_SENT, MESSAGE_RECEIVED, TEXT, TIMER_EXPIRED, TIMEOUT }
+
+    public static class Event {
+        public final EventKind kind;
+        // MESSAGE_SENT / MESSAGE_RECEIVED
+        public final String message;
+        public final Condition filter;
+        public final String from;
+        public final String to;
+        // TEXT 为描述文本，TIMER_EXPIRED 为定时器名
+        public final String text;
+
+        public Event(EventKind kind, String message, Condition filter, String from, String to, String text) {
+            this.kind = kind;
+            this.message = message;
+            this.filter = filter;
+            this.from = from;
+            this.to = to;
+            this.text = text;
+        }
+    }
+
+    // ========================================================================
+    // 条件 (功能模型的 conditionExpression 与消息规则的 trConditionExpression 共用)
+    // ========================================================================
+
+    public abstract static class Condition {
+    }
+
+    public static class Or extends Condition {
+        public final List<Condition> operands;
+
+        public Or(List<Condition> operands) {
+            this.operands = immutable(operands);
+        }
+    }
+
+    public static class And extends Condition {
+        public final List<Condition> operands;
+
+        public And(List<Condition> operands) {
+            this.operands = immutable(operands);
+        }
+    }
+
+    public static class Not extends Condition {
+        public final Condition operand;
+
+        public Not(Condition operand) {
+            this.operand = operand;
+        }
+    }
+
+    /**
+     * 源码中的括号，求值时与 inner 相同，保留它是为了还原原文。
+     */
+    public static class Group extends Condition {
+        public final Condition inner;
+
+        public Group(Condition inner) {
+            this.inner = inner;
+        }
+    }
+
+    public static class Compare extends Condition {
+        public final Expr left;
+        // == != > < >= <=
+        public final String operator;
+        public final Expr right;
+
+        public Compare(Expr left, String operator, Expr right) {
+            this.left = left;
+            this.operator = operator;
+            this.right = right;
+        }
+    }
+
+    /**
+     * value IN (a, b, ...)
+     */
+    public static class InSet extends Condition {
+        public final Expr value;
+        public final List<Expr> candidates;
+
+        public InSet(Expr value, List<Expr> candidates) {
+            this.value = value;
+            this.candidates = immutable(candidates);
+        }
+    }
+
+    public static class HasField extends Condition {
+        public final String message;
+        public final String field;
+
+        public HasField(String message, String field) {
+            this.message = message;
+            this.field = field;
+        }
+    }
+
+    /**
+     * TIME_SINCE(event) > limit
+     */
+    public static class TimeSince extends Condition {
+        public final Event event;
+        public final Duration limit;
+
+        public TimeSince(Event event, Duration limit) {
+            this.event = event;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * actor.STATUS == status (equal 为 false 时是 !=)
+     */
+    public static class StatusIs extends Condition {
+        public final String actor;
+        public final boolean equal;
+        // ACTIVE / INACTIVE / STANDBY
+        public final String status;
+
+        public StatusIs(String actor, boolean equal, String status) {
+            this.actor = actor;
+            this.equal = equal;
+            this.status = status;
+        }
+    }
+
+    public static class EventCondition extends Condition {
+        public final Event event;
+
+        public EventCondition(Event event) {
+            this.event = event;
+        }
+    }
+
+    /**
+     * Text("自然语言条件")
+     */
+    public static class TextCondition extends Condition {
+        public final String text;
+
+        public TextCondition(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Platform.Role / Platform.Capability / Platform.STATUS operator value
+     */
+    public static class PlatformCondition extends Condition {
+        public final String attribute;
+        public final String operator;
+        public final Expr value;
+
+        public PlatformCondition(String attribute, String operator, Expr value) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    /**
+     * OnEvent(ReceiptOf(msg)) 或 OnEvent(SystemCue("...")): receiptOf 与 systemCue 恰有一个非空。
+     */
+    public static class OnEvent extends Condition {
+        public final String receiptOf;
+        public final String systemCue;
+
+        public OnEvent(String receiptOf, String systemCue) {
+            this.receiptOf = receiptOf;
+            this.systemCue = systemCue;
+        }
+    }
+
+    /**
+     * Field(msg.field) operator value (message 可以为 null)
+     */
+    public static class FieldCondition extends Condition {
+        public final String message;
+        public final String field;
+        public final String operator;
+        public final Expr value;
+
+        public FieldCondition(String message, String field, String operator, Expr value) {
+            this.message = message;
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    public enum TimingKind { PERIODIC, ON_UPDATE, ON_DEMAND }
+
+    /**
+     * Timing is Periodic("...") / OnUpdate / OnDemand
+     */
+    public static class TimingCondition extends Condition {
+        public final TimingKind kind;
+        // 只有 PERIODIC 有周期描述
+        public final String period;
+
+        public TimingCondition(TimingKind kind, String period) {
+            this.kind = kind;
+            this.period = period;
+        }
+    }
+
+    // ========================================================================
+    // 表达式
+    // ========================================================================
+
+    public abstract static class Expr {
+    }
+
+    public enum LiteralKind { NUMBER, STRING, BOOLEAN, NULL }
+
+    public static class Literal extends Expr {
+        public final LiteralKind kind;
+        // NUMBER 为数字原文，STRING 为去掉引号的内容，BOOLEAN 为 TRUE / FALSE，NULL 为 NULL
+        public final String text;
+
+        public Literal(LiteralKind kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 访问路径: root 后跟若干 .member 或 (args)，例如 Track.Id(x=1).Name；单独的标识符也是一个 Access。
+     */
+    public static class Access extends Expr {
+        public final String root;
+        public final List<AccessSuffix> suffixes;
+
+        public Access(String root, List<AccessSuffix> suffixes) {
+            this.root = root;
+            this.suffixes = immutable(suffixes);
+        }
+    }
+
+    /**
+     * .member (member 非空) 或 (args) (member 为空，args 可以是空列表)。
+     */
+    public static class AccessSuffix {
+        public final String member;
+        public final List<Param> args;
+
+        public AccessSuffix(String member, List<Param> args) {
+            this.member = member;
+            this.args = immutable(args);
+        }
+    }
+
+    /**
+     * 表达式中直接出现的消息号，例如 J3.2
+     */
+    public static class MessageId extends Expr {
+        public final String id;
+
+        public MessageId(String id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * 同一优先级的左结合运算链: operands[0] op[0] operands[1] op[1] ...，operators 的第 i 个字符是第 i 个运算符 (+ - * /)。
+     * 加减链的操作数可以是乘除链，反之只会经由 ParenExpr 出现。
+     */
+    public static class Arithmetic extends Expr {
+        public final List<Expr> operands;
+        public final String operators;
+
+        public Arithmetic(List<Expr> operands, String operators) {
+            this.operands = immutable(operands);
+            this.operators = operators;
+        }
+    }
+
+    public static class ParenExpr extends Expr {
+        public final Expr inner;
+
+        public ParenExpr(Expr inner) {
+            this.inner = inner;
+        }
+    }
+
+    /**
+     * { name = expr, ... }
+     */
+    public static class StructLiteral extends Expr {
+        public final List<Param> entries;
+
+        public StructLiteral(List<Param> entries) {
+            this.entries = immutable(entries);
+        }
+    }
+
+    /**
+     * 消息规则中的 [v1, v2, ...]
+     */
+    public static class ListLiteral extends Expr {
+        public final List<Expr> items;
+
+        public ListLiteral(List<Expr> items) {
+            this.items = immutable(items);
+        }
+    }
+
+    public static class Param {
+        public final String name;
+        public final Expr value;
+
+        public Param(String name, Expr value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    // ========================================================================
+    // 消息规则模型
+    // ========================================================================
+
+    public static class RulesModel extends Model {
+        public final List<MessageRules> ruleSets;
+
+        public RulesModel(List<MessageRules> ruleSets) {
+            this.ruleSets = immutable(ruleSets);
+        }
+    }
+
+    /**
+     * Message J3.2 Rules { ... }。流式解析 (Link16StreamingRulesParser) 逐个产出的也是这个类型。
+     */
+    public static class MessageRules {
+        // msgName 的 token 拼接文本 (写成字符串时带引号)
+        public final String messageName;
+        public final int line;
+        public final List<RuleGroup> groups;
+
+        public MessageRules(String messageName, int line, List<RuleGroup> groups) {
+            this.messageName = messageName;
+            this.line = line;
+            this.groups = immutable(groups);
+        }
+
+        public int ruleCount() {
+            int count = 0;
+            for (RuleGroup group : groups) {
+                count += group.rules.size();
+            }
+            return count;
+        }
+    }
+
+    /**
+     * TransmitRules / ReceiveRules 规则组，按源文件中的顺序保存。
+     */
+    public static class RuleGroup {
+        public final boolean transmit;
+        public final List<TrRule> rules;
+
+        public RuleGroup(boolean transmit, List<TrRule> rules) {
+            this.transmit = transmit;
+            this.rules = immutable(rules);
+        }
+    }
+
+    /**
+     * Rule "名称" { Condition: ... Action: "..." }。没有名称时 name 为 null；
+     * 条件或动作因语法错误缺失时 (只会出现在流式解析中) condition / action 为 null。
+     */
+    public static class TrRule {
+        public final String name;
+        public final Condition condition;
+        public final String action;
+        public final int line;
+
+        public TrRule(String name, Condition condition, String action, int line) {
+            this.name = name;
+            this.condition = condition;
+            this.action = action;
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+import java.util.List;
+
+/**
+ * 把 {@link ModelIR} 输出成解析日志中 "[Visitor 数据提取结果]" 一节的文本。
+ * <p>
+ * 格式与原先直接在 Visitor 里打印的完全一致 (包括 IF 分支里只打印 STEP / ASSIGN / IF / CALL 这几种语句)，
+ * 原来用 getText() 输出的部分由 {@link #text} 从 IR 还原成 token 直接拼接的文本。
+ */
+public final class ModelPrinter {
+
+    private static final String NL = System.lineSeparator();
+
+    private ModelPrinter() {
+    }
+
+    /**
+     * 流式解析时逐个规则集输出 (不包含 "=== 解析消息收发规则模型 ===" 标题)。
+     */
+    public static String toText(ModelIR.MessageRules messageRules) {
+        StringBuilder sb = new StringBuilder();
+        appendMessageRules(sb, messageRules);
+        return sb.toString();
+    }
+
+    public static String toText(ModelIR.Model model) {
+        StringBuilder sb = new StringBuilder();
+        if (model instanceof ModelIR.FunctionModel) {
+            appendFunctionModel(sb, (ModelIR.FunctionModel) model);
+        } else if (model instanceof ModelIR.RulesModel) {
+            sb.append("=== 解析消息收发规则模型 ===").append(NL);
+            for (ModelIR.MessageRules messageRules : ((ModelIR.RulesModel) model).ruleSets) {
+                appendMessageRules(sb, messageRules);
+            }
+        }
+        return sb.toString();
+    }
+
+    // ========================================================================
+    // 功能模型
+    // ========================================================================
+
+    private static void appendFunctionModel(StringBuilder sb, ModelIR.FunctionModel model) {
+        sb.append("=== 解析功能模型: ").append(model.name).append(" ===").append(NL);
+        for (ModelIR.Actor actor : model.actors) {
+            sb.append("  [发现参与者] 名称: ").append(actor.name).append(", 类型: ").append(actor.type).append(NL);
+        }
+        if (!model.messages.isEmpty()) {
+            sb.append("\n[静态定义] 消息列表 (MESSAGES):").append(NL);
+            for (ModelIR.MessageDecl message : model.messages) {
+                sb.append("  - ").append(message.name).append(NL);
+            }
+        }
+        for (ModelIR.Discrete discrete : model.discretes) {
+            sb.append("\n[静态定义] 枚举集合: ").append(discrete.name).append(NL);
+            for (ModelIR.DiscreteValue value : discrete.values) {
+                sb.append("  |-- ").append(value.name).append(' ');
+                if (value.high != null) {
+                    sb.append("IN_RANGE(").append(value.low).append(',').append(value.high).append(')');
+                } else {
+                    sb.append('=').append(value.low);
+                }
+                sb.append(" (\"").append(value.description).append("\")").append(NL);
+            }
+        }
+        for (ModelIR.State state : model.states) {
+            sb.append("\n[静态定义] 全局状态: ").append(state.name);
+            sb.append(" (类型: ").append(state.type).append(')');
+            if (state.initialValue != null) {
+                sb.append(" 默认值 = ");
+                appendExpr(sb, state.initialValue, "");
+            }
+            sb.append(NL);
+        }
+        for (ModelIR.Mapping mapping : model.mappings) {
+            sb.append("\n[静态定义] 映射表: ").append(mapping.name).append(NL);
+        }
+        for (ModelIR.Procedure procedure : model.procedures) {
+            appendProcedure(sb, procedure);
+        }
+    }
+
+    private static void appendProcedure(StringBuilder sb, ModelIR.Procedure procedure) {
+        String description = procedure.description == null ? "" : procedure.description.replace("\"", "");
+        sb.append("\n[解析流程] ").append(procedure.name).append(" (").append(description).append(')').append(NL);
+        if (procedure.params != null) {
+            sb.append("    (参数定义: (");
+            for (int i = 0; i < procedure.params.size(); i++) {
+                ModelIR.ParamDef param = procedure.params.get(i);
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(param.name).append(':').append(param.type);
+            }
+            sb.append("))").append(NL);
+        }
+        if (procedure.trigger != null) {
+            sb.append("    [触发条件] ");
+            appendCondition(sb, procedure.trigger, "");
+            sb.append(NL);
+        }
+        for (ModelIR.Statement statement : procedure.steps) {
+            appendStatement(sb, statement);
+        }
+    }
+
+    private static void appendStatement(StringBuilder sb, ModelIR.Statement statement) {
+        if (statement instanceof ModelIR.Step) {
+            appendStep(sb, (ModelIR.Step) statement);
+        } else if (statement instanceof ModelIR.Assign) {
+            ModelIR.Assign assign = (ModelIR.Assign) statement;
+            sb.append("-> 赋值操作: ");
+            appendExpr(sb, assign.target, "");
+            sb.append(" = ");
+            appendExpr(sb, assign.value, "");
+            sb.append(NL);
+        } else if (statement instanceof ModelIR.If) {
+            appendIf(sb, (ModelIR.If) statement);
+        } else if (statement instanceof ModelIR.Call) {
+            sb.append("调用子流程: ").append(((ModelIR.Call) statement).target).append(NL);
+        }
+        // 其他语句 (WAIT、WHILE 等) 日志里不展开
+    }
+
+    private static void appendStep(StringBuilder sb, ModelIR.Step step) {
+        sb.append("    -> 步骤: ");
+        if (step.action != null) {
+            appendAction(sb, step.action, "");
+        } else if (step.naturalLanguage != null) {
+            sb.append("自然语言描述: ");
+            appendNaturalLanguage(sb, step.naturalLanguage);
+        } else if (step.description != null) {
+            sb.append("描述: \"").append(step.description).append('"');
+        } else {
+            sb.append("未知步骤内容");
+        }
+        sb.append(NL);
+    }
+
+    private static void appendIf(StringBuilder sb, ModelIR.If ifStatement) {
+        for (int i = 0; i < ifStatement.branches.size(); i++) {
+            ModelIR.Branch branch = ifStatement.branches.get(i);
+            sb.append(i == 0 ? "    [逻辑判断] IF " : "    [逻辑判断] ELSE IF ");
+            appendCondition(sb, branch.condition, "");
+            sb.append(NL);
+            appendBranchBody(sb, branch.body);
+        }
+        if (ifStatement.elseBody != null) {
+            sb.append("    [逻辑判断] ELSE").append(NL);
+            appendBranchBody(sb, ifStatement.elseBody);
+        }
+    }
+
+    private static void appendBranchBody(StringBuilder sb, List<ModelIR.Statement> body) {
+        for (ModelIR.Statement statement : body) {
+            sb.append("      |-- ");
+            appendStatement(sb, statement);
+        }
+    }
+
+    // ========================================================================
+    // 消息规则模型
+    // ========================================================================
+
+    private static void appendMessageRules(StringBuilder sb, ModelIR.MessageRules messageRules) {
+        sb.append("\n[规则集] 针对消息: ").append(messageRules.messageName).append(NL);
+        for (ModelIR.RuleGroup group : messageRules.groups) {
+            sb.append(group.transmit ? "  |-- [发送规则组] (TransmitRules)" : "  |-- [接收规则组] (ReceiveRules)").append(NL);
+            for (ModelIR.TrRule rule : group.rules) {
+                sb.append("      |-- 规则: ").append(rule.name != null ? rule.name.replace("\"", "") : "未命名规则").append(NL);
+                sb.append("          [条件]: ");
+                appendCondition(sb, rule.condition, "");
+                sb.append(NL);
+                if (rule.action != null) {
+                    sb.append("          [动作]: ").append(rule.action.replace("\"", "")).append(NL);
+                }
+            }
+        }
+    }
+
+    // ========================================================================
+    // 原文还原 (与 getText() 一致: token 文本直接拼接，不含空白)
+    // ========================================================================
+
+    public static String text(ModelIR.Condition condition) {
+        StringBuilder sb = new StringBuilder();
+        appendCondition(sb, condition, "");
+        return sb.toString();
+    }
+
+    public static String text(ModelIR.Expr expr) {
+        StringBuilder sb = new StringBuilder();
+        appendExpr(sb, expr, "");
+        return sb.toString();
+    }
+
+    public static String text(ModelIR.Event event) {
+        StringBuilder sb = new StringBuilder();
+        appendEvent(sb, event, "");
+        return sb.toString();
+    }
+
+    // ========================================================================
+    // 可读文本 (token 之间以空格分隔，供语义图的节点标签使用)
+    // ========================================================================
+
+    public static String label(ModelIR.Condition condition) {
+        StringBuilder sb = new StringBuilder();
+        appendCondition(sb, condition, " ");
+        return sb.toString();
+    }
+
+    public static String label(ModelIR.Expr expr) {
+        StringBuilder sb = new StringBuilder();
+        appendExpr(sb, expr, " ");
+        return sb.toString();
+    }
+
+    public static String label(ModelIR.Event event) {
+        StringBuilder sb = new StringBuilder();
+        appendEvent(sb, event, " ");
+        return sb.toString();
+    }
+
+    // gap 为 "" 时与 getText() 一致，为 " " 时在关键字与运算符两侧留空格
+    private static void appendCondition(StringBuilder sb, ModelIR.Condition condition, String gap) {
+        if (condition == null) {
+            return;
+        }
+        if (condition instanceof ModelIR.Or) {
+            appendJoined(sb, ((ModelIR.Or) condition).operands, "OR", gap);
+        } else if (condition instanceof ModelIR.And) {
+            appendJoined(sb, ((ModelIR.And) condition).operands, "AND", gap);
+        } else if (condition instanceof ModelIR.Not) {
+            sb.append("NOT").append(gap);
+            appendCondition(sb, ((ModelIR.Not) condition).operand, gap);
+        } else if (condition instanceof ModelIR.Group) {
+            sb.append('(');
+            appendCondition(sb, ((ModelIR.Group) condition).inner, gap);
+            sb.append(')');
+        } else if (condition instanceof ModelIR.Compare) {
+            ModelIR.Compare compare = (ModelIR.Compare) condition;
+            appendExpr(sb, compare.left, gap);
+            sb.append(gap).append(compare.operator).append(gap);
+            appendExpr(sb, compare.right, gap);
+        } else if (condition instanceof ModelIR.InSet) {
+            ModelIR.InSet inSet = (ModelIR.InSet) condition;
+            appendExpr(sb, inSet.value, gap);
+            sb.append(gap).append("IN").append(gap).append('(');
+            appendExprs(sb, inSet.candidates, gap);
+            sb.append(')');
+        } else if (condition instanceof ModelIR.HasField) {
+            ModelIR.HasField hasField = (ModelIR.HasField) condition;
+            sb.append("HAS_FIELD(").append(hasField.message).append('.').append(hasField.field).append(')');
+        } else if (condition instanceof ModelIR.TimeSince) {
+            ModelIR.TimeSince timeSince = (ModelIR.TimeSince) condition;
+            sb.append("TIME_SINCE(");
+            appendEvent(sb, timeSince.event, gap);
+            sb.append(')').append(gap).append('>').append(gap);
+            appendDuration(sb, timeSince.limit, gap);
+        } else if (condition instanceof ModelIR.StatusIs) {
+            ModelIR.StatusIs status = (ModelIR.StatusIs) condition;
+            sb.append(status.actor).append(".STATUS").append(gap).append(status.equal ? "==" : "!=").append(gap).append(status.status);
+        } else if (condition instanceof ModelIR.EventCondition) {
+            appendEvent(sb, ((ModelIR.EventCondition) condition).event, gap);
+        } else if (condition instanceof ModelIR.TextCondition) {
+            sb.append("Text(\"").append(((ModelIR.TextCondition) condition).text).append("\")");
+        } else if (condition instanceof ModelIR.PlatformCondition) {
+            ModelIR.PlatformCondition platform = (ModelIR.PlatformCondition) condition;
+            sb.append("Platform.").append(platform.attribute).append(gap).append(platform.operator).append(gap);
+            appendExpr(sb, platform.value, gap);
+        } else if (condition instanceof ModelIR.OnEvent) {
+            ModelIR.OnEvent onEvent = (ModelIR.OnEvent) condition;
+            if (onEvent.receiptOf != null) {
+                sb.append("OnEvent(ReceiptOf(").append(onEvent.receiptOf).append("))");
+            } else {
+                sb.append("OnEvent(SystemCue(\"").append(onEvent.systemCue).append("\"))");
+            }
+        } else if (condition instanceof ModelIR.FieldCondition) {
+            ModelIR.FieldCondition field = (ModelIR.FieldCondition) condition;
+            sb.append("Field(");
+            if (field.message != null) {
+                sb.append(field.message).append('.');
+            }
+            sb.append(field.field).append(')').append(gap).append(field.operator).append(gap);
+            appendExpr(sb, field.value, gap);
+        } else if (condition instanceof ModelIR.TimingCondition) {
+            ModelIR.TimingCondition timing = (ModelIR.TimingCondition) condition;
+            sb.append("Timing").append(gap).append("is").append(gap);
+            if (timing.kind == ModelIR.TimingKind.PERIODIC) {
+                sb.append("Periodic(\"").append(timing.period).append("\")");
+            } else {
+                sb.append(timing.kind == ModelIR.TimingKind.ON_UPDATE ? "OnUpdate" : "OnDemand");
+            }
+        }
+    }
+
+    private static void appendJoined(StringBuilder sb, List<ModelIR.Condition> operands, String operator, String gap) {
+        for (int i = 0; i < operands.size(); i++) {
+            if (i > 0) {
+                sb.append(gap).append(operator).append(gap);
+            }
+            appendCondition(sb, operands.get(i), gap);
+        }
+    }
+
+    private static void appendEvent(StringBuilder sb, ModelIR.Event event, String gap) {
+        if (event == null) {
+            return;
+        }
+        switch (event.kind) {
+            case TEXT:
+                sb.append('"').append(event.text).append('"');
+                break;
+            case TIMER_EXPIRED:
+                sb.append("TIMER_EXPIRED(").append(event.text).append(')');
+                break;
+            case TIMEOUT:
+                sb.append("TIMEOUT");
+                break;
+            default:
+                sb.append(event.kind.name()).append(gap).append(event.message);
+                if (event.filter != null) {
+                    sb.append('(');
+                    appendCondition(sb, event.filter, gap);
+                    sb.append(')');
+                }
+                if (event.from != null) {
+                    sb.append(gap).append("FROM").append(gap).append(event.from);
+                }
+                if (event.to != null) {
+                    sb.append(gap).append("TO").append(gap).append(event.to);
+                }
+                break;
+        }
+    }
+
+    private static void appendDuration(StringBuilder sb, ModelIR.Duration duration, String gap) {
+        if (duration != null) {
+            sb.append(duration.amount).append(gap).append(duration.unit.name());
+        }
+    }
+
+    private static void appendAction(StringBuilder sb, ModelIR.Action action, String gap) {
+        sb.append(action.sender).append(gap).append(action.verb.name()).append(gap);
+        if (action.verb == ModelIR.Verb.NOTIFY) {
+            appendExpr(sb, action.payload, gap);
+        } else {
+            sb.append(action.message);
+            if (action.params != null) {
+                sb.append('(');
+                appendParams(sb, action.params, gap);
+                sb.append(')');
+            }
+        }
+        if (action.target != null) {
+            sb.append(gap).append("TO").append(gap).append(action.target);
+        }
+        if (action.address != null) {
+            sb.append(gap).append("TO_ADDRESS").append(gap);
+            appendExpr(sb, action.address, gap);
+        }
+    }
+
+    private static void appendNaturalLanguage(StringBuilder sb, ModelIR.NaturalLanguage block) {
+        sb.append("NATURAL_LANGUAGE{");
+        if (block.intent != null) {
+            sb.append("INTENT\"").append(block.intent).append("\";");
+        }
+        if (block.actors != null) {
+            sb.append("ACTORS").append(String.join(",", block.actors)).append(';');
+        }
+        if (block.dataContext != null) {
+            sb.append("DATA_CONTEXT\"").append(block.dataContext).append("\";");
+        }
+        if (block.description != null) {
+            sb.append("DESCRIPTION\"").append(block.description).append("\";");
+        }
+        sb.append('}');
+    }
+
+    private static void appendExpr(StringBuilder sb, ModelIR.Expr expr, String gap) {
+        if (expr == null) {
+            return;
+        }
+        if (expr instanceof ModelIR.Literal) {
+            ModelIR.Literal literal = (ModelIR.Literal) expr;
+            if (literal.kind == ModelIR.LiteralKind.STRING) {
+                sb.append('"').append(literal.text).append('"');
+            } else {
+                sb.append(literal.text);
+            }
+        } else if (expr instanceof ModelIR.Access) {
+            ModelIR.Access access = (ModelIR.Access) expr;
+            sb.append(access.root);
+            for (ModelIR.AccessSuffix suffix : access.suffixes) {
+                if (suffix.member != null) {
+                    sb.append('.').append(suffix.member);
+                } else {
+                    sb.append('(');
+                    appendParams(sb, suffix.args, gap);
+                    sb.append(')');
+                }
+            }
+        } else if (expr instanceof ModelIR.Arithmetic) {
+            ModelIR.Arithmetic arithmetic = (ModelIR.Arithmetic) expr;
+            for (int i = 0; i < arithmetic.operands.size(); i++) {
+                if (i > 0 && i - 1 < arithmetic.operators.length()) {
+                    sb.append(gap).append(arithmetic.operators.charAt(i - 1)).append(gap);
+                }
+                appendExpr(sb, arithmetic.operands.get(i), gap);
+            }
+        } else if (expr instanceof ModelIR.ParenExpr) {
+            sb.append('(');
+            appendExpr(sb, ((ModelIR.ParenExpr) expr).inner, gap);
+            sb.append(')');
+        } else if (expr instanceof ModelIR.MessageId) {
+            sb.append(((ModelIR.MessageId) expr).id);
+        } else if (expr instanceof ModelIR.StructLiteral) {
+            sb.append('{');
+            appendParams(sb, ((ModelIR.StructLiteral) expr).entries, gap);
+            sb.append('}');
+        } else if (expr instanceof ModelIR.ListLiteral) {
+            sb.append('[');
+            appendExprs(sb, ((ModelIR.ListLiteral) expr).items, gap);
+            sb.append(']');
+        }
+    }
+
+    private static void appendExprs(StringBuilder sb, List<ModelIR.Expr> exprs, String gap) {
+        for (int i = 0; i < exprs.size(); i++) {
+            if (i > 0) {
+                sb.append(',').append(gap);
+            }
+            appendExpr(sb, exprs.get(i), gap);
+        }
+    }
+
+    private static void appendParams(StringBuilder sb, List<ModelIR.Param> params, String gap) {
+        for (int i = 0; i < params.size(); i++) {
+            ModelIR.Param param = params.get(i);
+            if (i > 0) {
+                sb.append(',').append(gap);
+            }
+            sb.append(param.name).append('=');
+            appendExpr(sb, param.value, gap);
+        }
+    }
+}
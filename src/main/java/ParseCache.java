@@ -0,0 +1,319 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * 内容寻址的解析/渲染缓存。
+ * <p>
+ * key = SHA-256(缓存格式版本 + 语法版本 + 解析模式 + 文件名 + 文件内容)，每个 key 对应
+ * output/.cache/&lt;key&gt;/ 下的 result.bin、model.bin (解析成功时，见 {@link ModelBinary})、graph.dot 和 graph.svg (Graphviz 可用时)。
+ * 命中时直接返回保存的结果与模型，不再词法/语法解析，也不再启动 dot 进程。
+ * 缓存总大小超过上限时按最近访问时间 (result.bin 的修改时间) 做 LRU 淘汰。
+ * result.bin 用 DataOutputStream 写入，读取时不需要初始化任何 JSON 库，命中路径足够轻量。
+ */
+public class ParseCache {
+
+    // Visitor 输出或 DOT 生成逻辑改变时递增，使旧缓存自动失效
+    private static final int FORMAT_VERSION = 4;
+    private static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+    private static final String RESULT_FILE = "result.bin";
+    private static final String MODEL_FILE = "model.bin";
+    private static final String DOT_FILE = "graph.dot";
+    private static final String SVG_FILE = "graph.svg";
+
+    private final Path root;
+    private final long maxBytes;
+
+    // 懒加载的条目索引: key -> 条目占用字节数
+    private final Map<String, Long> entrySizes = new HashMap<>();
+    private long totalBytes;
+    private boolean indexed;
+
+    public ParseCache(Path root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * output/.cache，上限可通过 -Dlink16.cache.maxMb=N 调整 (默认 1024 MB)。
+     */
+    public static ParseCache inOutputDir(String outputDir) {
+        long maxBytes = DEFAULT_MAX_BYTES;
+        String maxMb = System.getProperty("link16.cache.maxMb");
+        if (maxMb != null && !maxMb.isBlank()) {
+            maxBytes = Long.parseLong(maxMb.trim()) * 1024 * 1024;
+        }
+        return new ParseCache(Path.of(outputDir, ".cache"), maxBytes);
+    }
+
+    /**
+     * 文件名也参与 key 计算，因为日志中记录了以文件名命名的产物路径。
+     * 不同视图的 DOT/SVG 不同，语义图的折叠上限也会影响产物，因此一并计入。
+     */
+    public String key(String fileName, byte[] content, DslMode mode, GraphView view, SvgEngine engine) {
+        MessageDigest digest = GrammarVersion.sha256();
+        String viewKey = view == GraphView.SEMANTIC
+                ? view.name() + "/" + SemanticDotWriter.MAX_CHILDREN + "/" + SemanticDotWriter.MAX_DEPTH + "/" + SemanticDotWriter.MAX_BLOCKS
+                : view.name();
+        String prefix = "v" + FORMAT_VERSION + "|" + GrammarVersion.get() + "|" + mode.name() + "|" + viewKey + "|" + engine.name() + "|" + fileName + "|";
+        digest.update(prefix.getBytes(StandardCharsets.UTF_8));
+        digest.update(content);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 查找缓存条目，未命中或条目损坏时返回 null。
+     */
+    public synchronized Entry lookup(String key) {
+        Path dir = root.resolve(key);
+        Path resultFile = dir.resolve(RESULT_FILE);
+        if (!Files.isRegularFile(resultFile)) {
+            return null;
+        }
+        try {
+            Entry entry = readEntry(resultFile, dir);
+            // 更新访问时间，供 LRU 淘汰使用
+            Files.setLastModifiedTime(resultFile, FileTime.fromMillis(System.currentTimeMillis()));
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            removeEntry(key);
+            return null;
+        }
+    }
+
+    /**
+     * 保存一次解析结果及其模型、DOT/SVG 产物。logBody 是去掉任务头 (文件名、时间) 之后的日志正文，
+     * source 是 DSL 原文 (记录在 model.bin 中用于校验)，dot 是生成时的 DOT 快照 (没有时为 null)。
+     * 产物先写入临时目录，再整体原子移动到 key 目录；失败时清理临时目录后抛出，由调用方报告。
+     */
+    public void store(String key, ParseResult result, String logBody, byte[] source, byte[] dot, File svgFile) throws IOException {
+        Path tempDir = root.resolve("tmp-" + UUID.randomUUID());
+        try {
+            // 必须在创建本次临时目录之前建立索引，否则会把它当成遗留目录清理掉
+            synchronized (this) {
+                ensureIndexed();
+            }
+            Files.createDirectories(tempDir);
+            if (dot != null) {
+                Files.write(tempDir.resolve(DOT_FILE), dot);
+            }
+            if (svgFile != null && svgFile.isFile()) {
+                Files.copy(svgFile.toPath(), tempDir.resolve(SVG_FILE));
+            }
+            if (result.model != null) {
+                Files.write(tempDir.resolve(MODEL_FILE), ModelBinary.encode(result.model, source));
+            }
+            writeResult(tempDir.resolve(RESULT_FILE), result, logBody);
+            long size = directorySize(tempDir);
+
+            synchronized (this) {
+                Path target = root.resolve(key);
+                if (Files.exists(target)) {
+                    deleteRecursively(tempDir);
+                    return;
+                }
+                Files.move(tempDir, target, StandardCopyOption.ATOMIC_MOVE);
+                entrySizes.put(key, size);
+                totalBytes += size;
+                evictIfNeeded();
+            }
+        } catch (IOException e) {
+            deleteRecursively(tempDir);
+            throw e;
+        }
+    }
+
+    private void ensureIndexed() throws IOException {
+        if (indexed) {
+            return;
+        }
+        Files.createDirectories(root);
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                String name = dir.getFileName().toString();
+                if (name.startsWith("tmp-")) {
+                    // 上次异常退出遗留的临时目录
+                    deleteRecursively(dir);
+                } else if (Files.isDirectory(dir)) {
+                    long size = directorySize(dir);
+                    entrySizes.put(name, size);
+                    totalBytes += size;
+                }
+            }
+        }
+        indexed = true;
+    }
+
+    private void evictIfNeeded() {
+        if (totalBytes <= maxBytes) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(entrySizes.keySet());
+        Map<String, Long> lastAccess = new HashMap<>();
+        for (String key : keys) {
+            lastAccess.put(key, lastAccessMillis(key));
+        }
+        keys.sort(Comparator.comparingLong(lastAccess::get));
+        for (String key : keys) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+            removeEntry(key);
+        }
+    }
+
+    private long lastAccessMillis(String key) {
+        try {
+            return Files.getLastModifiedTime(root.resolve(key).resolve(RESULT_FILE)).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private synchronized void removeEntry(String key) {
+        Long size = entrySizes.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+        }
+        deleteRecursively(root.resolve(key));
+    }
+
+    private static void writeResult(Path file, ParseResult result, String logBody) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, GrammarVersion.get());
+            out.writeBoolean(result.success);
+            writeString(out, result.parseStage.name());
+            out.writeInt(result.errors.size());
+            for (String error : result.errors) {
+                writeString(out, error);
+            }
+            out.writeInt(result.syntaxErrors.size());
+            for (SyntaxErrorDetail detail : result.syntaxErrors) {
+                out.writeInt(detail.line);
+                out.writeInt(detail.charPositionInLine);
+                writeString(out, detail.offendingToken);
+                writeString(out, detail.expectedTokens);
+                writeString(out, detail.message);
+            }
+            writeString(out, logBody);
+            writeString(out, result.visitorOutput);
+        }
+    }
+
+    private static Entry readEntry(Path file, Path dir) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION || !GrammarVersion.get().equals(readString(in))) {
+                throw new IOException("缓存条目版本不匹配");
+            }
+            boolean success = in.readBoolean();
+            ParseStage parseStage = ParseStage.valueOf(readString(in));
+            int errorCount = in.readInt();
+            List<String> errors = new ArrayList<>(errorCount);
+            for (int i = 0; i < errorCount; i++) {
+                errors.add(readString(in));
+            }
+            int syntaxErrorCount = in.readInt();
+            List<SyntaxErrorDetail> syntaxErrors = new ArrayList<>(syntaxErrorCount);
+            for (int i = 0; i < syntaxErrorCount; i++) {
+                syntaxErrors.add(new SyntaxErrorDetail(in.readInt(), in.readInt(), readString(in), readString(in), readString(in)));
+            }
+            String logText = readString(in);
+            String visitorOutput = readString(in);
+            Path model = dir.resolve(MODEL_FILE);
+            Path dot = dir.resolve(DOT_FILE);
+            Path svg = dir.resolve(SVG_FILE);
+            return new Entry(success, errors, syntaxErrors, parseStage, logText, visitorOutput,
+                    Files.isRegularFile(model) ? model : null,
+                    Files.isRegularFile(dot) ? dot : null,
+                    Files.isRegularFile(svg) ? svg : null);
+        }
+    }
+
+    // writeUTF 有 64KB 上限，日志正文可能更长，因此统一写 长度 + UTF-8 字节
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long directorySize(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> {
+                try {
+                    return Files.size(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sum();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // 删除失败的条目留到下一次淘汰
+        }
+    }
+
+    public static class Entry {
+        public final boolean success;
+        public final List<String> errors;
+        public final List<SyntaxErrorDetail> syntaxErrors;
+        public final ParseStage parseStage;
+        public final String logText;
+        public final String visitorOutput;
+        // 解析失败的条目没有模型，为 null
+        public final Path modelFile;
+        public final Path dotFile;
+        public final Path svgFile;
+
+        public Entry(boolean success,
+                     List<String> errors,
+                     List<SyntaxErrorDetail> syntaxErrors,
+                     ParseStage parseStage,
+                     String logText,
+                     String visitorOutput,
+                     Path modelFile,
+                     Path dotFile,
+                     Path svgFile) {
+            this.success = success;
+            this.errors = errors;
+            this.syntaxErrors = syntaxErrors;
+            this.parseStage = parseStage;
+            this.logText = logText;
+            this.visitorOutput = visitorOutput;
+            this.modelFile = modelFile;
+            this.dotFile = dotFile;
+            this.svgFile = svgFile;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Link16ParserRunner.run / parse 的可选项。实例不可变，通过 withXxx 派生新的配置。
+ */
+public class ParseOptions {
+    // 是否把日志同时输出到控制台；关闭即安静模式，不做任何控制台格式化与 I/O (批量并发时关闭)
+    public final boolean echoToConsole;
+    // 是否使用 output/.cache 下的内容寻址缓存
+    public final boolean useCache;
+    // 消息规则文件是否走流式解析 (不构建语法树、不生成 DOT/SVG，内存只与最大的单个规则集有关)
+    public final boolean streamRules;
+    // 是否开启逐决策性能统计并输出 解析性能报告 (开启时跳过缓存，保证每次都真正解析)
+    public final boolean profile;
+    // 生成的 DOT/SVG 是原始语法树还是紧凑的语义图
+    public final GraphView graphView;
+    // SVG 由内置渲染器生成还是交给 Graphviz
+    public final SvgEngine svgEngine;
+    // 额外挂到每个解析任务上的诊断 Sink (嵌入解析器的工具用来收集结构化事件)，为 null 时不挂；会被并发任务共享，需线程安全，
+    // 任务结束时只 flush，由调用方负责关闭
+    public final Diagnostics.Sink diagnosticsSink;
+    // 是否把日志、DOT/SVG、性能报告写到 output/ (关闭时只在内存中解析，不读写缓存，ParseResult 中的各路径为 null)
+    public final boolean writeArtifacts;
+    // 大文件是否按顶层块 (PROCEDURE / RULE / Message ... Rules) 拆分后在多个线程中并行解析 (开启 profile 时不拆分)
+    public final boolean parallelBlocks;
+
+    private ParseOptions(boolean echoToConsole, boolean useCache, boolean streamRules, boolean profile, GraphView graphView,
+                         SvgEngine svgEngine, Diagnostics.Sink diagnosticsSink, boolean writeArtifacts, boolean parallelBlocks) {
+        this.echoToConsole = echoToConsole;
+        this.useCache = useCache;
+        this.streamRules = streamRules;
+        this.profile = profile;
+        this.graphView = graphView;
+        this.svgEngine = svgEngine;
+        this.diagnosticsSink = diagnosticsSink;
+        this.writeArtifacts = writeArtifacts;
+        this.parallelBlocks = parallelBlocks;
+    }
+
+    public static ParseOptions defaults() {
+        return new ParseOptions(true, true, false, false, GraphView.PARSE_TREE, SvgEngine.BUILTIN, null, true, false);
+    }
+
+    public ParseOptions withEchoToConsole(boolean echoToConsole) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withCache(boolean useCache) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withStreamRules(boolean streamRules) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withProfile(boolean profile) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withGraphView(GraphView graphView) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withSvgEngine(SvgEngine svgEngine) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withDiagnosticsSink(Diagnostics.Sink diagnosticsSink) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withWriteArtifacts(boolean writeArtifacts) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+
+    public ParseOptions withParallelBlocks(boolean parallelBlocks) {
+        return new ParseOptions(echoToConsole, useCache, streamRules, profile, graphView, svgEngine, diagnosticsSink, writeArtifacts, parallelBlocks);
+    }
+}
@@ -0,0 +1,252 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 解析器逐决策性能报告 (--profile)。
+ * <p>
+ * 数据来自 ANTLR 的 ProfilingATNSimulator (parser.setProfile(true))，每个决策通过 ATN 决策状态的
+ * ruleIndex 映射回 Link16DSL.g4 中的规则名，再按规则汇总。两阶段解析回退到 LL 时，
+ * 两个阶段的统计会累加在一起。
+ */
+public class ParseProfileReport {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public final String fileName;
+    public final ParseStage parseStage;
+    public final long totalInvocations;
+    public final long totalPredictionNanos;
+    // 按预测耗时降序
+    public final List<DecisionRow> decisions;
+    public final List<RuleRow> rules;
+
+    public ParseProfileReport(String fileName, ParseStage parseStage, List<DecisionRow> decisions, List<RuleRow> rules) {
+        this.fileName = fileName;
+        this.parseStage = parseStage;
+        this.decisions = decisions;
+        this.rules = rules;
+        long invocations = 0;
+        long nanos = 0;
+        for (DecisionRow row : decisions) {
+            invocations += row.invocations;
+            nanos += row.timeNanos;
+        }
+        this.totalInvocations = invocations;
+        this.totalPredictionNanos = nanos;
+    }
+
+    public static ParseProfileReport from(String fileName, ParseStage parseStage, ParseInfo parseInfo, Parser parser) {
+        String[] ruleNames = parser.getRuleNames();
+        List<DecisionRow> decisions = new ArrayList<>();
+        Map<String, RuleRow> rules = new LinkedHashMap<>();
+        for (DecisionInfo info : parseInfo.getDecisionInfo()) {
+            if (info.invocations == 0) {
+                continue;
+            }
+            int ruleIndex = parser.getATN().getDecisionState(info.decision).ruleIndex;
+            String ruleName = ruleIndex >= 0 && ruleIndex < ruleNames.length ? ruleNames[ruleIndex] : "?";
+            DecisionRow row = new DecisionRow(info, ruleName);
+            decisions.add(row);
+            rules.computeIfAbsent(ruleName, RuleRow::new).add(row);
+        }
+        decisions.sort(Comparator.comparingLong((DecisionRow row) -> row.timeNanos).reversed());
+        List<RuleRow> ruleRows = new ArrayList<>(rules.values());
+        ruleRows.sort(Comparator.comparingLong((RuleRow row) -> row.timeNanos).reversed());
+        return new ParseProfileReport(fileName, parseStage, decisions, ruleRows);
+    }
+
+    public void write(File textFile, File jsonFile) throws IOException {
+        Files.writeString(textFile.toPath(), toText(), StandardCharsets.UTF_8);
+        Files.writeString(jsonFile.toPath(), toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 控制台/日志中的简短摘要：预测总耗时和耗时最多的前 limit 条规则。
+     */
+    public String toSummary(int limit) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("📊 预测总耗时 %.3f ms, 决策调用 %d 次，耗时最多的规则:%n", totalPredictionNanos / 1e6, totalInvocations));
+        for (int i = 0; i < Math.min(limit, rules.size()); i++) {
+            RuleRow row = rules.get(i);
+            sb.append(String.format("   %d. %-24s %8.3f ms (%5.1f%%), 调用 %d 次, LL 回退 %d 次%n",
+                    i + 1, row.ruleName, row.timeNanos / 1e6, percent(row.timeNanos), row.invocations, row.llFallbacks));
+        }
+        return sb.toString();
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("==================================================\n");
+        sb.append("📊 解析性能报告: ").append(fileName).append('\n');
+        sb.append("ℹ️ 解析阶段: ").append(parseStage).append('\n');
+        sb.append(String.format("ℹ️ 预测总耗时: %.3f ms, 决策调用总次数: %d%n", totalPredictionNanos / 1e6, totalInvocations));
+        sb.append("--------------------------------------------------\n\n");
+
+        sb.append("--- [按规则汇总] (按预测耗时降序) ---\n");
+        sb.append(String.format("%-26s %6s %10s %12s %7s %8s %6s %10s %6s%n",
+                "规则", "决策数", "调用次数", "耗时(ms)", "占比", "LL回退", "歧义", "上下文敏感", "错误"));
+        for (RuleRow row : rules) {
+            sb.append(String.format("%-26s %6d %10d %12.3f %6.1f%% %8d %6d %10d %6d%n",
+                    row.ruleName, row.decisionCount, row.invocations, row.timeNanos / 1e6, percent(row.timeNanos),
+                    row.llFallbacks, row.ambiguities, row.contextSensitivities, row.errors));
+        }
+
+        sb.append("\n--- [按决策明细] (按预测耗时降序) ---\n");
+        sb.append(String.format("%5s %-26s %10s %12s %16s %8s %16s %6s %10s %6s%n",
+                "决策", "规则", "调用次数", "耗时(ms)", "SLL前瞻 平均/最大", "LL回退", "LL前瞻 平均/最大", "歧义", "上下文敏感", "错误"));
+        for (DecisionRow row : decisions) {
+            sb.append(String.format("%5d %-26s %10d %12.3f %9.2f/%-6d %8d %9.2f/%-6d %6d %10d %6d%n",
+                    row.decision, row.ruleName, row.invocations, row.timeNanos / 1e6,
+                    row.averageSllLook(), row.sllMaxLook, row.llFallbacks, row.averageLlLook(), row.llMaxLook,
+                    row.ambiguities, row.contextSensitivities, row.errors));
+        }
+        return sb.toString();
+    }
+
+    public String toJson() {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.put("fileName", fileName);
+        root.put("parseStage", parseStage.name());
+        root.put("totalInvocations", totalInvocations);
+        root.put("totalPredictionNanos", totalPredictionNanos);
+
+        ArrayNode ruleArray = root.putArray("rules");
+        for (RuleRow row : rules) {
+            ObjectNode node = ruleArray.addObject();
+            node.put("rule", row.ruleName);
+            node.put("decisions", row.decisionCount);
+            node.put("invocations", row.invocations);
+            node.put("timeNanos", row.timeNanos);
+            node.put("llFallbacks", row.llFallbacks);
+            node.put("ambiguities", row.ambiguities);
+            node.put("contextSensitivities", row.contextSensitivities);
+            node.put("errors", row.errors);
+        }
+
+        ArrayNode decisionArray = root.putArray("decisions");
+        for (DecisionRow row : decisions) {
+            ObjectNode node = decisionArray.addObject();
+            node.put("decision", row.decision);
+            node.put("rule", row.ruleName);
+            node.put("invocations", row.invocations);
+            node.put("timeNanos", row.timeNanos);
+            node.put("sllTotalLook", row.sllTotalLook);
+            node.put("sllMinLook", row.sllMinLook);
+            node.put("sllMaxLook", row.sllMaxLook);
+            node.put("sllAtnTransitions", row.sllAtnTransitions);
+            node.put("sllDfaTransitions", row.sllDfaTransitions);
+            node.put("llFallbacks", row.llFallbacks);
+            node.put("llTotalLook", row.llTotalLook);
+            node.put("llMinLook", row.llMinLook);
+            node.put("llMaxLook", row.llMaxLook);
+            node.put("llAtnTransitions", row.llAtnTransitions);
+            node.put("llDfaTransitions", row.llDfaTransitions);
+            node.put("ambiguities", row.ambiguities);
+            node.put("contextSensitivities", row.contextSensitivities);
+            node.put("errors", row.errors);
+        }
+        try {
+            return MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(root);
+        } catch (IOException e) {
+            throw new IllegalStateException("序列化解析性能报告失败", e);
+        }
+    }
+
+    private double percent(long nanos) {
+        return totalPredictionNanos > 0 ? nanos * 100.0 / totalPredictionNanos : 0;
+    }
+
+    /**
+     * 单个决策 (某条规则中的一个选择点) 的统计，字段含义与 ANTLR DecisionInfo 一致。
+     */
+    public static class DecisionRow {
+        public final int decision;
+        public final String ruleName;
+        public final long invocations;
+        public final long timeNanos;
+        public final long sllTotalLook;
+        public final long sllMinLook;
+        public final long sllMaxLook;
+        public final long sllAtnTransitions;
+        public final long sllDfaTransitions;
+        public final long llFallbacks;
+        public final long llTotalLook;
+        public final long llMinLook;
+        public final long llMaxLook;
+        public final long llAtnTransitions;
+        public final long llDfaTransitions;
+        public final int ambiguities;
+        public final int contextSensitivities;
+        public final int errors;
+
+        public DecisionRow(DecisionInfo info, String ruleName) {
+            this.decision = info.decision;
+            this.ruleName = ruleName;
+            this.invocations = info.invocations;
+            this.timeNanos = info.timeInPrediction;
+            this.sllTotalLook = info.SLL_TotalLook;
+            this.sllMinLook = info.SLL_MinLook;
+            this.sllMaxLook = info.SLL_MaxLook;
+            this.sllAtnTransitions = info.SLL_ATNTransitions;
+            this.sllDfaTransitions = info.SLL_DFATransitions;
+            this.llFallbacks = info.LL_Fallback;
+            this.llTotalLook = info.LL_TotalLook;
+            this.llMinLook = info.LL_MinLook;
+            this.llMaxLook = info.LL_MaxLook;
+            this.llAtnTransitions = info.LL_ATNTransitions;
+            this.llDfaTransitions = info.LL_DFATransitions;
+            this.ambiguities = info.ambiguities.size();
+            this.contextSensitivities = info.contextSensitivities.size();
+            this.errors = info.errors.size();
+        }
+
+        public double averageSllLook() {
+            return invocations > 0 ? (double) sllTotalLook / invocations : 0;
+        }
+
+        public double averageLlLook() {
+            return llFallbacks > 0 ? (double) llTotalLook / llFallbacks : 0;
+        }
+    }
+
+    /**
+     * 同一条规则下所有决策的汇总。
+     */
+    public static class RuleRow {
+        public final String ruleName;
+        public int decisionCount;
+        public long invocations;
+        public long timeNanos;
+        public long llFallbacks;
+        public int ambiguities;
+        public int contextSensitivities;
+        public int errors;
+
+        public RuleRow(String ruleName) {
+            this.ruleName = ruleName;
+        }
+
+        void add(DecisionRow row) {
+            decisionCount++;
+            invocations += row.invocations;
+            timeNanos += row.timeNanos;
+            llFallbacks += row.llFallbacks;
+            ambiguities += row.ambiguities;
+            contextSensitivities += row.contextSensitivities;
+            errors += row.errors;
+        }
+    }
+}
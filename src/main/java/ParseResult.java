@@ -1,4 +1,7 @@
+import org.antlr.v4.runtime.tree.ParseTree;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ParseResult {
     public final boolean success;
@@ -6,28 +9,47 @@ public class ParseResult {
     public final int errorCount;
     public final String logText;
     public final String visitorOutput;
+    // Visitor 构建的类型化模型 (命中缓存时从 model.bin 还原)；解析失败或流式模式时为 null
+    public final ModelIR.Model model;
+    // 只有纯内存解析 (writeArtifacts 为 false) 且语法通过时才保留语法树，供调用方校验后直接交给 Link16ParserRunner.publish；
+    // 落盘的解析不持有整棵树，批量处理时不会在结果里累积
+    public final ParseTree tree;
     public final String dotPath;
     public final String svgPath;
     public final String logPath;
     public final List<SyntaxErrorDetail> syntaxErrors;
+    public final ParseStage parseStage;
+    public final boolean fromCache;
+    // 后台 SVG 渲染，svgPath 是它的目标文件；没有提交渲染 (解析失败、命中缓存、流式模式) 时为 null
+    public final CompletableFuture<GraphvizRenderService.RenderResult> render;
 
     public ParseResult(boolean success,
                        List<String> errors,
                        int errorCount,
                        String logText,
                        String visitorOutput,
+                       ModelIR.Model model,
+                       ParseTree tree,
                        String dotPath,
                        String svgPath,
                        String logPath,
-                       List<SyntaxErrorDetail> syntaxErrors) {
+                       List<SyntaxErrorDetail> syntaxErrors,
+                       ParseStage parseStage,
+                       boolean fromCache,
+                       CompletableFuture<GraphvizRenderService.RenderResult> render) {
         this.success = success;
         this.errors = errors;
         this.errorCount = errorCount;
         this.logText = logText;
         this.visitorOutput = visitorOutput;
+        this.model = model;
+        this.tree = tree;
         this.dotPath = dotPath;
         this.svgPath = svgPath;
         this.logPath = logPath;
         this.syntaxErrors = syntaxErrors;
+        this.parseStage = parseStage;
+        this.fromCache = fromCache;
+        this.render = render;
     }
 }
@@ -0,0 +1,9 @@
+// 记录一次解析最终是在哪个预测阶段完成的，用于统计 SLL -> LL 的回退率
+public enum ParseStage {
+    // 未进入语法解析 (例如文件读取失败)
+    NONE,
+    // 第一阶段: PredictionMode.SLL + BailErrorStrategy 一次通过
+    SLL,
+    // 第二阶段: SLL 失败后回退到全 LL + 默认错误恢复
+    LL
+}
@@ -0,0 +1,561 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 功能模型的语义检查：语法通过之后，在同一轮里找出引用了未声明符号的地方，和语法错误一起反馈给 LLM。
+ * <ul>
+ *   <li>参与者: SENDS / BROADCASTS 的发送者与接收者、定时器操作、STATUS 条件、事件 FROM/TO、自然语言块的 ACTORS
+ *       必须在 ACTORS 中声明 (或是 STATES 中的状态、所在过程的参数与局部变量)；NOTIFY 是对本地系统的通知，不检查；</li>
+ *   <li>消息: SENDS / BROADCASTS / MUST_SEND、MESSAGE_RECEIVED / MESSAGE_SENT、HAS_FIELD、DISCRETES ... FOR
+ *       必须在 MESSAGES 中声明 (J13.X 这类通配声明匹配同组的所有消息)；</li>
+ *   <li>DSL 没有局部变量声明，不带成员的 ASSIGN X = ... 即引入局部变量；ASSIGN X.f = ... 与 MAPPINGS 的目标
+ *       必须是 STATES 中的状态、参数或已赋值的局部变量；X 是状态且类型为 STRUCT (直接写出或经 TYPES 引用) 时，
+ *       .f 以及更深的 .g 必须是对应结构体中声明的字段 (DICTIONARY 等其他类型的成员无法检查)；</li>
+ *   <li>CALL 目标必须是本模型中的过程，或者在外部符号索引中有定义；限定名的前缀是状态/变量时视为数据上的方法调用；</li>
+ *   <li>TIMER_EXPIRED 的定时器必须在某处被 START_TIMER / RESET_TIMER 过，或声明为状态；</li>
+ *   <li>同一节中的重复定义。</li>
+ * </ul>
+ * 每一节的名字先放进各自的哈希表，之后对模型只遍历一遍，总耗时与模型大小成线性关系。
+ * 对应的节整个没写 (例如没有 MESSAGES) 时跳过该类检查，避免一处遗漏产生几十条重复报告；
+ * 同一个名字的多次出现合并为一条，只报告第一处的行号。
+ */
+public final class SemanticChecker {
+
+    // 合并后最多报告的问题数，避免反馈提示过长
+    private static final int MAX_ISSUES = Integer.getInteger("link16.semantic.maxIssues", 40);
+    private static final int MAX_CANDIDATES = 3;
+
+    private final ModelIR.FunctionModel model;
+    private final SymbolIndex external;
+
+    // 各节的符号表
+    private final Set<String> actors = new HashSet<>();
+    private final Set<String> messages = new HashSet<>();
+    private final List<String[]> messagePatterns = new ArrayList<>();
+    private final Set<String> states = new HashSet<>();
+    // TYPES 名 -> 类型文本；状态名 -> 结构体字段 (字段名 -> 字段类型文本)，类型不是 STRUCT 的状态不在表中
+    private final Map<String, String> types = new HashMap<>();
+    private final Map<String, Map<String, String>> stateFields = new HashMap<>();
+    // 类型文本 -> 解析出的字段表，同一个结构体只解析一次
+    private final Map<String, Map<String, String>> structs = new HashMap<>();
+    private final Set<String> procedures = new HashSet<>();
+    private final Set<String> timers = new HashSet<>();
+
+    private final Map<String, Issue> issues = new LinkedHashMap<>();
+    // 当前过程的参数与局部变量
+    private Set<String> scope = Set.of();
+
+    private SemanticChecker(ModelIR.FunctionModel model, SymbolIndex external) {
+        this.model = model;
+        this.external = external;
+    }
+
+    public static List<SemanticErrorDetail> check(ModelIR.Model model) {
+        return check(model, null);
+    }
+
+    /**
+     * external 为跨文件的符号索引 (可为 null)，用于解析调用其他模型中过程的 CALL。消息规则模型没有需要检查的声明，返回空列表。
+     */
+    public static List<SemanticErrorDetail> check(ModelIR.Model model, SymbolIndex external) {
+        if (!(model instanceof ModelIR.FunctionModel functionModel)) {
+            return List.of();
+        }
+        SemanticChecker checker = new SemanticChecker(functionModel, external);
+        checker.declare();
+        checker.walk();
+        return checker.results();
+    }
+
+    // ==========================================
+    // 1. 收集各节的声明
+    // ==========================================
+
+    private void declare() {
+        for (ModelIR.Actor actor : each(model.actors)) {
+            define(actors, actor.name, "ACTORS", actor.line);
+        }
+        for (ModelIR.MessageDecl message : each(model.messages)) {
+            String name = messageKey(message.name);
+            define(messages, name, "MESSAGES", message.line);
+            if (name.indexOf('X') >= 0) {
+                messagePatterns.add(name.split("\\."));
+            }
+        }
+        for (ModelIR.TypeDef type : each(model.types)) {
+            if (type.name != null && type.type != null) {
+                types.putIfAbsent(type.name, type.type);
+            }
+        }
+        for (ModelIR.State state : each(model.states)) {
+            define(states, state.name, "STATES", state.line);
+            Map<String, String> fields = fields(state.type);
+            if (state.name != null && fields != null) {
+                stateFields.putIfAbsent(state.name, fields);
+            }
+        }
+        for (ModelIR.Procedure procedure : each(model.procedures)) {
+            define(procedures, procedure.name, "PROCEDURE", procedure.line);
+            collectTimers(procedure.steps);
+            for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                collectTimers(handler.body);
+            }
+        }
+    }
+
+    private void define(Set<String> table, String name, String section, int line) {
+        if (name != null && !table.add(name)) {
+            report(SemanticErrorDetail.Category.DUPLICATE_DEFINITION, section + ":" + name, name, line,
+                    section + " 中重复定义了 " + name, "");
+        }
+    }
+
+    // 定时器没有单独的声明节，START_TIMER / RESET_TIMER 过的名字视为已定义
+    private void collectTimers(List<ModelIR.Statement> statements) {
+        for (ModelIR.Statement statement : each(statements)) {
+            if (statement instanceof ModelIR.Timer timer) {
+                if (timer.op != ModelIR.TimerOp.STOP_TIMER) {
+                    timers.add(timer.timer);
+                }
+            } else {
+                for (List<ModelIR.Statement> body : bodies(statement)) {
+                    collectTimers(body);
+                }
+            }
+        }
+    }
+
+    // 局部变量不分先后，整个过程内可见 (循环体里先读后写的情况很常见)
+    private static void collectLocals(List<ModelIR.Statement> statements, Set<String> names) {
+        for (ModelIR.Statement statement : each(statements)) {
+            if (statement instanceof ModelIR.Assign assign && assign.target != null && assign.target.suffixes.isEmpty()) {
+                names.add(assign.target.root);
+            }
+            for (List<ModelIR.Statement> body : bodies(statement)) {
+                collectLocals(body, names);
+            }
+        }
+    }
+
+    // ==========================================
+    // 2. 遍历模型检查引用
+    // ==========================================
+
+    private void walk() {
+        for (ModelIR.Discrete discrete : each(model.discretes)) {
+            if (discrete.forMessage != null) {
+                message(discrete.forMessage, discrete.line);
+            }
+        }
+        for (ModelIR.Mapping mapping : each(model.mappings)) {
+            if (mapping.event != null) {
+                event(mapping.event, mapping.line);
+            }
+            if (mapping.target != null) {
+                state(mapping.target, mapping.line);
+            }
+        }
+        for (ModelIR.Procedure procedure : each(model.procedures)) {
+            Set<String> names = new HashSet<>();
+            for (ModelIR.ParamDef param : each(procedure.params)) {
+                names.add(param.name);
+            }
+            collectLocals(procedure.steps, names);
+            for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                collectLocals(handler.body, names);
+            }
+            scope = names;
+            if (procedure.trigger != null) {
+                condition(procedure.trigger, procedure.line);
+            }
+            statements(procedure.steps);
+            for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                branch(handler, procedure.line);
+            }
+        }
+        scope = Set.of();
+        for (ModelIR.EventRule rule : each(model.rules)) {
+            if (rule.event != null) {
+                event(rule.event, rule.line);
+            }
+            for (ModelIR.Consequence consequence : each(rule.consequences)) {
+                if (consequence.message instanceof ModelIR.MessageId id) {
+                    message(id.id, rule.line);
+                }
+            }
+        }
+    }
+
+    private void statements(List<ModelIR.Statement> statements) {
+        for (ModelIR.Statement statement : each(statements)) {
+            statement(statement);
+        }
+    }
+
+    private void statement(ModelIR.Statement statement) {
+        int line = statement.line;
+        if (statement instanceof ModelIR.Step step) {
+            if (step.action != null && step.action.verb != ModelIR.Verb.NOTIFY) {
+                ModelIR.Action action = step.action;
+                actor(action.sender, line);
+                actor(action.target, line);
+                message(action.message, line);
+            } else if (step.naturalLanguage != null) {
+                for (String actor : each(step.naturalLanguage.actors)) {
+                    actor(actor, line);
+                }
+            }
+        } else if (statement instanceof ModelIR.Call call) {
+            call(call.target, line);
+        } else if (statement instanceof ModelIR.Assign assign) {
+            // 根后直接跟 (args) 的是函数调用的结果，不是状态
+            if (assign.target != null && !assign.target.suffixes.isEmpty() && assign.target.suffixes.get(0).member != null) {
+                state(assign.target.root, line);
+                fields(assign.target, line);
+            }
+        } else if (statement instanceof ModelIR.Timer timer) {
+            actor(timer.actor, line);
+        } else if (statement instanceof ModelIR.If ifStatement) {
+            for (ModelIR.Branch branch : each(ifStatement.branches)) {
+                condition(branch.condition, line);
+            }
+        } else if (statement instanceof ModelIR.While loop) {
+            condition(loop.condition, line);
+        } else if (statement instanceof ModelIR.Wait wait) {
+            for (ModelIR.Branch clause : each(wait.clauses)) {
+                condition(clause.condition, line);
+            }
+        }
+        for (List<ModelIR.Statement> body : bodies(statement)) {
+            statements(body);
+        }
+    }
+
+    private void branch(ModelIR.Branch branch, int line) {
+        condition(branch.condition, line);
+        statements(branch.body);
+    }
+
+    private void condition(ModelIR.Condition condition, int line) {
+        if (condition instanceof ModelIR.Or or) {
+            for (ModelIR.Condition operand : or.operands) {
+                condition(operand, line);
+            }
+        } else if (condition instanceof ModelIR.And and) {
+            for (ModelIR.Condition operand : and.operands) {
+                condition(operand, line);
+            }
+        } else if (condition instanceof ModelIR.Not not) {
+            condition(not.operand, line);
+        } else if (condition instanceof ModelIR.Group group) {
+            condition(group.inner, line);
+        } else if (condition instanceof ModelIR.HasField hasField) {
+            message(hasField.message, line);
+        } else if (condition instanceof ModelIR.StatusIs status) {
+            actor(status.actor, line);
+        } else if (condition instanceof ModelIR.TimeSince timeSince) {
+            event(timeSince.event, line);
+        } else if (condition instanceof ModelIR.EventCondition eventCondition) {
+            event(eventCondition.event, line);
+        }
+    }
+
+    private void event(ModelIR.Event event, int line) {
+        if (event.kind == ModelIR.EventKind.MESSAGE_RECEIVED || event.kind == ModelIR.EventKind.MESSAGE_SENT) {
+            message(event.message, line);
+            actor(event.from, line);
+            actor(event.to, line);
+            if (event.filter != null) {
+                condition(event.filter, line);
+            }
+        } else if (event.kind == ModelIR.EventKind.TIMER_EXPIRED && event.text != null
+                && !timers.contains(event.text) && !states.contains(event.text)) {
+            report(SemanticErrorDetail.Category.UNKNOWN_TIMER, event.text, event.text, line,
+                    "TIMER_EXPIRED(" + event.text + ") 引用的定时器从未通过 START_TIMER 启动", candidates(event.text, timers));
+        }
+    }
+
+    // ==========================================
+    // 各类引用
+    // ==========================================
+
+    private void actor(String name, int line) {
+        if (name == null || model.actors == null || actors.contains(name) || scope.contains(name) || states.contains(name)) {
+            return;
+        }
+        report(SemanticErrorDetail.Category.UNDECLARED_ACTOR, name, name, line,
+                "参与者 " + name + " 没有在 ACTORS 中声明", candidates(name, actors));
+    }
+
+    private void message(String name, int line) {
+        if (name == null || model.messages == null) {
+            return;
+        }
+        String key = messageKey(name);
+        if (messages.contains(key) || matchesPattern(key) || scope.contains(key)) {
+            return;
+        }
+        report(SemanticErrorDetail.Category.UNDECLARED_MESSAGE, key, key, line,
+                "消息 " + key + " 没有在 MESSAGES 中声明", candidates(key, messages));
+    }
+
+    private void state(String name, int line) {
+        if (name == null || states.contains(name) || scope.contains(name) || actors.contains(name)) {
+            return;
+        }
+        report(SemanticErrorDetail.Category.UNKNOWN_STATE, name, name, line,
+                name + " 不是 STATES 中声明的状态", candidates(name, states));
+    }
+
+    // X.f.g: 依次在 X 的结构体字段、f 的结构体字段中查找；遇到调用 (args) 或非 STRUCT 类型就停止。参数/局部变量同名时遮蔽状态
+    private void fields(ModelIR.Access target, int line) {
+        Map<String, String> fields = scope.contains(target.root) ? null : stateFields.get(target.root);
+        StringBuilder path = new StringBuilder(target.root);
+        for (ModelIR.AccessSuffix suffix : target.suffixes) {
+            if (fields == null || suffix.member == null) {
+                return;
+            }
+            String type = fields.get(suffix.member);
+            if (type == null) {
+                String owner = path.toString();
+                path.append('.').append(suffix.member);
+                report(SemanticErrorDetail.Category.UNKNOWN_STATE, path.toString(), path.toString(), line,
+                        owner + " 的类型中没有声明字段 " + suffix.member, candidates(suffix.member, fields.keySet()));
+                return;
+            }
+            path.append('.').append(suffix.member);
+            fields = fields(type);
+        }
+    }
+
+    private void call(String target, int line) {
+        if (target == null) {
+            return;
+        }
+        int dot = target.lastIndexOf('.');
+        String qualifier = dot >= 0 ? target.substring(0, dot) : null;
+        String name = dot >= 0 ? target.substring(dot + 1) : target;
+        boolean local = qualifier == null || qualifier.equals(model.name);
+        if (local && procedures.contains(name)) {
+            return;
+        }
+        if (qualifier != null && isData(qualifier.split("\\.", 2)[0])) {
+            return;
+        }
+        if (external != null && !external.definitions(SymbolIndex.Kind.PROCEDURE, name).isEmpty()) {
+            return;
+        }
+        report(SemanticErrorDetail.Category.UNKNOWN_PROCEDURE, target, target, line,
+                "CALL 的目标 " + target + " 没有对应的 PROCEDURE 定义", candidates(name, procedures));
+    }
+
+    private boolean isData(String root) {
+        return states.contains(root) || scope.contains(root) || actors.contains(root);
+    }
+
+    // ==========================================
+    // 辅助工具方法
+    // ==========================================
+
+    private void report(SemanticErrorDetail.Category category, String key, String symbol, int line, String message, String candidates) {
+        Issue issue = issues.get(category + "\u0000" + key);
+        if (issue != null) {
+            issue.count++;
+            return;
+        }
+        issues.put(category + "\u0000" + key, new Issue(category, symbol, line, message, candidates));
+    }
+
+    private List<SemanticErrorDetail> results() {
+        List<SemanticErrorDetail> details = new ArrayList<>(Math.min(issues.size(), MAX_ISSUES));
+        for (Issue issue : issues.values()) {
+            if (details.size() >= MAX_ISSUES) {
+                break;
+            }
+            String message = issue.count > 1 ? issue.message + " (共 " + issue.count + " 处)" : issue.message;
+            details.add(new SemanticErrorDetail(issue.line, issue.category, issue.symbol, issue.candidates, message));
+        }
+        return details;
+    }
+
+    // 类型文本 (例如 STRUCT{TN:INTEGER;Pos:Point;}，或 TYPES 中的名字) 对应的结构体字段；不是 STRUCT 时返回 null
+    private Map<String, String> fields(String type) {
+        // 沿 TYPES 引用链解析，最多走 types.size() 步，防止 A: B; B: A; 这样的循环
+        for (int hops = 0; type != null && types.containsKey(type) && hops <= types.size(); hops++) {
+            type = types.get(type);
+        }
+        if (type == null || !type.startsWith("STRUCT{") || !type.endsWith("}")) {
+            return null;
+        }
+        Map<String, String> fields = structs.get(type);
+        if (fields == null) {
+            fields = parseStruct(type);
+            structs.put(type, fields);
+        }
+        return fields;
+    }
+
+    // 只拆最外层的 name:type; 嵌套结构体的字段留给下一级查找时再解析
+    private static Map<String, String> parseStruct(String type) {
+        Map<String, String> fields = new HashMap<>();
+        int depth = 0;
+        int start = "STRUCT{".length();
+        int colon = -1;
+        for (int i = start; i < type.length() - 1; i++) {
+            char c = type.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            } else if (depth == 0 && c == ':' && colon < 0) {
+                colon = i;
+            } else if (depth == 0 && c == ';') {
+                if (colon > start) {
+                    fields.putIfAbsent(type.substring(start, colon), type.substring(colon + 1, i));
+                }
+                start = i + 1;
+                colon = -1;
+            }
+        }
+        return fields;
+    }
+
+    // 消息名去掉引号，J3.2C1 这类带字说明符的按基本消息号比较
+    private static String messageKey(String name) {
+        String key = name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"") ? name.substring(1, name.length() - 1) : name;
+        if (key.startsWith("J")) {
+            int end = key.length();
+            while (end > 0 && Character.isDigit(key.charAt(end - 1))) {
+                end--;
+            }
+            if (end < key.length() && end > 0 && (key.charAt(end - 1) == 'C' || key.charAt(end - 1) == 'E')) {
+                key = key.substring(0, end - 1);
+            }
+        }
+        return key;
+    }
+
+    // 声明中的 X 段匹配任意编号 (J13.X 覆盖 J13.0、J13.2 ...)；使用处本身是通配时也与同组的具体声明匹配
+    private boolean matchesPattern(String key) {
+        String[] segments = key.split("\\.");
+        for (String[] pattern : messagePatterns) {
+            if (segmentsMatch(pattern, segments)) {
+                return true;
+            }
+        }
+        if (key.indexOf('X') >= 0) {
+            for (String declared : messages) {
+                if (segmentsMatch(segments, declared.split("\\."))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean segmentsMatch(String[] pattern, String[] segments) {
+        if (pattern.length != segments.length) {
+            return false;
+        }
+        for (int i = 0; i < pattern.length; i++) {
+            if (!pattern[i].equals(segments[i]) && !"X".equals(pattern[i]) && !pattern[i].endsWith("X")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 只在报告问题时计算：按编辑距离取最接近的几个已声明名字
+    private static String candidates(String name, Set<String> declared) {
+        List<String> best = new ArrayList<>();
+        List<Integer> distances = new ArrayList<>();
+        int limit = Math.max(2, name.length() / 3);
+        for (String candidate : declared) {
+            int distance = editDistance(name.toLowerCase(), candidate.toLowerCase());
+            if (distance > limit) {
+                continue;
+            }
+            int at = 0;
+            while (at < distances.size() && distances.get(at) <= distance) {
+                at++;
+            }
+            if (at < MAX_CANDIDATES) {
+                best.add(at, candidate);
+                distances.add(at, distance);
+                if (best.size() > MAX_CANDIDATES) {
+                    best.remove(MAX_CANDIDATES);
+                    distances.remove(MAX_CANDIDATES);
+                }
+            }
+        }
+        return String.join(", ", best);
+    }
+
+    private static int editDistance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    // 语句中嵌套的语句块
+    private static List<List<ModelIR.Statement>> bodies(ModelIR.Statement statement) {
+        List<List<ModelIR.Statement>> bodies = new ArrayList<>();
+        if (statement instanceof ModelIR.If ifStatement) {
+            for (ModelIR.Branch branch : each(ifStatement.branches)) {
+                bodies.add(branch.body);
+            }
+            bodies.add(ifStatement.elseBody);
+        } else if (statement instanceof ModelIR.While loop) {
+            bodies.add(loop.body);
+        } else if (statement instanceof ModelIR.Wait wait) {
+            for (ModelIR.Branch clause : each(wait.clauses)) {
+                bodies.add(clause.body);
+            }
+        } else if (statement instanceof ModelIR.Parallel parallel) {
+            bodies.addAll(each(parallel.branches));
+        } else if (statement instanceof ModelIR.UserConfirm confirm) {
+            bodies.add(confirm.confirmed);
+            bodies.add(confirm.otherwise);
+        }
+        return bodies;
+    }
+
+    private static <T> List<T> each(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static class Issue {
+        final SemanticErrorDetail.Category category;
+        final String symbol;
+        final int line;
+        final String message;
+        final String candidates;
+        int count = 1;
+
+        Issue(SemanticErrorDetail.Category category, String symbol, int line, String message, String candidates) {
+            this.category = category;
+            this.symbol = symbol;
+            this.line = line;
+            this.message = message;
+            this.candidates = candidates;
+        }
+    }
+}
@@ -0,0 +1,778 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 紧凑的语义图 (GraphView.SEMANTIC)：不画语法树，直接由 {@link ModelIR} 生成，
+ * 因此命中缓存时从 model.bin 还原的模型、监视模式的增量模型都可以直接出图。
+ * <p>
+ * 功能模型: 参与者、消息各成一个 cluster；每个 PROCEDURE 是一个 cluster，内部按执行顺序串起步骤/动作节点，
+ * IF / WHILE / WAIT / PARALLEL 等复合语句的分支从该语句节点引出；CALL 画成指向被调流程入口的边，
+ * SENDS / BROADCASTS 动作用虚线连到对应的消息节点。
+ * 消息规则: 每个 Message ... Rules 是一个 cluster，规则条件只展开一层 (顶层的 OR / AND 及其直接操作数)。
+ * <p>
+ * 为了让大模型也能快速布局，每个节点最多展开 {@link #MAX_CHILDREN} 个子节点，复合语句嵌套超过
+ * {@link #MAX_DEPTH} 层、顶层块超过 {@link #MAX_BLOCKS} 个时，剩余部分折叠成一个 "⋯" 节点并注明折叠的数量。
+ * 三个上限可分别通过 -Dlink16.graph.maxChildren / maxDepth / maxBlocks 调整。
+ */
+public class SemanticDotWriter {
+
+    public static final int MAX_CHILDREN = Integer.getInteger("link16.graph.maxChildren", 12);
+    public static final int MAX_DEPTH = Integer.getInteger("link16.graph.maxDepth", 4);
+    public static final int MAX_BLOCKS = Integer.getInteger("link16.graph.maxBlocks", 64);
+
+    private static final int LABEL_LENGTH = 40;
+    private static final int EDGE_LABEL_LENGTH = 24;
+
+    private static final String CLUSTER_STYLE = "style=\"rounded,dashed\"; color=\"#999999\"; fontcolor=\"#444444\";";
+
+    /**
+     * 节点样式: DOT 属性，以及内置 SVG 渲染器 (SvgTreeRenderer) 使用的形状与配色。
+     */
+    enum Style {
+        PROCEDURE("shape=box, style=\"filled,rounded,bold\", fillcolor=\"#dae8fc\", color=\"#6c8ebf\"", SvgTreeRenderer.Shape.ROUNDED, "#dae8fc", "#6c8ebf", false),
+        STEP("shape=box, style=\"filled,rounded\", fillcolor=\"#e2f0d9\", color=\"#38761d\"", SvgTreeRenderer.Shape.ROUNDED, "#e2f0d9", "#38761d", false),
+        CALL("shape=box, style=\"filled,rounded\", fillcolor=\"#e1d5e7\", color=\"#9673a6\"", SvgTreeRenderer.Shape.ROUNDED, "#e1d5e7", "#9673a6", false),
+        BRANCH("shape=diamond, style=filled, fillcolor=\"#ffe6cc\", color=\"#d79b00\"", SvgTreeRenderer.Shape.DIAMOND, "#ffe6cc", "#d79b00", false),
+        OPERATOR("shape=circle, style=filled, fillcolor=\"#ffe6cc\", color=\"#d79b00\", fontsize=10", SvgTreeRenderer.Shape.CIRCLE, "#ffe6cc", "#d79b00", false),
+        CONDITION("shape=box, style=\"filled,rounded\", fillcolor=\"#fff2cc\", color=\"#d6b656\"", SvgTreeRenderer.Shape.ROUNDED, "#fff2cc", "#d6b656", false),
+        ACTOR("shape=ellipse, style=filled, fillcolor=\"#fff2cc\", color=\"#d6b656\"", SvgTreeRenderer.Shape.ELLIPSE, "#fff2cc", "#d6b656", false),
+        MESSAGE("shape=note, style=filled, fillcolor=\"#f8cecc\", color=\"#b85450\"", SvgTreeRenderer.Shape.BOX, "#f8cecc", "#b85450", false),
+        INFO("shape=note, style=filled, fillcolor=\"#f5f5f5\", color=\"#666666\"", SvgTreeRenderer.Shape.BOX, "#f5f5f5", "#666666", false),
+        FOLD("shape=box, style=\"filled,rounded,dashed\", fillcolor=\"#f5f5f5\", color=\"#999999\", fontcolor=\"#666666\"", SvgTreeRenderer.Shape.ROUNDED, "#f5f5f5", "#999999", true),
+        MISSING("shape=box, style=\"filled,dashed\", fillcolor=\"#ffffff\", color=\"#b85450\", fontcolor=\"#b85450\"", SvgTreeRenderer.Shape.BOX, "#ffffff", "#b85450", true);
+
+        final String dot;
+        final SvgTreeRenderer.Shape shape;
+        final String fill;
+        final String stroke;
+        final boolean dashed;
+
+        Style(String dot, SvgTreeRenderer.Shape shape, String fill, String stroke, boolean dashed) {
+            this.dot = dot;
+            this.shape = shape;
+            this.fill = fill;
+            this.stroke = stroke;
+            this.dashed = dashed;
+        }
+    }
+
+    /**
+     * 不参与布局的附加边: CALL 指向被调流程，SENDS / BROADCASTS 指向消息。
+     */
+    enum Link {
+        CALL("color=\"#9673a6\", style=bold, constraint=false", "#9673a6", false),
+        SEND("color=\"#b85450\", style=dashed, arrowsize=0.6, constraint=false", "#b85450", true);
+
+        final String dot;
+        final String color;
+        final boolean dashed;
+
+        Link(String dot, String color, boolean dashed) {
+            this.dot = dot;
+            this.color = color;
+            this.dashed = dashed;
+        }
+    }
+
+    /**
+     * 图的输出目标: DOT 文本 (DotSink) 或内置 SVG 渲染器 (SvgSink)。节点 id 从 0 起按创建顺序连续编号。
+     */
+    interface Sink {
+        void begin() throws IOException;
+
+        void title(String title) throws IOException;
+
+        void node(int id, Style style, String[] lines) throws IOException;
+
+        void edge(int from, int to, String label) throws IOException;
+
+        void link(int from, int to, Link link) throws IOException;
+
+        void openCluster(String label) throws IOException;
+
+        void closeCluster() throws IOException;
+
+        void end() throws IOException;
+    }
+
+    private final Sink sink;
+    private int nextId;
+
+    // 名称 -> 节点 id，用于在全部节点写完后补画 CALL / 消息边
+    private final Map<String, Integer> procedureIds = new HashMap<>();
+    private final Map<String, Integer> messageIds = new HashMap<>();
+    private final Map<String, Integer> missingIds = new HashMap<>();
+    // 延后写出的边: 起点 id 与目标名称
+    private final List<Integer> callFrom = new ArrayList<>();
+    private final List<String> callTargets = new ArrayList<>();
+    private final List<Integer> sendFrom = new ArrayList<>();
+    private final List<String> sendMessages = new ArrayList<>();
+
+    public SemanticDotWriter(Writer out) {
+        this(new DotSink(out));
+    }
+
+    SemanticDotWriter(Sink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 不经过 Graphviz，直接用 SvgTreeRenderer 把语义图布局并写成 SVG，返回节点数。
+     * CALL / 消息边只绘制不参与布局，cluster 画成包住成员节点的虚线框。
+     */
+    public static int writeSvg(ModelIR.Model model, Writer out) throws IOException {
+        return new SemanticDotWriter(new SvgSink(out)).write(model);
+    }
+
+    /**
+     * 写出完整的图，返回节点数。
+     */
+    public int write(ModelIR.Model model) throws IOException {
+        sink.begin();
+        if (model instanceof ModelIR.FunctionModel functionModel) {
+            writeFunctionModel(functionModel);
+        } else if (model instanceof ModelIR.RulesModel rulesModel) {
+            writeRulesModel(rulesModel);
+        }
+        writeDeferredEdges();
+        sink.end();
+        return nextId;
+    }
+
+    // ========================================================================
+    // 功能模型
+    // ========================================================================
+
+    private void writeFunctionModel(ModelIR.FunctionModel model) throws IOException {
+        sink.title("功能模型: " + model.name);
+
+        if (!model.actors.isEmpty()) {
+            openCluster("参与者 (ACTORS)");
+            int shown = shownCount(model.actors.size());
+            for (int i = 0; i < shown; i++) {
+                ModelIR.Actor actor = model.actors.get(i);
+                node(Style.ACTOR, actor.name, actor.type);
+            }
+            if (shown < model.actors.size()) {
+                node(Style.FOLD, "⋯ 另有 " + (model.actors.size() - shown) + " 个参与者");
+            }
+            closeCluster();
+        }
+
+        if (!model.messages.isEmpty()) {
+            openCluster("消息 (MESSAGES)");
+            int shown = shownCount(model.messages.size());
+            for (int i = 0; i < shown; i++) {
+                String name = model.messages.get(i).name;
+                messageIds.put(name, node(Style.MESSAGE, name));
+            }
+            if (shown < model.messages.size()) {
+                node(Style.FOLD, "⋯ 另有 " + (model.messages.size() - shown) + " 条消息");
+            }
+            closeCluster();
+        }
+
+        writeStaticSummary(model);
+
+        // 流程与规则按源码顺序 (行号) 排列，超过 MAX_BLOCKS 的部分只保留一个折叠节点 (CALL 到这些流程时指向它)
+        int blocks = 0;
+        int foldedBlocks = 0;
+        int foldedStatements = 0;
+        List<String> foldedProcedures = new ArrayList<>();
+        int nextProcedure = 0;
+        int nextRule = 0;
+        while (nextProcedure < model.procedures.size() || nextRule < model.rules.size()) {
+            boolean procedureFirst = nextRule == model.rules.size() || (nextProcedure < model.procedures.size()
+                    && model.procedures.get(nextProcedure).line <= model.rules.get(nextRule).line);
+            if (procedureFirst) {
+                ModelIR.Procedure procedure = model.procedures.get(nextProcedure++);
+                if (blocks++ < MAX_BLOCKS) {
+                    writeProcedure(procedure);
+                } else {
+                    foldedBlocks++;
+                    foldedStatements += countStatements(procedure.steps);
+                    if (procedure.exceptionHandlers != null) {
+                        for (ModelIR.Branch handler : procedure.exceptionHandlers) {
+                            foldedStatements += countStatements(handler.body);
+                        }
+                    }
+                    foldedProcedures.add(procedure.name);
+                }
+            } else {
+                ModelIR.EventRule rule = model.rules.get(nextRule++);
+                if (blocks++ < MAX_BLOCKS) {
+                    writeEventRule(rule);
+                } else {
+                    foldedBlocks++;
+                }
+            }
+        }
+        if (foldedBlocks > 0) {
+            int fold = node(Style.FOLD, "⋯ 另有 " + foldedBlocks + " 个流程/规则未展开", "(共 " + foldedStatements + " 条语句)");
+            for (String name : foldedProcedures) {
+                procedureIds.putIfAbsent(name, fold);
+            }
+        }
+    }
+
+    private void writeStaticSummary(ModelIR.FunctionModel model) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("静态定义");
+        if (!model.types.isEmpty()) {
+            lines.add("类型 " + model.types.size() + " 个");
+        }
+        if (!model.discretes.isEmpty()) {
+            lines.add("枚举 " + model.discretes.size() + " 个");
+        }
+        if (!model.states.isEmpty()) {
+            lines.add("状态 " + model.states.size() + " 个");
+        }
+        if (!model.mappings.isEmpty()) {
+            lines.add("映射 " + model.mappings.size() + " 个");
+        }
+        if (lines.size() > 1) {
+            node(Style.INFO, lines.toArray(new String[0]));
+        }
+    }
+
+    private void writeProcedure(ModelIR.Procedure procedure) throws IOException {
+        openCluster(null);
+        StringBuilder header = new StringBuilder("PROCEDURE ").append(procedure.name);
+        if (procedure.params != null) {
+            header.append('(');
+            for (int i = 0; i < procedure.params.size(); i++) {
+                ModelIR.ParamDef param = procedure.params.get(i);
+                header.append(i > 0 ? ", " : "").append(param.name).append(": ").append(param.type);
+            }
+            header.append(')');
+        }
+        int entry = node(Style.PROCEDURE, header.toString(), unquote(procedure.description));
+        procedureIds.putIfAbsent(procedure.name, entry);
+
+        int previous = entry;
+        if (procedure.trigger != null) {
+            int trigger = node(Style.CONDITION, "TRIGGER", ModelPrinter.label(procedure.trigger));
+            edge(previous, trigger, null);
+            previous = trigger;
+        }
+        writeStatements(previous, procedure.steps, null, 0);
+
+        if (procedure.exceptionHandlers != null) {
+            int exception = node(Style.BRANCH, "EXCEPTION");
+            edge(entry, exception, "异常");
+            writeConditionClauses(exception, procedure.exceptionHandlers, 1);
+        }
+        closeCluster();
+    }
+
+    private void writeEventRule(ModelIR.EventRule rule) throws IOException {
+        int id = node(Style.PROCEDURE, "RULE " + unquote(rule.name) + " (优先级 " + number(rule.priority) + ")",
+                "ON " + ModelPrinter.label(rule.event));
+        List<ModelIR.Consequence> consequences = rule.consequences;
+        int shown = shownCount(consequences.size());
+        for (int i = 0; i < shown; i++) {
+            ModelIR.Consequence consequence = consequences.get(i);
+            String text = (consequence.broadcast ? "MUST_BROADCAST " : "MUST_SEND ") + ModelPrinter.label(consequence.message)
+                    + (consequence.argument != null ? " (" + ModelPrinter.label(consequence.argument) + ")" : "");
+            edge(id, node(Style.STEP, text), null);
+        }
+        if (shown < consequences.size()) {
+            edge(id, node(Style.FOLD, "⋯ 另有 " + (consequences.size() - shown) + " 个结果"), null);
+        }
+    }
+
+    /**
+     * 把一串语句按顺序连成链，第一条边从 from 引出并带上 firstEdgeLabel。返回链上最后一个节点。
+     */
+    private int writeStatements(int from, List<ModelIR.Statement> statements, String firstEdgeLabel, int depth)
+            throws IOException {
+        int previous = from;
+        String label = firstEdgeLabel;
+        int shown = shownCount(statements.size());
+        for (int i = 0; i < shown; i++) {
+            int id = writeStatement(statements.get(i), depth);
+            edge(previous, id, label);
+            label = null;
+            previous = id;
+        }
+        if (shown < statements.size()) {
+            int folded = countStatements(statements.subList(shown, statements.size()));
+            int fold = node(Style.FOLD, "⋯ 另有 " + (statements.size() - shown) + " 条语句", "(共 " + folded + " 条已折叠)");
+            edge(previous, fold, label);
+            previous = fold;
+        }
+        return previous;
+    }
+
+    private int writeStatement(ModelIR.Statement statement, int depth) throws IOException {
+        if (statement instanceof ModelIR.Step step) {
+            return writeStep(step);
+        } else if (statement instanceof ModelIR.Call call) {
+            int id = node(Style.CALL, "CALL " + call.target);
+            callFrom.add(id);
+            callTargets.add(call.target);
+            return id;
+        } else if (statement instanceof ModelIR.Assign assign) {
+            return node(Style.STEP, "ASSIGN " + ModelPrinter.label(assign.target), "= " + ModelPrinter.label(assign.value));
+        } else if (statement instanceof ModelIR.Terminate) {
+            return node(Style.STEP, "TERMINATE");
+        } else if (statement instanceof ModelIR.Continue) {
+            return node(Style.STEP, "CONTINUE");
+        } else if (statement instanceof ModelIR.Timer timer) {
+            String text = timer.actor + " " + timer.op.name() + " " + timer.timer;
+            return node(Style.STEP, timer.duration != null ? text + " FOR " + duration(timer.duration) : text);
+        }
+
+        // 复合语句: 嵌套过深时整棵子树折叠为一个节点
+        String title = compoundTitle(statement);
+        if (depth >= MAX_DEPTH) {
+            return node(Style.FOLD, "⋯ " + title, "(已折叠 " + (countStatements(List.of(statement)) - 1) + " 条语句)");
+        }
+        if (statement instanceof ModelIR.If ifStatement) {
+            int branch = node(Style.BRANCH, "IF", ModelPrinter.label(ifStatement.branches.get(0).condition));
+            writeStatements(branch, ifStatement.branches.get(0).body, "THEN", depth + 1);
+            for (int i = 1; i < ifStatement.branches.size(); i++) {
+                ModelIR.Branch elseIf = ifStatement.branches.get(i);
+                writeStatements(branch, elseIf.body, "ELSE IF " + ModelPrinter.label(elseIf.condition), depth + 1);
+            }
+            if (ifStatement.elseBody != null) {
+                writeStatements(branch, ifStatement.elseBody, "ELSE", depth + 1);
+            }
+            return branch;
+        } else if (statement instanceof ModelIR.While loop) {
+            int branch = node(Style.BRANCH, "WHILE", ModelPrinter.label(loop.condition));
+            writeStatements(branch, loop.body, "DO", depth + 1);
+            return branch;
+        } else if (statement instanceof ModelIR.Wait wait) {
+            int branch = node(Style.BRANCH, wait.timeout != null ? "WAIT FOR " + duration(wait.timeout) : "WAIT");
+            writeConditionClauses(branch, wait.clauses, depth + 1);
+            return branch;
+        } else if (statement instanceof ModelIR.Parallel parallelStatement) {
+            List<List<ModelIR.Statement>> branches = parallelStatement.branches;
+            int parallel = node(Style.BRANCH, "PARALLEL", branches.size() + " 个分支");
+            int shown = shownCount(branches.size());
+            for (int i = 0; i < shown; i++) {
+                writeStatements(parallel, branches.get(i), "BRANCH " + (i + 1), depth + 1);
+            }
+            if (shown < branches.size()) {
+                edge(parallel, node(Style.FOLD, "⋯ 另有 " + (branches.size() - shown) + " 个分支"), null);
+            }
+            return parallel;
+        } else if (statement instanceof ModelIR.UserConfirm userInput) {
+            int branch = node(Style.BRANCH, "USER_CONFIRM", unquote(userInput.prompt));
+            writeStatements(branch, userInput.confirmed, "确认", depth + 1);
+            if (userInput.otherwise != null) {
+                writeStatements(branch, userInput.otherwise, "ELSE", depth + 1);
+            }
+            return branch;
+        }
+        return node(Style.STEP, title);
+    }
+
+    private static String compoundTitle(ModelIR.Statement statement) {
+        if (statement instanceof ModelIR.If ifStatement) {
+            return "IF " + ModelPrinter.label(ifStatement.branches.get(0).condition);
+        } else if (statement instanceof ModelIR.While loop) {
+            return "WHILE " + ModelPrinter.label(loop.condition);
+        } else if (statement instanceof ModelIR.Wait) {
+            return "WAIT";
+        } else if (statement instanceof ModelIR.Parallel) {
+            return "PARALLEL";
+        } else if (statement instanceof ModelIR.UserConfirm) {
+            return "USER_CONFIRM";
+        }
+        return statement.getClass().getSimpleName().toUpperCase();
+    }
+
+    private void writeConditionClauses(int from, List<ModelIR.Branch> clauses, int depth) throws IOException {
+        int shown = shownCount(clauses.size());
+        for (int i = 0; i < shown; i++) {
+            ModelIR.Branch clause = clauses.get(i);
+            writeStatements(from, clause.body, "ON " + ModelPrinter.label(clause.condition), depth);
+        }
+        if (shown < clauses.size()) {
+            edge(from, node(Style.FOLD, "⋯ 另有 " + (clauses.size() - shown) + " 个 ON 分支"), null);
+        }
+    }
+
+    private int writeStep(ModelIR.Step step) throws IOException {
+        String modifier = switch (step.modifier) {
+            case OPTIONAL -> "[OPTIONAL] ";
+            case OVERRIDE -> "[OVERRIDE] ";
+            case REPEAT -> "[REPEAT " + step.repeatCount + " TIMES] ";
+            default -> "";
+        };
+        if (step.action != null) {
+            ModelIR.Action action = step.action;
+            int id;
+            if (action.verb == ModelIR.Verb.SENDS) {
+                id = node(Style.STEP, modifier + action.sender + " SENDS " + action.message, "→ " + action.target);
+            } else if (action.verb == ModelIR.Verb.BROADCASTS) {
+                id = node(Style.STEP, modifier + action.sender + " BROADCASTS " + action.message);
+            } else {
+                return node(Style.STEP, modifier + action.sender + " NOTIFY " + ModelPrinter.label(action.payload), "→ " + action.target);
+            }
+            sendFrom.add(id);
+            sendMessages.add(action.message);
+            return id;
+        } else if (step.naturalLanguage != null) {
+            return node(Style.STEP, modifier + "自然语言步骤", unquote(step.naturalLanguage.intent));
+        }
+        return node(Style.STEP, modifier + unquote(step.description));
+    }
+
+    // ========================================================================
+    // 消息规则
+    // ========================================================================
+
+    private void writeRulesModel(ModelIR.RulesModel model) throws IOException {
+        List<ModelIR.MessageRules> ruleSets = model.ruleSets;
+        int shown = Math.min(ruleSets.size(), MAX_BLOCKS);
+        for (int i = 0; i < shown; i++) {
+            writeMessageRules(ruleSets.get(i));
+        }
+        if (shown < ruleSets.size()) {
+            int rules = 0;
+            for (int i = shown; i < ruleSets.size(); i++) {
+                for (ModelIR.RuleGroup group : ruleSets.get(i).groups) {
+                    rules += group.rules.size();
+                }
+            }
+            node(Style.FOLD, "⋯ 另有 " + (ruleSets.size() - shown) + " 个规则集未展开", "(共 " + rules + " 条规则)");
+        }
+    }
+
+    private void writeMessageRules(ModelIR.MessageRules messageRules) throws IOException {
+        openCluster(null);
+        int message = node(Style.MESSAGE, "Message " + messageRules.messageName + " Rules");
+        for (ModelIR.RuleGroup ruleGroup : messageRules.groups) {
+            List<ModelIR.TrRule> rules = ruleGroup.rules;
+            int group = node(Style.PROCEDURE, ruleGroup.transmit ? "TransmitRules" : "ReceiveRules", rules.size() + " 条规则");
+            edge(message, group, null);
+            int shown = shownCount(rules.size());
+            for (int i = 0; i < shown; i++) {
+                writeRule(group, rules.get(i));
+            }
+            if (shown < rules.size()) {
+                edge(group, node(Style.FOLD, "⋯ 另有 " + (rules.size() - shown) + " 条规则"), null);
+            }
+        }
+        closeCluster();
+    }
+
+    private void writeRule(int group, ModelIR.TrRule trRule) throws IOException {
+        String name = trRule.name != null ? unquote(trRule.name) : "未命名规则";
+        int rule = node(Style.STEP, name, "Action: " + unquote(trRule.action));
+        edge(group, rule, null);
+        writeCondition(rule, trRule.condition);
+    }
+
+    /**
+     * 条件树只展开一层: 顶层是 OR 或 AND 时画一个运算符节点加它的直接操作数，否则整个条件就是一个节点。
+     */
+    private void writeCondition(int rule, ModelIR.Condition condition) throws IOException {
+        if (condition == null) {
+            return;
+        }
+        List<ModelIR.Condition> operands;
+        String operator;
+        if (condition instanceof ModelIR.Or or) {
+            operator = "OR";
+            operands = or.operands;
+        } else if (condition instanceof ModelIR.And and) {
+            operator = "AND";
+            operands = and.operands;
+        } else {
+            edge(rule, node(Style.CONDITION, ModelPrinter.label(condition)), "条件");
+            return;
+        }
+        int op = node(Style.OPERATOR, operator);
+        edge(rule, op, "条件");
+        int shown = shownCount(operands.size());
+        for (int i = 0; i < shown; i++) {
+            edge(op, node(Style.CONDITION, ModelPrinter.label(operands.get(i))), null);
+        }
+        if (shown < operands.size()) {
+            edge(op, node(Style.FOLD, "⋯ 另有 " + (operands.size() - shown) + " 个条件"), null);
+        }
+    }
+
+    // ========================================================================
+    // 输出
+    // ========================================================================
+
+    private void writeDeferredEdges() throws IOException {
+        for (int i = 0; i < callFrom.size(); i++) {
+            String target = callTargets.get(i);
+            Integer to = procedureIds.get(target);
+            if (to == null) {
+                // 允许 CALL Lib.Proc 按最后一段匹配本文件中的流程
+                to = procedureIds.get(target.substring(target.lastIndexOf('.') + 1));
+            }
+            if (to == null) {
+                to = missingIds.get(target);
+                if (to == null) {
+                    to = node(Style.MISSING, "外部/未定义流程", target);
+                    missingIds.put(target, to);
+                }
+            }
+            sink.link(callFrom.get(i), to, Link.CALL);
+        }
+        for (int i = 0; i < sendFrom.size(); i++) {
+            Integer to = messageIds.get(sendMessages.get(i));
+            if (to != null) {
+                sink.link(sendFrom.get(i), to, Link.SEND);
+            }
+        }
+    }
+
+    private int node(Style style, String... lines) throws IOException {
+        int id = nextId++;
+        sink.node(id, style, lines);
+        return id;
+    }
+
+    private void edge(int from, int to, String label) throws IOException {
+        sink.edge(from, to, label);
+    }
+
+    private void openCluster(String label) throws IOException {
+        sink.openCluster(label);
+    }
+
+    private void closeCluster() throws IOException {
+        sink.closeCluster();
+    }
+
+    private static int shownCount(int size) {
+        // 超出上限时留一个位置给折叠节点，保证每个节点的子节点数不超过 MAX_CHILDREN
+        return size > MAX_CHILDREN ? Math.max(MAX_CHILDREN - 1, 0) : size;
+    }
+
+    /**
+     * 语句列表中的语句数 (含嵌套的分支体)，用显式栈遍历，不受嵌套深度限制。
+     */
+    private static int countStatements(List<ModelIR.Statement> statements) {
+        int count = 0;
+        ArrayDeque<ModelIR.Statement> stack = new ArrayDeque<>(statements);
+        while (!stack.isEmpty()) {
+            ModelIR.Statement statement = stack.pop();
+            count++;
+            if (statement instanceof ModelIR.If ifStatement) {
+                for (ModelIR.Branch branch : ifStatement.branches) {
+                    stack.addAll(branch.body);
+                }
+                if (ifStatement.elseBody != null) {
+                    stack.addAll(ifStatement.elseBody);
+                }
+            } else if (statement instanceof ModelIR.While loop) {
+                stack.addAll(loop.body);
+            } else if (statement instanceof ModelIR.Wait wait) {
+                for (ModelIR.Branch clause : wait.clauses) {
+                    stack.addAll(clause.body);
+                }
+            } else if (statement instanceof ModelIR.Parallel parallel) {
+                for (List<ModelIR.Statement> branch : parallel.branches) {
+                    stack.addAll(branch);
+                }
+            } else if (statement instanceof ModelIR.UserConfirm userInput) {
+                stack.addAll(userInput.confirmed);
+                if (userInput.otherwise != null) {
+                    stack.addAll(userInput.otherwise);
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String duration(ModelIR.Duration duration) {
+        return duration.amount + " " + duration.unit.name();
+    }
+
+    // 优先级在 IR 中是 double，整数值按源码习惯不带小数部分
+    private static String number(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static String unquote(String literal) {
+        return literal == null ? "" : literal.replace("\"", "");
+    }
+
+    private static class DotSink implements Sink {
+        private final Writer out;
+        private int nextCluster;
+
+        DotSink(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            out.write("digraph G {\n");
+            out.write("  rankdir=TB;\n");
+            out.write("  compound=true;\n");
+            out.write("  nodesep=0.3;\n");
+            out.write("  ranksep=0.35;\n");
+            out.write("  node [fontname=\"Microsoft YaHei\", fontsize=12, height=0.3];\n");
+            out.write("  edge [color=\"#444444\", arrowsize=0.8, fontname=\"Microsoft YaHei\", fontsize=10];\n");
+        }
+
+        @Override
+        public void title(String title) throws IOException {
+            out.write("  label=\"");
+            DotWriter.writeEscaped(out, title, LABEL_LENGTH);
+            out.write("\";\n  labelloc=t;\n");
+        }
+
+        @Override
+        public void node(int id, Style style, String[] lines) throws IOException {
+            out.write("  n");
+            out.write(Integer.toString(id));
+            out.write(" [");
+            out.write(style.dot);
+            out.write(", label=\"");
+            boolean first = true;
+            for (String line : lines) {
+                if (line == null || line.isEmpty()) {
+                    continue;
+                }
+                if (!first) {
+                    out.write("\\n");
+                }
+                DotWriter.writeEscaped(out, line, LABEL_LENGTH);
+                first = false;
+            }
+            out.write("\"];\n");
+        }
+
+        @Override
+        public void edge(int from, int to, String label) throws IOException {
+            out.write("  n");
+            out.write(Integer.toString(from));
+            out.write(" -> n");
+            out.write(Integer.toString(to));
+            if (label != null) {
+                out.write(" [label=\"");
+                DotWriter.writeEscaped(out, label, EDGE_LABEL_LENGTH);
+                out.write("\"]");
+            }
+            out.write(";\n");
+        }
+
+        @Override
+        public void link(int from, int to, Link link) throws IOException {
+            out.write("  n");
+            out.write(Integer.toString(from));
+            out.write(" -> n");
+            out.write(Integer.toString(to));
+            out.write(" [");
+            out.write(link.dot);
+            out.write("];\n");
+        }
+
+        @Override
+        public void openCluster(String label) throws IOException {
+            out.write("  subgraph cluster_");
+            out.write(Integer.toString(nextCluster++));
+            out.write(" {\n  ");
+            out.write(CLUSTER_STYLE);
+            // 子图会继承根图的 label (功能模型名)，没有标题的 cluster 也要显式置空
+            out.write(" label=\"");
+            DotWriter.writeEscaped(out, label, LABEL_LENGTH);
+            out.write("\";\n");
+        }
+
+        @Override
+        public void closeCluster() throws IOException {
+            out.write("  }\n");
+        }
+
+        @Override
+        public void end() throws IOException {
+            out.write("}\n");
+        }
+    }
+
+    /**
+     * 先把节点和边收集进 SvgTreeRenderer，end() 时一次布局并写出。第一条指向某节点的边作为树边，
+     * 其余的 (以及 CALL / 消息边) 作为附加连线绘制；没有入边的节点挂在所属 cluster 下。
+     */
+    private static class SvgSink implements Sink {
+        private final Writer out;
+        private final SvgTreeRenderer renderer = new SvgTreeRenderer();
+        private final int[] styles = new int[Style.values().length];
+        private final int[] links = new int[Link.values().length];
+        private final ArrayDeque<Integer> clusters = new ArrayDeque<>();
+        private int extraLinkStyle;
+
+        SvgSink(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void begin() {
+            for (Style style : Style.values()) {
+                styles[style.ordinal()] = renderer.style(style.shape, style.fill, style.stroke, style.dashed);
+            }
+            for (Link link : Link.values()) {
+                links[link.ordinal()] = renderer.linkStyle(link.color, link.dashed);
+            }
+            extraLinkStyle = renderer.linkStyle("#444444", false);
+        }
+
+        @Override
+        public void title(String title) {
+            renderer.setTitle(SvgTreeRenderer.truncate(title, LABEL_LENGTH));
+        }
+
+        @Override
+        public void node(int id, Style style, String[] lines) {
+            StringBuilder label = new StringBuilder();
+            for (String line : lines) {
+                if (line == null || line.isEmpty()) {
+                    continue;
+                }
+                if (label.length() > 0) {
+                    label.append('\n');
+                }
+                label.append(SvgTreeRenderer.truncate(line.replace('\n', ' '), LABEL_LENGTH));
+            }
+            int cluster = clusters.isEmpty() ? -1 : clusters.peek();
+            renderer.addNode(label.toString(), styles[style.ordinal()], cluster);
+        }
+
+        @Override
+        public void edge(int from, int to, String label) {
+            if (renderer.hasParent(to)) {
+                renderer.addLink(from, to, extraLinkStyle);
+            } else {
+                renderer.setParent(to, from, label != null ? SvgTreeRenderer.truncate(label, EDGE_LABEL_LENGTH) : null);
+            }
+        }
+
+        @Override
+        public void link(int from, int to, Link link) {
+            renderer.addLink(from, to, links[link.ordinal()]);
+        }
+
+        @Override
+        public void openCluster(String label) {
+            clusters.push(renderer.addCluster(label));
+        }
+
+        @Override
+        public void closeCluster() {
+            clusters.pop();
+        }
+
+        @Override
+        public void end() throws IOException {
+            renderer.write(out);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * 语义检查发现的问题。沿用 SyntaxErrorDetail 的字段，以便和语法错误一起交给 LLM 反馈：
+ * offendingToken 是出问题的名字，expectedTokens 是可选的候选名 (按相似度取前几个，没有时为空)。
+ * IR 只记录行号，列号固定为 0。
+ */
+public class SemanticErrorDetail extends SyntaxErrorDetail {
+
+    public enum Category {
+        UNDECLARED_ACTOR("未在 ACTORS 中声明的参与者"),
+        UNDECLARED_MESSAGE("未在 MESSAGES 中声明的消息"),
+        UNKNOWN_STATE("未在 STATES 中声明的状态"),
+        UNKNOWN_PROCEDURE("找不到定义的 CALL 目标"),
+        UNKNOWN_TIMER("从未启动过的定时器"),
+        DUPLICATE_DEFINITION("重复定义");
+
+        public final String description;
+
+        Category(String description) {
+            this.description = description;
+        }
+    }
+
+    public final Category category;
+
+    public SemanticErrorDetail(int line, Category category, String symbol, String candidates, String message) {
+        super(line, 0, symbol, candidates, message);
+        this.category = category;
+    }
+
+    @Override
+    public String toPromptLine() {
+        String line = String.format("行 %d, [语义错误] %s: %s", this.line, category.description, message);
+        return expectedTokens == null || expectedTokens.isBlank() ? line : line + " (可选: " + expectedTokens + ")";
+    }
+
+    @Override
+    public String toString() {
+        return "❌ [语义错误] 行 " + line + " -> " + message;
+    }
+}
@@ -0,0 +1,7 @@
+// 生成 SVG 的方式
+public enum SvgEngine {
+    // 进程内的 tidy tree 布局 (SvgTreeRenderer)，不依赖 Graphviz，同步完成
+    BUILTIN,
+    // 把 DOT 交给 Graphviz 的 dot 进程后台渲染 (GraphvizRenderService)
+    GRAPHVIZ
+}
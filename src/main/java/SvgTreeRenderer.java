@@ -0,0 +1,836 @@
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.Tree;
+import org.antlr.v4.runtime.tree.Trees;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 进程内的 SVG 树渲染器，不依赖 Graphviz。
+ * <p>
+ * 布局使用 Buchheim / Jünger / Leipert 改进的 Walker 算法 (线性时间的 tidy tree)：子树互不重叠、父节点位于
+ * 子节点中间、同构子树画法相同，节点宽度按标签长度估算。两趟遍历都用显式栈，不受树深度限制。
+ * 布局完成后按 簇框 -> 树边 -> 附加连线 -> 节点 的顺序一次性流式写出 SVG，坐标取整，样式放在 CSS 类里，
+ * 输出体积与节点数成正比。
+ * <p>
+ * 树以外的边 (例如语义图中的 CALL) 用 {@link #addLink} 添加，只绘制不参与布局。
+ * 没有父节点的节点挂到所属簇 (或整棵树) 的不可见根节点下。
+ */
+public class SvgTreeRenderer {
+
+    public enum Shape { BOX, ROUNDED, DIAMOND, ELLIPSE, CIRCLE, NONE }
+
+    public static final String TERMINAL_FILL = "#e2f0d9";
+    public static final String TERMINAL_STROKE = "#38761d";
+    public static final String RULE_FILL = "#dae8fc";
+    public static final String RULE_STROKE = "#6c8ebf";
+    private static final String EDGE_COLOR = "#444444";
+
+    private static final int PARSE_TREE_LABEL_LENGTH = 30;
+    private static final int FONT_SIZE = 12;
+    private static final int LINE_HEIGHT = 16;
+    private static final int PADDING_X = 8;
+    private static final int PADDING_Y = 6;
+    private static final int NODE_GAP = 14;
+    private static final int CLUSTER_GAP = 40;
+    private static final int CLUSTER_PADDING = 12;
+    private static final int LEVEL_GAP = 36;
+    private static final int MARGIN = 20;
+    private static final int TITLE_HEIGHT = 28;
+
+    private final List<Shape> styleShapes = new ArrayList<>();
+    private final List<String> styleCss = new ArrayList<>();
+
+    private int count;
+    private String[] labels = new String[256];
+    private String[] edgeLabels = new String[256];
+    private int[] styles = new int[256];
+    private int[] parents = new int[256];
+    private int[] clusters = new int[256];
+
+    private final List<String> clusterLabels = new ArrayList<>();
+    private int linkCount;
+    private int[] linkFrom = new int[16];
+    private int[] linkTo = new int[16];
+    private int[] linkStyles = new int[16];
+    private final List<String> linkCss = new ArrayList<>();
+    private String title;
+    private final int invisibleStyle;
+
+    public SvgTreeRenderer() {
+        invisibleStyle = style(Shape.NONE, "none", "none", false);
+    }
+
+    /**
+     * 注册一种节点样式，返回样式编号。
+     */
+    public int style(Shape shape, String fill, String stroke, boolean dashed) {
+        styleShapes.add(shape);
+        styleCss.add("fill:" + fill + ";stroke:" + stroke + (dashed ? ";stroke-dasharray:5,3" : ""));
+        return styleShapes.size() - 1;
+    }
+
+    /**
+     * 注册一种附加连线样式，返回样式编号。
+     */
+    public int linkStyle(String color, boolean dashed) {
+        linkCss.add("fill:none;stroke:" + color + (dashed ? ";stroke-dasharray:5,3" : ";stroke-width:1.5"));
+        return linkCss.size() - 1;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int addCluster(String label) {
+        clusterLabels.add(label);
+        return clusterLabels.size() - 1;
+    }
+
+    /**
+     * 添加节点，label 中的 '\n' 表示换行 (调用方负责截断过长的文本)。cluster 为 -1 表示不属于任何簇。
+     */
+    public int addNode(String label, int style, int cluster) {
+        if (count == labels.length) {
+            int capacity = count * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            edgeLabels = Arrays.copyOf(edgeLabels, capacity);
+            styles = Arrays.copyOf(styles, capacity);
+            parents = Arrays.copyOf(parents, capacity);
+            clusters = Arrays.copyOf(clusters, capacity);
+        }
+        labels[count] = label;
+        styles[count] = style;
+        parents[count] = -1;
+        clusters[count] = cluster;
+        return count++;
+    }
+
+    public boolean hasParent(int node) {
+        return parents[node] >= 0;
+    }
+
+    /**
+     * 设置树边 parent -> child，edgeLabel 可以为 null。子节点按加入顺序从左到右排列。
+     */
+    public void setParent(int child, int parent, String edgeLabel) {
+        parents[child] = parent;
+        edgeLabels[child] = edgeLabel;
+    }
+
+    public void addLink(int from, int to, int linkStyle) {
+        if (linkCount == linkFrom.length) {
+            linkFrom = Arrays.copyOf(linkFrom, linkCount * 2);
+            linkTo = Arrays.copyOf(linkTo, linkCount * 2);
+            linkStyles = Arrays.copyOf(linkStyles, linkCount * 2);
+        }
+        linkFrom[linkCount] = from;
+        linkTo[linkCount] = to;
+        linkStyles[linkCount] = linkStyle;
+        linkCount++;
+    }
+
+    /**
+     * 原始语法树: 与 DotWriter 相同的标签截断和配色 (终结符绿色，规则节点蓝色)。
+     */
+    public static void renderParseTree(Tree root, Parser parser, Writer out) throws IOException {
+        SvgTreeRenderer renderer = new SvgTreeRenderer();
+        int terminal = renderer.style(Shape.ROUNDED, TERMINAL_FILL, TERMINAL_STROKE, false);
+        int rule = renderer.style(Shape.ROUNDED, RULE_FILL, RULE_STROKE, false);
+
+        Tree[] stack = new Tree[64];
+        int[] stackIds = new int[64];
+        int depth = 0;
+        stack[depth] = root;
+        stackIds[depth++] = -1;
+        while (depth > 0) {
+            Tree node = stack[--depth];
+            int parent = stackIds[depth];
+            stack[depth] = null;
+            String label = truncate(Trees.getNodeText(node, parser), PARSE_TREE_LABEL_LENGTH);
+            int id = renderer.addNode(label, node instanceof TerminalNode ? terminal : rule, -1);
+            if (parent >= 0) {
+                renderer.setParent(id, parent, null);
+            }
+            // 逆序压栈，保证子节点按原顺序编号
+            int childCount = node.getChildCount();
+            if (depth + childCount > stack.length) {
+                int capacity = Math.max(stack.length * 2, depth + childCount);
+                stack = Arrays.copyOf(stack, capacity);
+                stackIds = Arrays.copyOf(stackIds, capacity);
+            }
+            for (int i = childCount - 1; i >= 0; i--) {
+                stack[depth] = node.getChild(i);
+                stackIds[depth++] = id;
+            }
+        }
+        renderer.write(out);
+    }
+
+    /**
+     * 与 DotWriter.writeEscaped 相同的截断规则: 超过 maxLength 时保留前 maxLength - 3 个字符并追加 "..."。
+     */
+    static String truncate(String text, int maxLength) {
+        if (text == null) {
+            return "";
+        }
+        if (text.length() <= maxLength) {
+            return text;
+        }
+        int end = maxLength - 3;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end) + "...";
+    }
+
+    // ========================================================================
+    // 布局 (Buchheim et al. 2002，迭代实现)
+    // ========================================================================
+
+    private int nodeCount;
+    private int root;
+    private boolean virtualRoot;
+    private int[] childStart;
+    private int[] childCount;
+    private int[] children;
+    private int[] number;
+    private int[] order;
+    private int[] widths;
+    private int[] heights;
+    private double[] prelim;
+    private double[] mod;
+    private double[] shift;
+    private double[] change;
+    private int[] thread;
+    private int[] ancestor;
+    private int[] xs;
+    private int[] ys;
+
+    private void layout() {
+        attachOrphans();
+        buildChildren();
+        measure();
+
+        prelim = new double[nodeCount];
+        mod = new double[nodeCount];
+        shift = new double[nodeCount];
+        change = new double[nodeCount];
+        thread = new int[nodeCount];
+        ancestor = new int[nodeCount];
+        int[] defaultAncestor = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            thread[v] = -1;
+            ancestor[v] = v;
+            defaultAncestor[v] = childCount[v] > 0 ? children[childStart[v]] : -1;
+        }
+
+        // order 是先访问右子树的先序，逆序遍历即为从左到右的后序
+        for (int i = nodeCount - 1; i >= 0; i--) {
+            int v = order[i];
+            int left = leftSibling(v);
+            if (childCount[v] == 0) {
+                prelim[v] = left >= 0 ? prelim[left] + distance(left, v) : 0;
+            } else {
+                executeShifts(v);
+                int first = children[childStart[v]];
+                int last = children[childStart[v] + childCount[v] - 1];
+                double midpoint = (prelim[first] + prelim[last]) / 2;
+                if (left >= 0) {
+                    prelim[v] = prelim[left] + distance(left, v);
+                    mod[v] = prelim[v] - midpoint;
+                } else {
+                    prelim[v] = midpoint;
+                }
+            }
+            int parent = parents[v];
+            if (parent >= 0) {
+                defaultAncestor[parent] = apportion(v, defaultAncestor[parent]);
+            }
+        }
+
+        // 第二趟: 自顶向下累加 mod 得到最终 x；y 按层取该层最高节点的高度
+        double[] modSum = new double[nodeCount];
+        int[] depths = new int[nodeCount];
+        int maxDepth = 0;
+        double[] x = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int v = order[i];
+            x[v] = prelim[v] + modSum[v];
+            for (int c = 0; c < childCount[v]; c++) {
+                int child = children[childStart[v] + c];
+                modSum[child] = modSum[v] + mod[v];
+                depths[child] = depths[v] + 1;
+                maxDepth = Math.max(maxDepth, depths[child]);
+            }
+        }
+        if (virtualRoot) {
+            packBlocks(x);
+        }
+        double minLeft = Double.MAX_VALUE;
+        for (int v = 0; v < nodeCount; v++) {
+            minLeft = Math.min(minLeft, left(x, v));
+        }
+        int[] levelHeight = new int[maxDepth + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            levelHeight[depths[v]] = Math.max(levelHeight[depths[v]], heights[v]);
+        }
+        int[] levelTop = new int[maxDepth + 1];
+        int top = MARGIN + (title != null ? TITLE_HEIGHT : 0) + (clusterLabels.isEmpty() ? 0 : LINE_HEIGHT + CLUSTER_PADDING);
+        for (int d = 0; d <= maxDepth; d++) {
+            levelTop[d] = top;
+            // 只有不可见节点的层 (虚拟根、簇根) 不占高度
+            top += levelHeight[d] > 0 ? levelHeight[d] + LEVEL_GAP : 0;
+        }
+
+        xs = new int[nodeCount];
+        ys = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            xs[v] = (int) Math.round(x[v] - minLeft) + MARGIN;
+            // 节点在所在层内垂直居中
+            ys[v] = levelTop[depths[v]] + levelHeight[depths[v]] / 2;
+        }
+    }
+
+    /**
+     * 虚拟根下的每棵子树 (一个簇或一个孤立节点) 作为整块从左到右排开，块间按外接矩形留出间距。
+     * tidy tree 只保证逐层轮廓不重叠，浅的簇可能被塞到相邻深簇的下方，而簇框是整个外接矩形。
+     */
+    private void packBlocks(double[] x) {
+        int[] block = new int[nodeCount];
+        int blocks = childCount[root];
+        double[] blockLeft = new double[blocks];
+        double[] blockRight = new double[blocks];
+        Arrays.fill(blockLeft, Double.MAX_VALUE);
+        Arrays.fill(blockRight, -Double.MAX_VALUE);
+        for (int i = 1; i < nodeCount; i++) {
+            int v = order[i];
+            block[v] = parents[v] == root ? number[v] : block[parents[v]];
+            if (widths[v] > 0) {
+                blockLeft[block[v]] = Math.min(blockLeft[block[v]], left(x, v));
+                blockRight[block[v]] = Math.max(blockRight[block[v]], x[v] + widths[v] / 2.0 + (clusters[v] >= 0 ? CLUSTER_PADDING : 0));
+            }
+        }
+        double[] offsets = new double[blocks];
+        double cursor = 0;
+        for (int b = 0; b < blocks; b++) {
+            if (blockLeft[b] == Double.MAX_VALUE) {
+                continue;
+            }
+            offsets[b] = cursor - blockLeft[b];
+            cursor += blockRight[b] - blockLeft[b] + CLUSTER_GAP;
+        }
+        for (int i = 1; i < nodeCount; i++) {
+            int v = order[i];
+            x[v] += offsets[block[v]];
+        }
+        x[root] = cursor / 2;
+    }
+
+    private double left(double[] x, int v) {
+        return x[v] - widths[v] / 2.0 - (clusters[v] >= 0 ? CLUSTER_PADDING : 0);
+    }
+
+    /**
+     * 没有父节点的节点挂到所属簇的不可见根下，各簇根与无簇的孤立节点再挂到整棵树的不可见根下。
+     * 只有一个孤立节点且没有簇时，它本身就是根。
+     */
+    private void attachOrphans() {
+        int orphans = 0;
+        int lastOrphan = -1;
+        for (int v = 0; v < count; v++) {
+            if (parents[v] < 0) {
+                orphans++;
+                lastOrphan = v;
+            }
+        }
+        virtualRoot = !(orphans == 1 && clusterLabels.isEmpty());
+        if (!virtualRoot) {
+            root = lastOrphan;
+            nodeCount = count;
+            return;
+        }
+        int[] clusterRoots = new int[clusterLabels.size()];
+        Arrays.fill(clusterRoots, -1);
+        int originalCount = count;
+        root = addNode("", invisibleStyle, -1);
+        for (int v = 0; v < originalCount; v++) {
+            if (parents[v] >= 0) {
+                continue;
+            }
+            int cluster = clusters[v];
+            if (cluster < 0) {
+                setParent(v, root, null);
+            } else {
+                if (clusterRoots[cluster] < 0) {
+                    clusterRoots[cluster] = addNode("", invisibleStyle, cluster);
+                    setParent(clusterRoots[cluster], root, null);
+                }
+                setParent(v, clusterRoots[cluster], null);
+            }
+        }
+        nodeCount = count;
+    }
+
+    /**
+     * 按 id 升序建立子节点表 (CSR)，同时得到先序序列 order (父节点总在子节点之前)。
+     */
+    private void buildChildren() {
+        childCount = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            if (parents[v] >= 0) {
+                childCount[parents[v]]++;
+            }
+        }
+        childStart = new int[nodeCount];
+        int offset = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            childStart[v] = offset;
+            offset += childCount[v];
+        }
+        children = new int[offset];
+        number = new int[nodeCount];
+        int[] fill = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            int p = parents[v];
+            if (p >= 0) {
+                number[v] = fill[p];
+                children[childStart[p] + fill[p]++] = v;
+            }
+        }
+
+        order = new int[nodeCount];
+        int[] stack = new int[nodeCount];
+        int depth = 0;
+        int index = 0;
+        stack[depth++] = root;
+        while (depth > 0) {
+            int v = stack[--depth];
+            order[index++] = v;
+            // 子节点从左往右入栈，最右的子树先出栈
+            for (int c = 0; c < childCount[v]; c++) {
+                stack[depth++] = children[childStart[v] + c];
+            }
+        }
+        if (index != nodeCount) {
+            throw new IllegalStateException("树结构不连通或存在环: " + index + " / " + nodeCount);
+        }
+    }
+
+    /**
+     * 按字符估算标签尺寸: ASCII 约 0.6em，CJK 等宽字符约 1em。
+     */
+    private void measure() {
+        widths = new int[nodeCount];
+        heights = new int[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            Shape shape = styleShapes.get(styles[v]);
+            if (shape == Shape.NONE) {
+                continue;
+            }
+            String label = labels[v];
+            int lines = 1;
+            int lineWidth = 0;
+            int maxWidth = 0;
+            for (int i = 0; i < label.length(); i++) {
+                char c = label.charAt(i);
+                if (c == '\n') {
+                    lines++;
+                    lineWidth = 0;
+                } else if (!Character.isLowSurrogate(c)) {
+                    lineWidth += c < 0x2E80 ? FONT_SIZE * 6 / 10 : FONT_SIZE;
+                    maxWidth = Math.max(maxWidth, lineWidth);
+                }
+            }
+            int w = Math.max(maxWidth + 2 * PADDING_X, 24);
+            int h = lines * LINE_HEIGHT + 2 * PADDING_Y;
+            switch (shape) {
+                case DIAMOND -> {
+                    w = w * 3 / 2;
+                    h = h * 8 / 5;
+                }
+                case ELLIPSE -> {
+                    w = w * 5 / 4;
+                    h = h * 6 / 5;
+                }
+                case CIRCLE -> {
+                    w = Math.max(w, h);
+                    h = w;
+                }
+                default -> {
+                }
+            }
+            widths[v] = w;
+            heights[v] = h;
+        }
+    }
+
+    private double distance(int left, int right) {
+        int gap = clusters[left] == clusters[right] ? NODE_GAP : CLUSTER_GAP;
+        return (widths[left] + widths[right]) / 2.0 + gap;
+    }
+
+    private int leftSibling(int v) {
+        int p = parents[v];
+        return p >= 0 && number[v] > 0 ? children[childStart[p] + number[v] - 1] : -1;
+    }
+
+    private int nextLeft(int v) {
+        return childCount[v] > 0 ? children[childStart[v]] : thread[v];
+    }
+
+    private int nextRight(int v) {
+        return childCount[v] > 0 ? children[childStart[v] + childCount[v] - 1] : thread[v];
+    }
+
+    private int apportion(int v, int defaultAncestor) {
+        int w = leftSibling(v);
+        if (w < 0) {
+            return defaultAncestor;
+        }
+        int vip = v;
+        int vop = v;
+        int vim = w;
+        int vom = children[childStart[parents[v]]];
+        double sip = mod[vip];
+        double sop = mod[vop];
+        double sim = mod[vim];
+        double som = mod[vom];
+        while (nextRight(vim) >= 0 && nextLeft(vip) >= 0) {
+            vim = nextRight(vim);
+            vip = nextLeft(vip);
+            vom = nextLeft(vom);
+            vop = nextRight(vop);
+            ancestor[vop] = v;
+            double shiftBy = (prelim[vim] + sim) - (prelim[vip] + sip) + distance(vim, vip);
+            if (shiftBy > 0) {
+                int a = parents[ancestor[vim]] == parents[v] ? ancestor[vim] : defaultAncestor;
+                moveSubtree(a, v, shiftBy);
+                sip += shiftBy;
+                sop += shiftBy;
+            }
+            sim += mod[vim];
+            sip += mod[vip];
+            som += mod[vom];
+            sop += mod[vop];
+        }
+        if (nextRight(vim) >= 0 && nextRight(vop) < 0) {
+            thread[vop] = nextRight(vim);
+            mod[vop] += sim - sop;
+        }
+        if (nextLeft(vip) >= 0 && nextLeft(vom) < 0) {
+            thread[vom] = nextLeft(vip);
+            mod[vom] += sip - som;
+            defaultAncestor = v;
+        }
+        return defaultAncestor;
+    }
+
+    private void moveSubtree(int wm, int wp, double shiftBy) {
+        double subtrees = number[wp] - number[wm];
+        change[wp] -= shiftBy / subtrees;
+        shift[wp] += shiftBy;
+        change[wm] += shiftBy / subtrees;
+        prelim[wp] += shiftBy;
+        mod[wp] += shiftBy;
+    }
+
+    private void executeShifts(int v) {
+        double shiftBy = 0;
+        double changeBy = 0;
+        for (int c = childCount[v] - 1; c >= 0; c--) {
+            int w = children[childStart[v] + c];
+            prelim[w] += shiftBy;
+            mod[w] += shiftBy;
+            changeBy += change[w];
+            shiftBy += shift[w] + changeBy;
+        }
+    }
+
+    // ========================================================================
+    // SVG 输出
+    // ========================================================================
+
+    public void write(Writer out) throws IOException {
+        if (count == 0) {
+            addNode("(空)", invisibleStyle, -1);
+        }
+        layout();
+
+        int width = 0;
+        int height = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            width = Math.max(width, xs[v] + widths[v] / 2 + (clusters[v] >= 0 ? CLUSTER_PADDING : 0));
+            height = Math.max(height, ys[v] + heights[v] / 2 + (clusters[v] >= 0 ? CLUSTER_PADDING : 0));
+        }
+        width += MARGIN;
+        height += MARGIN;
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"");
+        out.write(Integer.toString(width));
+        out.write("\" height=\"");
+        out.write(Integer.toString(height));
+        out.write("\" viewBox=\"0 0 ");
+        out.write(Integer.toString(width));
+        out.write(" ");
+        out.write(Integer.toString(height));
+        out.write("\">\n");
+        out.write("<defs><marker id=\"arrow\" viewBox=\"0 0 10 10\" refX=\"10\" refY=\"5\" markerWidth=\"7\" markerHeight=\"7\" orient=\"auto\">"
+                + "<path d=\"M0,0L10,5L0,10z\" fill=\"" + EDGE_COLOR + "\"/></marker></defs>\n");
+        out.write("<style>text{font-family:\"Microsoft YaHei\",sans-serif;font-size:" + FONT_SIZE + "px;text-anchor:middle;dominant-baseline:central}"
+                + ".e{fill:none;stroke:" + EDGE_COLOR + ";marker-end:url(#arrow)}.el{font-size:10px;fill:#444444}"
+                + ".c{fill:none;stroke:#999999;stroke-dasharray:5,3}.cl{font-size:12px;fill:#444444;text-anchor:start}"
+                + ".t{font-size:16px;font-weight:bold}");
+        for (int s = 0; s < styleCss.size(); s++) {
+            out.write(".s");
+            out.write(Integer.toString(s));
+            out.write("{");
+            out.write(styleCss.get(s));
+            out.write("}");
+        }
+        for (int s = 0; s < linkCss.size(); s++) {
+            out.write(".k");
+            out.write(Integer.toString(s));
+            out.write("{");
+            out.write(linkCss.get(s));
+            out.write(";marker-end:url(#arrow)}");
+        }
+        out.write("</style>\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+        if (title != null) {
+            writeText(out, "t", width / 2, MARGIN + TITLE_HEIGHT / 2 - 4, title);
+        }
+
+        writeClusters(out);
+        writeTreeEdges(out);
+        writeLinks(out);
+        writeNodes(out);
+        out.write("</svg>\n");
+    }
+
+    private void writeClusters(Writer out) throws IOException {
+        int clusterCount = clusterLabels.size();
+        if (clusterCount == 0) {
+            return;
+        }
+        int[] left = new int[clusterCount];
+        int[] right = new int[clusterCount];
+        int[] top = new int[clusterCount];
+        int[] bottom = new int[clusterCount];
+        Arrays.fill(left, Integer.MAX_VALUE);
+        Arrays.fill(top, Integer.MAX_VALUE);
+        Arrays.fill(right, Integer.MIN_VALUE);
+        Arrays.fill(bottom, Integer.MIN_VALUE);
+        for (int v = 0; v < nodeCount; v++) {
+            int c = clusters[v];
+            if (c < 0 || widths[v] == 0) {
+                continue;
+            }
+            left[c] = Math.min(left[c], xs[v] - widths[v] / 2);
+            right[c] = Math.max(right[c], xs[v] + widths[v] / 2);
+            top[c] = Math.min(top[c], ys[v] - heights[v] / 2);
+            bottom[c] = Math.max(bottom[c], ys[v] + heights[v] / 2);
+        }
+        for (int c = 0; c < clusterCount; c++) {
+            if (left[c] == Integer.MAX_VALUE) {
+                continue;
+            }
+            String label = clusterLabels.get(c);
+            boolean labelled = label != null && !label.isEmpty();
+            int x = left[c] - CLUSTER_PADDING;
+            int y = top[c] - CLUSTER_PADDING - (labelled ? LINE_HEIGHT : 0);
+            out.write("<rect class=\"c\" x=\"");
+            out.write(Integer.toString(x));
+            out.write("\" y=\"");
+            out.write(Integer.toString(y));
+            out.write("\" width=\"");
+            out.write(Integer.toString(right[c] - left[c] + 2 * CLUSTER_PADDING));
+            out.write("\" height=\"");
+            out.write(Integer.toString(bottom[c] - y + CLUSTER_PADDING));
+            out.write("\" rx=\"8\"/>\n");
+            if (labelled) {
+                writeText(out, "cl", x + CLUSTER_PADDING, y + LINE_HEIGHT / 2 + 4, label);
+            }
+        }
+    }
+
+    /**
+     * 正交折线: 父节点底部 -> 两层之间的水平线 -> 子节点顶部。
+     */
+    private void writeTreeEdges(Writer out) throws IOException {
+        for (int v = 0; v < nodeCount; v++) {
+            int p = parents[v];
+            if (p < 0 || widths[p] == 0 || widths[v] == 0) {
+                continue;
+            }
+            int startY = ys[p] + heights[p] / 2;
+            int endY = ys[v] - heights[v] / 2;
+            int midY = (startY + endY) / 2;
+            out.write("<path class=\"e\" d=\"M");
+            out.write(Integer.toString(xs[p]));
+            out.write(",");
+            out.write(Integer.toString(startY));
+            if (xs[p] != xs[v]) {
+                out.write("V");
+                out.write(Integer.toString(midY));
+                out.write("H");
+                out.write(Integer.toString(xs[v]));
+            }
+            out.write("V");
+            out.write(Integer.toString(endY));
+            out.write("\"/>\n");
+            if (edgeLabels[v] != null) {
+                writeText(out, "el", xs[v], (midY + endY) / 2, edgeLabels[v]);
+            }
+        }
+    }
+
+    /**
+     * 附加连线画成三次贝塞尔曲线，从源节点右侧弯向目标节点。
+     */
+    private void writeLinks(Writer out) throws IOException {
+        for (int i = 0; i < linkCount; i++) {
+            int from = linkFrom[i];
+            int to = linkTo[i];
+            int x1 = xs[from] + widths[from] / 2;
+            int y1 = ys[from];
+            int x2 = xs[to] + (xs[to] >= x1 ? -widths[to] / 2 : widths[to] / 2);
+            int y2 = ys[to];
+            int bend = Math.max(40, Math.abs(x2 - x1) / 4);
+            out.write("<path class=\"k");
+            out.write(Integer.toString(linkStyles[i]));
+            out.write("\" d=\"M");
+            out.write(Integer.toString(x1));
+            out.write(",");
+            out.write(Integer.toString(y1));
+            out.write("C");
+            out.write(Integer.toString(x1 + bend));
+            out.write(",");
+            out.write(Integer.toString(y1));
+            out.write(" ");
+            out.write(Integer.toString(x2 + (xs[to] >= x1 ? -bend : bend)));
+            out.write(",");
+            out.write(Integer.toString(y2));
+            out.write(" ");
+            out.write(Integer.toString(x2));
+            out.write(",");
+            out.write(Integer.toString(y2));
+            out.write("\"/>\n");
+        }
+    }
+
+    private void writeNodes(Writer out) throws IOException {
+        for (int v = 0; v < nodeCount; v++) {
+            Shape shape = styleShapes.get(styles[v]);
+            if (shape == Shape.NONE) {
+                continue;
+            }
+            int w = widths[v];
+            int h = heights[v];
+            int x = xs[v];
+            int y = ys[v];
+            String cls = "s" + styles[v];
+            switch (shape) {
+                case DIAMOND -> {
+                    out.write("<polygon class=\"");
+                    out.write(cls);
+                    out.write("\" points=\"");
+                    out.write(x + "," + (y - h / 2) + " " + (x + w / 2) + "," + y + " " + x + "," + (y + h / 2) + " " + (x - w / 2) + "," + y);
+                    out.write("\"/>");
+                }
+                case ELLIPSE, CIRCLE -> {
+                    out.write("<ellipse class=\"");
+                    out.write(cls);
+                    out.write("\" cx=\"");
+                    out.write(Integer.toString(x));
+                    out.write("\" cy=\"");
+                    out.write(Integer.toString(y));
+                    out.write("\" rx=\"");
+                    out.write(Integer.toString(w / 2));
+                    out.write("\" ry=\"");
+                    out.write(Integer.toString(h / 2));
+                    out.write("\"/>");
+                }
+                default -> {
+                    out.write("<rect class=\"");
+                    out.write(cls);
+                    out.write("\" x=\"");
+                    out.write(Integer.toString(x - w / 2));
+                    out.write("\" y=\"");
+                    out.write(Integer.toString(y - h / 2));
+                    out.write("\" width=\"");
+                    out.write(Integer.toString(w));
+                    out.write("\" height=\"");
+                    out.write(Integer.toString(h));
+                    out.write(shape == Shape.ROUNDED ? "\" rx=\"5\"/>" : "\"/>");
+                }
+            }
+            writeLabel(out, x, y, labels[v]);
+            out.write("\n");
+        }
+    }
+
+    private void writeLabel(Writer out, int x, int y, String label) throws IOException {
+        int lines = 1;
+        for (int i = 0; i < label.length(); i++) {
+            if (label.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        if (lines == 1) {
+            writeText(out, null, x, y, label);
+            return;
+        }
+        int lineY = y - (lines - 1) * LINE_HEIGHT / 2;
+        int start = 0;
+        for (int line = 0; line < lines; line++) {
+            int end = label.indexOf('\n', start);
+            if (end < 0) {
+                end = label.length();
+            }
+            writeText(out, null, x, lineY + line * LINE_HEIGHT, label.substring(start, end));
+            start = end + 1;
+        }
+    }
+
+    private static void writeText(Writer out, String cls, int x, int y, String text) throws IOException {
+        out.write("<text");
+        if (cls != null) {
+            out.write(" class=\"");
+            out.write(cls);
+            out.write("\"");
+        }
+        out.write(" x=\"");
+        out.write(Integer.toString(x));
+        out.write("\" y=\"");
+        out.write(Integer.toString(y));
+        out.write("\">");
+        writeEscapedXml(out, text);
+        out.write("</text>");
+    }
+
+    private static void writeEscapedXml(Writer out, String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> out.write("&amp;");
+                case '<' -> out.write("&lt;");
+                case '>' -> out.write("&gt;");
+                case '"' -> out.write("&quot;");
+                case '\r', '\n' -> {
+                }
+                default -> {
+                    // XML 1.0 不允许除制表符外的控制字符
+                    if (c >= 0x20 || c == '\t') {
+                        out.write(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,635 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 跨文件符号索引：由各文件的 {@link ModelIR.Model} 构建，记录每个符号的定义与使用位置。
+ * <ul>
+ *   <li>过程、规则、参与者、消息、状态、类型、离散值集合、映射的定义；</li>
+ *   <li>CALL 目标、SENDS / BROADCASTS / MUST_SEND 的消息、MESSAGE_RECEIVED / ReceiptOf 等接收方、
+ *       动作的发送者与接收者、ASSIGN 目标与表达式中引用的名字。</li>
+ * </ul>
+ * 按 (种类, 名称) 哈希存放，查询不扫描任何文件；每个文件的贡献单独保存，
+ * 文件修改或删除时只撤掉该文件的条目再重新加入 ({@link #update} / {@link #remove})。
+ * <p>
+ * 消息名统一去掉引号 (ReceiptOf("J7.1") 与 J7.1 是同一个键)；CALL 的限定名 Model.Proc 按最后一段解析。
+ * 表达式中的名字在语法上无法区分状态、参与者还是参数，记为 STATE 的 READ 引用 (过程自己的参数除外)。
+ * 实例不是线程安全的，由调用方串行更新。
+ */
+public final class SymbolIndex {
+
+    public enum Kind { TYPE, ACTOR, MESSAGE, DISCRETE, STATE, MAPPING, PROCEDURE, RULE, MESSAGE_RULES }
+
+    public enum Role {
+        // 定义
+        DEFINITION,
+        // CALL 目标
+        CALL,
+        // SENDS / MUST_SEND / 规则文件的 TransmitRules
+        SEND,
+        // BROADCASTS / MUST_BROADCAST
+        BROADCAST,
+        // MESSAGE_RECEIVED 事件 / ReceiptOf / 规则文件的 ReceiveRules
+        RECEIVE,
+        // MESSAGE_SENT 事件 (观察到某消息被发出)
+        OBSERVE_SENT,
+        // HAS_FIELD / Field(...) / DISCRETES ... FOR / MAP_STATE 等对消息字段的引用
+        FIELD,
+        // 参与者作为动作发起方 (SENDS / BROADCASTS / NOTIFY 的发送者、定时器操作、自然语言块的参与者)
+        ACT,
+        // 参与者作为动作接收方，或事件的 FROM / TO
+        TARGET,
+        // STATUS 条件
+        STATUS,
+        // ASSIGN 目标
+        ASSIGN,
+        // 表达式与条件中的引用
+        READ
+    }
+
+    private static final Set<Role> SENDER_ROLES = EnumSet.of(Role.SEND, Role.BROADCAST);
+
+    /**
+     * 一处定义或使用。container 是所在的过程 / 规则 / 规则集 (顶层声明为 null)，detail 是便于阅读的简短描述。
+     */
+    public static class Occurrence {
+        public final String file;
+        public final int line;
+        public final Kind kind;
+        public final String name;
+        public final Role role;
+        public final String container;
+        public final String detail;
+
+        public Occurrence(String file, int line, Kind kind, String name, Role role, String container, String detail) {
+            this.file = file;
+            this.line = line;
+            this.kind = kind;
+            this.name = name;
+            this.role = role;
+            this.container = container;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return file + ":" + line + " " + role + (container == null ? "" : " @ " + container)
+                    + (detail == null || detail.isEmpty() ? "" : " -> " + detail);
+        }
+    }
+
+    private static class Key {
+        final Kind kind;
+        final String name;
+
+        Key(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && kind == other.kind && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return kind.hashCode() * 31 + name.hashCode();
+        }
+    }
+
+    // 每个符号按文件分组的出现位置，撤掉一个文件只需 remove 一次
+    private static class Entry {
+        final Map<String, List<Occurrence>> definitions = new LinkedHashMap<>();
+        final Map<String, List<Occurrence>> uses = new LinkedHashMap<>();
+
+        boolean isEmpty() {
+            return definitions.isEmpty() && uses.isEmpty();
+        }
+    }
+
+    private final Map<Key, Entry> entries = new HashMap<>();
+    // 每个文件贡献过的键，用于增量撤销
+    private final Map<String, Set<Key>> fileKeys = new HashMap<>();
+
+    /**
+     * 解析目录下全部 .dsl 文件 (仅内存解析，不写任何产物) 并建立索引；有语法错误的文件跳过。
+     */
+    public static SymbolIndex fromDirectory(File dir) throws IOException {
+        SymbolIndex index = new SymbolIndex();
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".dsl"));
+        if (files == null) {
+            return index;
+        }
+        Arrays.sort(files);
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false);
+        for (File file : files) {
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            ParseResult result = Link16ParserRunner.parse(file.getName(), text, DslMode.fromFileName(file.getName()), options);
+            if (result.model != null) {
+                index.update(file.getName(), result.model);
+            }
+        }
+        return index;
+    }
+
+    // ==========================================
+    // 增量更新
+    // ==========================================
+
+    /**
+     * 用文件的新模型替换它之前的全部条目。
+     */
+    public void update(String file, ModelIR.Model model) {
+        remove(file);
+        new Collector(file).collect(model);
+    }
+
+    public void remove(String file) {
+        Set<Key> keys = fileKeys.remove(file);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                continue;
+            }
+            entry.definitions.remove(file);
+            entry.uses.remove(file);
+            if (entry.isEmpty()) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    public Set<String> files() {
+        return Collections.unmodifiableSet(fileKeys.keySet());
+    }
+
+    // ==========================================
+    // 查询
+    // ==========================================
+
+    public List<Occurrence> definitions(Kind kind, String name) {
+        Entry entry = entries.get(new Key(kind, normalize(kind, name)));
+        return entry == null ? List.of() : flatten(entry.definitions);
+    }
+
+    public List<Occurrence> uses(Kind kind, String name) {
+        Entry entry = entries.get(new Key(kind, normalize(kind, name)));
+        return entry == null ? List.of() : flatten(entry.uses);
+    }
+
+    /**
+     * 发送该消息的过程与规则 (SENDS / BROADCASTS / MUST_SEND / MUST_BROADCAST / TransmitRules)。
+     */
+    public List<Occurrence> senders(String message) {
+        return filter(uses(Kind.MESSAGE, message), SENDER_ROLES);
+    }
+
+    /**
+     * 接收该消息的过程与规则 (MESSAGE_RECEIVED / ReceiptOf / ReceiveRules)。
+     */
+    public List<Occurrence> receivers(String message) {
+        return filter(uses(Kind.MESSAGE, message), EnumSet.of(Role.RECEIVE));
+    }
+
+    /**
+     * 参与者作为发起方的全部动作。
+     */
+    public List<Occurrence> actions(String actor) {
+        return filter(uses(Kind.ACTOR, actor), EnumSet.of(Role.ACT));
+    }
+
+    /**
+     * 某种符号的全部名称 (有定义或有使用)。
+     */
+    public Set<String> names(Kind kind) {
+        Set<String> names = new HashSet<>();
+        for (Key key : entries.keySet()) {
+            if (key.kind == kind) {
+                names.add(key.name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 有使用但在所有文件中都找不到定义的符号 (READ 引用除外)，按种类与名称给出第一处使用。
+     */
+    public List<Occurrence> unresolved(Kind kind) {
+        List<Occurrence> result = new ArrayList<>();
+        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+            if (e.getKey().kind != kind || !e.getValue().definitions.isEmpty()) {
+                continue;
+            }
+            for (Occurrence use : flatten(e.getValue().uses)) {
+                if (use.role != Role.READ) {
+                    result.add(use);
+                    break;
+                }
+            }
+        }
+        result.sort((a, b) -> a.name.compareTo(b.name));
+        return result;
+    }
+
+    public int symbolCount() {
+        return entries.size();
+    }
+
+    private static List<Occurrence> flatten(Map<String, List<Occurrence>> byFile) {
+        if (byFile.size() == 1) {
+            return Collections.unmodifiableList(byFile.values().iterator().next());
+        }
+        List<Occurrence> all = new ArrayList<>();
+        for (List<Occurrence> list : byFile.values()) {
+            all.addAll(list);
+        }
+        return all;
+    }
+
+    private static List<Occurrence> filter(List<Occurrence> occurrences, Set<Role> roles) {
+        List<Occurrence> result = new ArrayList<>();
+        for (Occurrence occurrence : occurrences) {
+            if (roles.contains(occurrence.role)) {
+                result.add(occurrence);
+            }
+        }
+        return result;
+    }
+
+    // 消息名去掉引号；CALL 的限定名取最后一段
+    private static String normalize(Kind kind, String name) {
+        if (name == null) {
+            return "";
+        }
+        if (kind == Kind.MESSAGE && name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+            return name.substring(1, name.length() - 1);
+        }
+        if (kind == Kind.PROCEDURE) {
+            int dot = name.lastIndexOf('.');
+            return dot >= 0 ? name.substring(dot + 1) : name;
+        }
+        return name;
+    }
+
+    private void add(Kind kind, String name, String file, int line, Role role, String container, String detail) {
+        if (name == null || name.isEmpty()) {
+            return;
+        }
+        String normalized = normalize(kind, name);
+        Key key = new Key(kind, normalized);
+        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+        Map<String, List<Occurrence>> target = role == Role.DEFINITION ? entry.definitions : entry.uses;
+        target.computeIfAbsent(file, f -> new ArrayList<>())
+                .add(new Occurrence(file, line, kind, normalized, role, container, detail));
+        fileKeys.computeIfAbsent(file, f -> new HashSet<>()).add(key);
+    }
+
+    // ==========================================
+    // 从模型收集定义与使用
+    // ==========================================
+
+    private class Collector {
+        private final String file;
+        private String container;
+        private int containerLine;
+        private Set<String> params = Set.of();
+
+        Collector(String file) {
+            this.file = file;
+        }
+
+        void collect(ModelIR.Model model) {
+            if (model instanceof ModelIR.FunctionModel functionModel) {
+                functionModel(functionModel);
+            } else if (model instanceof ModelIR.RulesModel rulesModel) {
+                for (ModelIR.MessageRules messageRules : each(rulesModel.ruleSets)) {
+                    messageRules(messageRules);
+                }
+            }
+            // 文件没有任何条目时也要登记，files() 才能列出它；同一文件内的出现位置按行号排序
+            for (Key key : fileKeys.computeIfAbsent(file, f -> new HashSet<>())) {
+                Entry entry = entries.get(key);
+                sortByLine(entry.definitions.get(file));
+                sortByLine(entry.uses.get(file));
+            }
+        }
+
+        private void sortByLine(List<Occurrence> occurrences) {
+            if (occurrences != null && occurrences.size() > 1) {
+                occurrences.sort((a, b) -> Integer.compare(a.line, b.line));
+            }
+        }
+
+        private void functionModel(ModelIR.FunctionModel model) {
+            for (ModelIR.TypeDef type : each(model.types)) {
+                add(Kind.TYPE, type.name, file, type.line, Role.DEFINITION, null, type.type);
+            }
+            for (ModelIR.Actor actor : each(model.actors)) {
+                add(Kind.ACTOR, actor.name, file, actor.line, Role.DEFINITION, null, actor.type);
+            }
+            for (ModelIR.MessageDecl message : each(model.messages)) {
+                add(Kind.MESSAGE, message.name, file, message.line, Role.DEFINITION, null, null);
+            }
+            for (ModelIR.Discrete discrete : each(model.discretes)) {
+                add(Kind.DISCRETE, discrete.name, file, discrete.line, Role.DEFINITION, null, null);
+                if (discrete.forMessage != null) {
+                    add(Kind.MESSAGE, discrete.forMessage, file, discrete.line, Role.FIELD, "ENUM " + discrete.name, discrete.forField);
+                }
+            }
+            for (ModelIR.State state : each(model.states)) {
+                add(Kind.STATE, state.name, file, state.line, Role.DEFINITION, null, state.type);
+            }
+            for (ModelIR.Mapping mapping : each(model.mappings)) {
+                add(Kind.MAPPING, mapping.name, file, mapping.line, Role.DEFINITION, null, null);
+                enter("MAP " + mapping.name, mapping.line, Set.of());
+                if (mapping.event != null) {
+                    event(mapping.event, containerLine);
+                }
+                if (mapping.target != null) {
+                    add(Kind.STATE, mapping.target, file, mapping.line, Role.ASSIGN, container, null);
+                }
+            }
+            for (ModelIR.Procedure procedure : each(model.procedures)) {
+                procedure(procedure);
+            }
+            for (ModelIR.EventRule rule : each(model.rules)) {
+                eventRule(rule);
+            }
+        }
+
+        private void procedure(ModelIR.Procedure procedure) {
+            add(Kind.PROCEDURE, procedure.name, file, procedure.line, Role.DEFINITION, null, procedure.description);
+            Set<String> names = new HashSet<>();
+            for (ModelIR.ParamDef param : each(procedure.params)) {
+                names.add(param.name);
+            }
+            enter("PROCEDURE " + procedure.name, procedure.line, names);
+            if (procedure.trigger != null) {
+                condition(procedure.trigger, procedure.line);
+            }
+            statements(procedure.steps);
+            for (ModelIR.Branch handler : each(procedure.exceptionHandlers)) {
+                branch(handler, procedure.line);
+            }
+        }
+
+        private void eventRule(ModelIR.EventRule rule) {
+            add(Kind.RULE, rule.name, file, rule.line, Role.DEFINITION, null, null);
+            enter("RULE \"" + rule.name + "\"", rule.line, Set.of());
+            if (rule.event != null) {
+                event(rule.event, rule.line);
+            }
+            for (ModelIR.Consequence consequence : each(rule.consequences)) {
+                String message = messageOf(consequence.message);
+                if (message != null) {
+                    add(Kind.MESSAGE, message, file, rule.line, consequence.broadcast ? Role.BROADCAST : Role.SEND, container,
+                            consequence.broadcast ? "MUST_BROADCAST" : "MUST_SEND");
+                }
+            }
+        }
+
+        private void messageRules(ModelIR.MessageRules messageRules) {
+            add(Kind.MESSAGE_RULES, messageRules.messageName, file, messageRules.line, Role.DEFINITION, null, null);
+            for (ModelIR.RuleGroup group : each(messageRules.groups)) {
+                String groupName = group.transmit ? "TransmitRules" : "ReceiveRules";
+                enter("Message " + messageRules.messageName + " " + groupName, messageRules.line, Set.of());
+                add(Kind.MESSAGE, messageRules.messageName, file, messageRules.line, group.transmit ? Role.SEND : Role.RECEIVE,
+                        container, group.rules.size() + " 条规则");
+                for (ModelIR.TrRule rule : each(group.rules)) {
+                    add(Kind.RULE, rule.name, file, rule.line, Role.DEFINITION, container, rule.action);
+                    if (rule.condition != null) {
+                        condition(rule.condition, rule.line);
+                    }
+                }
+            }
+        }
+
+        private void enter(String container, int line, Set<String> params) {
+            this.container = container;
+            this.containerLine = line;
+            this.params = params;
+        }
+
+        private void statements(List<ModelIR.Statement> statements) {
+            for (ModelIR.Statement statement : each(statements)) {
+                statement(statement);
+            }
+        }
+
+        private void statement(ModelIR.Statement statement) {
+            int line = statement.line;
+            if (statement instanceof ModelIR.Step step) {
+                if (step.action != null) {
+                    action(step.action, line);
+                } else if (step.naturalLanguage != null) {
+                    for (String actor : each(step.naturalLanguage.actors)) {
+                        add(Kind.ACTOR, actor, file, line, Role.ACT, container, step.naturalLanguage.intent);
+                    }
+                }
+            } else if (statement instanceof ModelIR.If ifStatement) {
+                for (ModelIR.Branch branch : each(ifStatement.branches)) {
+                    branch(branch, line);
+                }
+                statements(ifStatement.elseBody);
+            } else if (statement instanceof ModelIR.While loop) {
+                condition(loop.condition, line);
+                statements(loop.body);
+            } else if (statement instanceof ModelIR.Wait wait) {
+                for (ModelIR.Branch clause : each(wait.clauses)) {
+                    branch(clause, line);
+                }
+            } else if (statement instanceof ModelIR.Call call) {
+                add(Kind.PROCEDURE, call.target, file, line, Role.CALL, container, call.target);
+                params(call.params, line);
+            } else if (statement instanceof ModelIR.Parallel parallel) {
+                for (List<ModelIR.Statement> branch : each(parallel.branches)) {
+                    statements(branch);
+                }
+            } else if (statement instanceof ModelIR.Assign assign) {
+                if (assign.target != null && !params.contains(assign.target.root)) {
+                    add(Kind.STATE, assign.target.root, file, line, Role.ASSIGN, container, ModelPrinter.text(assign.target));
+                }
+                expr(assign.value, line);
+            } else if (statement instanceof ModelIR.UserConfirm confirm) {
+                statements(confirm.confirmed);
+                statements(confirm.otherwise);
+            } else if (statement instanceof ModelIR.Timer timer) {
+                add(Kind.ACTOR, timer.actor, file, line, Role.ACT, container, timer.op + " " + timer.timer);
+            }
+        }
+
+        private void action(ModelIR.Action action, int line) {
+            String detail = action.verb + (action.message != null ? " " + action.message : "")
+                    + (action.target != null ? " TO " + action.target : "");
+            add(Kind.ACTOR, action.sender, file, line, Role.ACT, container, detail);
+            if (action.target != null) {
+                add(Kind.ACTOR, action.target, file, line, Role.TARGET, container, detail);
+            }
+            if (action.verb == ModelIR.Verb.SENDS) {
+                add(Kind.MESSAGE, action.message, file, line, Role.SEND, container, detail);
+            } else if (action.verb == ModelIR.Verb.BROADCASTS) {
+                add(Kind.MESSAGE, action.message, file, line, Role.BROADCAST, container, detail);
+            }
+            params(action.params, line);
+            expr(action.address, line);
+            expr(action.payload, line);
+        }
+
+        private void branch(ModelIR.Branch branch, int line) {
+            if (branch.condition != null) {
+                condition(branch.condition, line);
+            }
+            statements(branch.body);
+        }
+
+        private void event(ModelIR.Event event, int line) {
+            String detail = event.kind + (event.message != null ? " " + event.message : "")
+                    + (event.from != null ? " FROM " + event.from : "") + (event.to != null ? " TO " + event.to : "");
+            if (event.kind == ModelIR.EventKind.MESSAGE_RECEIVED) {
+                add(Kind.MESSAGE, event.message, file, line, Role.RECEIVE, container, detail);
+            } else if (event.kind == ModelIR.EventKind.MESSAGE_SENT) {
+                add(Kind.MESSAGE, event.message, file, line, Role.OBSERVE_SENT, container, detail);
+            }
+            add(Kind.ACTOR, event.from, file, line, Role.TARGET, container, "FROM");
+            add(Kind.ACTOR, event.to, file, line, Role.TARGET, container, "TO");
+            if (event.filter != null) {
+                condition(event.filter, line);
+            }
+        }
+
+        private void condition(ModelIR.Condition condition, int line) {
+            if (condition instanceof ModelIR.Or or) {
+                for (ModelIR.Condition operand : or.operands) {
+                    condition(operand, line);
+                }
+            } else if (condition instanceof ModelIR.And and) {
+                for (ModelIR.Condition operand : and.operands) {
+                    condition(operand, line);
+                }
+            } else if (condition instanceof ModelIR.Not not) {
+                condition(not.operand, line);
+            } else if (condition instanceof ModelIR.Group group) {
+                condition(group.inner, line);
+            } else if (condition instanceof ModelIR.Compare compare) {
+                expr(compare.left, line);
+                expr(compare.right, line);
+            } else if (condition instanceof ModelIR.InSet inSet) {
+                expr(inSet.value, line);
+                for (ModelIR.Expr candidate : each(inSet.candidates)) {
+                    expr(candidate, line);
+                }
+            } else if (condition instanceof ModelIR.HasField hasField) {
+                add(Kind.MESSAGE, hasField.message, file, line, Role.FIELD, container, hasField.field);
+            } else if (condition instanceof ModelIR.TimeSince timeSince) {
+                event(timeSince.event, line);
+            } else if (condition instanceof ModelIR.StatusIs status) {
+                add(Kind.ACTOR, status.actor, file, line, Role.STATUS, container, status.status);
+            } else if (condition instanceof ModelIR.EventCondition eventCondition) {
+                event(eventCondition.event, line);
+            } else if (condition instanceof ModelIR.OnEvent onEvent) {
+                add(Kind.MESSAGE, onEvent.receiptOf, file, line, Role.RECEIVE, container, "ReceiptOf");
+            } else if (condition instanceof ModelIR.FieldCondition field) {
+                add(Kind.MESSAGE, field.message, file, line, Role.FIELD, container, field.field);
+            } else if (condition instanceof ModelIR.PlatformCondition platform) {
+                expr(platform.value, line);
+            }
+        }
+
+        private void params(List<ModelIR.Param> params, int line) {
+            for (ModelIR.Param param : each(params)) {
+                expr(param.value, line);
+            }
+        }
+
+        private void expr(ModelIR.Expr expr, int line) {
+            if (expr instanceof ModelIR.Access access) {
+                if (!params.contains(access.root)) {
+                    add(Kind.STATE, access.root, file, line, Role.READ, container, null);
+                }
+                for (ModelIR.AccessSuffix suffix : each(access.suffixes)) {
+                    params(suffix.args, line);
+                }
+            } else if (expr instanceof ModelIR.Arithmetic arithmetic) {
+                for (ModelIR.Expr operand : arithmetic.operands) {
+                    expr(operand, line);
+                }
+            } else if (expr instanceof ModelIR.ParenExpr paren) {
+                expr(paren.inner, line);
+            } else if (expr instanceof ModelIR.StructLiteral struct) {
+                params(struct.entries, line);
+            } else if (expr instanceof ModelIR.ListLiteral list) {
+                for (ModelIR.Expr item : each(list.items)) {
+                    expr(item, line);
+                }
+            }
+        }
+
+        // MUST_SEND 后的表达式: 消息号 (J3.2) 或名字
+        private String messageOf(ModelIR.Expr expr) {
+            if (expr instanceof ModelIR.MessageId id) {
+                return id.id;
+            }
+            if (expr instanceof ModelIR.Access access && (access.suffixes == null || access.suffixes.isEmpty())) {
+                return access.root;
+            }
+            return expr == null ? null : ModelPrinter.text(expr);
+        }
+    }
+
+    private static <T> List<T> each(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    // ==========================================
+    // 命令行查询
+    // ==========================================
+
+    /**
+     * 用法: java SymbolIndex [dsl目录] 名称...  列出每个名称在各种符号中的定义与使用。
+     */
+    public static void main(String[] args) throws IOException {
+        File dir = new File("dsl");
+        int first = 0;
+        if (args.length > 0 && new File(args[0]).isDirectory()) {
+            dir = new File(args[0]);
+            first = 1;
+        }
+        long start = System.nanoTime();
+        SymbolIndex index = fromDirectory(dir);
+        System.out.println("📇 索引 " + index.files().size() + " 个文件, " + index.symbolCount() + " 个符号, 耗时 "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        for (int i = first; i < args.length; i++) {
+            String name = args[i];
+            System.out.println("\n=== " + name + " ===");
+            for (Kind kind : Kind.values()) {
+                List<Occurrence> definitions = index.definitions(kind, name);
+                List<Occurrence> uses = index.uses(kind, name);
+                if (definitions.isEmpty() && uses.isEmpty()) {
+                    continue;
+                }
+                System.out.println("[" + kind + "] 定义 " + definitions.size() + " 处, 使用 " + uses.size() + " 处");
+                for (Occurrence occurrence : definitions) {
+                    System.out.println("   = " + occurrence);
+                }
+                for (Occurrence occurrence : uses) {
+                    System.out.println("   - " + occurrence);
+                }
+            }
+        }
+    }
+}
@@ -1,9 +1,12 @@
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public class ToolchainService {
     private static final String DSL_DIR = "dsl";
@@ -13,11 +16,26 @@ public class ToolchainService {
     private static final Path FUNCTION_MODEL_PROMPT_PATH = Path.of(
             "src", "main", "resources", "prompts", "系统提示_功能模型_BNF.txt");
     private static final int MAX_RETRIES = 3;
+    // 重试循环中的校验: 纯内存解析，不写日志文件、DOT/SVG，也不查缓存
+    private static final ParseOptions VALIDATION_OPTIONS = ParseOptions.defaults().withWriteArtifacts(false);
+    // 最终通过的 DSL 直接用校验时的语法树和模型生成产物，此时不再重复回显到控制台
+    private static final ParseOptions PERSIST_OPTIONS = ParseOptions.defaults().withEchoToConsole(false);
 
     private final LlmClient llmClient;
+    // dsl/ 下已有模型的符号索引，供语义检查解析跨文件的 CALL；与首轮 LLM 请求并行构建
+    private final CompletableFuture<SymbolIndex> corpusIndex;
 
     public ToolchainService(LlmClient llmClient) {
         this.llmClient = llmClient;
+        // 在等待 LLM 返回的同时后台预热解析器，首轮校验无需再付 DFA 构建开销
+        Link16ParserContext.warmUpAsync(Path.of(DSL_DIR).toFile());
+        this.corpusIndex = CompletableFuture.supplyAsync(() -> {
+            try {
+                return SymbolIndex.fromDirectory(Path.of(DSL_DIR).toFile());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     public ToolchainService() {
@@ -25,12 +43,12 @@ public class ToolchainService {
     }
 
     public ToolchainResult generateAndValidate(String nlSpec, String type) {
-        ensureDirectories();
         String feedback = "";
         String previousDsl = "";
-        List<GenerationAttempt> attempts = new java.util.ArrayList<>();
+        List<GenerationAttempt> attempts = new ArrayList<>();
         String failureReason = "";
         String baseName = buildDslFileName(type);
+        DslMode mode = modeForType(type);
 
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
             String prompt = buildPrompt(nlSpec, type, feedback, previousDsl);
@@ -39,32 +57,64 @@ public class ToolchainService {
                 throw new IllegalStateException("LLM 返回空 DSL 内容。");
             }
 
-            String fileName = baseName + "-attempt-" + attempt;
-            Path dslFile = Path.of(DSL_DIR).resolve(fileName + ".dsl");
-            Path attemptCopy = Path.of(OUTPUT_DIR).resolve(fileName + ".dsl");
-            writeDslFile(dslFile, dsl);
-            writeDslFile(attemptCopy, dsl);
+            // 每一轮只在内存中校验，不写 dsl/ 与 output/
+            String fileName = baseName + "-attempt-" + attempt + ".dsl";
+            ParseResult parseResult = Link16ParserRunner.parse(fileName, dsl, mode, VALIDATION_OPTIONS);
 
-            ParseResult parseResult = Link16ParserRunner.parseFile(dslFile.toFile());
-            writeAttemptSummary(fileName, parseResult);
-            attempts.add(new GenerationAttempt(attempt, dsl, parseResult.errors, attemptCopy.toString(), parseResult.logPath));
+            // 语法通过后再做语义检查，未声明的参与者/消息等与语法错误同一轮反馈，不必等到下游才暴露
+            List<SemanticErrorDetail> semanticErrors = parseResult.success
+                    ? SemanticChecker.check(parseResult.model, corpusIndex())
+                    : List.of();
 
-            if (parseResult.success) {
-                return new ToolchainResult(true, dsl, parseResult.logPath, parseResult.svgPath, parseResult.errors, attempts, "");
+            if (parseResult.success && semanticErrors.isEmpty()) {
+                // 只有通过校验的 DSL 才落盘，并生成日志与 SVG
+                ensureDirectories();
+                Path dslPath = Path.of(OUTPUT_DIR).resolve(baseName + ".dsl");
+                writeDslFile(dslPath, dsl);
+                ParseResult persisted = Link16ParserRunner.publish(baseName + ".dsl", dsl, mode,
+                        parseResult.tree, parseResult.model, parseResult.parseStage, PERSIST_OPTIONS);
+                attempts.add(new GenerationAttempt(attempt, dsl, parseResult.errors, dslPath.toString(), persisted.logPath));
+                return new ToolchainResult(true, dsl, persisted.logPath, persisted.svgPath, parseResult.errors, attempts, "");
+            }
+            List<String> errors = new ArrayList<>(parseResult.errors);
+            List<SyntaxErrorDetail> details = new ArrayList<>(parseResult.syntaxErrors);
+            for (SemanticErrorDetail detail : semanticErrors) {
+                errors.add(detail.toString());
+                details.add(detail);
             }
+            attempts.add(new GenerationAttempt(attempt, dsl, errors, null, null));
 
-            feedback = buildSyntaxFeedback(parseResult.syntaxErrors);
+            feedback = buildSyntaxFeedback(details);
             previousDsl = dsl;
             if (feedback.isBlank()) {
-                failureReason = String.join(System.lineSeparator(), parseResult.errors);
+                failureReason = String.join(System.lineSeparator(), errors);
             } else {
                 failureReason = feedback;
             }
         }
 
+        ensureDirectories();
+        writeFailureSummary(baseName, attempts);
         return new ToolchainResult(false, "", "", "", List.of(failureReason), attempts, failureReason);
     }
 
+    // 索引构建失败时退化为只在当前模型内解析 CALL
+    private SymbolIndex corpusIndex() {
+        try {
+            return corpusIndex.join();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // 类型标签显式决定解析模式，而不是再从生成的文件名里猜
+    private static DslMode modeForType(String type) {
+        if (type != null && (type.contains("规则") || type.contains("Rules"))) {
+            return DslMode.MESSAGE_RULES;
+        }
+        return DslMode.FUNCTION_MODEL;
+    }
+
     private String buildPrompt(String nlSpec, String type, String feedback, String previousDsl) {
         if ("功能模型".equals(type)) {
             return buildFunctionModelPrompt(nlSpec, feedback, previousDsl);
@@ -77,7 +127,7 @@ public class ToolchainService {
                 """
                 : """
                 [修复要求]
-                请基于 [上次输出] 的 DSL 进行修复，仅针对 [语法错误反馈] 调整。
+                请基于 [上次输出] 的 DSL 进行修复，仅针对 [错误反馈] 调整。
                 必须同时满足 Grammar/Lexer 与自然语言需求，输出完整修复后的 DSL。
                 """;
         String grammar = readResource(GRAMMAR_PATH);
@@ -104,7 +154,7 @@ public class ToolchainService {
         String feedbackBlock = feedback == null || feedback.isBlank()
                 ? ""
                 : """
-                [语法错误反馈]
+                [错误反馈]
                 %s
                 """.formatted(feedback);
         String previousDslBlock = previousDsl == null || previousDsl.isBlank()
@@ -148,13 +198,13 @@ public class ToolchainService {
                 """
                 : """
                 [修复要求]
-                请基于 [上次输出] 的 DSL 进行修复，仅针对 [语法错误反馈] 调整。
+                请基于 [上次输出] 的 DSL 进行修复，仅针对 [错误反馈] 调整。
                 必须同时满足 BNF 与自然语言需求，输出完整修复后的 DSL。
                 """;
         String feedbackBlock = feedback == null || feedback.isBlank()
                 ? ""
                 : """
-                [语法错误反馈]
+                [错误反馈]
                 %s
                 """.formatted(feedback);
         String previousDslBlock = previousDsl == null || previousDsl.isBlank()
@@ -192,7 +242,6 @@ public class ToolchainService {
 
     private void ensureDirectories() {
         try {
-            Files.createDirectories(Path.of(DSL_DIR));
             Files.createDirectories(Path.of(OUTPUT_DIR));
         } catch (IOException e) {
             throw new IllegalStateException("无法创建输出目录。", e);
@@ -207,14 +256,17 @@ public class ToolchainService {
         }
     }
 
-    private void writeAttemptSummary(String fileName, ParseResult parseResult) {
-        Path summaryPath = Path.of(OUTPUT_DIR).resolve(fileName + "-errors.txt");
+    private void writeFailureSummary(String baseName, List<GenerationAttempt> attempts) {
+        Path summaryPath = Path.of(OUTPUT_DIR).resolve(baseName + "-errors.txt");
         StringBuilder summary = new StringBuilder();
-        summary.append("解析结果: ").append(parseResult.success ? "成功" : "失败").append(System.lineSeparator());
-        summary.append("错误数量: ").append(parseResult.errorCount).append(System.lineSeparator());
-        summary.append("错误列表:").append(System.lineSeparator());
-        for (String error : parseResult.errors) {
-            summary.append("- ").append(error).append(System.lineSeparator());
+        for (GenerationAttempt attempt : attempts) {
+            summary.append("第 ").append(attempt.attempt).append(" 次尝试: 失败").append(System.lineSeparator());
+            summary.append("错误数量: ").append(attempt.errors.size()).append(System.lineSeparator());
+            summary.append("错误列表:").append(System.lineSeparator());
+            for (String error : attempt.errors) {
+                summary.append("- ").append(error).append(System.lineSeparator());
+            }
+            summary.append(System.lineSeparator());
         }
         try {
             Files.writeString(summaryPath, summary.toString(), StandardCharsets.UTF_8);
@@ -227,7 +279,7 @@ public class ToolchainService {
         if (syntaxErrors == null || syntaxErrors.isEmpty()) {
             return "";
         }
-        StringBuilder sb = new StringBuilder("请修正以下语法错误后重新生成：\n");
+        StringBuilder sb = new StringBuilder("请修正以下语法/语义错误后重新生成：\n");
         for (SyntaxErrorDetail detail : syntaxErrors) {
             sb.append("- ").append(detail.toPromptLine()).append("\n");
         }
@@ -0,0 +1,34 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * options.diagnosticsSink 被多个任务共享：任务结束时只能 flush，不能把调用方的 Sink 关掉。
+ */
+class DiagnosticsTest {
+
+    private static final Path CORPUS = Path.of("dsl");
+
+    @Test
+    void sharedLogFileSinkSurvivesTasks(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("shared.log");
+        Diagnostics.LogFileSink shared = new Diagnostics.LogFileSink(file.toFile());
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false).withDiagnosticsSink(shared);
+
+        for (String name : new String[]{"J3.2_Rules.dsl", "平台状态.dsl"}) {
+            String text = Files.readString(CORPUS.resolve(name), StandardCharsets.UTF_8);
+            Link16ParserRunner.parse(name, text, DslMode.fromFileName(name), options);
+        }
+        shared.close();
+
+        String log = Files.readString(file, StandardCharsets.UTF_8);
+        assertTrue(log.contains("开始解析任务: J3.2_Rules.dsl"), log);
+        assertTrue(log.contains("开始解析任务: 平台状态.dsl"), log);
+    }
+}
@@ -0,0 +1,47 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * dot 卡住且不读 stdin 时，超时仍然生效，且不会留下临时文件或目标 SVG。
+ */
+class GraphvizRenderServiceTest {
+
+    @Test
+    void stalledDotTimesOutWithLargeInput(@TempDir Path dir) throws Exception {
+        Path fakeDot = dir.resolve("fake-dot.sh");
+        Files.writeString(fakeDot, "#!/bin/sh\nsleep 30\n", StandardCharsets.UTF_8);
+        assumeTrue(fakeDot.toFile().setExecutable(true) && Files.isExecutable(Path.of("/bin/sh")));
+
+        // 远大于管道缓冲区 (Linux 默认 64 KB)
+        byte[] dot = ("digraph G {\n" + "  a -> b;\n".repeat(200_000) + "}\n").getBytes(StandardCharsets.UTF_8);
+        Path svg = dir.resolve("out").resolve("graph.svg");
+        try (GraphvizRenderService service = new GraphvizRenderService(fakeDot.toString(), 1, 4, 500)) {
+            long start = System.nanoTime();
+            GraphvizRenderService.RenderResult result = service.render(dot, svg).get(10, TimeUnit.SECONDS);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertEquals(GraphvizRenderService.RenderResult.Status.FAILED, result.status);
+            assertTrue(result.message.contains("超时"), result.message);
+            assertTrue(elapsedMillis < 5_000, elapsedMillis + " ms");
+        }
+        assertFalse(Files.exists(svg));
+        assertEquals(0, list(svg.getParent()));
+    }
+
+    private static long list(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 增量重解析与全量解析的对照：同一份文本，两条路径给出的错误位置与 token 位置必须一致。
+ */
+class IncrementalReparserTest {
+
+    private static final Path CORPUS = Path.of("dsl");
+
+    @Test
+    void randomEditsMatchFullParse() throws IOException {
+        Random random = new Random(20240601);
+        for (String name : List.of("J3.2_Rules.dsl", "信息管理.dsl", "平台状态.dsl", "目标监视.dsl")) {
+            DslMode mode = DslMode.fromFileName(name);
+            String text = Files.readString(CORPUS.resolve(name), StandardCharsets.UTF_8);
+            IncrementalReparser reparser = new IncrementalReparser(mode);
+            reparser.update(text);
+            for (int step = 0; step < 150; step++) {
+                text = edit(text, random);
+                IncrementalReparser.Result incremental = reparser.update(text);
+                IncrementalReparser.Result full = new IncrementalReparser(mode).update(text);
+                String where = name + " 第 " + step + " 次编辑";
+                assertEquals(describe(full.errors), describe(incremental.errors), where);
+                if (full.errors.isEmpty()) {
+                    assertEquals(terminals(full.tree), terminals(incremental.tree), where);
+                }
+            }
+        }
+    }
+
+    @Test
+    void errorsOutsideBlocksAreRecomputedAfterEdit() throws IOException {
+        String original = Files.readString(CORPUS.resolve("J3.2_Rules.dsl"), StandardCharsets.UTF_8);
+        String broken = original + "\nMessage J3.3 Rules junk {}\n";
+        IncrementalReparser reparser = new IncrementalReparser(DslMode.MESSAGE_RULES);
+        reparser.update(broken);
+
+        // 在第一条规则里插入两个空行：块外的错误必须随之下移
+        int firstRule = broken.indexOf("Rule ");
+        String edited = broken.substring(0, firstRule) + "\n\n" + broken.substring(firstRule);
+        IncrementalReparser.Result incremental = reparser.update(edited);
+        IncrementalReparser.Result full = new IncrementalReparser(DslMode.MESSAGE_RULES).update(edited);
+        assertEquals(describe(full.errors), describe(incremental.errors));
+    }
+
+    @Test
+    void tokensAfterEditOnSameLineShiftColumns() throws IOException {
+        String original = Files.readString(CORPUS.resolve("平台状态.dsl"), StandardCharsets.UTF_8);
+        // 把第二个 PROCEDURE 接到第一个过程的 '}' 同一行上
+        int second = original.indexOf("PROCEDURE Sub_Request_Controlled_Unit_Status");
+        int closing = original.lastIndexOf('}', second);
+        String joined = original.substring(0, closing + 1) + " " + original.substring(second);
+        IncrementalReparser reparser = new IncrementalReparser(DslMode.FUNCTION_MODEL);
+        reparser.update(joined);
+
+        // 在第一个过程末尾的 '}' 前插入空格：同一行上后一个过程的 token 列号随之右移
+        String edited = joined.substring(0, closing) + "   " + joined.substring(closing);
+        IncrementalReparser.Result incremental = reparser.update(edited);
+        IncrementalReparser.Result full = new IncrementalReparser(DslMode.FUNCTION_MODEL).update(edited);
+        assertTrue(incremental.incremental);
+        assertEquals(describe(full.errors), describe(incremental.errors));
+        assertEquals(terminals(full.tree), terminals(incremental.tree));
+    }
+
+    // 在随机位置插入/删除空白、换行或一个字符，偶尔会制造语法错误
+    private static String edit(String text, Random random) {
+        int offset = random.nextInt(text.length() + 1);
+        return switch (random.nextInt(5)) {
+            case 0 -> text.substring(0, offset) + "   " + text.substring(offset);
+            case 1 -> text.substring(0, offset) + "\n" + text.substring(offset);
+            case 2 -> {
+                int space = text.indexOf(' ', offset);
+                yield space < 0 ? text : text.substring(0, space) + text.substring(space + 1);
+            }
+            case 3 -> text.substring(0, offset) + ";" + text.substring(offset);
+            default -> {
+                // 撤销式编辑：删掉随机位置后的一个换行，让行号回退
+                int newline = text.indexOf('\n', offset);
+                yield newline < 0 ? text : text.substring(0, newline) + " " + text.substring(newline + 1);
+            }
+        };
+    }
+
+    private static List<String> describe(List<SyntaxErrorDetail> errors) {
+        List<String> described = new ArrayList<>();
+        for (SyntaxErrorDetail error : errors) {
+            described.add(error.line + ":" + error.charPositionInLine + " " + error.message);
+        }
+        return described;
+    }
+
+    private static List<String> terminals(ParseTree tree) {
+        List<String> terminals = new ArrayList<>();
+        collect(tree, terminals);
+        return terminals;
+    }
+
+    private static void collect(ParseTree node, List<String> out) {
+        if (node instanceof TerminalNode terminal) {
+            Token token = terminal.getSymbol();
+            if (token.getType() != Token.EOF) {
+                out.add(token.getText() + "@" + token.getLine() + ":" + token.getCharPositionInLine()
+                        + "[" + token.getStartIndex() + "]");
+            }
+            return;
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collect(node.getChild(i), out);
+        }
+    }
+}
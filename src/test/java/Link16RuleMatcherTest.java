@@ -0,0 +1,108 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 规则匹配器: 触发索引的选择、结构相同子条件的共享，以及未判定 Text(...) 的三值求值。
+ */
+class Link16RuleMatcherTest {
+
+    @Test
+    void andIndexesSmallestNecessarySetAndOrIndexesUnion() {
+        Link16RuleMatcher matcher = matcher(
+                "Field(J7.1.Action) == 3 AND (OnEvent(ReceiptOf(\"J7.2\")) OR OnEvent(ReceiptOf(\"J7.3\")))",
+                "OnEvent(ReceiptOf(\"J7.2\")) OR Timing is OnUpdate",
+                "OnEvent(ReceiptOf(\"J7.4\")) OR Text(\"manual\")",
+                "Text(\"standing\")");
+
+        // 规则 0: AND 取两个必要集合中较小的 {J7.1}，不登记在 J7.2 / J7.3 下
+        assertArrayEquals(new int[]{0}, matcher.indexed(Link16RuleMatcher.EventType.RECEIPT, "J7.1"));
+        assertArrayEquals(new int[]{1}, matcher.indexed(Link16RuleMatcher.EventType.RECEIPT, "J7.2"));
+        assertArrayEquals(new int[0], matcher.indexed(Link16RuleMatcher.EventType.RECEIPT, "J7.3"));
+        // 规则 1: OR 取并集
+        assertArrayEquals(new int[]{1}, matcher.indexed(Link16RuleMatcher.EventType.UPDATE, ""));
+        // 规则 2: OR 含非事件分支时没有必要集合，退回到正向事件原子
+        assertArrayEquals(new int[]{2}, matcher.indexed(Link16RuleMatcher.EventType.RECEIPT, "J7.4"));
+        // 规则 3: 没有事件原子
+        assertEquals(1, matcher.standingRuleCount());
+
+        List<Link16RuleMatcher.Firing> firings = matcher.match(List.of(
+                Link16RuleMatcher.Event.receipt("J7.1", Map.of("Action", "3")),
+                Link16RuleMatcher.Event.receipt("J7.2", Map.of("Action", "3")),
+                Link16RuleMatcher.Event.update()));
+        assertEquals(List.of("#1 r1", "#2 r1"), names(firings));
+    }
+
+    @Test
+    void structurallyIdenticalSubconditionsShareNodes() {
+        Link16RuleMatcher matcher = matcher(
+                "OnEvent(ReceiptOf(\"J7.1\")) AND Text(\"a\")",
+                "Text(\"a\") AND OnEvent(ReceiptOf(\"J7.1\"))",
+                "(Text(\"a\") AND OnEvent(ReceiptOf(\"J7.1\"))) OR Timing is OnDemand");
+
+        // RECEIPT、TEXT、AND 各一个，再加第三条规则的 TIMING 与 OR
+        assertEquals(3, matcher.ruleCount());
+        assertEquals(5, matcher.nodeCount());
+        // 规则 1 命中 3 个已有节点 (操作数顺序不同也算同一个 AND)，规则 2 又命中 3 个
+        assertEquals(6, matcher.sharedReferences());
+
+        Link16RuleMatcher.Context context = new Link16RuleMatcher.Context(Map.of(), Map.of("a", true), null);
+        List<Link16RuleMatcher.Firing> firings = matcher.match(List.of(
+                Link16RuleMatcher.Event.receipt("J7.1", Map.of()),
+                Link16RuleMatcher.Event.demand()), context);
+        assertEquals(List.of("#0 r0", "#0 r1", "#0 r2", "#1 r2"), names(firings));
+    }
+
+    @Test
+    void negatedTextIsUnknownUnlessContextDecides() {
+        Link16RuleMatcher matcher = matcher("OnEvent(ReceiptOf(\"J7.1\")) AND NOT Text(\"link busy\")");
+        List<Link16RuleMatcher.Event> events = List.of(Link16RuleMatcher.Event.receipt("J7.1", Map.of()));
+
+        // 默认 Context 不判定 Text: NOT 未知仍是未知，规则以"可能触发"报告而不是被默默关闭
+        List<Link16RuleMatcher.Firing> unknown = matcher.match(events);
+        assertEquals(1, unknown.size());
+        assertTrue(unknown.get(0).assumed);
+
+        List<Link16RuleMatcher.Firing> busy = matcher.match(events,
+                new Link16RuleMatcher.Context(Map.of(), Map.of("link busy", true), null));
+        assertTrue(busy.isEmpty());
+
+        List<Link16RuleMatcher.Firing> idle = matcher.match(events,
+                new Link16RuleMatcher.Context(Map.of(), Map.of(), false));
+        assertEquals(1, idle.size());
+        assertFalse(idle.get(0).assumed);
+
+        // AND 中有确定的假时不再是未知
+        assertTrue(matcher.match(List.of(Link16RuleMatcher.Event.receipt("J7.2", Map.of()))).isEmpty());
+    }
+
+    private static Link16RuleMatcher matcher(String... conditions) {
+        StringBuilder source = new StringBuilder("Message J3.2 Rules {\n    TransmitRules {\n");
+        for (int i = 0; i < conditions.length; i++) {
+            source.append("        Rule \"r").append(i).append("\" {\n")
+                    .append("            Condition: ").append(conditions[i]).append('\n')
+                    .append("            Action: \"x\"\n")
+                    .append("        }\n");
+        }
+        source.append("    }\n}\n");
+        ParseResult parsed = Link16ParserRunner.parse("Matcher_Rules.dsl", source.toString(), DslMode.MESSAGE_RULES,
+                ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false));
+        assertTrue(parsed.success, String.join("\n", parsed.errors));
+        return Link16RuleMatcher.compile((ModelIR.RulesModel) parsed.model);
+    }
+
+    private static List<String> names(List<Link16RuleMatcher.Firing> firings) {
+        List<String> names = new ArrayList<>();
+        for (Link16RuleMatcher.Firing firing : firings) {
+            names.add("#" + firing.event + " " + firing.rule);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,60 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * TDMA 发送队列的上限: 一个参与者同一时刻连续发送超过 link16.sim.maxQueued (默认 16) 条消息时，
+ * 多出的发送被丢弃并计入溢出，不触发 MESSAGE_SENT，已排队消息的延迟不超过上限个帧。
+ */
+class Link16SimulatorTest {
+
+    private static final int SENDS = 40;
+    private static final int MAX_QUEUED = Integer.getInteger("link16.sim.maxQueued", 16);
+    private static final long SLOT_MICROS = Integer.getInteger("link16.sim.slotMicros", 7812);
+    private static final long PROPAGATION_MICROS = Integer.getInteger("link16.sim.propagationMicros", 1000);
+
+    @Test
+    void sendsBeyondQueueCapAreDropped() {
+        StringBuilder steps = new StringBuilder();
+        for (int i = 0; i < SENDS; i++) {
+            steps.append("            STEP Unit_A SENDS J3.2 TO Unit_B;\n");
+        }
+        String source = "FUNCTION_MODEL Queue_Test {\n"
+                + "    ACTORS {\n"
+                + "        Unit_A : C2_JU;\n"
+                + "        Unit_B : C2_JU;\n"
+                + "    }\n"
+                + "    MESSAGES {\n"
+                + "        J3.2;\n"
+                + "    }\n"
+                + "    PROCEDURE Burst \"burst\" {\n"
+                + "        STEPS {\n" + steps + "        }\n"
+                + "    }\n"
+                + "    PROCEDURE On_Sent \"sent\" {\n"
+                + "        TRIGGER MESSAGE_SENT J3.2 TO Unit_B;\n"
+                + "        STEPS {\n"
+                + "            STEP \"noted\";\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+        ParseResult parsed = Link16ParserRunner.parse("Queue_Test.dsl", source, DslMode.FUNCTION_MODEL,
+                ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false));
+        assertTrue(parsed.success, String.join("\n", parsed.errors));
+
+        Link16Simulator.Report report = new Link16Simulator((ModelIR.FunctionModel) parsed.model, 7)
+                .run(10_000_000, 1, Long.MAX_VALUE);
+        Link16Simulator.MessageStats stats = report.messages.get("J3.2");
+
+        assertEquals(SENDS, stats.sent);
+        assertEquals(SENDS - MAX_QUEUED, stats.overflow);
+        assertEquals(SENDS - MAX_QUEUED, report.overflow);
+        assertEquals(MAX_QUEUED, stats.delivered);
+        // 只有真正发出的消息才算 MESSAGE_SENT
+        assertEquals(MAX_QUEUED, report.triggered);
+        // 第一条最多等将近一帧才轮到自己的时隙，之后每条再晚一帧；加上时隙本身与传播时延
+        long frame = 2 * SLOT_MICROS;
+        assertTrue(stats.latencyMaxMicros <= MAX_QUEUED * frame + SLOT_MICROS + PROPAGATION_MICROS, String.valueOf(stats.latencyMaxMicros));
+        assertEquals(0, report.pendingEvents);
+    }
+}
@@ -0,0 +1,64 @@
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 流式解析遇到语法错误时只报告错误，错误恢复出的不完整子树不能让 Visitor 抛出异常。
+ */
+class Link16StreamingRulesParserTest {
+
+    // 第一条规则的条件是 "( AND ) OR ..."：恢复后的 trAndExpr / trNotExpr 没有任何子节点
+    private static final String MALFORMED = """
+            Message J3.2 Rules {
+                TransmitRules {
+                    Rule "broken" {
+                        Condition: ( AND ) OR Text("x")
+                        Action: "a"
+                    }
+                    Rule "ok" {
+                        Condition: Text("y") AND NOT Text("z")
+                        Action: "b"
+                    }
+                }
+            }
+            """;
+
+    @Test
+    void malformedConditionIsReportedNotThrown() {
+        List<ModelIR.MessageRules> messages = new ArrayList<>();
+        Link16StreamingRulesParser.Summary summary = Link16StreamingRulesParser.parse(new StringReader(MALFORMED),
+                "malformed.dsl", messages::add, new BaseErrorListener());
+
+        assertTrue(summary.syntaxErrorCount > 0);
+        assertEquals(1, summary.messageCount);
+        assertEquals(2, summary.ruleCount);
+        ModelIR.TrRule ok = messages.get(0).groups.get(0).rules.get(1);
+        assertEquals("ok", ok.name);
+        assertEquals("b", ok.action);
+    }
+
+    @Test
+    void runStreamingSurvivesMalformedRulesFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("Malformed_Rules.dsl");
+        Files.writeString(file, MALFORMED, StandardCharsets.UTF_8);
+        ParseOptions options = ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false);
+
+        ParseResult result = Link16ParserRunner.runStreaming(file.toFile(), options);
+
+        assertFalse(result.success);
+        assertFalse(result.syntaxErrors.isEmpty());
+        assertEquals(result.syntaxErrors.size(), result.errors.size(), String.join("\n", result.errors));
+    }
+}
@@ -0,0 +1,67 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * ASSIGN X.f 的检查：X 必须是状态，X 为 STRUCT 类型时 f (及更深的成员) 必须是声明过的字段。
+ */
+class SemanticCheckerTest {
+
+    private static final String MODEL = """
+            FUNCTION_MODEL Checker_Test {
+                TYPES {
+                    Point : STRUCT {
+                        X : INTEGER;
+                        Y : INTEGER;
+                    };
+                    TrackData : STRUCT {
+                        TN : INTEGER;
+                        Position : Point;
+                    };
+                }
+                ACTORS {
+                    Unit_A : C2_JU;
+                }
+                STATES {
+                    Current_Track : TrackData;
+                    Inline : STRUCT { Count : INTEGER; };
+                    Cache : DICTIONARY;
+                }
+                PROCEDURE Update "update" {
+                    STEPS {
+                        ASSIGN Current_Track.TN = 1;
+                        ASSIGN Current_Track.Position.X = 2;
+                        ASSIGN Inline.Count = 3;
+                        ASSIGN Cache.Anything = 4;
+                        ASSIGN Current_Trak.TN = 5;
+                        ASSIGN Current_Track.Tn = 6;
+                        ASSIGN Current_Track.Position.Z = 7;
+                        ASSIGN Inline.Total = 8;
+                    }
+                }
+            }
+            """;
+
+    @Test
+    void unknownRootAndUnknownFieldsAreReported() {
+        ParseResult parsed = Link16ParserRunner.parse("Checker_Test.dsl", MODEL, DslMode.FUNCTION_MODEL,
+                ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false));
+        assertTrue(parsed.success, String.join("\n", parsed.errors));
+
+        List<SemanticErrorDetail> issues = SemanticChecker.check(parsed.model);
+        List<String> described = new ArrayList<>();
+        for (SemanticErrorDetail issue : issues) {
+            assertEquals(SemanticErrorDetail.Category.UNKNOWN_STATE, issue.category);
+            described.add(issue.offendingToken + " -> " + issue.expectedTokens);
+        }
+        assertEquals(List.of(
+                "Current_Trak -> Current_Track",
+                "Current_Track.Tn -> TN",
+                "Current_Track.Position.Z -> X, Y",
+                "Inline.Total -> "), described);
+    }
+}
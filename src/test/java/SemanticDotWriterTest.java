@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 语义图只依赖 ModelIR：从 model.bin 还原的模型与刚解析出的模型画出同一张图。
+ */
+class SemanticDotWriterTest {
+
+    private static final Path CORPUS = Path.of("dsl");
+
+    @Test
+    void restoredModelDrawsSameGraph(@TempDir Path dir) throws IOException {
+        for (String name : List.of("J3.2_Rules.dsl", "平台状态.dsl", "信息管理.dsl")) {
+            byte[] source = Files.readAllBytes(CORPUS.resolve(name));
+            ParseResult parsed = Link16ParserRunner.parse(name, new String(source, StandardCharsets.UTF_8), DslMode.fromFileName(name),
+                    ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false));
+            assertNotNull(parsed.model, name);
+
+            Path file = dir.resolve(name + ".bin");
+            ModelBinary.write(parsed.model, source, file);
+            ModelIR.Model restored = ModelBinary.load(file, source);
+            assertNotNull(restored, name);
+
+            String dot = dot(parsed.model);
+            assertTrue(dot.contains("->"), name);
+            assertEquals(dot, dot(restored), name);
+        }
+    }
+
+    private static String dot(ModelIR.Model model) throws IOException {
+        StringWriter out = new StringWriter();
+        new SemanticDotWriter(out).write(model);
+        return out.toString();
+    }
+}
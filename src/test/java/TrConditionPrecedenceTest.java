@@ -0,0 +1,63 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 规则条件的优先级与分组: NOT > AND > OR，同级从左到右，括号保留为 Group。
+ */
+class TrConditionPrecedenceTest {
+
+    @Test
+    void precedenceAndGroupingMatchExpectedModel() {
+        assertEquals("OR(a, AND(b, NOT(c)))", shape("Text(\"a\") OR Text(\"b\") AND NOT Text(\"c\")"));
+        assertEquals("OR(AND(a, b), c, AND(d, e))",
+                shape("Text(\"a\") AND Text(\"b\") OR Text(\"c\") OR Text(\"d\") AND Text(\"e\")"));
+        assertEquals("AND(GROUP(OR(a, b)), NOT(c))", shape("(Text(\"a\") OR Text(\"b\")) AND NOT Text(\"c\")"));
+        assertEquals("NOT(GROUP(AND(a, GROUP(OR(b, NOT(NOT(c)))))))",
+                shape("NOT (Text(\"a\") AND (Text(\"b\") OR NOT NOT Text(\"c\")))"));
+        assertEquals("OR(a, GROUP(GROUP(b)))", shape("Text(\"a\") OR ((Text(\"b\")))"));
+    }
+
+    private static String shape(String condition) {
+        String source = "Message J3.2 Rules {\n"
+                + "    TransmitRules {\n"
+                + "        Rule \"r\" {\n"
+                + "            Condition: " + condition + "\n"
+                + "            Action: \"x\"\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+        ParseResult parsed = Link16ParserRunner.parse("Precedence_Rules.dsl", source, DslMode.MESSAGE_RULES,
+                ParseOptions.defaults().withEchoToConsole(false).withWriteArtifacts(false));
+        assertTrue(parsed.success, String.join("\n", parsed.errors));
+        ModelIR.RulesModel model = (ModelIR.RulesModel) parsed.model;
+        return shape(model.ruleSets.get(0).groups.get(0).rules.get(0).condition);
+    }
+
+    private static String shape(ModelIR.Condition condition) {
+        if (condition instanceof ModelIR.Or or) {
+            return "OR(" + shapes(or.operands) + ")";
+        } else if (condition instanceof ModelIR.And and) {
+            return "AND(" + shapes(and.operands) + ")";
+        } else if (condition instanceof ModelIR.Not not) {
+            return "NOT(" + shape(not.operand) + ")";
+        } else if (condition instanceof ModelIR.Group group) {
+            return "GROUP(" + shape(group.inner) + ")";
+        } else if (condition instanceof ModelIR.TextCondition text) {
+            return text.text;
+        }
+        throw new AssertionError("意外的条件节点: " + condition);
+    }
+
+    private static String shapes(List<ModelIR.Condition> operands) {
+        List<String> shapes = new ArrayList<>();
+        for (ModelIR.Condition operand : operands) {
+            shapes.add(shape(operand));
+        }
+        return String.join(", ", shapes);
+    }
+}